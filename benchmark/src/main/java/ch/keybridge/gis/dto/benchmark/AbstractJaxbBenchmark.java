@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Common JAXB benchmark state. Each benchmark thread holds its own Marshaller
+ * and Unmarshaller (neither is thread safe) created from a single JAXBContext,
+ * which is how a well-behaved application is expected to use the DTO classes.
+ * <p>
+ * Benchmarks report both throughput and sampled latency (which includes the
+ * latency percentiles). Run with {@code -prof gc} to also record the
+ * allocation rate and the normalized allocation per operation.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public abstract class AbstractJaxbBenchmark {
+
+  /**
+   * The JAXB context.
+   */
+  private JAXBContext context;
+  /**
+   * The thread-confined marshaller.
+   */
+  private Marshaller marshaller;
+  /**
+   * The thread-confined unmarshaller.
+   */
+  private Unmarshaller unmarshaller;
+  /**
+   * A reusable output buffer. This is reset (not reallocated) on each
+   * marshal operation so that buffer growth is not measured.
+   */
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024 * 1024);
+
+  /**
+   * Initialize the JAXB context, marshaller and unmarshaller.
+   *
+   * @param classes the classes to be recognized by the JAXB context
+   * @throws JAXBException if the JAXB context cannot be created
+   */
+  protected void initialize(Class<?>... classes) throws JAXBException {
+    context = JAXBContext.newInstance(classes);
+    marshaller = context.createMarshaller();
+    unmarshaller = context.createUnmarshaller();
+  }
+
+  /**
+   * Marshal an object to XML in the reusable buffer.
+   *
+   * @param object the object to marshal
+   * @return the number of bytes written
+   * @throws JAXBException on marshal error
+   */
+  protected int marshal(Object object) throws JAXBException {
+    buffer.reset();
+    marshaller.marshal(object, buffer);
+    return buffer.size();
+  }
+
+  /**
+   * Marshal an object to an XML byte array. This is used to prepare the
+   * unmarshal payloads during setup.
+   *
+   * @param object the object to marshal
+   * @return the XML bytes
+   * @throws JAXBException on marshal error
+   */
+  protected byte[] toXml(Object object) throws JAXBException {
+    marshal(object);
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Unmarshal an XML byte array.
+   *
+   * @param <T>   the object type
+   * @param xml   the XML bytes
+   * @param clazz the object class
+   * @return the unmarshalled object
+   * @throws JAXBException on unmarshal error
+   */
+  protected <T> T unmarshal(byte[] xml, Class<T> clazz) throws JAXBException {
+    return unmarshaller.unmarshal(new StreamSource(new ByteArrayInputStream(xml)), clazz).getValue();
+  }
+
+}
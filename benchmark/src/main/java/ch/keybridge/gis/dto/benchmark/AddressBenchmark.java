@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Address;
+import javax.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Address JAXB marshal and unmarshal benchmarks, plus the address formatter.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public class AddressBenchmark extends AbstractJaxbBenchmark {
+
+  private Address address;
+  private byte[] xml;
+
+  @Setup
+  public void setUp() throws JAXBException {
+    initialize(Address.class);
+    address = Fixtures.getAddress();
+    xml = toXml(address);
+  }
+
+  @Benchmark
+  public int marshal() throws JAXBException {
+    return marshal(address);
+  }
+
+  @Benchmark
+  public Address unmarshal() throws JAXBException {
+    return unmarshal(xml, Address.class);
+  }
+
+  @Benchmark
+  public String format() {
+    return address.format();
+  }
+
+}
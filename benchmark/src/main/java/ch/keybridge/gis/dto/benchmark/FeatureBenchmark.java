@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.Style;
+import ch.keybridge.gis.dto.io.XmlCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import org.locationtech.jts.geom.Envelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Feature JAXB marshal and unmarshal benchmarks, plus the envelope getter,
+ * typed (numeric) property reads and Java serialization.
+ * <p>
+ * The codec benchmarks marshal through the shared {@link XmlCodec} pools,
+ * compared with creating a JAXB context for each request.
+ * <p>
+ * The small feature is the world borders country with the fewest shape
+ * coordinates; the large feature is the country with the most.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public class FeatureBenchmark extends AbstractJaxbBenchmark {
+
+  private Feature small;
+  private Feature large;
+  private Feature largeCopy;
+  private byte[] smallXml;
+  private byte[] largeXml;
+  private byte[] largeSerialized;
+
+  @Setup
+  public void setUp() throws JAXBException, IOException {
+    initialize(Feature.class);
+    small = Fixtures.getSmallFeature();
+    large = Fixtures.getLargeFeature();
+    smallXml = toXml(small);
+    largeXml = toXml(large);
+    largeCopy = unmarshal(largeXml, Feature.class);
+    largeSerialized = serialize(large);
+    small.setStrokeWidth(2.5);
+    small.setFillOpacity(0.6);
+    small.setProperty("population", 123456);
+  }
+
+  @Benchmark
+  public int marshalSmall() throws JAXBException {
+    return marshal(small);
+  }
+
+  @Benchmark
+  public int marshalLarge() throws JAXBException {
+    return marshal(large);
+  }
+
+  @Benchmark
+  public Feature unmarshalSmall() throws JAXBException {
+    return unmarshal(smallXml, Feature.class);
+  }
+
+  @Benchmark
+  public Feature unmarshalLarge() throws JAXBException {
+    return unmarshal(largeXml, Feature.class);
+  }
+
+  @Benchmark
+  public int marshalSmallCodec() throws JAXBException {
+    return XmlCodec.marshal(small).length();
+  }
+
+  @Benchmark
+  public Feature unmarshalSmallCodec() throws JAXBException {
+    return XmlCodec.unmarshal(new ByteArrayInputStream(smallXml), Feature.class);
+  }
+
+  @Benchmark
+  public Feature unmarshalSmallNewContext() throws JAXBException {
+    return (Feature) JAXBContext.newInstance(Feature.class).createUnmarshaller().unmarshal(new ByteArrayInputStream(smallXml));
+  }
+
+  @Benchmark
+  public Envelope getEnvelope() {
+    return large.getEnvelope();
+  }
+
+  @Benchmark
+  public double typedProperties() {
+    return small.getStrokeWidth() + small.getFillOpacity() + small.getPropertyInteger("population");
+  }
+
+  @Benchmark
+  public double style() {
+    Style style = small.getStyle();
+    return style.getStrokeWidth() + style.getFillOpacity();
+  }
+
+  @Benchmark
+  public boolean equalsExact() {
+    return large.getShape().equals(largeCopy.getShape());
+  }
+
+  @Benchmark
+  public boolean equalsFingerprint() {
+    return large.getShapeFingerprint() == largeCopy.getShapeFingerprint();
+  }
+
+  @Benchmark
+  public long contentHashCached() {
+    return large.getContentHash();
+  }
+
+  @Benchmark
+  public long contentHashLarge() {
+    large.invalidateContentHash();
+    return large.getContentHash();
+  }
+
+  @Benchmark
+  public int serializeLarge() throws IOException {
+    return serialize(large).length;
+  }
+
+  @Benchmark
+  public Object deserializeLarge() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(largeSerialized))) {
+      return in.readObject();
+    }
+  }
+
+  private static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.FeatureCollectionPatch;
+import ch.keybridge.gis.dto.Position;
+import ch.keybridge.gis.dto.io.FeatureCollectionBinaryReader;
+import ch.keybridge.gis.dto.io.FeatureCollectionBinaryWriter;
+import ch.keybridge.gis.dto.io.FeatureCollectionGeoJsonReader;
+import ch.keybridge.gis.dto.io.FeatureCollectionGeoJsonWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import javax.xml.bind.JAXBException;
+import org.locationtech.jts.geom.Envelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * FeatureCollection JAXB marshal and unmarshal benchmarks, plus the aggregate
+ * envelope getter, the spatial index queries, the compact binary format and
+ * streaming GeoJSON input and output. The payload is the complete
+ * world borders collection (244 country multi-polygons with mobile phone
+ * statistics properties).
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public class FeatureCollectionBenchmark extends AbstractJaxbBenchmark {
+
+  /**
+   * A viewport over western Europe.
+   */
+  private static final Envelope VIEWPORT = new Envelope(-10, 20, 35, 60);
+  /**
+   * Paris.
+   */
+  private static final Position PARIS = Position.getInstance(48.8566, 2.3522);
+
+  private FeatureCollection collection;
+  private byte[] xml;
+  private byte[] binary;
+  private byte[] geoJson;
+  /**
+   * A copy of the collection with one feature changed, and the patch to it.
+   */
+  private FeatureCollection changed;
+  private FeatureCollectionPatch patch;
+
+  @Setup
+  public void setUp() throws JAXBException, IOException {
+    initialize(FeatureCollection.class);
+    collection = Fixtures.getWorldBorders();
+    xml = toXml(collection);
+    binary = toBinary();
+    geoJson = toGeoJson();
+    changed = unmarshal(xml, FeatureCollection.class);
+    changed.getFeatures().iterator().next().setProperty("population", 1);
+    patch = FeatureCollectionPatch.diff(collection, changed);
+  }
+
+  @Benchmark
+  public int marshal() throws JAXBException {
+    return marshal(collection);
+  }
+
+  @Benchmark
+  public FeatureCollection unmarshal() throws JAXBException {
+    return unmarshal(xml, FeatureCollection.class);
+  }
+
+  @Benchmark
+  public int marshalBinary() throws IOException {
+    return toBinary().length;
+  }
+
+  @Benchmark
+  public long unmarshalBinary() throws IOException {
+    return FeatureCollectionBinaryReader.read(new ByteArrayInputStream(binary), feature -> true);
+  }
+
+  @Benchmark
+  public int marshalGeoJson() throws IOException {
+    return toGeoJson().length;
+  }
+
+  @Benchmark
+  public long unmarshalGeoJson() throws IOException {
+    return FeatureCollectionGeoJsonReader.read(new ByteArrayInputStream(geoJson), feature -> true);
+  }
+
+  @Benchmark
+  public long unmarshalGeoJsonViewport() throws IOException {
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(geoJson))) {
+      reader.setEnvelope(VIEWPORT);
+      return reader.read(feature -> true);
+    }
+  }
+
+  @Benchmark
+  public Envelope getEnvelope() {
+    return collection.getEnvelope();
+  }
+
+  @Benchmark
+  public List<Feature> queryEnvelope() {
+    return collection.query(VIEWPORT);
+  }
+
+  @Benchmark
+  public List<Feature> queryRadius() {
+    return collection.query(PARIS, 500000);
+  }
+
+  @Benchmark
+  public List<Feature> nearest() {
+    return collection.nearest(PARIS, 5);
+  }
+
+  @Benchmark
+  public FeatureCollectionPatch diff() {
+    return FeatureCollectionPatch.diff(collection, changed);
+  }
+
+  @Benchmark
+  public FeatureCollection applyPatch() {
+    return patch.apply(collection);
+  }
+
+  private byte[] toBinary() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(xml.length / 4);
+    FeatureCollectionBinaryWriter.write(collection, collection.getFeatures().iterator(), outputStream);
+    return outputStream.toByteArray();
+  }
+
+  private byte[] toGeoJson() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(xml.length);
+    FeatureCollectionGeoJsonWriter.write(collection, collection.getFeatures().iterator(), outputStream);
+    return outputStream.toByteArray();
+  }
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.locationtech.jts.geom.*;
+
+/**
+ * Benchmark payload fixtures built from the example data bundled with the
+ * gis-dto unit tests.
+ * <p>
+ * The world borders KML document provides 244 (multi) polygon country shapes
+ * of varying complexity. The mobile phone CSV provides a per-country time
+ * series that is attached to each feature as properties so that the feature
+ * payloads carry a realistic number of key/value pairs.
+ * <p>
+ * Fixtures are parsed once per JVM and cached. Callers must not modify the
+ * returned instances.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public final class Fixtures {
+
+  /**
+   * The world borders KML fixture.
+   */
+  private static final String WORLD_BORDERS = "/exampledata/worldBorders.kml";
+  /**
+   * The mobile phone subscriptions CSV fixture.
+   */
+  private static final String MOBILE_PHONE = "/exampledata/mobile_phone.csv";
+
+  /**
+   * The shared JTS geometry factory.
+   */
+  private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+  /**
+   * The lazily loaded world borders feature collection.
+   */
+  private static FeatureCollection worldBorders;
+
+  private Fixtures() {
+  }
+
+  /**
+   * Get a feature collection containing one feature per country in the world
+   * borders fixture, with mobile phone statistics attached as properties.
+   *
+   * @return the world borders feature collection
+   */
+  public static synchronized FeatureCollection getWorldBorders() {
+    if (worldBorders == null) {
+      try {
+        Map<String, Map<String, String>> statistics = readMobilePhone();
+        List<Feature> features = readWorldBorders();
+        for (Feature feature : features) {
+          Map<String, String> properties = statistics.get(feature.getId());
+          if (properties != null) {
+            feature.addProperties(properties);
+          }
+          feature.setStroke("999999");
+          feature.setStrokeOpacity(1.0);
+          feature.setStrokeWidth(2.0);
+          feature.setFill("555555");
+          feature.setFillOpacity(0.6);
+        }
+        worldBorders = FeatureCollection.getInstance("worldBorders", "border", "World borders", features);
+      } catch (IOException | XMLStreamException exception) {
+        throw new IllegalStateException("Failed to read benchmark fixtures", exception);
+      }
+    }
+    return worldBorders;
+  }
+
+  /**
+   * Get the feature with the most complex shape (the most coordinates) in the
+   * world borders fixture.
+   *
+   * @return a large multi-polygon feature
+   */
+  public static Feature getLargeFeature() {
+    Feature largest = null;
+    for (Feature feature : getWorldBorders().getFeatures()) {
+      if (largest == null || feature.getShape().getNumPoints() > largest.getShape().getNumPoints()) {
+        largest = feature;
+      }
+    }
+    return largest;
+  }
+
+  /**
+   * Get the feature with the simplest shape (the fewest coordinates) in the
+   * world borders fixture.
+   *
+   * @return a small polygon feature
+   */
+  public static Feature getSmallFeature() {
+    Feature smallest = null;
+    for (Feature feature : getWorldBorders().getFeatures()) {
+      if (smallest == null || feature.getShape().getNumPoints() < smallest.getShape().getNumPoints()) {
+        smallest = feature;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Get a fully configured position, including the optional radial HAAT
+   * profile.
+   *
+   * @return a position
+   */
+  public static Position getPosition() {
+    Position position = Position.getInstance(38.924077, -77.211837, 125.5, "WGS84", 3.0, 5.0);
+    position.setName("Tysons");
+    position.setHeading(270.0);
+    position.setSpeed(12.5);
+    position.setHaat(150.0);
+    position.setSource("benchmark");
+    position.setDomTimeStampMillis(1602806400000L);
+    Map<Double, Double> radialHaat = new TreeMap<>();
+    for (int azimuth = 0; azimuth < 360; azimuth += 45) {
+      radialHaat.put((double) azimuth, 100.0 + azimuth / 10.0);
+    }
+    position.setRadialHaat(radialHaat);
+    return position;
+  }
+
+  /**
+   * Get a fully configured address.
+   *
+   * @return an address
+   */
+  public static Address getAddress() {
+    Address address = Address.getInstance("1750 Tysons Blvd., Suite 1500", "McLean", "VA", "22102", "US");
+    address.setCounty("Fairfax");
+    return address;
+  }
+
+  /**
+   * Get an image with a 64 KB binary payload.
+   *
+   * @return an image
+   */
+  public static Image getImage() {
+    return getImage("image", 1);
+  }
+
+  /**
+   * Get an image collection containing the indicated number of images, each
+   * having a 64 KB binary payload.
+   *
+   * @param count the number of images
+   * @return an image collection
+   */
+  public static ImageCollection getImageCollection(int count) {
+    ImageCollection collection = new ImageCollection();
+    collection.setDescription("benchmark images");
+    collection.setCategory("benchmark");
+    for (int i = 0; i < count; i++) {
+      collection.addImage(getImage("image-" + i, i));
+    }
+    return collection;
+  }
+
+  /**
+   * Build an image with a 64 KB deterministic pseudo-random payload. The
+   * payload is not a valid PNG; it is only used to exercise the binary data
+   * adapter.
+   *
+   * @param id   the image id
+   * @param seed the payload random seed
+   * @return an image
+   */
+  private static Image getImage(String id, long seed) {
+    byte[] data = new byte[64 * 1024];
+    new Random(seed).nextBytes(data);
+    Image image = new Image();
+    image.setId(id);
+    image.setName(id + ".png");
+    image.setDescription("benchmark image");
+    image.setCategory("benchmark");
+    image.setMimeType("image/png");
+    image.setWidth(256);
+    image.setHeight(256);
+    image.setSize(data.length);
+    image.setUrl("https://example.com/" + id + ".png");
+    image.setDateCreated(ZonedDateTime.of(2020, 10, 16, 0, 0, 0, 0, ZoneId.of("UTC")));
+    image.setEnvelope(new Envelope(-77.5, -77.0, 38.5, 39.0));
+    image.setImage(data);
+    return image;
+  }
+
+  /**
+   * Read the mobile phone statistics into a map of properties keyed by the
+   * ISO3 country code. Each property key is "mobilePhones" plus the year.
+   *
+   * @return the statistics properties, indexed by ISO3 country code
+   * @throws IOException if the fixture cannot be read
+   */
+  private static Map<String, Map<String, String>> readMobilePhone() throws IOException {
+    Map<String, Map<String, String>> statistics = new HashMap<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(MOBILE_PHONE), StandardCharsets.UTF_8))) {
+      /**
+       * Skip the header row.
+       */
+      String line = reader.readLine();
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.replace("\"", "").split(",");
+        if (fields.length == 4) {
+          statistics.computeIfAbsent(fields[0], k -> new HashMap<>()).put("mobilePhones" + fields[2], fields[3]);
+        }
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Read the world borders KML placemarks into features. The placemark id
+   * (ISO3 country code) and name are copied to the feature; the placemark
+   * polygons are assembled into a MultiPolygon shape.
+   *
+   * @return a list of features
+   * @throws IOException        if the fixture cannot be read
+   * @throws XMLStreamException if the fixture is not well formed
+   */
+  private static List<Feature> readWorldBorders() throws IOException, XMLStreamException {
+    List<Feature> features = new ArrayList<>();
+    try (InputStream inputStream = open(WORLD_BORDERS)) {
+      XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+      Feature feature = null;
+      List<Polygon> polygons = new ArrayList<>();
+      LinearRing shell = null;
+      List<LinearRing> holes = new ArrayList<>();
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          switch (reader.getLocalName()) {
+            case "Placemark":
+              feature = new Feature();
+              feature.setId(reader.getAttributeValue(null, "id"));
+              feature.setFeatureType("border");
+              polygons.clear();
+              break;
+            case "name":
+              if (feature != null) {
+                feature.setName(reader.getElementText().trim());
+              }
+              break;
+            case "coordinates":
+              LinearRing ring = GEOMETRY_FACTORY.createLinearRing(parseCoordinates(reader.getElementText()));
+              if (shell == null) {
+                shell = ring;
+              } else {
+                holes.add(ring);
+              }
+              break;
+            default:
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          switch (reader.getLocalName()) {
+            case "Polygon":
+              polygons.add(GEOMETRY_FACTORY.createPolygon(shell, holes.toArray(new LinearRing[holes.size()])));
+              shell = null;
+              holes.clear();
+              break;
+            case "Placemark":
+              feature.setShape(GEOMETRY_FACTORY.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()])));
+              features.add(feature);
+              feature = null;
+              break;
+            default:
+          }
+        }
+      }
+      reader.close();
+    }
+    return features;
+  }
+
+  /**
+   * Parse a KML coordinates string. e.g. "x,y,z x,y,z ...". The altitude is
+   * discarded.
+   *
+   * @param text the KML coordinates string
+   * @return an array of JTS coordinates
+   */
+  private static Coordinate[] parseCoordinates(String text) {
+    List<Coordinate> coordinates = new ArrayList<>();
+    for (String tuple : text.trim().split("\\s+")) {
+      String[] ordinates = tuple.split(",");
+      coordinates.add(new Coordinate(Double.parseDouble(ordinates[0]), Double.parseDouble(ordinates[1])));
+    }
+    return coordinates.toArray(new Coordinate[coordinates.size()]);
+  }
+
+  /**
+   * Open a classpath resource.
+   *
+   * @param resource the resource name
+   * @return the resource input stream
+   * @throws FileNotFoundException if the resource is not on the classpath
+   */
+  private static InputStream open(String resource) throws FileNotFoundException {
+    InputStream inputStream = Fixtures.class.getResourceAsStream(resource);
+    if (inputStream == null) {
+      throw new FileNotFoundException("Benchmark fixture not found on classpath: " + resource);
+    }
+    return new BufferedInputStream(inputStream);
+  }
+
+}
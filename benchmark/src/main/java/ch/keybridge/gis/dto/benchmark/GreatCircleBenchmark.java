@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.GreatCircle;
+import ch.keybridge.gis.dto.Position;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Point;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Great-circle distance benchmarks: 10,000 one-to-many distances within 50 km
+ * of an origin calculated from Position objects, with the bulk haversine and
+ * equirectangular kernels and (for reference) as planar JTS point distances;
+ * and a 100 x 100 distance matrix.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GreatCircleBenchmark {
+
+  private static final int ROWS = 10000;
+  private static final int MATRIX = 100;
+
+  private Position origin;
+  private Position[] positions;
+  private double[] latitudes;
+  private double[] longitudes;
+  private double[] distances;
+  private double[] matrixLatitudes;
+  private double[] matrixLongitudes;
+  private double[] matrix;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    origin = Position.getInstance(38.924077, -77.211837);
+    positions = new Position[ROWS];
+    latitudes = new double[ROWS];
+    longitudes = new double[ROWS];
+    distances = new double[ROWS];
+    matrix = new double[MATRIX * MATRIX];
+    for (int i = 0; i < ROWS; i++) {
+      positions[i] = origin.destination(random.nextDouble() * 360, random.nextDouble() * 50000);
+      latitudes[i] = positions[i].getLatitudeValue();
+      longitudes[i] = positions[i].getLongitudeValue();
+    }
+    matrixLatitudes = Arrays.copyOf(latitudes, MATRIX);
+    matrixLongitudes = Arrays.copyOf(longitudes, MATRIX);
+  }
+
+  @Benchmark
+  public double[] positionDistanceTo() {
+    for (int i = 0; i < ROWS; i++) {
+      distances[i] = origin.distanceTo(positions[i]);
+    }
+    return distances;
+  }
+
+  @Benchmark
+  public double[] jtsPlanar() {
+    Point point = origin.asPoint();
+    for (int i = 0; i < ROWS; i++) {
+      distances[i] = point.distance(positions[i].asPoint());
+    }
+    return distances;
+  }
+
+  @Benchmark
+  public double[] bulkHaversine() {
+    GreatCircle.distance(origin.getLatitudeValue(), origin.getLongitudeValue(), latitudes, longitudes, distances);
+    return distances;
+  }
+
+  @Benchmark
+  public double[] bulkEquirectangular() {
+    GreatCircle.distanceEquirectangular(origin.getLatitudeValue(), origin.getLongitudeValue(), latitudes, longitudes, distances);
+    return distances;
+  }
+
+  @Benchmark
+  public double[] matrixHaversine() {
+    GreatCircle.distanceMatrix(matrixLatitudes, matrixLongitudes, matrixLatitudes, matrixLongitudes, matrix);
+    return matrix;
+  }
+
+}
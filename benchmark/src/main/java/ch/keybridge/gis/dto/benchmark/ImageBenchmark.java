@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.Image;
+import ch.keybridge.gis.dto.ImageCollection;
+import javax.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Image and ImageCollection JAXB marshal and unmarshal benchmarks, plus the
+ * image to feature converter. Each image carries a 64 KB binary payload; the
+ * collection holds ten images.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public class ImageBenchmark extends AbstractJaxbBenchmark {
+
+  private Image image;
+  private ImageCollection collection;
+  private byte[] imageXml;
+  private byte[] collectionXml;
+
+  @Setup
+  public void setUp() throws JAXBException {
+    initialize(Image.class, ImageCollection.class);
+    image = Fixtures.getImage();
+    collection = Fixtures.getImageCollection(10);
+    imageXml = toXml(image);
+    collectionXml = toXml(collection);
+  }
+
+  @Benchmark
+  public int marshalImage() throws JAXBException {
+    return marshal(image);
+  }
+
+  @Benchmark
+  public Image unmarshalImage() throws JAXBException {
+    return unmarshal(imageXml, Image.class);
+  }
+
+  @Benchmark
+  public int marshalImageCollection() throws JAXBException {
+    return marshal(collection);
+  }
+
+  @Benchmark
+  public ImageCollection unmarshalImageCollection() throws JAXBException {
+    return unmarshal(collectionXml, ImageCollection.class);
+  }
+
+  @Benchmark
+  public Feature asFeature() {
+    return image.asFeature();
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Position;
+import ch.keybridge.gis.dto.PositionBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.MultiPoint;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Position batch benchmarks: reading 10,000 rows as Position objects versus a
+ * reusable flyweight Position, bulk conversion to JTS, and scalar versus bulk
+ * coordinate normalization.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PositionBatchBenchmark {
+
+  private static final int ROWS = 10000;
+
+  private PositionBatch batch;
+  private List<Position> positions;
+  /**
+   * Raw (not normalized) device fixes.
+   */
+  private double[] rawLatitude;
+  private double[] rawLongitude;
+  private double[] normalized;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    batch = new PositionBatch(ROWS);
+    positions = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      Position position = Position.getInstance(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+      position.setSpeed(random.nextDouble() * 30);
+      position.setDomTimeStampMillis(1602806400000L + i);
+      batch.add(position);
+      positions.add(position);
+    }
+    rawLatitude = new double[ROWS];
+    rawLongitude = new double[ROWS];
+    normalized = new double[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      rawLatitude[i] = random.nextDouble() * 360 - 180;
+      rawLongitude[i] = random.nextDouble() * 720 - 360;
+    }
+  }
+
+  @Benchmark
+  public double readPositions() {
+    double sum = 0;
+    for (Position position : batch) {
+      sum += position.getSpeedValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double readFlyweight() {
+    Position flyweight = new Position();
+    double sum = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      sum += batch.get(i, flyweight).getSpeedValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double readColumn() {
+    double sum = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      sum += batch.getSpeed(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public MultiPoint toMultiPoint() {
+    return batch.toMultiPoint();
+  }
+
+  @Benchmark
+  public double[] normalizeScalar() {
+    for (int i = 0; i < ROWS; i++) {
+      normalized[i] = Position.normalizeLongitude(rawLongitude[i]);
+    }
+    return normalized;
+  }
+
+  @Benchmark
+  public double[] normalizeBulk() {
+    Position.normalizeLongitude(rawLongitude, 0, normalized, 0, ROWS);
+    return normalized;
+  }
+
+  @Benchmark
+  public PositionBatch fromArrays() {
+    return PositionBatch.getInstance(rawLatitude, rawLongitude);
+  }
+
+  @Benchmark
+  public PositionBatch fromPositions() {
+    return PositionBatch.getInstance(positions);
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.benchmark;
+
+import ch.keybridge.gis.dto.Position;
+import javax.xml.bind.JAXBException;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Position JAXB marshal and unmarshal benchmarks, plus the JTS conversion
+ * methods.
+ *
+ * @author Key Bridge
+ * @since v4.0.0 added 10/16/20 for JMH benchmarks
+ */
+public class PositionBenchmark extends AbstractJaxbBenchmark {
+
+  /**
+   * A geometry factory storing point coordinates in a packed array.
+   */
+  private static final GeometryFactory PACKED = new GeometryFactory(Position.GEOMETRY_FACTORY.getPrecisionModel(), 0, PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+  private Position position;
+  private byte[] xml;
+
+  @Setup
+  public void setUp() throws JAXBException {
+    initialize(Position.class);
+    position = Fixtures.getPosition();
+    xml = toXml(position);
+  }
+
+  @Benchmark
+  public int marshal() throws JAXBException {
+    return marshal(position);
+  }
+
+  @Benchmark
+  public Position unmarshal() throws JAXBException {
+    return unmarshal(xml, Position.class);
+  }
+
+  @Benchmark
+  public Point asPoint() {
+    return position.asPoint();
+  }
+
+  @Benchmark
+  public Point asPointPacked() {
+    return position.asPoint(PACKED);
+  }
+
+  @Benchmark
+  public Coordinate asCoordinate() {
+    return position.asCoordinate();
+  }
+
+  @Benchmark
+  public long cellId() {
+    return position.getCellId(20);
+  }
+
+  @Benchmark
+  public double haatAt() {
+    double sum = 0;
+    for (int azimuth = 0; azimuth < 360; azimuth++) {
+      sum += position.getHaatAt(azimuth + 0.5);
+    }
+    return sum;
+  }
+
+}
@@ -16,13 +16,21 @@
 package ch.keybridge.gis.dto;
 
 import ch.keybridge.xml.adapter.XmlMapAdapter;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.*;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
@@ -58,6 +66,18 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 @XmlAccessorType(XmlAccessType.FIELD)
 public abstract class AbstractFeature implements Serializable, Comparable<AbstractFeature> {
 
+  private static final long serialVersionUID = 2L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
+
+  /**
+   * The maximum number of cached typed property values. The cache is reset
+   * when this is exceeded.
+   */
+  private static final int MAX_PARSED_PROPERTIES = 16;
+
   /**
    * The Feature Object lookup identifier.
    */
@@ -88,11 +108,46 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
 
   /**
    * URI-encoded key value pairs.
+   * <p>
+   * The properties are normally held in a compact map keyed by interned
+   * {@link PropertyKeys} symbols.
    */
   @XmlElement(name = "Properties")
   @XmlJavaTypeAdapter(XmlMapAdapter.class)
   protected Map<String, String> properties;
 
+  /**
+   * Typed property values parsed from the properties, allocated when a typed
+   * property is first read. Each entry records the property string it was
+   * parsed from and is only used while the property still holds that same
+   * string instance, so changes made directly to the property map are detected
+   * without explicit invalidation.
+   * <p>
+   * The array is replaced (never modified) when an entry is added, so
+   * concurrent readers of an otherwise unchanged feature are safe. The cache
+   * is transient and is not written to XML.
+   */
+  private transient volatile ParsedProperty[] parsedProperties;
+
+  /**
+   * The style last read or written, with the property strings it was built
+   * from. The style is only used while the style properties still hold those
+   * exact strings; see {@link #getStyle()}. The cache is replaced (never
+   * modified), is transient and is not written to XML.
+   */
+  private transient volatile CachedStyle style;
+
+  /**
+   * The content hash, computed when first required and reset when a value is
+   * set. Zero indicates the hash is not computed.
+   */
+  private transient volatile long contentHash;
+  /**
+   * The property map modification count when the content hash was computed,
+   * so that changes made directly to the property map are detected.
+   */
+  private transient int contentHashModCount;
+
   /**
    * Get the optional ID attribute. This may be the OSM ID, etc.
    *
@@ -112,6 +167,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    */
   public void setId(Object id) {
     this.id = id == null ? null : String.valueOf(id);
+    clearContentHash();
   }
 
   /**
@@ -132,6 +188,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    */
   public void setName(String name) {
     this.name = name;
+    clearContentHash();
   }
 
   /**
@@ -150,6 +207,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    */
   public void setFeatureType(String featureType) {
     this.featureType = featureType;
+    clearContentHash();
   }
 
   /**
@@ -170,13 +228,14 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    */
   public void setDescription(String description) {
     this.description = description;
+    clearContentHash();
   }
 
   /**
    * Get a sorted Map containing all of the extensions in this GISFeature
    * container.
    *
-   * @return a non-null TreeMap instance
+   * @return a non-null map instance
    */
   public Map<String, String> getProperties() {
     /**
@@ -187,9 +246,12 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
      * Update 05/24/17: sorted map no longer required as of gis-geojson-1.0.2.
      * Changed to HashMap because it has better performance characteristics
      * (constant time vs long(n) as in TreeMap for common operations).
+     * <p>
+     * Update 10/16/20: changed to a PropertyMap, which stores the values by
+     * interned key symbol and does not hold a copy of each key.
      */
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = new PropertyMap();
     }
     return properties;
   }
@@ -221,18 +283,22 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * Encodes the provided value within the extension, associated with the
    * provided key. This method will discard the entry if the key is null or
    * empty.
+   * <p>
+   * Date, Instant, ZonedDateTime and OffsetDateTime values are encoded in
+   * ISO-8601 format (see {@link #getPropertyInstant(String)}); other values are
+   * encoded with {@code String.valueOf}.
    *
    * @param key   the key
    * @param value the value
    */
   public final void setProperty(String key, Object value) {
     if (key != null && !key.isEmpty()) {
+      invalidateParsedProperty(key);
       if (value == null) {
         getProperties().remove(key);
-      } else if (value instanceof Date) {
-        getProperties().put(key, new SimpleDateFormat().format((Date) value));
       } else {
-        getProperties().put(key, String.valueOf(value));
+        String dateTime = DateTimeCodec.format(value);
+        getProperties().put(key, dateTime != null ? dateTime : String.valueOf(value));
       }
     }
   }
@@ -260,17 +326,51 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
   }
 
   /**
-   * Returns a Date with a value represented by the specified string.
+   * Returns a Date with a value represented by the specified string. See
+   * {@link #getPropertyInstant(String)} for the supported formats.
+   * <p>
+   * The parsed value is cached until the property is changed.
    *
    * @param key the key index
-   * @return the value, NULL if not set.
+   * @return the value, NULL if not set or on error
    */
   public Date getPropertyDate(String key) {
-    try {
-      return new SimpleDateFormat().parse(getProperty(key));
-    } catch (ParseException | NullPointerException exception) {
-      return null;
-    }
+    Instant instant = getPropertyInstant(key);
+    return instant == null ? null : new Date(instant.toEpochMilli());
+  }
+
+  /**
+   * Returns an Instant with a value represented by the specified string.
+   * <p>
+   * Values are read in ISO-8601 format with an offset or zone (e.g.
+   * {@code 2020-10-16T00:00:00Z}), as an ISO-8601 local date time or date
+   * (interpreted as UTC), as epoch milliseconds, or in the locale dependent
+   * format written by versions before v4.1.0.
+   * <p>
+   * The parsed value is cached until the property is changed.
+   *
+   * @param key the key index
+   * @return the value, NULL if not set or on error
+   * @since v4.1.0 added 10/16/20
+   */
+  public Instant getPropertyInstant(String key) {
+    return getParsedProperty(key, Instant.class, DateTimeCodec::parseInstant);
+  }
+
+  /**
+   * Returns a ZonedDateTime with a value represented by the specified string.
+   * The offset or zone of the value is preserved; values without an offset
+   * are returned in UTC. See {@link #getPropertyInstant(String)} for the
+   * supported formats.
+   * <p>
+   * The parsed value is cached until the property is changed.
+   *
+   * @param key the key index
+   * @return the value, NULL if not set or on error
+   * @since v4.1.0 added 10/16/20
+   */
+  public ZonedDateTime getPropertyZonedDateTime(String key) {
+    return getParsedProperty(key, ZonedDateTime.class, DateTimeCodec::parseZonedDateTime);
   }
 
   /**
@@ -279,16 +379,14 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * <p>
    * Fails silently: If the value is null or misconfigured a
    * NumberFormatException is caught and NULL is returned.
+   * <p>
+   * The parsed value is cached until the property is changed.
    *
    * @param key the key index
    * @return the value, null on error
    */
   public Double getPropertyDouble(String key) {
-    try {
-      return Double.parseDouble(getProperty(key));
-    } catch (NumberFormatException | NullPointerException exception) {
-      return null;
-    }
+    return getParsedProperty(key, Double.class, Double::valueOf);
   }
 
   /**
@@ -300,16 +398,11 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    *
    * @param key          the key index
    * @param defaultValue the default value if not set
-   * @return the value, null on error
+   * @return the value, the default value if not set or on error
    */
   public Double getPropertyDouble(String key, double defaultValue) {
-    try {
-      return isSetProperty(key)
-             ? Double.parseDouble(getProperty(key))
-             : defaultValue;
-    } catch (NumberFormatException | NullPointerException exception) {
-      return defaultValue;
-    }
+    Double value = getParsedProperty(key, Double.class, Double::valueOf);
+    return value != null ? value : defaultValue;
   }
 
   /**
@@ -322,15 +415,14 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * Fails silently: If the value is null or misconfigured a
    * NumberFormatException is caught and NULL is returned.
    *
+   * <p>
+   * The parsed value is cached until the property is changed.
+   *
    * @param key the key index
    * @return the value, null on error
    */
   public Integer getPropertyInteger(String key) {
-    try {
-      return Integer.valueOf(getProperty(key));
-    } catch (NumberFormatException | NullPointerException exception) {
-      return null;
-    }
+    return getParsedProperty(key, Integer.class, Integer::valueOf);
   }
 
   /**
@@ -343,15 +435,14 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * Fails silently: If the value is null or misconfigured a
    * NumberFormatException is caught and NULL is returned.
    *
+   * <p>
+   * The parsed value is cached until the property is changed.
+   *
    * @param key the key index
    * @return the value, null on error
    */
   public Long getPropertyLong(String key) {
-    try {
-      return Long.valueOf(getProperty(key));
-    } catch (NumberFormatException | NullPointerException exception) {
-      return null;
-    }
+    return getParsedProperty(key, Long.class, Long::valueOf);
   }
 
   /**
@@ -385,8 +476,449 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    */
   public void clearProperties() {
     getProperties().clear();
+    parsedProperties = null;
+  }
+
+  /**
+   * JAXB callback. Replace the map created by the properties adapter with a
+   * compact property map.
+   *
+   * @param unmarshaller the unmarshaller
+   * @param parent       the parent object
+   */
+  private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+    if (properties != null && !(properties instanceof PropertyMap)) {
+      properties = new PropertyMap(properties);
+    }
+    if (properties != null && !properties.isEmpty()) {
+      shareStyleProperties();
+    }
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Style">
+  /**
+   * Get the feature style.
+   * <p>
+   * The style is built from the style properties and is an interned instance
+   * shared by all features having the same style. It is cached and returned
+   * without parsing until a style property is changed. Renderers reading
+   * several style values should get the style once.
+   *
+   * @return the style, {@link Style#EMPTY} if no style property is set
+   * @since v4.1.0 added 10/16/20
+   */
+  public Style getStyle() {
+    CachedStyle cached = style;
+    if (cached != null && isCurrent(cached)) {
+      return cached.style;
+    }
+    Style current = Style.getInstance(getProperty(Style.STROKE),
+                                      parseStyleDouble(Style.STROKE_OPACITY),
+                                      parseStyleDouble(Style.STROKE_WIDTH),
+                                      getProperty(Style.FILL),
+                                      parseStyleDouble(Style.FILL_OPACITY));
+    cacheStyle(current);
+    return current;
+  }
+
+  /**
+   * Set the feature style. The style values are written to the style
+   * properties; properties of values not set in the style are removed.
+   * <p>
+   * The property strings are those held by the style, so features sharing a
+   * style share their style property values.
+   *
+   * @param style the style; null removes all style properties
+   * @since v4.1.0 added 10/16/20
+   */
+  public void setStyle(Style style) {
+    Style value = style == null ? Style.EMPTY : style;
+    setProperty(Style.STROKE, value.getStroke());
+    setProperty(Style.STROKE_OPACITY, value.getText(Style.STROKE_OPACITY));
+    setProperty(Style.STROKE_WIDTH, value.getText(Style.STROKE_WIDTH));
+    setProperty(Style.FILL, value.getFill());
+    setProperty(Style.FILL_OPACITY, value.getText(Style.FILL_OPACITY));
+    cacheStyle(value);
   }
 
+  /**
+   * Get a style that is current for a single style property. This checks only
+   * the indicated property, and is used by the single value style getters.
+   *
+   * @param key the style property key
+   * @return the cached style if the property is current, otherwise the style
+   */
+  private Style getStyle(String key) {
+    CachedStyle cached = style;
+    return cached != null && getProperty(key) == cached.getText(key) ? cached.style : getStyle();
+  }
+
+  /**
+   * Set a single style property from a style, leaving the other style
+   * properties unchanged.
+   *
+   * @param key   the style property key
+   * @param style the style holding the new value
+   */
+  private void setStyleProperty(String key, Style style) {
+    setProperty(key, style.getText(key));
+    cacheStyle(style);
+  }
+
+  /**
+   * Cache a style built from, or written to, the current style properties,
+   * together with the exact property strings.
+   *
+   * @param style the style
+   */
+  private void cacheStyle(Style style) {
+    this.style = new CachedStyle(style,
+                                 getProperty(Style.STROKE),
+                                 getProperty(Style.STROKE_OPACITY),
+                                 getProperty(Style.STROKE_WIDTH),
+                                 getProperty(Style.FILL),
+                                 getProperty(Style.FILL_OPACITY));
+  }
+
+  /**
+   * Determine whether the style properties still hold the property strings a
+   * cached style was built from. Strings are compared by identity, so values
+   * in any form (e.g. "2" as well as "2.0") remain cached until changed.
+   *
+   * @param cached the cached style
+   * @return TRUE if the style is current
+   */
+  private boolean isCurrent(CachedStyle cached) {
+    return getProperty(Style.STROKE) == cached.stroke
+      && getProperty(Style.STROKE_OPACITY) == cached.strokeOpacity
+      && getProperty(Style.STROKE_WIDTH) == cached.strokeWidth
+      && getProperty(Style.FILL) == cached.fill
+      && getProperty(Style.FILL_OPACITY) == cached.fillOpacity;
+  }
+
+  /**
+   * Parse a numeric style property. The value is not added to the typed
+   * property cache; the style is the cache.
+   *
+   * @param key the style property key
+   * @return the value, null if not set or invalid
+   */
+  private Double parseStyleDouble(String key) {
+    String text = getProperty(key);
+    try {
+      return text == null ? null : Double.valueOf(text);
+    } catch (NumberFormatException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * Replace each style property string with the equal string held by the
+   * interned style, so that unmarshalled features sharing a style share their
+   * style property values. Values that are not in canonical form (e.g. "2"
+   * rather than "2.0") are left unchanged.
+   */
+  private void shareStyleProperties() {
+    Style current = getStyle();
+    if (current.isEmpty()) {
+      return;
+    }
+    for (String key : new String[]{Style.STROKE, Style.STROKE_OPACITY, Style.STROKE_WIDTH, Style.FILL, Style.FILL_OPACITY}) {
+      String text = getProperty(key);
+      String shared = current.getText(key);
+      if (text != null && text != shared && text.equals(shared)) {
+        properties.put(key, shared);
+      }
+    }
+    cacheStyle(current);
+  }
+
+  /**
+   * A style and the exact style property strings it was built from.
+   */
+  private static final class CachedStyle {
+
+    private final Style style;
+    private final String stroke;
+    private final String strokeOpacity;
+    private final String strokeWidth;
+    private final String fill;
+    private final String fillOpacity;
+
+    private CachedStyle(Style style, String stroke, String strokeOpacity, String strokeWidth, String fill, String fillOpacity) {
+      this.style = style;
+      this.stroke = stroke;
+      this.strokeOpacity = strokeOpacity;
+      this.strokeWidth = strokeWidth;
+      this.fill = fill;
+      this.fillOpacity = fillOpacity;
+    }
+
+    /**
+     * Get the property string the style was built from.
+     *
+     * @param key the style property key
+     * @return the property string, null if not set
+     */
+    private String getText(String key) {
+      switch (key) {
+        case Style.STROKE:
+          return stroke;
+        case Style.STROKE_OPACITY:
+          return strokeOpacity;
+        case Style.STROKE_WIDTH:
+          return strokeWidth;
+        case Style.FILL:
+          return fill;
+        default:
+          return fillOpacity;
+      }
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Serialization">
+  /**
+   * Write the ID, feature type, name, description and the property entries
+   * without reflection. Repeated property keys and values are written once
+   * per stream as back references.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeObject(id);
+    out.writeObject(featureType);
+    out.writeObject(name);
+    out.writeObject(description);
+    Map<String, String> map = properties == null ? Collections.emptyMap() : properties;
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      out.writeObject(entry.getKey());
+      out.writeObject(entry.getValue());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    id = (String) in.readObject();
+    featureType = (String) in.readObject();
+    name = (String) in.readObject();
+    description = (String) in.readObject();
+    int size = in.readInt();
+    if (size < 0) {
+      throw new InvalidObjectException("Invalid property count " + size);
+    }
+    if (size > 0) {
+      properties = new PropertyMap();
+      for (int i = 0; i < size; i++) {
+        properties.put((String) in.readObject(), (String) in.readObject());
+      }
+      shareStyleProperties();
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Content hash">
+  /**
+   * Get a 64-bit hash of the content of this feature, for change detection.
+   * <p>
+   * The hash covers the ID, name, feature type, description and properties
+   * and, for a feature, the shape coordinates, position and address. It is
+   * computed once and cached until a value is set or the property map is
+   * changed, so unchanged features can be recognized without comparing (or
+   * serializing) their geometry. Equal content has an equal hash; changed
+   * content has an equal hash with a probability of about 2<sup>-64</sup>.
+   * <p>
+   * Changes made in place to a shape, position or address are not observed;
+   * call {@link #invalidateContentHash()} after such a change. The hash is not
+   * stable across library versions and should not be persisted long term.
+   *
+   * @return the content hash, never zero
+   * @since v4.1.0 added 10/16/20
+   */
+  public long getContentHash() {
+    long hash = contentHash;
+    int modCount = getPropertiesModCount();
+    if (hash == 0 || modCount != contentHashModCount) {
+      hash = Fingerprint.mix(computeContentHash());
+      /**
+       * Zero is reserved to indicate the hash is not computed.
+       */
+      hash = hash == 0 ? 1 : hash;
+      contentHashModCount = modCount;
+      contentHash = hash;
+    }
+    return hash;
+  }
+
+  /**
+   * Get a strong HTTP entity tag for the content of this feature. The tag is
+   * the quoted hexadecimal {@link #getContentHash() content hash}, e.g.
+   * {@code "0f3c9a5e71d2b480"}.
+   *
+   * @return the entity tag, including the quotes
+   * @since v4.1.0 added 10/16/20
+   */
+  public String getETag() {
+    return String.format("\"%016x\"", getContentHash());
+  }
+
+  /**
+   * Mark the content hash as stale so that it is recalculated on the next
+   * read. Setting a value does this automatically; call this method after
+   * changing a shape, position or address in place.
+   *
+   * @since v4.1.0 added 10/16/20
+   */
+  public void invalidateContentHash() {
+    contentHash = 0;
+  }
+
+  /**
+   * Clear the cached content hash after a value is set. Unlike
+   * {@link #invalidateContentHash()} this does not clear derived caches such
+   * as the shape fingerprint, which setting an attribute does not affect.
+   */
+  final void clearContentHash() {
+    contentHash = 0;
+  }
+
+  /**
+   * Compute the (unmixed) content hash. Subclasses add their own values to
+   * the hash computed here.
+   *
+   * @return the content hash
+   */
+  long computeContentHash() {
+    long hash = Fingerprint.add(0, getClass().getName());
+    hash = Fingerprint.add(hash, id);
+    hash = Fingerprint.add(hash, name);
+    hash = Fingerprint.add(hash, featureType);
+    hash = Fingerprint.add(hash, description);
+    if (properties == null || properties.isEmpty()) {
+      return Fingerprint.add(hash, 0);
+    }
+    /**
+     * The properties are unordered: sum the entry hashes.
+     */
+    long sum = 0;
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      sum += Fingerprint.mix(Fingerprint.add(Fingerprint.add(0, entry.getKey()), entry.getValue()));
+    }
+    return Fingerprint.add(Fingerprint.add(hash, properties.size()), sum);
+  }
+
+  /**
+   * Get the property map modification count.
+   *
+   * @return the count, or -1 if the properties are not held in a property map
+   */
+  private int getPropertiesModCount() {
+    return properties instanceof PropertyMap ? ((PropertyMap) properties).getModCount() : -1;
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Typed property cache">
+  /**
+   * Get a typed property value, parsing the property string only if it has
+   * not already been parsed to the indicated type.
+   *
+   * @param <T>    the value type
+   * @param key    the property key
+   * @param type   the type tag identifying the parser
+   * @param parser the parser; a runtime exception indicates an invalid value
+   * @return the parsed value, null if the property is not set or invalid
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T getParsedProperty(String key, Class<?> type, Function<String, T> parser) {
+    String text = getProperty(key);
+    if (text == null) {
+      return null;
+    }
+    ParsedProperty[] cache = parsedProperties;
+    if (cache != null) {
+      for (ParsedProperty parsed : cache) {
+        if (parsed.text == text && parsed.type == type && parsed.key.equals(key)) {
+          return (T) parsed.value;
+        }
+      }
+    }
+    T value;
+    try {
+      value = parser.apply(text);
+    } catch (RuntimeException exception) {
+      /**
+       * The failure is cached so that an invalid value is not parsed again.
+       */
+      value = null;
+    }
+    cacheParsedProperty(new ParsedProperty(key, type, text, value), cache);
+    return value;
+  }
+
+  /**
+   * Add a parsed value to the cache, replacing any entry for the same key and
+   * type.
+   *
+   * @param parsed the parsed value
+   * @param cache  the current cache, may be null
+   */
+  private void cacheParsedProperty(ParsedProperty parsed, ParsedProperty[] cache) {
+    if (cache == null || cache.length >= MAX_PARSED_PROPERTIES) {
+      parsedProperties = new ParsedProperty[]{parsed};
+      return;
+    }
+    for (int i = 0; i < cache.length; i++) {
+      if (cache[i].type == parsed.type && cache[i].key.equals(parsed.key)) {
+        ParsedProperty[] update = cache.clone();
+        update[i] = parsed;
+        parsedProperties = update;
+        return;
+      }
+    }
+    ParsedProperty[] update = Arrays.copyOf(cache, cache.length + 1);
+    update[cache.length] = parsed;
+    parsedProperties = update;
+  }
+
+  /**
+   * Remove the parsed values of a property.
+   *
+   * @param key the property key
+   */
+  private void invalidateParsedProperty(String key) {
+    ParsedProperty[] cache = parsedProperties;
+    if (cache == null) {
+      return;
+    }
+    int count = 0;
+    ParsedProperty[] update = new ParsedProperty[cache.length];
+    for (ParsedProperty parsed : cache) {
+      if (!parsed.key.equals(key)) {
+        update[count++] = parsed;
+      }
+    }
+    if (count < cache.length) {
+      parsedProperties = count == 0 ? null : Arrays.copyOf(update, count);
+    }
+  }
+
+  /**
+   * An immutable typed property value and the property string it was parsed
+   * from.
+   */
+  private static final class ParsedProperty {
+
+    private final String key;
+    private final Class<?> type;
+    private final String text;
+    private final Object value;
+
+    private ParsedProperty(String key, Class<?> type, String text, Object value) {
+      this.key = key;
+      this.type = type;
+      this.text = text;
+      this.value = value;
+    }
+  }// </editor-fold>
+
   /**
    * A title to show when this item is clicked or hovered over.
    *
@@ -433,7 +965,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @return the value
    */
   public String getStroke() {
-    return getProperty("stroke");
+    return getStyle(Style.STROKE).getStroke();
   }
 
   /**
@@ -444,7 +976,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @param stroke the value
    */
   public void setStroke(String stroke) {
-    setProperty("stroke", stroke);
+    setStyleProperty(Style.STROKE, getStyle().withStroke(stroke));
   }
 
   /**
@@ -456,7 +988,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @return the value
    */
   public Double getStrokeOpacity() {
-    return getPropertyDouble("strokeOpacity");
+    return getStyle(Style.STROKE_OPACITY).getStrokeOpacity();
   }
 
   /**
@@ -468,7 +1000,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @param strokeOpacity the value
    */
   public void setStrokeOpacity(double strokeOpacity) {
-    setProperty("strokeOpacity", strokeOpacity);
+    setStyleProperty(Style.STROKE_OPACITY, getStyle().withStrokeOpacity(strokeOpacity));
   }
 
   /**
@@ -480,7 +1012,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @return the value
    */
   public Double getStrokeWidth() {
-    return getPropertyDouble("strokeWidth");
+    return getStyle(Style.STROKE_WIDTH).getStrokeWidth();
   }
 
   /**
@@ -492,7 +1024,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @param strokeWidth the value
    */
   public void setStrokeWidth(double strokeWidth) {
-    setProperty("strokeWidth", strokeWidth);
+    setStyleProperty(Style.STROKE_WIDTH, getStyle().withStrokeWidth(strokeWidth));
   }
 
   /**
@@ -503,7 +1035,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @return the value
    */
   public String getFill() {
-    return getProperty("fill");
+    return getStyle(Style.FILL).getFill();
   }
 
   /**
@@ -514,7 +1046,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @param fill the value
    */
   public void setFill(String fill) {
-    setProperty("fill", fill);
+    setStyleProperty(Style.FILL, getStyle().withFill(fill));
   }
 
   /**
@@ -527,7 +1059,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @return the value
    */
   public Double getFillOpacity() {
-    return getPropertyDouble("fillOpacity");
+    return getStyle(Style.FILL_OPACITY).getFillOpacity();
   }
 
   /**
@@ -540,7 +1072,7 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
    * @param fillOpacity the value
    */
   public void setFillOpacity(double fillOpacity) {
-    setProperty("fillOpacity", fillOpacity);
+    setStyleProperty(Style.FILL_OPACITY, getStyle().withFillOpacity(fillOpacity));
   }
 
   /**
@@ -569,8 +1101,8 @@ public abstract class AbstractFeature implements Serializable, Comparable<Abstra
     if (getClass() != obj.getClass()) {
       return false;
     }
-    final Feature other = (Feature) obj;
-    return Objects.equals(this.id, other.getId());
+    final AbstractFeature other = (AbstractFeature) obj;
+    return Objects.equals(this.id, other.id);
   }
 
   /**
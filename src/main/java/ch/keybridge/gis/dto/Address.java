@@ -15,6 +15,10 @@
  */
 package ch.keybridge.gis.dto;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.regex.Pattern;
@@ -39,7 +43,11 @@ import javax.xml.bind.annotation.*;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Address implements Serializable, Comparable<Address> {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
 
   /**
    * The address street component. This includes the facility number plus street
@@ -226,6 +234,31 @@ public class Address implements Serializable, Comparable<Address> {
     return country;
   }//</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="Serialization">
+  /**
+   * Write the address fields in order without reflection.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeObject(street);
+    out.writeObject(city);
+    out.writeObject(county);
+    out.writeObject(state);
+    out.writeObject(postalCode);
+    out.writeObject(country);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    street = (String) in.readObject();
+    city = (String) in.readObject();
+    county = (String) in.readObject();
+    state = (String) in.readObject();
+    postalCode = (String) in.readObject();
+    country = (String) in.readObject();
+  }//</editor-fold>
+
   /**
    * Build a formatted street string containing as many components of this
    * address configuration as possible.
@@ -362,6 +395,20 @@ public class Address implements Serializable, Comparable<Address> {
       && country != null && !country.isEmpty();
   }
 
+  /**
+   * Get a 64-bit hash of every value of this address, for change detection.
+   *
+   * @return the content hash
+   */
+  long getContentHash() {
+    long hash = Fingerprint.add(0, street);
+    hash = Fingerprint.add(hash, city);
+    hash = Fingerprint.add(hash, county);
+    hash = Fingerprint.add(hash, state);
+    hash = Fingerprint.add(hash, postalCode);
+    return Fingerprint.add(hash, country);
+  }
+
   /**
    * @return a hash code of the street, city, state, postalCode and country.
    */
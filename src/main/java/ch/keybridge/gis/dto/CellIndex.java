@@ -0,0 +1,325 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.locationtech.jts.geom.Point;
+
+/**
+ * An index grouping items by {@link GeoCell} at a fixed level.
+ * <p>
+ * The index is a hash table keyed directly by the primitive cell id (open
+ * addressing with linear probing), so cell lookups do not box the key. Each
+ * occupied cell holds the list of items added to it in insertion order.
+ * <p>
+ * Typical uses are de-duplication (positions in the same cell) and proximity
+ * bucketing (positions in the same or a neighbouring cell; see
+ * {@link #getNear(Position)}), replacing pairwise comparison with hash
+ * lookups.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @param <T> the item type
+ * @since v4.1.0 added 10/16/20 for cell based proximity grouping
+ */
+public class CellIndex<T> {
+
+  /**
+   * Fibonacci hashing multiplier.
+   */
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The cell level of all keys.
+   */
+  private final int level;
+  /**
+   * The cell ids. {@link GeoCell#NONE} (zero) marks an empty slot.
+   */
+  private long[] keys;
+  /**
+   * The item lists, in the same slots as the keys.
+   */
+  private List<T>[] values;
+  /**
+   * The number of occupied cells.
+   */
+  private int cellCount;
+  /**
+   * The number of items.
+   */
+  private int size;
+
+  /**
+   * Construct an empty index at the indicated cell level.
+   *
+   * @param level the cell level, 0 to {@link GeoCell#MAX_LEVEL}
+   */
+  public CellIndex(int level) {
+    if (level < 0 || level > GeoCell.MAX_LEVEL) {
+      throw new IllegalArgumentException("Cell level must be between 0 and " + GeoCell.MAX_LEVEL + ": " + level);
+    }
+    this.level = level;
+    allocate(16);
+  }
+
+  /**
+   * Build an index of positions. Incomplete positions are ignored.
+   *
+   * @param positions the positions
+   * @param level     the cell level
+   * @return a new index
+   */
+  public static CellIndex<Position> ofPositions(Iterable<Position> positions, int level) {
+    CellIndex<Position> index = new CellIndex<>(level);
+    for (Position position : positions) {
+      index.add(position, position);
+    }
+    return index;
+  }
+
+  /**
+   * Build an index of features. Each feature is indexed by its position if
+   * set, otherwise by the centroid of its shape. Features having neither are
+   * ignored.
+   *
+   * @param features the features
+   * @param level    the cell level
+   * @return a new index
+   */
+  public static CellIndex<Feature> ofFeatures(Iterable<Feature> features, int level) {
+    CellIndex<Feature> index = new CellIndex<>(level);
+    for (Feature feature : features) {
+      index.add(getCell(feature, level), feature);
+    }
+    return index;
+  }
+
+  /**
+   * Get the cell level of this index.
+   *
+   * @return the cell level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Get the number of items in this index.
+   *
+   * @return the number of items
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of occupied cells.
+   *
+   * @return the number of occupied cells
+   */
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  /**
+   * Add an item at a position.
+   *
+   * @param position the item position
+   * @param item     the item
+   * @return TRUE if added, FALSE if the position is null or incomplete
+   */
+  public boolean add(Position position, T item) {
+    return add(GeoCell.encode(position, level), item);
+  }
+
+  /**
+   * Add an item to a cell. The cell must be at the level of this index.
+   *
+   * @param cell the cell id
+   * @param item the item
+   * @return TRUE if added, FALSE if the cell is {@link GeoCell#NONE}
+   */
+  public boolean add(long cell, T item) {
+    if (cell == GeoCell.NONE) {
+      return false;
+    }
+    if (GeoCell.getLevel(cell) != level) {
+      throw new IllegalArgumentException("Cell level " + GeoCell.getLevel(cell) + " does not match index level " + level);
+    }
+    int slot = slot(cell);
+    if (keys[slot] == GeoCell.NONE) {
+      if ((cellCount + 1) * 2 > keys.length) {
+        rehash(keys.length * 2);
+        slot = slot(cell);
+      }
+      keys[slot] = cell;
+      values[slot] = new ArrayList<>(1);
+      cellCount++;
+    }
+    values[slot].add(item);
+    size++;
+    return true;
+  }
+
+  /**
+   * Get the items in a cell.
+   *
+   * @param cell the cell id
+   * @return an unmodifiable list of items, empty if the cell is not occupied
+   */
+  public List<T> get(long cell) {
+    if (cell == GeoCell.NONE) {
+      return Collections.emptyList();
+    }
+    int slot = slot(cell);
+    return keys[slot] == cell ? Collections.unmodifiableList(values[slot]) : Collections.<T>emptyList();
+  }
+
+  /**
+   * Get the items in the cell containing a position.
+   *
+   * @param position the position
+   * @return an unmodifiable list of items, empty if none
+   */
+  public List<T> get(Position position) {
+    return get(GeoCell.encode(position, level));
+  }
+
+  /**
+   * Get the items in the cell containing a position and in its neighbouring
+   * cells. At a level chosen with {@link GeoCell#getLevelForDistance(double)}
+   * the result includes every item within that distance (plus others that are
+   * somewhat further away).
+   *
+   * @param position the position
+   * @return a list of candidate items, empty if none
+   */
+  public List<T> getNear(Position position) {
+    long cell = GeoCell.encode(position, level);
+    if (cell == GeoCell.NONE) {
+      return new ArrayList<>();
+    }
+    List<T> items = new ArrayList<>(get(cell));
+    for (long neighbour : GeoCell.getNeighbours(cell)) {
+      items.addAll(get(neighbour));
+    }
+    return items;
+  }
+
+  /**
+   * Determine whether a cell is occupied.
+   *
+   * @param cell the cell id
+   * @return TRUE if at least one item is in the cell
+   */
+  public boolean contains(long cell) {
+    return cell != GeoCell.NONE && keys[slot(cell)] == cell;
+  }
+
+  /**
+   * Get the occupied cells.
+   *
+   * @return the occupied cell ids, in no particular order
+   */
+  public long[] getCells() {
+    long[] cells = new long[cellCount];
+    int count = 0;
+    for (long key : keys) {
+      if (key != GeoCell.NONE) {
+        cells[count++] = key;
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Remove all items.
+   */
+  public void clear() {
+    Arrays.fill(keys, GeoCell.NONE);
+    Arrays.fill(values, null);
+    cellCount = 0;
+    size = 0;
+  }
+
+  /**
+   * Get the cell of a feature at the indicated level.
+   *
+   * @param feature the feature
+   * @param level   the cell level
+   * @return the cell id, {@link GeoCell#NONE} if the feature has no location
+   */
+  private static long getCell(Feature feature, int level) {
+    if (feature.isSetPosition() && feature.getPosition().isComplete()) {
+      return GeoCell.encode(feature.getPosition(), level);
+    }
+    if (feature.getShape() != null && !feature.getShape().isEmpty()) {
+      Point centroid = feature.getShape().getCentroid();
+      return GeoCell.encode(centroid.getY(), centroid.getX(), level);
+    }
+    return GeoCell.NONE;
+  }
+
+  /**
+   * Find the slot holding a cell, or the empty slot where it would be added.
+   *
+   * @param cell the cell id
+   * @return the slot index
+   */
+  private int slot(long cell) {
+    int mask = keys.length - 1;
+    int slot = (int) ((cell * GOLDEN) >>> 33) & mask;
+    while (keys[slot] != GeoCell.NONE && keys[slot] != cell) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Allocate empty tables.
+   *
+   * @param capacity the table capacity, a power of two
+   */
+  @SuppressWarnings("unchecked")
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = (List<T>[]) new List<?>[capacity];
+  }
+
+  /**
+   * Grow the tables and re-insert all occupied cells.
+   *
+   * @param capacity the new capacity, a power of two
+   */
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    List<T>[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != GeoCell.NONE) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+}
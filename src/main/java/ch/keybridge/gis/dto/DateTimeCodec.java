@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+
+/**
+ * ISO-8601 encoding and decoding of date and time property values.
+ * <p>
+ * Dates and instants are written in the ISO-8601 UTC instant format (e.g.
+ * {@code 2020-10-16T00:00:00.123Z}); zoned and offset date times are written
+ * in the ISO-8601 offset format (e.g. {@code 2020-10-16T02:00:00+02:00}). The
+ * encoding is independent of the default locale and time zone and preserves
+ * the full precision of the value.
+ * <p>
+ * Values are read in any of the following forms:
+ * <ul>
+ * <li>epoch milliseconds (e.g. {@code 1602806400000}), without parsing a
+ * pattern</li>
+ * <li>an ISO-8601 date time with an offset or zone</li>
+ * <li>an ISO-8601 local date time or date, interpreted as UTC</li>
+ * <li>the legacy default {@code SimpleDateFormat} pattern of the default
+ * locale, as written by earlier versions</li>
+ * </ul>
+ * The formatters are immutable and thread safe; this class holds no state.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+final class DateTimeCodec {
+
+  /**
+   * The maximum number of digits of an epoch milliseconds value.
+   */
+  private static final int MAX_EPOCH_DIGITS = 18;
+
+  private DateTimeCodec() {
+  }
+
+  /**
+   * Encode a date and time value. Supported types are {@link Date},
+   * {@link Instant}, {@link ZonedDateTime} and {@link OffsetDateTime}.
+   *
+   * @param value the value
+   * @return the ISO-8601 text, null if the type is not supported
+   */
+  static String format(Object value) {
+    if (value instanceof Date) {
+      /**
+       * Developer note: java.sql.Date does not support toInstant().
+       */
+      return DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(((Date) value).getTime()));
+    } else if (value instanceof Instant) {
+      return DateTimeFormatter.ISO_INSTANT.format((Instant) value);
+    } else if (value instanceof ZonedDateTime || value instanceof OffsetDateTime) {
+      return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((TemporalAccessor) value);
+    }
+    return null;
+  }
+
+  /**
+   * Decode a date and time value to an instant.
+   *
+   * @param text the text
+   * @return the instant
+   * @throws DateTimeException if the text cannot be parsed
+   */
+  static Instant parseInstant(String text) {
+    return parseZonedDateTime(text).toInstant();
+  }
+
+  /**
+   * Decode a date and time value, preserving the offset or zone if present.
+   * Epoch milliseconds and local values are returned in UTC.
+   *
+   * @param text the text
+   * @return the date time
+   * @throws DateTimeException if the text cannot be parsed
+   */
+  static ZonedDateTime parseZonedDateTime(String text) {
+    String value = text.trim();
+    if (isEpochMillis(value)) {
+      return ZonedDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value)), ZoneOffset.UTC);
+    }
+    try {
+      TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, ZonedDateTime::from, LocalDateTime::from);
+      return parsed instanceof ZonedDateTime
+             ? (ZonedDateTime) parsed
+             : ((LocalDateTime) parsed).atZone(ZoneOffset.UTC);
+    } catch (DateTimeParseException exception) {
+      /**
+       * Fall through to the date and legacy formats.
+       */
+    }
+    try {
+      return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC);
+    } catch (DateTimeParseException exception) {
+      return parseLegacy(value);
+    }
+  }
+
+  /**
+   * Determine whether a value is an epoch milliseconds number: an optional
+   * minus sign followed by up to {@value #MAX_EPOCH_DIGITS} digits.
+   *
+   * @param value the value
+   * @return TRUE if the value is an integer
+   */
+  private static boolean isEpochMillis(String value) {
+    int start = value.startsWith("-") ? 1 : 0;
+    int length = value.length() - start;
+    if (length < 1 || length > MAX_EPOCH_DIGITS) {
+      return false;
+    }
+    for (int i = start; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decode a value written with the default {@code SimpleDateFormat} pattern
+   * by earlier versions. This is the slow path; the format is created for
+   * each call because SimpleDateFormat is not thread safe.
+   *
+   * @param value the text
+   * @return the date time in the default time zone
+   * @throws DateTimeException if the text cannot be parsed
+   */
+  private static ZonedDateTime parseLegacy(String value) {
+    try {
+      return ZonedDateTime.ofInstant(new SimpleDateFormat().parse(value).toInstant(), ZoneId.systemDefault());
+    } catch (ParseException exception) {
+      throw new DateTimeException("Unparseable date: " + value, exception);
+    }
+  }
+
+}
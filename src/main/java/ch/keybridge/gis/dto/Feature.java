@@ -17,12 +17,24 @@ package ch.keybridge.gis.dto;
 
 import ch.keybridge.xml.adapter.XmlEnvelopeAdapter;
 import ch.keybridge.xml.adapter.XmlGeometryAdapter;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.util.Arrays;
 import java.util.Objects;
 import javax.xml.bind.annotation.*;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import org.locationtech.jts.geom.CoordinateFilter;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
 
 /**
  * A Generic GIS Data transfer object. This simple container facilitates the
@@ -57,6 +69,33 @@ import org.locationtech.jts.geom.Point;
 @XmlAccessorType(XmlAccessType.FIELD)
 public final class Feature extends AbstractFeature {
 
+  private static final long serialVersionUID = 2L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
+  /**
+   * The factory for deserialized shapes. Shapes are written as WKB, which
+   * holds only the coordinates and SRID, so a floating precision factory
+   * reproduces them exactly.
+   */
+  private static final GeometryFactory WKB_FACTORY = new GeometryFactory();
+  /**
+   * The serialized shape length indicating a null shape.
+   */
+  private static final int NULL_SHAPE = -1;
+  /**
+   * The serialized shape length indicating an empty shape, which WKB cannot
+   * represent for points. It is followed by the index of the geometry type in
+   * {@link #EMPTY_TYPES} and the SRID.
+   */
+  private static final int EMPTY_SHAPE = -2;
+  /**
+   * The geometry types of empty shapes, indexed by their serialized code.
+   */
+  private static final String[] EMPTY_TYPES = {"Point", "LineString", "LinearRing", "Polygon",
+                                               "MultiPoint", "MultiLineString", "MultiPolygon", "GeometryCollection"};
+
   /**
    * GISAddress is a standardized container for physical (e.g. mailing) street
    * information. This is a simplified implementation similar to the IETF ‘civic
@@ -90,6 +129,13 @@ public final class Feature extends AbstractFeature {
 //  @JsonDeserialize(using = JsonGeometryAdapter.Deserializer.class)
   private Geometry shape;
 
+  /**
+   * The fingerprint of the shape, computed when first required and reset when
+   * the shape is set or the content hash is invalidated. Zero indicates the
+   * fingerprint is not computed.
+   */
+  private transient volatile long shapeFingerprint;
+
   /**
    * Construct a new GIS Object instance.
    */
@@ -138,11 +184,7 @@ public final class Feature extends AbstractFeature {
    */
   public static Feature getInstanceWithCss() {
     Feature f = new Feature();
-    f.setStroke("999999");
-    f.setStrokeOpacity(1.0);
-    f.setStrokeWidth(2.0);
-    f.setFill("555555");
-    f.setFillOpacity(0.6);
+    f.setStyle(Style.DEFAULT);
     return f;
   }
 
@@ -162,6 +204,8 @@ public final class Feature extends AbstractFeature {
    */
   public void setShape(Geometry shape) {
     this.shape = shape;
+    shapeFingerprint = 0;
+    clearContentHash();
   }
 
   /**
@@ -199,6 +243,7 @@ public final class Feature extends AbstractFeature {
    */
   public void setPosition(Position position) {
     this.position = position;
+    clearContentHash();
   }
 
   /**
@@ -226,6 +271,7 @@ public final class Feature extends AbstractFeature {
    */
   public void setAddress(Address address) {
     this.address = address;
+    clearContentHash();
   }
 
   /**
@@ -257,7 +303,175 @@ public final class Feature extends AbstractFeature {
   }
 
   /**
-   * Equals and hashcode are generated from the shape field.
+   * Get the fingerprint of the shape. The fingerprint is computed once and
+   * cached until the shape is set or {@link #invalidateContentHash()} is called
+   * after the shape is changed in place.
+   *
+   * @return the 64-bit shape fingerprint
+   * @since v4.1.0 added 10/16/20
+   */
+  public long getShapeFingerprint() {
+    long fingerprint = shapeFingerprint;
+    if (fingerprint == 0) {
+      fingerprint = Fingerprint.of(shape);
+      /**
+       * Zero is reserved to indicate the fingerprint is not computed.
+       */
+      fingerprint = fingerprint == 0 ? 1 : fingerprint;
+      shapeFingerprint = fingerprint;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The shape fingerprint is also recalculated. Setters do not call this
+   * method, so setting an attribute never re-hashes the shape.
+   */
+  @Override
+  public void invalidateContentHash() {
+    shapeFingerprint = 0;
+    super.invalidateContentHash();
+  }
+
+  @Override
+  long computeContentHash() {
+    long hash = Fingerprint.add(super.computeContentHash(), getShapeFingerprint());
+    hash = Fingerprint.add(hash, position == null ? Fingerprint.NULL : position.getContentHash());
+    return Fingerprint.add(hash, address == null ? Fingerprint.NULL : address.getContentHash());
+  }
+
+  /**
+   * Write the address and position (which have their own compact forms) and
+   * the shape as length prefixed WKB. WKB writes the coordinates directly rather than the
+   * JTS object graph of coordinate sequences, envelopes and factory. An empty
+   * shape is written as a marker, its geometry type and SRID.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeObject(address);
+    out.writeObject(position);
+    if (shape == null) {
+      out.writeInt(NULL_SHAPE);
+    } else if (shape.isEmpty()) {
+      int type = Arrays.asList(EMPTY_TYPES).indexOf(shape.getGeometryType());
+      if (type < 0) {
+        throw new NotSerializableException("Unsupported empty geometry type " + shape.getGeometryType());
+      }
+      out.writeInt(EMPTY_SHAPE);
+      out.writeByte(type);
+      out.writeInt(shape.getSRID());
+    } else {
+      byte[] wkb = new WKBWriter(getOutputDimension(shape), true).write(shape);
+      out.writeInt(wkb.length);
+      out.write(wkb);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    address = (Address) in.readObject();
+    position = (Position) in.readObject();
+    int length = in.readInt();
+    if (length == EMPTY_SHAPE) {
+      shape = createEmpty(in.readUnsignedByte());
+      shape.setSRID(in.readInt());
+    } else if (length >= 0) {
+      /**
+       * The WKB is read in full first: an object stream may return fewer
+       * bytes than requested, which the JTS stream reader does not handle.
+       */
+      byte[] wkb = new byte[length];
+      in.readFully(wkb);
+      try {
+        shape = new WKBReader(WKB_FACTORY).read(wkb);
+      } catch (ParseException exception) {
+        throw (InvalidObjectException) new InvalidObjectException("Invalid shape: " + exception.getMessage()).initCause(exception);
+      }
+    }
+  }
+
+  /**
+   * Create an empty shape.
+   *
+   * @param type the index of the geometry type in {@link #EMPTY_TYPES}
+   * @return the empty shape
+   * @throws InvalidObjectException if the type is not recognized
+   */
+  private static Geometry createEmpty(int type) throws InvalidObjectException {
+    switch (type) {
+      case 0:
+        return WKB_FACTORY.createPoint();
+      case 1:
+        return WKB_FACTORY.createLineString();
+      case 2:
+        return WKB_FACTORY.createLinearRing();
+      case 3:
+        return WKB_FACTORY.createPolygon();
+      case 4:
+        return WKB_FACTORY.createMultiPoint();
+      case 5:
+        return WKB_FACTORY.createMultiLineString();
+      case 6:
+        return WKB_FACTORY.createMultiPolygon();
+      case 7:
+        return WKB_FACTORY.createGeometryCollection();
+      default:
+        throw new InvalidObjectException("Invalid empty shape type " + type);
+    }
+  }
+
+  /**
+   * Get the WKB output dimension of a geometry: 3 if any coordinate has a Z
+   * value, otherwise 2.
+   *
+   * @param geometry the geometry
+   * @return the output dimension
+   */
+  private static int getOutputDimension(Geometry geometry) {
+    boolean[] hasZ = {false};
+    geometry.apply((CoordinateFilter) coordinate -> hasZ[0] |= !Double.isNaN(coordinate.getZ()));
+    return hasZ[0] ? 3 : 2;
+  }
+
+  /**
+   * Get an equality key for this feature based upon the shape fingerprint (see
+   * {@link #getShapeFingerprint()}). Two keys are equal if the shapes of their
+   * features were exactly equal when the keys were taken, with a false match
+   * probability of about 2<sup>-64</sup>. Once the fingerprint is cached,
+   * comparing and hashing keys is O(1), making the key suitable for
+   * de-duplicating large features in hash based collections.
+   * <p>
+   * The key captures the fingerprint when it is taken; later changes to the
+   * feature do not affect it.
+   *
+   * @return the shape fingerprint key
+   * @since v4.1.0 added 10/16/20
+   */
+  public Key fingerprintKey() {
+    return new Key(this, getShapeFingerprint());
+  }
+
+  /**
+   * Get an equality key for this feature based upon the ID attribute. Two keys
+   * are equal if their features had equal IDs when the keys were taken. The
+   * shape is not compared.
+   * <p>
+   * The key captures the ID when it is taken; later changes to the feature do
+   * not affect it.
+   *
+   * @return the ID key
+   * @since v4.1.0 added 10/16/20
+   */
+  public Key idKey() {
+    return new Key(this, getId());
+  }
+
+  /**
+   * Equals and hashcode are generated from the shape field. For fingerprint
+   * or ID based equality use {@link #fingerprintKey()} or {@link #idKey()}.
    *
    * @return the hashcode
    */
@@ -269,7 +483,8 @@ public final class Feature extends AbstractFeature {
   }
 
   /**
-   * Equals and hashcode are generated from the shape field.
+   * Equals and hashcode are generated from the shape field. For fingerprint
+   * or ID based equality use {@link #fingerprintKey()} or {@link #idKey()}.
    *
    * @param obj the other object
    * @return equality status
@@ -289,4 +504,60 @@ public final class Feature extends AbstractFeature {
     return Objects.equals(this.shape, other.shape);
   }
 
+  /**
+   * An opt-in equality key for a feature, holding a snapshot of the compared
+   * value: the shape fingerprint (see {@link #fingerprintKey()}) or the ID (see
+   * {@link #idKey()}). Keys are compared by value only, and fingerprint keys
+   * never equal ID keys. Use keys, rather than features, as hash based
+   * collection keys where the default exact shape equality is not wanted.
+   *
+   * @since v4.1.0 added 10/16/20
+   */
+  public static final class Key {
+
+    /**
+     * The feature the key was taken from.
+     */
+    private final Feature feature;
+    /**
+     * The compared value: a Long fingerprint or a String ID.
+     */
+    private final Object value;
+
+    private Key(Feature feature, Object value) {
+      this.feature = feature;
+      this.value = value;
+    }
+
+    /**
+     * Get the feature this key was taken from.
+     *
+     * @return the feature
+     */
+    public Feature getFeature() {
+      return feature;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      return Objects.equals(value, ((Key) obj).value);
+    }
+
+    @Override
+    public String toString() {
+      return "Key{" + value + "}";
+    }
+  }
+
 }
@@ -16,13 +16,18 @@
 package ch.keybridge.gis.dto;
 
 import ch.keybridge.xml.adapter.XmlEnvelopeAdapter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.*;
 import javax.xml.bind.annotation.*;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateFilter;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.distance.DistanceOp;
 
 /**
  * A Generic GIS Data transfer object for collections of GIS Features. This
@@ -58,8 +63,22 @@ public final class FeatureCollection extends AbstractFeature {
   private static final long serialVersionUID = 1L;
 
   /**
-   * The collection of GISFeature. This is a simple ArrayList; sorting and
-   * uniqueness should be externally established.
+   * Spatial index item distance: the planar distance in decimal degrees
+   * between two feature shapes.
+   */
+  private static final ItemDistance SHAPE_DISTANCE = new ItemDistance() {
+    @Override
+    public double distance(ItemBoundable item1, ItemBoundable item2) {
+      return ((Feature) item1.getItem()).getShape().distance(((Feature) item2.getItem()).getShape());
+    }
+  };
+
+  /**
+   * The collection of GISFeature. This is a simple list that retains insertion
+   * order; sorting and uniqueness should be externally established.
+   * <p>
+   * The list maintains the aggregate envelope of its features. It is created
+   * here so that JAXB fills it in place when unmarshalling.
    */
   @XmlElement(name = "Features")
   protected Collection<Feature> features;
@@ -68,6 +87,7 @@ public final class FeatureCollection extends AbstractFeature {
    * Construct a new GIS Feature Collection instance.
    */
   public FeatureCollection() {
+    this.features = new FeatureList();
   }
 
   /**
@@ -97,33 +117,37 @@ public final class FeatureCollection extends AbstractFeature {
    */
   public static FeatureCollection getInstanceWithCss() {
     FeatureCollection f = new FeatureCollection();
-    f.setStroke("999999");
-    f.setStrokeOpacity(1.0);
-    f.setStrokeWidth(2.0);
-    f.setFill("555555");
-    f.setFillOpacity(0.6);
+    f.setStyle(Style.DEFAULT);
     return f;
   }
 
   /**
    * Get the Features collection.
+   * <p>
+   * The returned collection is live: features added or removed through it are
+   * reflected in the collection envelope.
    *
-   * @return a non-null ArrayList.
+   * @return a non-null List.
    */
   public Collection<Feature> getFeatures() {
-    if (this.features == null) {
-      this.features = new ArrayList<>();
+    if (!(this.features instanceof FeatureList)) {
+      /**
+       * The field was set directly, or deserialized from an earlier version.
+       */
+      this.features = this.features == null ? new FeatureList() : new FeatureList(this.features);
     }
     return features;
   }
 
   /**
-   * Set the Features collection
+   * Set the Features collection. The features are copied into this
+   * collection; later changes to the provided collection are not reflected
+   * here.
    *
    * @param features the a collection of features.
    */
   public void setFeatures(Collection<Feature> features) {
-    this.features = features;
+    this.features = features == null ? new FeatureList() : new FeatureList(features);
   }
 
   /**
@@ -141,31 +165,217 @@ public final class FeatureCollection extends AbstractFeature {
    * The envelope containing all the collection features. This marshals as
    * {@code [Xmin, Ymin, Xmax, Ymax]}, which is the format used by GML and WFS.
    * <p>
-   * @return a JTS envelope
+   * The envelope is maintained as features are added and removed, so this is a
+   * constant time operation. Features without a shape are ignored.
+   * <p>
+   * @return a JTS envelope, null if the collection has no feature with a shape
    */
   @XmlElement(name = "Envelope", required = true)
   @XmlJavaTypeAdapter(XmlEnvelopeAdapter.class)
   public Envelope getEnvelope() {
-    Envelope e = null;
-    for (Feature feature : features) {
-      /**
-       * Initialize the envelope. This works with any geometry type.
-       */
-      if (e == null) {
-        e = feature.getShape().getEnvelopeInternal();
-      }
-      /**
-       * Expand the envelope to include the feature envelope or all of its
-       * coordinates.
-       */
-      if (feature.getEnvelope() != null) {
-        e.expandToInclude(feature.getEnvelope());
-      } else {
-        // The shape is a Point
-        e.expandToInclude(((Point) feature.getShape()).getCoordinate());
-//        for (Coordinate coordinate : feature.getShape().getCoordinates()) {          e.expandToInclude(coordinate);        }
+    return ((FeatureList) getFeatures()).getEnvelope();
+  }
+
+  /**
+   * Mark the collection envelope and spatial index as stale so that they are
+   * recalculated on the next read.
+   * <p>
+   * The collection observes features being added and removed but not changes
+   * made to the features it already contains. Call this method after changing
+   * the shape of a feature in this collection.
+   */
+  public void invalidateEnvelope() {
+    ((FeatureList) getFeatures()).invalidateEnvelope();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The collection hash also covers the content hash of each feature, in
+   * order. Feature hashes are cached by each feature; the collection hash is
+   * combined from them on each call, so features added, removed or changed
+   * are always reflected.
+   */
+  @Override
+  public long getContentHash() {
+    long hash = Fingerprint.add(super.getContentHash(), getFeatures().size());
+    for (Feature feature : getFeatures()) {
+      hash = Fingerprint.add(hash, feature == null ? Fingerprint.NULL : feature.getContentHash());
+    }
+    hash = Fingerprint.mix(hash);
+    return hash == 0 ? 1 : hash;
+  }
+
+  /**
+   * Find all features whose shape envelope intersects the indicated envelope.
+   * This is typically a viewport (bounding box) query.
+   * <p>
+   * Queries use a spatial index (a packed STR-tree) over the feature shape
+   * envelopes. The index is built on first use and is rebuilt after the
+   * collection is modified, so it is best suited to collections that are
+   * queried many times between changes. Features without a shape are never
+   * returned.
+   *
+   * @param envelope the search envelope
+   * @return a non-null list of features, in no particular order
+   */
+  @SuppressWarnings("unchecked")
+  public List<Feature> query(Envelope envelope) {
+    if (envelope == null) {
+      return new ArrayList<>();
+    }
+    return ((FeatureList) getFeatures()).getIndex().query(envelope);
+  }
+
+  /**
+   * Find all features whose shape lies within the indicated distance of a
+   * position. A feature matches if the great-circle distance from the position
+   * to the nearest point of its shape is less than or equal to the radius.
+   * Features containing the position are always matched.
+   * <p>
+   * The spatial index is searched with the envelope circumscribing the circle:
+   * the longitude extent is {@code asin(sin δ / cos φ)}, all longitudes are
+   * searched if the circle contains a pole, and the search is split in two if
+   * the circle crosses the anti-meridian. The nearest point of each candidate
+   * shape is found in a local plane with longitude scaled by the cosine of the
+   * search latitude, which closely approximates the geodesic nearest point for
+   * radii up to several hundred kilometers. The distance to a point shape is
+   * always exact.
+   *
+   * @param position the search center
+   * @param radius   the search radius in meters
+   * @return a non-null list of features, in no particular order
+   */
+  public List<Feature> query(Position position, double radius) {
+    List<Feature> features = new ArrayList<>();
+    if (position == null || !position.isComplete() || radius < 0) {
+      return features;
+    }
+    double latitude = position.getLatitude();
+    double longitude = position.getLongitude();
+    double cosine = Math.cos(Math.toRadians(latitude));
+    /**
+     * Search the envelope(s) circumscribing the circle, then refine by
+     * distance. Features spanning two envelopes are returned once.
+     */
+    Set<Feature> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Envelope search : getSearchEnvelopes(latitude, longitude, radius)) {
+      candidates.addAll(query(search));
+    }
+    for (Feature feature : candidates) {
+      if (distance(feature.getShape(), latitude, longitude, cosine) <= radius) {
+        features.add(feature);
       }
     }
-    return e;
+    return features;
+  }
+
+  /**
+   * Find the k features nearest to a position. Features are ranked by the
+   * great-circle distance from the position to the nearest point of their
+   * shape (see {@link #query(Position, double)}).
+   * <p>
+   * The k planar nearest features are found with the spatial index; the
+   * largest of their great-circle distances bounds the search radius, within
+   * which every feature is then ranked by great-circle distance.
+   *
+   * @param position the search center
+   * @param k        the maximum number of features to return
+   * @return a non-null list of at most k features, nearest first
+   */
+  public List<Feature> nearest(Position position, int k) {
+    STRtree index = ((FeatureList) getFeatures()).getIndex();
+    if (position == null || !position.isComplete() || k < 1 || index.size() == 0) {
+      return new ArrayList<>();
+    }
+    double latitude = position.getLatitude();
+    double longitude = position.getLongitude();
+    double cosine = Math.cos(Math.toRadians(latitude));
+    Geometry point = position.asPoint();
+    Feature probe = Feature.getInstance(null, point);
+    double radius = 0;
+    for (Object item : index.nearestNeighbour(point.getEnvelopeInternal(), probe, SHAPE_DISTANCE, Math.min(k, index.size()))) {
+      radius = Math.max(radius, distance(((Feature) item).getShape(), latitude, longitude, cosine));
+    }
+    Map<Feature, Double> distances = new IdentityHashMap<>();
+    for (Feature feature : query(position, radius)) {
+      distances.put(feature, distance(feature.getShape(), latitude, longitude, cosine));
+    }
+    List<Feature> features = new ArrayList<>(distances.keySet());
+    features.sort(Comparator.comparingDouble(distances::get));
+    return features.size() > k ? new ArrayList<>(features.subList(0, k)) : features;
+  }
+
+  /**
+   * Get the envelopes circumscribing a circle on the sphere. The longitude
+   * extent at latitude φ of a circle of angular radius δ is
+   * {@code asin(sin δ / cos φ)}. If the circle contains a pole all longitudes
+   * are covered; if it crosses the anti-meridian it is covered by two
+   * envelopes.
+   *
+   * @param latitude  the center latitude in decimal degrees
+   * @param longitude the center longitude in decimal degrees
+   * @param radius    the radius in meters
+   * @return one or two envelopes
+   */
+  private static List<Envelope> getSearchEnvelopes(double latitude, double longitude, double radius) {
+    double delta = radius / GreatCircle.EARTH_RADIUS;
+    double deltaLatitude = Math.toDegrees(delta);
+    double minLatitude = latitude - deltaLatitude;
+    double maxLatitude = latitude + deltaLatitude;
+    if (minLatitude <= -90 || maxLatitude >= 90) {
+      return Collections.singletonList(new Envelope(-180, 180, Math.max(minLatitude, -90), Math.min(maxLatitude, 90)));
+    }
+    double deltaLongitude = Math.toDegrees(Math.asin(Math.sin(delta) / Math.cos(Math.toRadians(latitude))));
+    double minLongitude = longitude - deltaLongitude;
+    double maxLongitude = longitude + deltaLongitude;
+    if (minLongitude < -180) {
+      return Arrays.asList(new Envelope(minLongitude + 360, 180, minLatitude, maxLatitude),
+                           new Envelope(-180, maxLongitude, minLatitude, maxLatitude));
+    }
+    if (maxLongitude > 180) {
+      return Arrays.asList(new Envelope(minLongitude, 180, minLatitude, maxLatitude),
+                           new Envelope(-180, maxLongitude - 360, minLatitude, maxLatitude));
+    }
+    return Collections.singletonList(new Envelope(minLongitude, maxLongitude, minLatitude, maxLatitude));
+  }
+
+  /**
+   * Get the great-circle distance from a position to the nearest point of a
+   * shape. The nearest point is found in a local plane centered on the
+   * position, with the longitude difference wrapped to [-180, 180] and scaled
+   * by the cosine of the latitude, so that it is not distorted at high
+   * latitudes or across the anti-meridian.
+   *
+   * @param shape     the shape
+   * @param latitude  the position latitude in decimal degrees
+   * @param longitude the position longitude in decimal degrees
+   * @param cosine    the cosine of the position latitude
+   * @return the distance in meters
+   */
+  private static double distance(Geometry shape, double latitude, double longitude, double cosine) {
+    if (shape instanceof Point && !shape.isEmpty()) {
+      Coordinate coordinate = shape.getCoordinate();
+      return GreatCircle.distance(latitude, longitude, coordinate.y, coordinate.x);
+    }
+    Geometry local = shape.copy();
+    local.apply((CoordinateFilter) coordinate -> {
+      coordinate.x = wrap(coordinate.x - longitude) * cosine;
+      coordinate.y = coordinate.y - latitude;
+    });
+    local.geometryChanged();
+    Coordinate nearest = DistanceOp.nearestPoints(local, local.getFactory().createPoint(new Coordinate(0, 0)))[0];
+    double nearestLongitude = cosine > 0 ? nearest.x / cosine + longitude : longitude;
+    return GreatCircle.distance(latitude, longitude, nearest.y + latitude, nearestLongitude);
+  }
+
+  /**
+   * Wrap a longitude difference to [-180, 180].
+   *
+   * @param degrees the longitude difference in decimal degrees
+   * @return the wrapped difference
+   */
+  private static double wrap(double degrees) {
+    return degrees > 180 ? degrees - 360 : degrees < -180 ? degrees + 360 : degrees;
   }
 }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import ch.keybridge.xml.adapter.XmlMapAdapter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.bind.annotation.*;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * The difference between two snapshots of a feature collection.
+ * <p>
+ * A patch holds the features added to and modified in the target snapshot,
+ * the IDs of the features removed from it, and the collection ID, name, type,
+ * description and properties of the target. Applying the patch to the base
+ * snapshot rebuilds the target snapshot, so a client holding a recent copy of
+ * a large collection need only receive the (typically small) patch.
+ * <p>
+ * Features are matched by ID and compared by their cached
+ * {@link AbstractFeature#getContentHash() content hash}, so creating a patch
+ * does not compare geometries. Features in both snapshots must have a unique,
+ * non-null ID.
+ * <p>
+ * The feature order of the target snapshot is preserved. Unchanged and
+ * modified features keep their position in the base snapshot and added
+ * features are appended; only if the target is ordered otherwise does the
+ * patch carry the complete list of target IDs.
+ * <p>
+ * A patch records the content hash of both snapshots. It is only applied to
+ * a base collection having the recorded hash, and the result is verified to
+ * have the recorded target hash.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+@XmlRootElement(name = "FeatureCollectionPatch")
+@XmlType(name = "FeatureCollectionPatch")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class FeatureCollectionPatch implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The content hash of the base snapshot.
+   */
+  @XmlAttribute(name = "baseHash", required = true)
+  private long baseHash;
+  /**
+   * The content hash of the target snapshot.
+   */
+  @XmlAttribute(name = "targetHash", required = true)
+  private long targetHash;
+
+  /**
+   * The target collection values.
+   */
+  @XmlElement(name = "Id")
+  private String id;
+  @XmlAttribute(name = "featureType")
+  private String featureType;
+  @XmlElement(name = "Name")
+  private String name;
+  @XmlElement(name = "Description")
+  private String description;
+  @XmlElement(name = "Properties")
+  @XmlJavaTypeAdapter(XmlMapAdapter.class)
+  private Map<String, String> properties;
+
+  /**
+   * Features in the target that are not in the base.
+   */
+  @XmlElement(name = "Added")
+  private List<Feature> added;
+  /**
+   * Features in both snapshots whose content has changed, as in the target.
+   */
+  @XmlElement(name = "Modified")
+  private List<Feature> modified;
+  /**
+   * The IDs of features in the base that are not in the target.
+   */
+  @XmlElement(name = "Removed")
+  private List<String> removed;
+  /**
+   * The IDs of the target features in order. Null unless the target order
+   * differs from the order produced by applying the patch.
+   */
+  @XmlElement(name = "Order")
+  private List<String> order;
+
+  /**
+   * Construct an empty patch. This is used by JAXB; use {@link #diff}.
+   */
+  public FeatureCollectionPatch() {
+    this.added = new ArrayList<>();
+    this.modified = new ArrayList<>();
+    this.removed = new ArrayList<>();
+  }
+
+  /**
+   * Compute the difference between two snapshots of a feature collection.
+   * <p>
+   * The patch references (does not copy) the added and modified features of
+   * the target.
+   *
+   * @param base   the base (earlier) snapshot
+   * @param target the target (later) snapshot
+   * @return the patch to rebuild the target from the base
+   * @throws IllegalArgumentException if a feature ID is null or repeated
+   */
+  public static FeatureCollectionPatch diff(FeatureCollection base, FeatureCollection target) {
+    Map<String, Feature> baseFeatures = index(base);
+    Map<String, Feature> targetFeatures = index(target);
+    FeatureCollectionPatch patch = new FeatureCollectionPatch();
+    patch.baseHash = base.getContentHash();
+    patch.targetHash = target.getContentHash();
+    patch.id = target.getId();
+    patch.featureType = target.getFeatureType();
+    patch.name = target.getName();
+    patch.description = target.getDescription();
+    patch.properties = target.getProperties().isEmpty() ? null : new HashMap<>(target.getProperties());
+    for (Feature feature : targetFeatures.values()) {
+      Feature previous = baseFeatures.get(feature.getId());
+      if (previous == null) {
+        patch.added.add(feature);
+      } else if (previous.getContentHash() != feature.getContentHash()) {
+        patch.modified.add(feature);
+      }
+    }
+    /**
+     * The order produced by apply: base order without the removed features,
+     * followed by the added features.
+     */
+    List<String> applied = new ArrayList<>(targetFeatures.size());
+    for (String key : baseFeatures.keySet()) {
+      if (targetFeatures.containsKey(key)) {
+        applied.add(key);
+      } else {
+        patch.removed.add(key);
+      }
+    }
+    for (Feature feature : patch.added) {
+      applied.add(feature.getId());
+    }
+    if (!applied.equals(new ArrayList<>(targetFeatures.keySet()))) {
+      patch.order = new ArrayList<>(targetFeatures.keySet());
+    }
+    return patch;
+  }
+
+  /**
+   * Apply this patch to the base snapshot. The base collection is not
+   * changed; the returned collection shares its unchanged features.
+   *
+   * @param base the base snapshot
+   * @return a new collection equal in content to the target snapshot
+   * @throws IllegalStateException    if the base collection is not the base
+   *                                  snapshot of this patch, or the result is
+   *                                  not the target snapshot
+   * @throws IllegalArgumentException if a base feature ID is null or repeated
+   */
+  public FeatureCollection apply(FeatureCollection base) {
+    if (base.getContentHash() != baseHash) {
+      throw new IllegalStateException("The patch does not apply to this collection. Expected base hash "
+        + Long.toHexString(baseHash) + " but found " + Long.toHexString(base.getContentHash()));
+    }
+    Map<String, Feature> features = index(base);
+    for (String key : getRemoved()) {
+      features.remove(key);
+    }
+    /**
+     * Replacing a value in a LinkedHashMap keeps its position.
+     */
+    for (Feature feature : getModified()) {
+      features.put(feature.getId(), feature);
+    }
+    for (Feature feature : getAdded()) {
+      features.put(feature.getId(), feature);
+    }
+    Collection<Feature> ordered = features.values();
+    if (order != null) {
+      List<Feature> list = new ArrayList<>(order.size());
+      for (String key : order) {
+        list.add(features.get(key));
+      }
+      ordered = list;
+    }
+    FeatureCollection collection = new FeatureCollection();
+    collection.setId(id);
+    collection.setFeatureType(featureType);
+    collection.setName(name);
+    collection.setDescription(description);
+    collection.setProperties(properties);
+    collection.setFeatures(ordered);
+    if (collection.getContentHash() != targetHash) {
+      throw new IllegalStateException("The patched collection does not match the target snapshot.");
+    }
+    return collection;
+  }
+
+  /**
+   * Index the features of a collection by ID, preserving their order.
+   *
+   * @param collection the collection
+   * @return the features by ID
+   * @throws IllegalArgumentException if a feature ID is null or repeated
+   */
+  private static Map<String, Feature> index(FeatureCollection collection) {
+    Map<String, Feature> features = new LinkedHashMap<>();
+    for (Feature feature : collection.getFeatures()) {
+      if (feature == null || feature.getId() == null) {
+        throw new IllegalArgumentException("Every feature requires an ID.");
+      }
+      if (features.put(feature.getId(), feature) != null) {
+        throw new IllegalArgumentException("Feature ID " + feature.getId() + " is not unique.");
+      }
+    }
+    return features;
+  }
+
+  /**
+   * Get the content hash of the base snapshot.
+   *
+   * @return the base content hash
+   */
+  public long getBaseHash() {
+    return baseHash;
+  }
+
+  /**
+   * Get the content hash of the target snapshot.
+   *
+   * @return the target content hash
+   */
+  public long getTargetHash() {
+    return targetHash;
+  }
+
+  /**
+   * Get the features in the target that are not in the base.
+   *
+   * @return a non-null, unmodifiable list
+   */
+  public List<Feature> getAdded() {
+    return added == null ? Collections.emptyList() : Collections.unmodifiableList(added);
+  }
+
+  /**
+   * Get the features in both snapshots whose content has changed.
+   *
+   * @return a non-null, unmodifiable list of the target features
+   */
+  public List<Feature> getModified() {
+    return modified == null ? Collections.emptyList() : Collections.unmodifiableList(modified);
+  }
+
+  /**
+   * Get the IDs of the features in the base that are not in the target.
+   *
+   * @return a non-null, unmodifiable list
+   */
+  public List<String> getRemoved() {
+    return removed == null ? Collections.emptyList() : Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Returns true if the base and target snapshots have the same content.
+   *
+   * @return TRUE if applying the patch does not change the collection
+   */
+  public boolean isEmpty() {
+    return baseHash == targetHash;
+  }
+
+  @Override
+  public String toString() {
+    return "FeatureCollectionPatch{added=" + getAdded().size() + ", modified=" + getModified().size()
+      + ", removed=" + getRemoved().size() + ", reordered=" + (order != null) + '}';
+  }
+
+}
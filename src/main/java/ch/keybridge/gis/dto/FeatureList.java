@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * The list of features in a FeatureCollection. This is an ArrayList-backed
+ * list that maintains the aggregate envelope of its features as they are
+ * added, so that reading the collection envelope is a constant time operation.
+ * It also holds the (lazily built) spatial index of its features.
+ * <p>
+ * Adding a feature expands the envelope in place. Removing or replacing a
+ * feature whose envelope touches the aggregate boundary invalidates the
+ * envelope, which is then recalculated on the next read; removing an interior
+ * feature does not change the aggregate and is free.
+ * <p>
+ * The spatial index is a packed STR-tree. It is built on first use and
+ * discarded by any modification; it is rebuilt on the next query.
+ * <p>
+ * All modifications, including those made through the iterator and sub-list
+ * views, are observed. Changes to the shape of a feature already in the list
+ * are not observed; see {@link #invalidateEnvelope()}.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to cache the feature collection envelope
+ * @since v4.1.0 added 10/16/20 spatial index
+ */
+final class FeatureList extends AbstractList<Feature> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The features, in insertion order.
+   */
+  private final ArrayList<Feature> features;
+  /**
+   * The aggregate envelope of all features. Null if no feature has a shape.
+   */
+  private transient Envelope envelope;
+  /**
+   * Indicator that the envelope is current. This is false after
+   * deserialization so that the envelope is recalculated on first read.
+   */
+  private transient boolean envelopeValid;
+  /**
+   * The spatial index of all features having a shape. Null if not built or
+   * invalidated.
+   */
+  private transient STRtree index;
+
+  /**
+   * Construct an empty feature list.
+   */
+  FeatureList() {
+    this.features = new ArrayList<>();
+    this.envelopeValid = true;
+  }
+
+  /**
+   * Construct a feature list containing the features of the provided
+   * collection, in iteration order.
+   *
+   * @param features a collection of features
+   */
+  FeatureList(Collection<Feature> features) {
+    this.features = new ArrayList<>(features);
+    this.envelopeValid = false;
+  }
+
+  @Override
+  public Feature get(int index) {
+    return features.get(index);
+  }
+
+  @Override
+  public int size() {
+    return features.size();
+  }
+
+  @Override
+  public void add(int index, Feature feature) {
+    features.add(index, feature);
+    modCount++;
+    this.index = null;
+    if (envelopeValid) {
+      expandEnvelope(feature);
+    }
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Feature> collection) {
+    features.ensureCapacity(features.size() + collection.size());
+    return super.addAll(collection);
+  }
+
+  @Override
+  public Feature set(int index, Feature feature) {
+    Feature previous = features.set(index, feature);
+    this.index = null;
+    if (envelopeValid) {
+      if (isOnBoundary(previous)) {
+        envelopeValid = false;
+      } else {
+        expandEnvelope(feature);
+      }
+    }
+    return previous;
+  }
+
+  @Override
+  public Feature remove(int index) {
+    Feature previous = features.remove(index);
+    modCount++;
+    this.index = null;
+    if (envelopeValid && isOnBoundary(previous)) {
+      envelopeValid = false;
+    }
+    return previous;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    features.subList(fromIndex, toIndex).clear();
+    modCount++;
+    index = null;
+    envelopeValid = false;
+  }
+
+  @Override
+  public void clear() {
+    features.clear();
+    modCount++;
+    index = null;
+    envelope = null;
+    envelopeValid = true;
+  }
+
+  /**
+   * Get the aggregate envelope of all features in this list. The envelope is
+   * recalculated only if it has been invalidated.
+   * <p>
+   * This is synchronized like {@link #getIndex()} so that concurrent readers
+   * (e.g. JAXB marshalling threads) of an invalidated list never see a null or
+   * partially calculated envelope. The envelope is calculated locally and
+   * published only when complete.
+   *
+   * @return a copy of the aggregate envelope, null if no feature has a shape
+   */
+  synchronized Envelope getEnvelope() {
+    if (!envelopeValid) {
+      Envelope aggregate = null;
+      for (Feature feature : features) {
+        Envelope featureEnvelope = getEnvelope(feature);
+        if (featureEnvelope == null) {
+          continue;
+        }
+        if (aggregate == null) {
+          aggregate = new Envelope(featureEnvelope);
+        } else {
+          aggregate.expandToInclude(featureEnvelope);
+        }
+      }
+      envelope = aggregate;
+      envelopeValid = true;
+    }
+    return envelope == null ? null : new Envelope(envelope);
+  }
+
+  /**
+   * Mark the aggregate envelope and the spatial index as stale. They will be
+   * recalculated on the next read. Call this after changing the shape of a
+   * feature in this list.
+   */
+  void invalidateEnvelope() {
+    envelopeValid = false;
+    index = null;
+  }
+
+  /**
+   * Get the spatial index of all features having a shape, building it if
+   * required. Index items are the features, indexed by their shape envelope.
+   * <p>
+   * The returned index is fully built and is not modified afterwards, so it
+   * may be queried concurrently.
+   *
+   * @return the spatial index
+   */
+  synchronized STRtree getIndex() {
+    if (index == null) {
+      STRtree tree = new STRtree();
+      for (Feature feature : features) {
+        Envelope featureEnvelope = getEnvelope(feature);
+        if (featureEnvelope != null) {
+          tree.insert(featureEnvelope, feature);
+        }
+      }
+      tree.build();
+      index = tree;
+    }
+    return index;
+  }
+
+  /**
+   * Expand the aggregate envelope to include the feature shape. This works with
+   * any geometry type, including points.
+   *
+   * @param feature the feature
+   */
+  private void expandEnvelope(Feature feature) {
+    Envelope featureEnvelope = getEnvelope(feature);
+    if (featureEnvelope == null) {
+      return;
+    }
+    if (envelope == null) {
+      envelope = new Envelope(featureEnvelope);
+    } else {
+      envelope.expandToInclude(featureEnvelope);
+    }
+  }
+
+  /**
+   * Determine whether removing the feature could shrink the aggregate
+   * envelope. This is true if the feature envelope touches any edge of the
+   * aggregate envelope.
+   *
+   * @param feature the feature
+   * @return TRUE if the feature envelope touches the aggregate boundary
+   */
+  private boolean isOnBoundary(Feature feature) {
+    Envelope featureEnvelope = getEnvelope(feature);
+    if (featureEnvelope == null || envelope == null) {
+      return false;
+    }
+    return featureEnvelope.getMinX() <= envelope.getMinX()
+      || featureEnvelope.getMinY() <= envelope.getMinY()
+      || featureEnvelope.getMaxX() >= envelope.getMaxX()
+      || featureEnvelope.getMaxY() >= envelope.getMaxY();
+  }
+
+  /**
+   * Null-safe feature envelope.
+   *
+   * @param feature a feature
+   * @return the feature shape envelope, null if there is no (or an empty)
+   *         shape
+   */
+  private static Envelope getEnvelope(Feature feature) {
+    return feature == null || feature.getShape() == null || feature.getShape().isEmpty()
+           ? null
+           : feature.getShape().getEnvelopeInternal();
+  }
+
+}
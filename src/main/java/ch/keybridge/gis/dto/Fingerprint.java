@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * A 64-bit fingerprint of a geometry.
+ * <p>
+ * The fingerprint is computed from the geometry type and the X and Y ordinate
+ * values of each coordinate sequence, in order, without copying the
+ * coordinates. Geometries that are equal by {@link Geometry#equalsExact} have
+ * equal fingerprints; unequal geometries have equal fingerprints with a
+ * probability of about 2<sup>-64</sup>.
+ * <p>
+ * The static {@code add} methods build content hashes of other values; see
+ * {@link AbstractFeature#getContentHash()}.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+final class Fingerprint implements CoordinateSequenceFilter {
+
+  /**
+   * The fingerprint of a null geometry.
+   */
+  static final long NULL = 0x5bd1e9955bd1e995L;
+
+  private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+  private long hash;
+
+  private Fingerprint(long seed) {
+    this.hash = seed;
+  }
+
+  /**
+   * Compute the fingerprint of a geometry.
+   *
+   * @param geometry the geometry
+   * @return the fingerprint
+   */
+  static long of(Geometry geometry) {
+    if (geometry == null) {
+      return NULL;
+    }
+    Fingerprint fingerprint = new Fingerprint(geometry.getGeometryType().hashCode());
+    geometry.apply(fingerprint);
+    return mix(fingerprint.hash);
+  }
+
+  /**
+   * Add a value to a running hash.
+   *
+   * @param hash  the hash
+   * @param value the value
+   * @return the updated hash
+   */
+  static long add(long hash, long value) {
+    return (hash ^ value) * MULTIPLIER + (hash >>> 29);
+  }
+
+  /**
+   * Add a double value to a running hash. Positive and negative zero are
+   * equal.
+   *
+   * @param hash  the hash
+   * @param value the value
+   * @return the updated hash
+   */
+  static long add(long hash, double value) {
+    return add(hash, Double.doubleToLongBits(value + 0.0));
+  }
+
+  /**
+   * Add a string to a running hash. The characters are added four at a time;
+   * null and empty strings are distinguished.
+   *
+   * @param hash the hash
+   * @param text the text, may be null
+   * @return the updated hash
+   */
+  static long add(long hash, String text) {
+    if (text == null) {
+      return add(hash, NULL);
+    }
+    int length = text.length();
+    long h = add(hash, length);
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      h = add(h, (long) text.charAt(i)
+                 | (long) text.charAt(i + 1) << 16
+                 | (long) text.charAt(i + 2) << 32
+                 | (long) text.charAt(i + 3) << 48);
+    }
+    for (; i < length; i++) {
+      h = add(h, text.charAt(i));
+    }
+    return h;
+  }
+
+  /**
+   * Add a double array to a running hash.
+   *
+   * @param hash   the hash
+   * @param values the values, may be null
+   * @return the updated hash
+   */
+  static long add(long hash, double[] values) {
+    if (values == null) {
+      return add(hash, NULL);
+    }
+    long h = add(hash, values.length);
+    for (double value : values) {
+      h = add(h, value);
+    }
+    return h;
+  }
+
+  /**
+   * The MurmurHash3 64-bit finalizer, which spreads every input bit over the
+   * output.
+   *
+   * @param hash the hash
+   * @return the mixed hash
+   */
+  static long mix(long hash) {
+    long h = hash;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public void filter(CoordinateSequence sequence, int i) {
+    if (i == 0) {
+      /**
+       * Mark the start of each sequence so that parts are distinguished.
+       */
+      hash = add(hash, sequence.size());
+    }
+    hash = add(hash, sequence.getX(i));
+    hash = add(hash, sequence.getY(i));
+  }
+
+  @Override
+  public boolean isDone() {
+    return false;
+  }
+
+  @Override
+  public boolean isGeometryChanged() {
+    return false;
+  }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.util.Arrays;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Hierarchical 64-bit geographic cell identifiers.
+ * <p>
+ * The longitude [-180, +180] and latitude [-90, +90] ranges are each divided
+ * into 2<sup>level</sup> equal intervals, giving a grid of cells at each
+ * level from 0 (one cell covering the world) to {@link #MAX_LEVEL}. The cell
+ * coordinates are interleaved into a Z-order (Morton) code with the longitude
+ * bit first, which is the same bit order as a geohash.
+ * <p>
+ * As in S2, the cell id is the Morton code followed by a single marker bit and
+ * then zero bits to the end of the word, so that cell ids at different levels
+ * never collide, the level is encoded in the id, and the parent of a cell is
+ * obtained by masking. A cell id is always positive; zero ({@link #NONE})
+ * indicates no cell.
+ * <p>
+ * Approximate cell height at selected levels: level 10 ~20 km, level 15 ~610
+ * m, level 20 ~19 m, level 25 ~0.6 m. Cell width is the same as the height at
+ * 60 degrees latitude and twice the height at the equator.
+ * <p>
+ * Two positions in the same cell are near each other, and nearby positions
+ * are in the same or an adjacent cell; use {@link #getNeighbours(long)} for
+ * proximity searches.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 for cell based proximity grouping
+ */
+public final class GeoCell {
+
+  /**
+   * The maximum cell level. At this level the cell coordinates use 31 bits per
+   * axis, which is a resolution of about 1 cm.
+   */
+  public static final int MAX_LEVEL = 31;
+  /**
+   * The cell id indicating no cell (e.g. an incomplete position).
+   */
+  public static final long NONE = 0L;
+  /**
+   * The meters per degree of latitude on the mean Earth sphere.
+   */
+  private static final double METERS_PER_DEGREE = Math.PI * GreatCircle.EARTH_RADIUS / 180;
+
+  private GeoCell() {
+  }
+
+  /**
+   * Encode a latitude and longitude into a cell id at the indicated level. The
+   * longitude is normalized and the latitude is clamped to [-90, +90].
+   *
+   * @param latitude  the latitude in decimal degrees
+   * @param longitude the longitude in decimal degrees
+   * @param level     the cell level, 0 to {@link #MAX_LEVEL}
+   * @return the cell id, {@link #NONE} if either coordinate is NaN
+   */
+  public static long encode(double latitude, double longitude, int level) {
+    checkLevel(level);
+    if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+      return NONE;
+    }
+    long scale = 1L << level;
+    long x = quantize((Position.normalizeLongitude(longitude) + 180) / 360, scale);
+    long y = quantize((Math.max(-90, Math.min(90, latitude)) + 90) / 180, scale);
+    return toId(x, y, level);
+  }
+
+  /**
+   * Encode a position into a cell id at the indicated level.
+   *
+   * @param position the position
+   * @param level    the cell level, 0 to {@link #MAX_LEVEL}
+   * @return the cell id, {@link #NONE} if the position is null or incomplete
+   */
+  public static long encode(Position position, int level) {
+    return position == null
+           ? encode(Double.NaN, Double.NaN, level)
+           : encode(position.getLatitudeValue(), position.getLongitudeValue(), level);
+  }
+
+  /**
+   * Get the level of a cell.
+   *
+   * @param cell a cell id
+   * @return the cell level
+   */
+  public static int getLevel(long cell) {
+    checkCell(cell);
+    return MAX_LEVEL - (Long.numberOfTrailingZeros(cell) >> 1);
+  }
+
+  /**
+   * Get the ancestor of a cell at a lower (coarser) level.
+   *
+   * @param cell  a cell id
+   * @param level the ancestor level, less than or equal to the cell level
+   * @return the ancestor cell id
+   */
+  public static long getParent(long cell, int level) {
+    checkLevel(level);
+    if (level > getLevel(cell)) {
+      throw new IllegalArgumentException("Parent level " + level + " exceeds cell level " + getLevel(cell));
+    }
+    long lsb = lowestOnBit(level);
+    return (cell & -lsb) | lsb;
+  }
+
+  /**
+   * Determine whether a cell contains another cell (or is the same cell).
+   *
+   * @param cell  a cell id
+   * @param other another cell id
+   * @return TRUE if the other cell is the same as or a descendant of the cell
+   */
+  public static boolean contains(long cell, long other) {
+    checkCell(cell);
+    checkCell(other);
+    long lsb = cell & -cell;
+    return other >= cell - (lsb - 1) && other <= cell + (lsb - 1);
+  }
+
+  /**
+   * Decode a cell id to the position at the center of the cell.
+   *
+   * @param cell a cell id
+   * @return the cell center position
+   */
+  public static Position getCenter(long cell) {
+    int level = getLevel(cell);
+    long morton = cell >>> (2 * (MAX_LEVEL - level) + 1);
+    double scale = 1L << level;
+    double longitude = (compact(morton >>> 1) + 0.5) * 360 / scale - 180;
+    double latitude = (compact(morton) + 0.5) * 180 / scale - 90;
+    return Position.getInstance(latitude, longitude);
+  }
+
+  /**
+   * Decode a cell id to the cell bounds.
+   *
+   * @param cell a cell id
+   * @return the cell envelope in decimal degrees (x = longitude)
+   */
+  public static Envelope getEnvelope(long cell) {
+    int level = getLevel(cell);
+    long morton = cell >>> (2 * (MAX_LEVEL - level) + 1);
+    double scale = 1L << level;
+    long x = compact(morton >>> 1);
+    long y = compact(morton);
+    return new Envelope(x * 360 / scale - 180, (x + 1) * 360 / scale - 180,
+                        y * 180 / scale - 90, (y + 1) * 180 / scale - 90);
+  }
+
+  /**
+   * Get the cells adjacent to a cell at the same level, including diagonal
+   * neighbours. Neighbours wrap across the anti-meridian but not across the
+   * poles, so there are at most eight.
+   *
+   * @param cell a cell id
+   * @return the neighbouring cell ids, excluding the cell itself
+   */
+  public static long[] getNeighbours(long cell) {
+    int level = getLevel(cell);
+    long morton = cell >>> (2 * (MAX_LEVEL - level) + 1);
+    long scale = 1L << level;
+    long x = compact(morton >>> 1);
+    long y = compact(morton);
+    long[] neighbours = new long[8];
+    int count = 0;
+    for (long dy = -1; dy <= 1; dy++) {
+      long ny = y + dy;
+      if (ny < 0 || ny >= scale) {
+        continue;
+      }
+      for (long dx = -1; dx <= 1; dx++) {
+        long neighbour = toId((x + dx + scale) % scale, ny, level);
+        if (neighbour != cell && !contains(neighbours, count, neighbour)) {
+          neighbours[count++] = neighbour;
+        }
+      }
+    }
+    return count == neighbours.length ? neighbours : Arrays.copyOf(neighbours, count);
+  }
+
+  /**
+   * Get the highest (finest) level at which a cell is at least the indicated
+   * size in both dimensions at latitudes up to 60 degrees. At this level all
+   * positions within the distance of a position lie in its cell or one of its
+   * {@link #getNeighbours(long) neighbours}.
+   *
+   * @param meters a distance in meters
+   * @return the cell level
+   */
+  public static int getLevelForDistance(double meters) {
+    for (int level = MAX_LEVEL; level > 0; level--) {
+      if (180.0 / (1L << level) * METERS_PER_DEGREE >= meters) {
+        return level;
+      }
+    }
+    return 0;
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Bit manipulation">
+  /**
+   * Build a cell id from cell coordinates.
+   *
+   * @param x     the longitude cell coordinate
+   * @param y     the latitude cell coordinate
+   * @param level the cell level
+   * @return the cell id
+   */
+  private static long toId(long x, long y, int level) {
+    long morton = (spread(x) << 1) | spread(y);
+    return ((morton << 1) | 1) << (2 * (MAX_LEVEL - level));
+  }
+
+  /**
+   * Quantize a fraction [0, 1] into a cell coordinate [0, scale - 1].
+   *
+   * @param fraction the fraction of the axis range
+   * @param scale    the number of cells on the axis
+   * @return the cell coordinate
+   */
+  private static long quantize(double fraction, long scale) {
+    return Math.max(0, Math.min(scale - 1, (long) Math.floor(fraction * scale)));
+  }
+
+  /**
+   * The marker bit of a cell at the indicated level.
+   *
+   * @param level the cell level
+   * @return the lowest on bit
+   */
+  private static long lowestOnBit(int level) {
+    return 1L << (2 * (MAX_LEVEL - level));
+  }
+
+  /**
+   * Spread the low 32 bits of a value into the even bits of a long.
+   *
+   * @param value the value
+   * @return the spread value
+   */
+  private static long spread(long value) {
+    long v = value & 0xFFFFFFFFL;
+    v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+    v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+    v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+    v = (v | (v << 2)) & 0x3333333333333333L;
+    v = (v | (v << 1)) & 0x5555555555555555L;
+    return v;
+  }
+
+  /**
+   * Compact the even bits of a long into the low 32 bits. This is the inverse
+   * of {@link #spread(long)}.
+   *
+   * @param value the value
+   * @return the compacted value
+   */
+  private static long compact(long value) {
+    long v = value & 0x5555555555555555L;
+    v = (v | (v >>> 1)) & 0x3333333333333333L;
+    v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+    v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+    v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+    v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+    return v;
+  }
+
+  private static boolean contains(long[] values, int count, long value) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void checkLevel(int level) {
+    if (level < 0 || level > MAX_LEVEL) {
+      throw new IllegalArgumentException("Cell level must be between 0 and " + MAX_LEVEL + ": " + level);
+    }
+  }
+
+  private static void checkCell(long cell) {
+    if (cell <= 0) {
+      throw new IllegalArgumentException("Invalid cell id " + cell);
+    }
+  }// </editor-fold>
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+/**
+ * Great-circle distance, bearing and destination point calculations on a
+ * spherical Earth of radius {@link #EARTH_RADIUS}.
+ * <p>
+ * All coordinates are in decimal degrees, distances in meters and bearings in
+ * degrees clockwise from TRUE north. A NaN coordinate produces a NaN result.
+ * The spherical model differs from the WGS84 ellipsoid by up to about 0.5%.
+ * <p>
+ * The haversine methods are accurate at all distances. The equirectangular
+ * methods project the pair of points onto a plane scaled by the cosine of
+ * their mean latitude; they avoid the inverse trigonometric functions and are
+ * typically several times faster. The relative error of the equirectangular
+ * approximation (compared to haversine) is below 0.01% for distances up to 100
+ * km at latitudes up to 70 degrees, and below 0.1% up to 100 km at 80 degrees
+ * or up to 450 km at 60 degrees. It grows quickly beyond these limits.
+ * <p>
+ * The bulk methods write into a caller supplied array and do not allocate
+ * (except {@link #distanceMatrix}, which allocates two temporary arrays the
+ * length of the destinations), so that millions of distances may be
+ * calculated without garbage.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+public final class GreatCircle {
+
+  /**
+   * The mean Earth radius in meters (IUGG R1).
+   */
+  public static final double EARTH_RADIUS = 6371008.8;
+
+  private GreatCircle() {
+  }
+
+  /**
+   * Haversine great-circle distance between two points.
+   *
+   * @param latitude1  the first point latitude in decimal degrees
+   * @param longitude1 the first point longitude in decimal degrees
+   * @param latitude2  the second point latitude in decimal degrees
+   * @param longitude2 the second point longitude in decimal degrees
+   * @return the distance in meters
+   */
+  public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+    double phi1 = Math.toRadians(latitude1);
+    double phi2 = Math.toRadians(latitude2);
+    return haversine(phi1, Math.cos(phi1), phi2, Math.cos(phi2), Math.toRadians(longitude2 - longitude1));
+  }
+
+  /**
+   * Equirectangular approximation of the great-circle distance between two
+   * points. See the class description for the error bounds.
+   *
+   * @param latitude1  the first point latitude in decimal degrees
+   * @param longitude1 the first point longitude in decimal degrees
+   * @param latitude2  the second point latitude in decimal degrees
+   * @param longitude2 the second point longitude in decimal degrees
+   * @return the approximate distance in meters
+   */
+  public static double distanceEquirectangular(double latitude1, double longitude1, double latitude2, double longitude2) {
+    return equirectangular(latitude1, longitude1, latitude2, longitude2);
+  }
+
+  /**
+   * The initial bearing (forward azimuth) of the great-circle path from the
+   * first point to the second point.
+   *
+   * @param latitude1  the first point latitude in decimal degrees
+   * @param longitude1 the first point longitude in decimal degrees
+   * @param latitude2  the second point latitude in decimal degrees
+   * @param longitude2 the second point longitude in decimal degrees
+   * @return the azimuth in degrees [0, 360) clockwise from TRUE north; zero if
+   *         the points are the same
+   */
+  public static double bearing(double latitude1, double longitude1, double latitude2, double longitude2) {
+    double phi1 = Math.toRadians(latitude1);
+    double phi2 = Math.toRadians(latitude2);
+    double lambda = Math.toRadians(longitude2 - longitude1);
+    double cosPhi2 = Math.cos(phi2);
+    double y = Math.sin(lambda) * cosPhi2;
+    double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * cosPhi2 * Math.cos(lambda);
+    return Position.normalizeToAzimuth(Math.toDegrees(Math.atan2(y, x)));
+  }
+
+  /**
+   * The destination point reached by travelling a distance along the great
+   * circle leaving a point at the indicated initial bearing.
+   *
+   * @param latitude  the start point latitude in decimal degrees
+   * @param longitude the start point longitude in decimal degrees
+   * @param azimuth   the initial bearing in degrees clockwise from TRUE north
+   * @param distance  the distance in meters
+   * @return the destination position, with the longitude normalized to [-180,
+   *         +180]; an empty position if any argument is NaN
+   */
+  public static Position destination(double latitude, double longitude, double azimuth, double distance) {
+    if (Double.isNaN(latitude + longitude + azimuth + distance)) {
+      return new Position();
+    }
+    double delta = distance / EARTH_RADIUS;
+    double theta = Math.toRadians(azimuth);
+    double phi1 = Math.toRadians(latitude);
+    double sinPhi1 = Math.sin(phi1);
+    double cosPhi1 = Math.cos(phi1);
+    double sinDelta = Math.sin(delta);
+    double cosDelta = Math.cos(delta);
+    double sinPhi2 = sinPhi1 * cosDelta + cosPhi1 * sinDelta * Math.cos(theta);
+    double phi2 = Math.asin(Math.max(-1, Math.min(1, sinPhi2)));
+    double lambda = Math.atan2(Math.sin(theta) * sinDelta * cosPhi1, cosDelta - sinPhi1 * sinPhi2);
+    return Position.getInstance(Math.toDegrees(phi2), longitude + Math.toDegrees(lambda));
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Bulk distance">
+  /**
+   * Haversine distances from one point to many points.
+   *
+   * @param latitude   the origin latitude in decimal degrees
+   * @param longitude  the origin longitude in decimal degrees
+   * @param latitudes  the destination latitudes in decimal degrees
+   * @param longitudes the destination longitudes in decimal degrees
+   * @param target     the array receiving the distances in meters
+   */
+  public static void distance(double latitude, double longitude, double[] latitudes, double[] longitudes, double[] target) {
+    distance(latitude, longitude, latitudes, longitudes, 0, target, 0, latitudes.length);
+  }
+
+  /**
+   * Haversine distances from one point to a range of points. Arguments follow
+   * {@code System.arraycopy}: the destination point at
+   * {@code sourcePosition + i} produces the distance at
+   * {@code targetPosition + i}.
+   * <p>
+   * The origin latitude trigonometry is calculated once; each distance costs
+   * two sines, one cosine, one square root and one arcsine.
+   *
+   * @param latitude       the origin latitude in decimal degrees
+   * @param longitude      the origin longitude in decimal degrees
+   * @param latitudes      the destination latitudes in decimal degrees
+   * @param longitudes     the destination longitudes in decimal degrees
+   * @param sourcePosition the destination start index
+   * @param target         the array receiving the distances in meters
+   * @param targetPosition the target start index
+   * @param length         the number of distances
+   */
+  public static void distance(double latitude, double longitude, double[] latitudes, double[] longitudes, int sourcePosition,
+                              double[] target, int targetPosition, int length) {
+    checkRange(latitudes, longitudes, sourcePosition, target, targetPosition, length);
+    double phi1 = Math.toRadians(latitude);
+    double cosPhi1 = Math.cos(phi1);
+    for (int i = 0; i < length; i++) {
+      double phi2 = Math.toRadians(latitudes[sourcePosition + i]);
+      target[targetPosition + i] = haversine(phi1, cosPhi1, phi2, Math.cos(phi2),
+                                             Math.toRadians(longitudes[sourcePosition + i] - longitude));
+    }
+  }
+
+  /**
+   * Equirectangular distances from one point to many points. See the class
+   * description for the error bounds.
+   *
+   * @param latitude   the origin latitude in decimal degrees
+   * @param longitude  the origin longitude in decimal degrees
+   * @param latitudes  the destination latitudes in decimal degrees
+   * @param longitudes the destination longitudes in decimal degrees
+   * @param target     the array receiving the distances in meters
+   */
+  public static void distanceEquirectangular(double latitude, double longitude, double[] latitudes, double[] longitudes, double[] target) {
+    distanceEquirectangular(latitude, longitude, latitudes, longitudes, 0, target, 0, latitudes.length);
+  }
+
+  /**
+   * Equirectangular distances from one point to a range of points. See
+   * {@link #distance(double, double, double[], double[], int, double[], int, int)}
+   * for the arguments and the class description for the error bounds.
+   *
+   * @param latitude       the origin latitude in decimal degrees
+   * @param longitude      the origin longitude in decimal degrees
+   * @param latitudes      the destination latitudes in decimal degrees
+   * @param longitudes     the destination longitudes in decimal degrees
+   * @param sourcePosition the destination start index
+   * @param target         the array receiving the distances in meters
+   * @param targetPosition the target start index
+   * @param length         the number of distances
+   */
+  public static void distanceEquirectangular(double latitude, double longitude, double[] latitudes, double[] longitudes, int sourcePosition,
+                                             double[] target, int targetPosition, int length) {
+    checkRange(latitudes, longitudes, sourcePosition, target, targetPosition, length);
+    for (int i = 0; i < length; i++) {
+      target[targetPosition + i] = equirectangular(latitude, longitude, latitudes[sourcePosition + i], longitudes[sourcePosition + i]);
+    }
+  }
+
+  /**
+   * Haversine distance matrix between two sets of points. The distance from
+   * origin {@code i} to destination {@code j} is written to
+   * {@code target[i * destinationLatitudes.length + j]} (row major).
+   *
+   * @param originLatitudes       the origin latitudes in decimal degrees
+   * @param originLongitudes      the origin longitudes in decimal degrees
+   * @param destinationLatitudes  the destination latitudes in decimal degrees
+   * @param destinationLongitudes the destination longitudes in decimal degrees
+   * @param target                the array receiving the distances in meters,
+   *                              of length at least origins x destinations
+   */
+  public static void distanceMatrix(double[] originLatitudes, double[] originLongitudes,
+                                    double[] destinationLatitudes, double[] destinationLongitudes, double[] target) {
+    int rows = originLatitudes.length;
+    int columns = destinationLatitudes.length;
+    checkMatrix(originLatitudes, originLongitudes, destinationLatitudes, destinationLongitudes, target);
+    /**
+     * Convert the destination latitudes once rather than once per row.
+     */
+    double[] phi2 = new double[columns];
+    double[] cosPhi2 = new double[columns];
+    for (int j = 0; j < columns; j++) {
+      phi2[j] = Math.toRadians(destinationLatitudes[j]);
+      cosPhi2[j] = Math.cos(phi2[j]);
+    }
+    for (int i = 0; i < rows; i++) {
+      double phi1 = Math.toRadians(originLatitudes[i]);
+      double cosPhi1 = Math.cos(phi1);
+      double longitude = originLongitudes[i];
+      int offset = i * columns;
+      for (int j = 0; j < columns; j++) {
+        target[offset + j] = haversine(phi1, cosPhi1, phi2[j], cosPhi2[j], Math.toRadians(destinationLongitudes[j] - longitude));
+      }
+    }
+  }
+
+  /**
+   * Equirectangular distance matrix between two sets of points. See
+   * {@link #distanceMatrix(double[], double[], double[], double[], double[])}
+   * for the layout and the class description for the error bounds.
+   *
+   * @param originLatitudes       the origin latitudes in decimal degrees
+   * @param originLongitudes      the origin longitudes in decimal degrees
+   * @param destinationLatitudes  the destination latitudes in decimal degrees
+   * @param destinationLongitudes the destination longitudes in decimal degrees
+   * @param target                the array receiving the distances in meters,
+   *                              of length at least origins x destinations
+   */
+  public static void distanceMatrixEquirectangular(double[] originLatitudes, double[] originLongitudes,
+                                                   double[] destinationLatitudes, double[] destinationLongitudes, double[] target) {
+    int rows = originLatitudes.length;
+    int columns = destinationLatitudes.length;
+    checkMatrix(originLatitudes, originLongitudes, destinationLatitudes, destinationLongitudes, target);
+    for (int i = 0; i < rows; i++) {
+      double latitude = originLatitudes[i];
+      double longitude = originLongitudes[i];
+      int offset = i * columns;
+      for (int j = 0; j < columns; j++) {
+        target[offset + j] = equirectangular(latitude, longitude, destinationLatitudes[j], destinationLongitudes[j]);
+      }
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Kernels">
+  /**
+   * The haversine kernel.
+   *
+   * @param phi1    the first latitude in radians
+   * @param cosPhi1 the cosine of the first latitude
+   * @param phi2    the second latitude in radians
+   * @param cosPhi2 the cosine of the second latitude
+   * @param lambda  the longitude difference in radians
+   * @return the distance in meters
+   */
+  private static double haversine(double phi1, double cosPhi1, double phi2, double cosPhi2, double lambda) {
+    double sinPhi = Math.sin((phi2 - phi1) / 2);
+    double sinLambda = Math.sin(lambda / 2);
+    double a = sinPhi * sinPhi + cosPhi1 * cosPhi2 * sinLambda * sinLambda;
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * The equirectangular kernel. The longitude difference is wrapped to [-180,
+   * +180] so that paths across the anti-meridian are measured the short way.
+   *
+   * @param latitude1  the first latitude in decimal degrees
+   * @param longitude1 the first longitude in decimal degrees
+   * @param latitude2  the second latitude in decimal degrees
+   * @param longitude2 the second longitude in decimal degrees
+   * @return the approximate distance in meters
+   */
+  private static double equirectangular(double latitude1, double longitude1, double latitude2, double longitude2) {
+    double x = Math.toRadians(Position.normalizeLongitude(longitude2 - longitude1)) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+    double y = Math.toRadians(latitude2 - latitude1);
+    return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+  }
+
+  private static void checkRange(double[] latitudes, double[] longitudes, int sourcePosition, double[] target, int targetPosition, int length) {
+    if (length < 0 || sourcePosition < 0 || targetPosition < 0
+      || sourcePosition > Math.min(latitudes.length, longitudes.length) - length || targetPosition > target.length - length) {
+      throw new ArrayIndexOutOfBoundsException("Range [" + sourcePosition + ", " + targetPosition + ", " + length
+        + "] out of bounds for arrays of length " + latitudes.length + ", " + longitudes.length + ", " + target.length);
+    }
+  }
+
+  private static void checkMatrix(double[] originLatitudes, double[] originLongitudes,
+                                  double[] destinationLatitudes, double[] destinationLongitudes, double[] target) {
+    if (originLongitudes.length != originLatitudes.length || destinationLongitudes.length != destinationLatitudes.length) {
+      throw new IllegalArgumentException("Latitude and longitude arrays must be the same length");
+    }
+    if ((long) originLatitudes.length * destinationLatitudes.length > target.length) {
+      throw new ArrayIndexOutOfBoundsException("Target length " + target.length + " is less than "
+        + originLatitudes.length + " x " + destinationLatitudes.length);
+    }
+  }// </editor-fold>
+
+}
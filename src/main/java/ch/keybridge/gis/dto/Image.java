@@ -22,6 +22,11 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 import java.time.ZonedDateTime;
 import java.util.Objects;
 import javax.imageio.ImageIO;
@@ -42,7 +47,18 @@ import org.locationtech.jts.geom.Polygon;
 @XmlRootElement(name = "Image")
 @XmlType(name = "Image")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Image {
+public class Image implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
+
+  private static final int WIDTH = 1;
+  private static final int HEIGHT = 1 << 1;
+  private static final int SIZE = 1 << 2;
+  private static final int ENVELOPE = 1 << 3;
 
   /**
    * The ID for the image.
@@ -419,6 +435,73 @@ public class Image {
     return envelope.getMinX();
   }//</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="Serialization">
+  /**
+   * Write the text values, a bit field of the numeric values present, the
+   * present values as primitives and the image data as a length prefixed byte
+   * array.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeObject(id);
+    out.writeObject(name);
+    out.writeObject(description);
+    out.writeObject(category);
+    out.writeObject(dateCreated);
+    out.writeObject(mimeType);
+    out.writeObject(url);
+    out.writeByte((width != null ? WIDTH : 0)
+      | (height != null ? HEIGHT : 0)
+      | (size != null ? SIZE : 0)
+      | (envelope != null ? ENVELOPE : 0));
+    if (width != null) {
+      out.writeInt(width);
+    }
+    if (height != null) {
+      out.writeInt(height);
+    }
+    if (size != null) {
+      out.writeInt(size);
+    }
+    if (envelope != null) {
+      out.writeDouble(envelope.getMinX());
+      out.writeDouble(envelope.getMaxX());
+      out.writeDouble(envelope.getMinY());
+      out.writeDouble(envelope.getMaxY());
+    }
+    out.writeInt(image == null ? -1 : image.length);
+    if (image != null) {
+      out.write(image);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    id = (String) in.readObject();
+    name = (String) in.readObject();
+    description = (String) in.readObject();
+    category = (String) in.readObject();
+    dateCreated = (ZonedDateTime) in.readObject();
+    mimeType = (String) in.readObject();
+    url = (String) in.readObject();
+    int present = in.readByte();
+    width = (present & WIDTH) != 0 ? in.readInt() : null;
+    height = (present & HEIGHT) != 0 ? in.readInt() : null;
+    size = (present & SIZE) != 0 ? in.readInt() : null;
+    if ((present & ENVELOPE) != 0) {
+      envelope = new Envelope(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+    int length = in.readInt();
+    if (length < -1) {
+      throw new InvalidObjectException("Invalid image length " + length);
+    }
+    if (length >= 0) {
+      image = new byte[length];
+      in.readFully(image);
+    }
+  }//</editor-fold>
+
   /**
    * Convert this Image to a Feature.
    *
@@ -18,6 +18,12 @@
  */
 package ch.keybridge.gis.dto;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -36,7 +42,13 @@ import javax.xml.bind.annotation.*;
 @XmlRootElement(name = "ImageCollection")
 @XmlType(name = "ImageCollection")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ImageCollection {
+public class ImageCollection implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
 
   /**
    * Description of the image.
@@ -91,6 +103,39 @@ public class ImageCollection {
     this.category = category;
   }
 
+  /**
+   * Write the description, category and the images, which have their own
+   * compact form.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeObject(description);
+    out.writeObject(category);
+    out.writeInt(images == null ? -1 : images.size());
+    if (images != null) {
+      for (Image image : images) {
+        out.writeObject(image);
+      }
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    description = (String) in.readObject();
+    category = (String) in.readObject();
+    int count = in.readInt();
+    if (count < -1) {
+      throw new InvalidObjectException("Invalid image count " + count);
+    }
+    if (count >= 0) {
+      images = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        images.add((Image) in.readObject());
+      }
+    }
+  }
+
   @Override
   public int hashCode() {
     int hash = 5;
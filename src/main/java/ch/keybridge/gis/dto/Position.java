@@ -21,14 +21,23 @@ package ch.keybridge.gis.dto;
 import ch.keybridge.xml.adapter.XmlDouble02PrecisionAdapter;
 import ch.keybridge.xml.adapter.XmlDouble06PrecisionAdapter;
 import ch.keybridge.xml.adapter.XmlMapDoublesAdapter;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import javax.xml.bind.annotation.*;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import org.locationtech.jts.geom.Coordinate;
@@ -91,6 +100,12 @@ import org.locationtech.jts.geom.PrecisionModel;
  * If the elevation was not measured by GPS but rather has been calculated
  * according to a digital elevation model then the elevation model must be
  * indicated in the x-elevationModel attribute.
+ * <p>
+ * <strong>Storage</strong> Numeric values are stored as primitives with a
+ * presence bit field, so that a position carries no boxed values. The boxed
+ * getters and setters retain their null (not available) semantics; the
+ * primitive {@code getXxxValue()} getters return NaN for an unset value and do
+ * not allocate. The XML form is unchanged.
  *
  * @see <a href="http://www.w3.org/TR/geolocation-API/">Geolocation API
  * Specification</a>
@@ -102,11 +117,15 @@ import org.locationtech.jts.geom.PrecisionModel;
  * @author jesse
  */
 @XmlRootElement(name = "Position")
-@XmlType(name = "Position")
+@XmlType(name = "Position", propOrder = {"name", "xmlLatitude", "xmlLongitude", "xmlElevation", "xmlHeading", "xmlSpeed", "datum", "xmlDomTimeStamp", "xmlAccuracyHorizontal", "xmlAccuracyVertical", "source", "xmlHaat", "xmlRadialHaat"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Position implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 3L;
+  /**
+   * No fields are serialized by reflection; see {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
   /**
    * 6.
    * <p>
@@ -118,6 +137,39 @@ public class Position implements Serializable {
    * degrees</a>
    */
   public static final int SCALE_COORDINATE = 6;
+  /**
+   * The shared geometry factory used to convert positions to POINT geometries.
+   * The precision model preserves {@value #SCALE_COORDINATE} decimal places.
+   * <p>
+   * A GeometryFactory is immutable and thread safe. Use this instance rather
+   * than creating a new factory for each conversion.
+   *
+   * @since v4.1.0 added 10/16/20
+   */
+  public static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(Math.pow(10, SCALE_COORDINATE)));
+
+  /**
+   * Presence bit flags. Numeric values are stored as primitives; a set bit
+   * indicates that the corresponding value is present (not null).
+   */
+  private static final short LATITUDE = 1;
+  private static final short LONGITUDE = 1 << 1;
+  private static final short ELEVATION = 1 << 2;
+  private static final short HEADING = 1 << 3;
+  private static final short SPEED = 1 << 4;
+  private static final short DOM_TIMESTAMP = 1 << 5;
+  private static final short ACCURACY_HORIZONTAL = 1 << 6;
+  private static final short ACCURACY_VERTICAL = 1 << 7;
+  private static final short HAAT = 1 << 8;
+  /**
+   * The equality grid cell size in decimal degrees: 0.0001 degree,
+   * approximately 11.1 meter at the equator. See {@link #equals(Object)}.
+   */
+  public static final double EQUALITY_GRID = 0.0001;
+  /**
+   * Key value used for an unset coordinate in equality and hash computation.
+   */
+  private static final long UNSET_KEY = Long.MIN_VALUE;
 
   /**
    * A free text name or description of the position.
@@ -132,10 +184,8 @@ public class Position implements Serializable {
    * the number format '00.000000' ranging between the values of -90.0 and
    * +90.0.
    */
-  @XmlElement(name = "Latitude", required = true)
-  @XmlJavaTypeAdapter(XmlDouble06PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble06PrecisionAdapter.Serializer.class)
-  private Double latitude;
+  @XmlTransient
+  private double latitude = Double.NaN;
   /**
    * Longitude in decimal degrees (WGS84) datum.
    * <p>
@@ -143,10 +193,8 @@ public class Position implements Serializable {
    * the number format '000.000000' ranging between the values of 0.0 and
    * +360.0.
    */
-  @XmlElement(name = "Longitude", required = true)
-  @XmlJavaTypeAdapter(XmlDouble06PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble06PrecisionAdapter.Serializer.class)
-  private Double longitude;
+  @XmlTransient
+  private double longitude = Double.NaN;
   /**
    * Elevation height in meters (WGS84 datum) above mean sea level, or null if
    * not available.
@@ -156,10 +204,8 @@ public class Position implements Serializable {
    * cannot provide elevation information, the value of this attribute must be
    * null. Number precision is one significant digit. e.g. '0.0'.
    */
-  @XmlElement(name = "Elevation")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double elevation;
+  @XmlTransient
+  private double elevation = Double.NaN;
   /**
    * Denotes the direction of travel of the reporting device in degrees counting
    * clockwise relative to the true north.
@@ -177,10 +223,8 @@ public class Position implements Serializable {
    * then the value of the heading attribute must be NaN. Heading is noted in
    * degrees from 0 to 360 with 0 as True North.
    */
-  @XmlElement(name = "Heading")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double heading;
+  @XmlTransient
+  private double heading = Double.NaN;
   /**
    * Denotes the magnitude of the horizontal component of the reporting device's
    * current velocity measured in meters per second.
@@ -194,10 +238,8 @@ public class Position implements Serializable {
    * of this attribute must be null. Otherwise, the value of the speed attribute
    * must be a non-negative real number.
    */
-  @XmlElement(name = "Speed")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double speed;
+  @XmlTransient
+  private double speed = Double.NaN;
 
   /**
    * The Geodetic datum in which the latitude and longitude are measured. Unless
@@ -230,8 +272,8 @@ public class Position implements Serializable {
    * @see <a
    * href="http://www.w3.org/TR/DOM-Level-3-Core/core.html#Core-DOMTimeStamp">DOMTimeStamp</a>
    */
-  @XmlAttribute(name = "domTimeStamp")
-  private Long domTimeStamp;
+  @XmlTransient
+  private long domTimeStamp;
   /**
    * The horizontal accuracy of the position in meters, or null if not
    * available.
@@ -242,10 +284,8 @@ public class Position implements Serializable {
    * be a non-negative real number. Number precision is one significant digit.
    * e.g. '0.0'.
    */
-  @XmlAttribute(name = "accuracyHorizontal")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double accuracyHorizontal;
+  @XmlTransient
+  private double accuracyHorizontal = Double.NaN;
   /**
    * The vertical accuracy of the position in meters, or null if not available.
    * <p>
@@ -256,10 +296,8 @@ public class Position implements Serializable {
    * attribute must be a non-negative real number. Number precision is one
    * significant digit. e.g. '0.0'.
    */
-  @XmlAttribute(name = "accuracyVertical")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double accuracyVertical;
+  @XmlTransient
+  private double accuracyVertical = Double.NaN;
 
   /**
    * The source for this position information. For DEM service this is the
@@ -278,22 +316,33 @@ public class Position implements Serializable {
    * broadcasts (VHF and UHF in particular, as they are line of sight
    * transmissions).
    */
-  @XmlElement(name = "Haat")
-  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
-//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
-  private Double haat;
+  @XmlTransient
+  private double haat = Double.NaN;
 
   /**
-   * The radial Height above average terrain (HAAT) in meters.
+   * The radial Height above average terrain (HAAT) azimuths in degrees, in
+   * ascending order. Null if no radial HAAT is set.
    * <p>
-   * This is a ordered map of the HAAT values calculated in each of 360 radial
-   * directions around a position.
+   * The radial HAAT values calculated in up to 360 radial directions around a
+   * position are stored as a pair of primitive arrays rather than a map, which
+   * costs a tree node and two boxed values per radial.
    */
-  @XmlElement(name = "RadialHat")
-  @XmlJavaTypeAdapter(XmlMapDoublesAdapter.class)
-//  @JsonSerialize(using = JsonMapOfDoublesAdapter.Serializer.class)
-//  @JsonDeserialize(using = JsonMapOfDoublesAdapter.Deserializer.class)
-  private Map<Double, Double> radialHaat;
+  @XmlTransient
+  private double[] radialAzimuth;
+  /**
+   * The radial Height above average terrain (HAAT) in meters at each of the
+   * radial azimuths. Null if no radial HAAT is set.
+   */
+  @XmlTransient
+  private double[] radialHaat;
+
+  /**
+   * Bit field indicating which of the primitive numeric values are present.
+   * Unset values read as null from the boxed getters and as NaN from the
+   * primitive getters.
+   */
+  @XmlTransient
+  private short present;
 
   /**
    * Default no argument constructor.
@@ -377,27 +426,39 @@ public class Position implements Serializable {
     /**
      * Null check to prevent null point exceptions.
      */
-    if (latitude == null || longitude == null) {
+    if (!isComplete()) {
       return;
     }
-    /**
-     * Normalize the latitude to range between [-90, +90].
-     */
-    double latDouble = latitude % 180;
-    latDouble = (latDouble + 180) % 180;
-    if (latDouble > 90) {
-      latDouble -= 180;
-    }
-    setLatitude(latDouble);
-    /**
-     * Normalize the longitude to range between [-180, +180]
-     */
-    double lonDouble = longitude % 360;
-    lonDouble = (lonDouble + 360) % 360;
-    if (lonDouble > 180) {
-      lonDouble -= 360;
-    }
-    setLongitude(lonDouble);
+    setLatitude(normalizeLatitude(latitude));
+    setLongitude(normalizeLongitude(longitude));
+  }
+
+  /**
+   * Normalize a latitude value to range between [-90, +90].
+   * <p>
+   * Values in the range (-90, +90] are returned unchanged. Other values are
+   * wrapped modulo 180 degrees into the range (-90, +90].
+   *
+   * @param latitude a latitude value in decimal degrees
+   * @return the normalized latitude
+   * @since v4.1.0 added 10/16/20
+   */
+  public static double normalizeLatitude(double latitude) {
+    return latitude - 180 * Math.ceil((latitude - 90) / 180);
+  }
+
+  /**
+   * Normalize a longitude value to range between [-180, +180].
+   * <p>
+   * Values in the range (-180, +180] are returned unchanged. Other values are
+   * wrapped modulo 360 degrees into the range (-180, +180].
+   *
+   * @param longitude a longitude value in decimal degrees
+   * @return the normalized longitude
+   * @since v4.1.0 added 10/16/20
+   */
+  public static double normalizeLongitude(double longitude) {
+    return longitude - 360 * Math.ceil((longitude - 180) / 360);
   }// </editor-fold>
 
   public String getName() {
@@ -413,7 +474,7 @@ public class Position implements Serializable {
    * @return The latitude geographic coordinates specified in decimal degrees.
    */
   public Double getLatitude() {
-    return latitude;
+    return isPresent(LATITUDE) ? latitude : null;
   }
 
   /**
@@ -421,14 +482,37 @@ public class Position implements Serializable {
    *                 degrees.
    */
   public void setLatitude(Double latitude) {
+    if (latitude == null) {
+      clear(LATITUDE);
+    } else {
+      setLatitude(latitude.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the latitude in decimal degrees, NaN if not set
+   */
+  public double getLatitudeValue() {
+    return latitude;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param latitude the latitude in decimal degrees
+   */
+  public void setLatitude(double latitude) {
     this.latitude = latitude;
+    this.present |= LATITUDE;
   }
 
   /**
    * @return The longitude geographic coordinates specified in decimal degrees.
    */
   public Double getLongitude() {
-    return longitude;
+    return isPresent(LONGITUDE) ? longitude : null;
   }
 
   /**
@@ -436,7 +520,30 @@ public class Position implements Serializable {
    *                  degrees.
    */
   public void setLongitude(Double longitude) {
+    if (longitude == null) {
+      clear(LONGITUDE);
+    } else {
+      setLongitude(longitude.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the longitude in decimal degrees, NaN if not set
+   */
+  public double getLongitudeValue() {
+    return longitude;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param longitude the longitude in decimal degrees
+   */
+  public void setLongitude(double longitude) {
     this.longitude = longitude;
+    this.present |= LONGITUDE;
   }
 
   /**
@@ -444,7 +551,7 @@ public class Position implements Serializable {
    *         meters.
    */
   public Double getAccuracyHorizontal() {
-    return accuracyHorizontal;
+    return isPresent(ACCURACY_HORIZONTAL) ? accuracyHorizontal : null;
   }
 
   /**
@@ -452,7 +559,30 @@ public class Position implements Serializable {
    *                           accuracyHorizontal in meters.
    */
   public void setAccuracyHorizontal(Double accuracyHorizontal) {
+    if (accuracyHorizontal == null) {
+      clear(ACCURACY_HORIZONTAL);
+    } else {
+      setAccuracyHorizontal(accuracyHorizontal.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the horizontal accuracy in meters, NaN if not set
+   */
+  public double getAccuracyHorizontalValue() {
+    return accuracyHorizontal;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param accuracyHorizontal the horizontal accuracy in meters
+   */
+  public void setAccuracyHorizontal(double accuracyHorizontal) {
     this.accuracyHorizontal = accuracyHorizontal;
+    this.present |= ACCURACY_HORIZONTAL;
   }
 
   /**
@@ -460,7 +590,7 @@ public class Position implements Serializable {
    *         corresponds to a 95% confidence level.
    */
   public Double getAccuracyVertical() {
-    return accuracyVertical;
+    return isPresent(ACCURACY_VERTICAL) ? accuracyVertical : null;
   }
 
   /**
@@ -468,7 +598,30 @@ public class Position implements Serializable {
    *                         meters and corresponds to a 95% confidence level.
    */
   public void setAccuracyVertical(Double accuracyVertical) {
+    if (accuracyVertical == null) {
+      clear(ACCURACY_VERTICAL);
+    } else {
+      setAccuracyVertical(accuracyVertical.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the vertical accuracy in meters, NaN if not set
+   */
+  public double getAccuracyVerticalValue() {
+    return accuracyVertical;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param accuracyVertical the vertical accuracy in meters
+   */
+  public void setAccuracyVertical(double accuracyVertical) {
     this.accuracyVertical = accuracyVertical;
+    this.present |= ACCURACY_VERTICAL;
   }
 
   /**
@@ -476,7 +629,7 @@ public class Position implements Serializable {
    *         specified in meters above the [DATUM (default WGS84)] ellipsoid.
    */
   public Double getElevation() {
-    return elevation;
+    return isPresent(ELEVATION) ? elevation : null;
   }
 
   /**
@@ -485,7 +638,30 @@ public class Position implements Serializable {
    *                  WGS84)] ellipsoid.
    */
   public void setElevation(Double elevation) {
+    if (elevation == null) {
+      clear(ELEVATION);
+    } else {
+      setElevation(elevation.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the elevation in meters, NaN if not set
+   */
+  public double getElevationValue() {
+    return elevation;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param elevation the elevation in meters
+   */
+  public void setElevation(double elevation) {
     this.elevation = elevation;
+    this.present |= ELEVATION;
   }
 
   /**
@@ -494,7 +670,7 @@ public class Position implements Serializable {
    *         relative to the true north.
    */
   public Double getHeading() {
-    return heading;
+    return isPresent(HEADING) ? heading : null;
   }
 
   /**
@@ -503,7 +679,31 @@ public class Position implements Serializable {
    *                counting clockwise relative to the true north.
    */
   public void setHeading(Double heading) {
+    if (heading == null) {
+      clear(HEADING);
+    } else {
+      setHeading(heading.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the heading in degrees, or NaN if not set or if the device is
+   *         stationary; use {@link #getHeading()} to tell these apart
+   */
+  public double getHeadingValue() {
+    return heading;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param heading the heading in degrees, NaN if stationary
+   */
+  public void setHeading(double heading) {
     this.heading = heading;
+    this.present |= HEADING;
   }
 
   /**
@@ -511,7 +711,7 @@ public class Position implements Serializable {
    *         second.
    */
   public Double getSpeed() {
-    return speed;
+    return isPresent(SPEED) ? speed : null;
   }
 
   /**
@@ -519,7 +719,30 @@ public class Position implements Serializable {
    *              second.
    */
   public void setSpeed(Double speed) {
+    if (speed == null) {
+      clear(SPEED);
+    } else {
+      setSpeed(speed.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the speed in meters per second, NaN if not set
+   */
+  public double getSpeedValue() {
+    return speed;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param speed the speed in meters per second
+   */
+  public void setSpeed(double speed) {
     this.speed = speed;
+    this.present |= SPEED;
   }
 
   /**
@@ -527,7 +750,7 @@ public class Position implements Serializable {
    *         java.util.Date.
    */
   public Date getDomTimeStamp() {
-    if (domTimeStamp != null) {
+    if (isPresent(DOM_TIMESTAMP)) {
       return new Date(domTimeStamp);
     }
     return null;
@@ -539,7 +762,7 @@ public class Position implements Serializable {
    */
   public void setDomTimeStamp(Date date) {
     if (date != null) {
-      this.domTimeStamp = date.getTime();
+      setDomTimeStampMillis(date.getTime());
     }
   }
 
@@ -550,17 +773,19 @@ public class Position implements Serializable {
    */
   public void setDomTimeStamp(ZonedDateTime date) {
     if (date != null) {
-      this.domTimeStamp = date.toInstant().toEpochMilli();
+      setDomTimeStampMillis(date.toInstant().toEpochMilli());
     }
   }
 
   /**
    * Get the timestamp as a zoned date time. The time zone is set to UTC.
    *
-   * @return the time when the position object was acquired.
+   * @return the time when the position object was acquired, null if not set
    */
   public ZonedDateTime getDomTimeStampZonedDateTime() {
-    return ZonedDateTime.ofInstant(Instant.ofEpochMilli(domTimeStamp), ZoneId.of("UTC"));
+    return isPresent(DOM_TIMESTAMP)
+           ? ZonedDateTime.ofInstant(Instant.ofEpochMilli(domTimeStamp), ZoneId.of("UTC"))
+           : null;
   }
 
   /**
@@ -568,7 +793,7 @@ public class Position implements Serializable {
    *         DOMTimeStamp (a number of milliseconds).
    */
   public Long getDomTimeStampMillis() {
-    return domTimeStamp;
+    return isPresent(DOM_TIMESTAMP) ? domTimeStamp : null;
   }
 
   /**
@@ -576,7 +801,23 @@ public class Position implements Serializable {
    *                     as a DOMTimeStamp (a number of milliseconds)
    */
   public void setDomTimeStampMillis(Long domTimeStamp) {
+    if (domTimeStamp == null) {
+      this.domTimeStamp = 0;
+      this.present &= ~DOM_TIMESTAMP;
+    } else {
+      setDomTimeStampMillis(domTimeStamp.longValue());
+    }
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param domTimeStamp Time when the Position object was acquired represented
+   *                     as a DOMTimeStamp (a number of milliseconds)
+   */
+  public void setDomTimeStampMillis(long domTimeStamp) {
     this.domTimeStamp = domTimeStamp;
+    this.present |= DOM_TIMESTAMP;
   }
 
   /**
@@ -605,7 +846,7 @@ public class Position implements Serializable {
    * @return the Height above average terrain (HAAT) in meters
    */
   public Double getHaat() {
-    return haat;
+    return isPresent(HAAT) ? haat : null;
   }
 
   /**
@@ -614,31 +855,142 @@ public class Position implements Serializable {
    * @param haat Height above average terrain (HAAT) in meters
    */
   public void setHaat(Double haat) {
+    if (haat == null) {
+      clear(HAAT);
+    } else {
+      setHaat(haat.doubleValue());
+    }
+  }
+
+  /**
+   * Primitive getter. This does not allocate.
+   *
+   * @return the HAAT in meters, NaN if not set
+   */
+  public double getHaatValue() {
+    return haat;
+  }
+
+  /**
+   * Primitive setter. This does not allocate.
+   *
+   * @param haat the HAAT in meters
+   */
+  public void setHaat(double haat) {
     this.haat = haat;
+    this.present |= HAAT;
   }
 
   /**
    * Get the radial Height above average terrain (HAAT) in meters.
    * <p>
    * This is a ordered map of the HAAT values calculated in each of 360 radial
-   * directions around a position.
+   * directions around a position, keyed by azimuth.
+   * <p>
+   * The returned map is a live view of the radial HAAT stored in this
+   * position: changes to the map are written to this position. Entries are
+   * iterated in ascending azimuth order and are read only; use {@code put} to
+   * change a value. Null keys and values are not supported.
    *
-   * @return the radial HAAT as a TreeMap
+   * @return the radial HAAT as a sorted map view
    */
   public Map<Double, Double> getRadialHaat() {
-    if (radialHaat == null) {
-      radialHaat = new TreeMap<>();
-    }
-    return radialHaat;
+    return new RadialHaatMap();
   }
 
   /**
-   * Set the radial Height above average terrain (HAAT) in meters.
+   * Set the radial Height above average terrain (HAAT) in meters. The map
+   * values are copied. Entries having a null key or value are ignored.
    *
-   * @param radialHaat the radial HAAT
+   * @param radialHaat the radial HAAT, keyed by azimuth
    */
   public void setRadialHaat(Map<Double, Double> radialHaat) {
-    this.radialHaat = radialHaat != null ? new TreeMap<>(radialHaat) : null;
+    if (radialHaat == null || radialHaat.isEmpty()) {
+      this.radialAzimuth = null;
+      this.radialHaat = null;
+      return;
+    }
+    double[] azimuths = new double[radialHaat.size()];
+    double[] haats = new double[radialHaat.size()];
+    int count = 0;
+    for (Map.Entry<Double, Double> entry : radialHaat.entrySet()) {
+      if (entry.getKey() != null && entry.getValue() != null) {
+        azimuths[count] = entry.getKey();
+        haats[count++] = entry.getValue();
+      }
+    }
+    setRadialHaat(azimuths, haats, count);
+  }
+
+  /**
+   * Set the radial Height above average terrain (HAAT) in meters from a pair
+   * of arrays. The arrays are copied and sorted by azimuth; if an azimuth is
+   * repeated the last value is kept.
+   *
+   * @param azimuths the radial azimuths in degrees [0, 360)
+   * @param haats    the HAAT in meters at each azimuth
+   * @since v4.1.0 added 10/16/20
+   */
+  public void setRadialHaat(double[] azimuths, double[] haats) {
+    if (azimuths.length != haats.length) {
+      throw new IllegalArgumentException("Azimuth and HAAT arrays must be the same length");
+    }
+    setRadialHaat(azimuths.clone(), haats.clone(), azimuths.length);
+  }
+
+  /**
+   * Get the number of radial HAAT values.
+   *
+   * @return the number of radials, zero if no radial HAAT is set
+   * @since v4.1.0 added 10/16/20
+   */
+  public int getRadialCount() {
+    return radialAzimuth == null ? 0 : radialAzimuth.length;
+  }
+
+  /**
+   * Get the Height above average terrain (HAAT) in meters at an arbitrary
+   * azimuth, linearly interpolated between the two nearest radials. The
+   * interpolation wraps around north, so that an azimuth between the last and
+   * the first radial is interpolated between those two.
+   * <p>
+   * The radials are located by binary search. This method does not allocate.
+   *
+   * @param azimuth the azimuth in degrees, normalized to [0, 360)
+   * @return the interpolated HAAT in meters, NaN if no radial HAAT is set
+   * @since v4.1.0 added 10/16/20
+   */
+  public double getHaatAt(double azimuth) {
+    if (radialAzimuth == null || Double.isNaN(azimuth)) {
+      return Double.NaN;
+    }
+    int count = radialAzimuth.length;
+    if (count == 1) {
+      return radialHaat[0];
+    }
+    double value = normalizeToAzimuth(azimuth);
+    int index = Arrays.binarySearch(radialAzimuth, value);
+    if (index >= 0) {
+      return radialHaat[index];
+    }
+    int upper = -index - 1;
+    int lower = upper - 1;
+    double lowerAzimuth;
+    double upperAzimuth;
+    if (upper == 0) {
+      lower = count - 1;
+      lowerAzimuth = radialAzimuth[lower] - 360;
+      upperAzimuth = radialAzimuth[upper];
+    } else if (upper == count) {
+      upper = 0;
+      lowerAzimuth = radialAzimuth[lower];
+      upperAzimuth = radialAzimuth[upper] + 360;
+    } else {
+      lowerAzimuth = radialAzimuth[lower];
+      upperAzimuth = radialAzimuth[upper];
+    }
+    double fraction = (value - lowerAzimuth) / (upperAzimuth - lowerAzimuth);
+    return radialHaat[lower] + fraction * (radialHaat[upper] - radialHaat[lower]);
   }
 
   public String getSource() {
@@ -649,30 +1001,524 @@ public class Position implements Serializable {
     this.source = source;
   }// </editor-fold>
 
+  // <editor-fold defaultstate="collapsed" desc="Presence and JAXB accessors">
+  /**
+   * Determine whether a numeric value is present.
+   *
+   * @param flag the value presence flag
+   * @return TRUE if the value is set
+   */
+  private boolean isPresent(short flag) {
+    return (present & flag) != 0;
+  }
+
+  /**
+   * Clear a primitive double value. The stored value is reset to NaN so that
+   * arithmetic on an unset value propagates NaN.
+   *
+   * @param flag the value presence flag
+   */
+  private void clear(short flag) {
+    present &= ~flag;
+    switch (flag) {
+      case LATITUDE:
+        latitude = Double.NaN;
+        break;
+      case LONGITUDE:
+        longitude = Double.NaN;
+        break;
+      case ELEVATION:
+        elevation = Double.NaN;
+        break;
+      case HEADING:
+        heading = Double.NaN;
+        break;
+      case SPEED:
+        speed = Double.NaN;
+        break;
+      case ACCURACY_HORIZONTAL:
+        accuracyHorizontal = Double.NaN;
+        break;
+      case ACCURACY_VERTICAL:
+        accuracyVertical = Double.NaN;
+        break;
+      case HAAT:
+        haat = Double.NaN;
+        break;
+      default:
+    }
+  }
+
+  /**
+   * JAXB accessors. The numeric values are stored as primitives and are bound
+   * to XML through these boxed properties so that an unset value is omitted
+   * from the XML exactly as a null field would be. All bound properties,
+   * including attributes, are listed in the type propOrder to preserve the
+   * original element and attribute order.
+   */
+  @XmlElement(name = "Latitude", required = true)
+  @XmlJavaTypeAdapter(XmlDouble06PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble06PrecisionAdapter.Serializer.class)
+  private Double getXmlLatitude() {
+    return getLatitude();
+  }
+
+  private void setXmlLatitude(Double latitude) {
+    setLatitude(latitude);
+  }
+
+  @XmlElement(name = "Longitude", required = true)
+  @XmlJavaTypeAdapter(XmlDouble06PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble06PrecisionAdapter.Serializer.class)
+  private Double getXmlLongitude() {
+    return getLongitude();
+  }
+
+  private void setXmlLongitude(Double longitude) {
+    setLongitude(longitude);
+  }
+
+  @XmlElement(name = "Elevation")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlElevation() {
+    return getElevation();
+  }
+
+  private void setXmlElevation(Double elevation) {
+    setElevation(elevation);
+  }
+
+  @XmlElement(name = "Heading")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlHeading() {
+    return getHeading();
+  }
+
+  private void setXmlHeading(Double heading) {
+    setHeading(heading);
+  }
+
+  @XmlElement(name = "Speed")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlSpeed() {
+    return getSpeed();
+  }
+
+  private void setXmlSpeed(Double speed) {
+    setSpeed(speed);
+  }
+
+  @XmlAttribute(name = "domTimeStamp")
+  private Long getXmlDomTimeStamp() {
+    return getDomTimeStampMillis();
+  }
+
+  private void setXmlDomTimeStamp(Long domTimeStamp) {
+    setDomTimeStampMillis(domTimeStamp);
+  }
+
+  @XmlAttribute(name = "accuracyHorizontal")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlAccuracyHorizontal() {
+    return getAccuracyHorizontal();
+  }
+
+  private void setXmlAccuracyHorizontal(Double accuracyHorizontal) {
+    setAccuracyHorizontal(accuracyHorizontal);
+  }
+
+  @XmlAttribute(name = "accuracyVertical")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlAccuracyVertical() {
+    return getAccuracyVertical();
+  }
+
+  private void setXmlAccuracyVertical(Double accuracyVertical) {
+    setAccuracyVertical(accuracyVertical);
+  }
+
+  @XmlElement(name = "Haat")
+  @XmlJavaTypeAdapter(XmlDouble02PrecisionAdapter.class)
+//  @JsonSerialize(using = JsonDouble02PrecisionAdapter.Serializer.class)
+  private Double getXmlHaat() {
+    return getHaat();
+  }
+
+  private void setXmlHaat(Double haat) {
+    setHaat(haat);
+  }
+
+  @XmlElement(name = "RadialHat")
+  @XmlJavaTypeAdapter(XmlMapDoublesAdapter.class)
+//  @JsonSerialize(using = JsonMapOfDoublesAdapter.Serializer.class)
+//  @JsonDeserialize(using = JsonMapOfDoublesAdapter.Deserializer.class)
+  private Map<Double, Double> getXmlRadialHaat() {
+    return radialAzimuth == null ? null : getRadialHaat();
+  }
+
+  private void setXmlRadialHaat(Map<Double, Double> radialHaat) {
+    setRadialHaat(radialHaat);
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Radial HAAT support">
+  /**
+   * Set the radial HAAT arrays. The arrays are sorted in place by azimuth
+   * (insertion sort, which is linear for already sorted input), repeated
+   * azimuths are removed keeping the last value, and the arrays are trimmed to
+   * the resulting length.
+   *
+   * @param azimuths the radial azimuths (not shared)
+   * @param haats    the radial HAAT values (not shared)
+   * @param count    the number of radials in the arrays
+   */
+  private void setRadialHaat(double[] azimuths, double[] haats, int count) {
+    for (int i = 1; i < count; i++) {
+      double azimuth = azimuths[i];
+      double haat = haats[i];
+      int j = i - 1;
+      while (j >= 0 && Double.compare(azimuths[j], azimuth) > 0) {
+        azimuths[j + 1] = azimuths[j];
+        haats[j + 1] = haats[j];
+        j--;
+      }
+      azimuths[j + 1] = azimuth;
+      haats[j + 1] = haat;
+    }
+    int length = 0;
+    for (int i = 0; i < count; i++) {
+      if (length > 0 && Double.compare(azimuths[length - 1], azimuths[i]) == 0) {
+        haats[length - 1] = haats[i];
+      } else {
+        azimuths[length] = azimuths[i];
+        haats[length++] = haats[i];
+      }
+    }
+    this.radialAzimuth = length == 0 ? null : length == azimuths.length ? azimuths : Arrays.copyOf(azimuths, length);
+    this.radialHaat = length == 0 ? null : length == haats.length ? haats : Arrays.copyOf(haats, length);
+  }
+
+  /**
+   * A sorted map view of the radial HAAT arrays. Lookups use binary search;
+   * insertion and removal copy the arrays, which is inexpensive for the few
+   * hundred radials of a HAAT profile.
+   */
+  private class RadialHaatMap extends AbstractMap<Double, Double> {
+
+    @Override
+    public int size() {
+      return getRadialCount();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Double get(Object key) {
+      int index = indexOf(key);
+      return index >= 0 ? radialHaat[index] : null;
+    }
+
+    @Override
+    public Double put(Double key, Double value) {
+      if (key == null || value == null) {
+        throw new NullPointerException("Radial HAAT azimuth and value are required");
+      }
+      int index = indexOf(key);
+      if (index >= 0) {
+        double previous = radialHaat[index];
+        radialHaat[index] = value;
+        return previous;
+      }
+      int count = getRadialCount();
+      int insert = count == 0 ? 0 : -index - 1;
+      double[] azimuths = new double[count + 1];
+      double[] haats = new double[count + 1];
+      if (count > 0) {
+        System.arraycopy(radialAzimuth, 0, azimuths, 0, insert);
+        System.arraycopy(radialHaat, 0, haats, 0, insert);
+        System.arraycopy(radialAzimuth, insert, azimuths, insert + 1, count - insert);
+        System.arraycopy(radialHaat, insert, haats, insert + 1, count - insert);
+      }
+      azimuths[insert] = key;
+      haats[insert] = value;
+      radialAzimuth = azimuths;
+      radialHaat = haats;
+      return null;
+    }
+
+    @Override
+    public Double remove(Object key) {
+      int index = indexOf(key);
+      if (index < 0) {
+        return null;
+      }
+      double previous = radialHaat[index];
+      removeAt(index);
+      return previous;
+    }
+
+    @Override
+    public void clear() {
+      radialAzimuth = null;
+      radialHaat = null;
+    }
+
+    @Override
+    public Set<Map.Entry<Double, Double>> entrySet() {
+      return new AbstractSet<Map.Entry<Double, Double>>() {
+        @Override
+        public Iterator<Map.Entry<Double, Double>> iterator() {
+          return new Iterator<Map.Entry<Double, Double>>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+              return next < getRadialCount();
+            }
+
+            @Override
+            public Map.Entry<Double, Double> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              last = next++;
+              return new AbstractMap.SimpleImmutableEntry<>(radialAzimuth[last], radialHaat[last]);
+            }
+
+            @Override
+            public void remove() {
+              if (last < 0) {
+                throw new IllegalStateException();
+              }
+              removeAt(last);
+              next = last;
+              last = -1;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return getRadialCount();
+        }
+      };
+    }
+
+    private int indexOf(Object key) {
+      return radialAzimuth == null || !(key instanceof Double) ? -1 : Arrays.binarySearch(radialAzimuth, (Double) key);
+    }
+
+    private void removeAt(int index) {
+      int count = radialAzimuth.length;
+      if (count == 1) {
+        clear();
+        return;
+      }
+      double[] azimuths = new double[count - 1];
+      double[] haats = new double[count - 1];
+      System.arraycopy(radialAzimuth, 0, azimuths, 0, index);
+      System.arraycopy(radialHaat, 0, haats, 0, index);
+      System.arraycopy(radialAzimuth, index + 1, azimuths, index, count - index - 1);
+      System.arraycopy(radialHaat, index + 1, haats, index, count - index - 1);
+      radialAzimuth = azimuths;
+      radialHaat = haats;
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Serialization">
+  /**
+   * Write the presence bit field followed by the present primitive values, the
+   * text values and the radial HAAT arrays. This avoids reflection and the
+   * boxed and unset values written by default serialization.
+   *
+   * @param out the output stream
+   * @throws IOException on write error
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.writeShort(present);
+    writeIfPresent(out, LATITUDE, latitude);
+    writeIfPresent(out, LONGITUDE, longitude);
+    writeIfPresent(out, ELEVATION, elevation);
+    writeIfPresent(out, HEADING, heading);
+    writeIfPresent(out, SPEED, speed);
+    writeIfPresent(out, ACCURACY_HORIZONTAL, accuracyHorizontal);
+    writeIfPresent(out, ACCURACY_VERTICAL, accuracyVertical);
+    writeIfPresent(out, HAAT, haat);
+    if (isPresent(DOM_TIMESTAMP)) {
+      out.writeLong(domTimeStamp);
+    }
+    out.writeObject(name);
+    out.writeObject(datum);
+    out.writeObject(source);
+    int count = radialAzimuth == null ? 0 : radialAzimuth.length;
+    out.writeInt(count);
+    for (int i = 0; i < count; i++) {
+      out.writeDouble(radialAzimuth[i]);
+      out.writeDouble(radialHaat[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    present = in.readShort();
+    /**
+     * Field initializers are not run on deserialization.
+     */
+    latitude = readIfPresent(in, LATITUDE);
+    longitude = readIfPresent(in, LONGITUDE);
+    elevation = readIfPresent(in, ELEVATION);
+    heading = readIfPresent(in, HEADING);
+    speed = readIfPresent(in, SPEED);
+    accuracyHorizontal = readIfPresent(in, ACCURACY_HORIZONTAL);
+    accuracyVertical = readIfPresent(in, ACCURACY_VERTICAL);
+    haat = readIfPresent(in, HAAT);
+    if (isPresent(DOM_TIMESTAMP)) {
+      domTimeStamp = in.readLong();
+    }
+    name = (String) in.readObject();
+    datum = (String) in.readObject();
+    source = (String) in.readObject();
+    int count = in.readInt();
+    if (count < 0) {
+      throw new InvalidObjectException("Invalid radial count " + count);
+    }
+    if (count > 0) {
+      double[] azimuths = new double[count];
+      double[] haats = new double[count];
+      for (int i = 0; i < count; i++) {
+        azimuths[i] = in.readDouble();
+        haats[i] = in.readDouble();
+      }
+      radialAzimuth = azimuths;
+      radialHaat = haats;
+    }
+  }
+
+  private void writeIfPresent(ObjectOutputStream out, short flag, double value) throws IOException {
+    if (isPresent(flag)) {
+      out.writeDouble(value);
+    }
+  }
+
+  private double readIfPresent(ObjectInputStream in, short flag) throws IOException {
+    return isPresent(flag) ? in.readDouble() : Double.NaN;
+  }// </editor-fold>
+
   /**
    * Convert this coordinate into a POINT geometry. The x, y, z ordinals are
    * configured with the longitude, latitude and elevation, respectively.
+   * <p>
+   * The point is created with the shared {@link #GEOMETRY_FACTORY}. The
+   * latitude and longitude are normalized in the returned point; this position
+   * is not modified.
    *
    * @return this coordinate as a POINT geometry
    */
   public Point asPoint() {
-    normalizeLatitudeAndLongitude();
-    return new GeometryFactory(new PrecisionModel(Math.pow(10, 6))).createPoint(elevation != null
-                                                                                ? new org.locationtech.jts.geom.Coordinate(longitude, latitude, elevation)
-                                                                                : new org.locationtech.jts.geom.Coordinate(longitude, latitude));
+    return asPoint(GEOMETRY_FACTORY);
+  }
+
+  /**
+   * Convert this coordinate into a POINT geometry created by the indicated
+   * geometry factory. The x, y, z ordinals are configured with the longitude,
+   * latitude and elevation, respectively.
+   * <p>
+   * Use this method to control the precision model, SRID or coordinate
+   * sequence implementation of the point. For example, a factory configured
+   * with {@code PackedCoordinateSequenceFactory.DOUBLE_FACTORY} stores each
+   * point as a single primitive array. Factories should be created once and
+   * reused. This position is not modified.
+   *
+   * @param geometryFactory the geometry factory
+   * @return this coordinate as a POINT geometry
+   * @since v4.1.0 added 10/16/20
+   */
+  public Point asPoint(GeometryFactory geometryFactory) {
+    return geometryFactory.createPoint(asCoordinate());
   }
 
   /**
    * Convert this coordinate into a JTS GISPosition. The x, y, z ordinals are
    * configured with the longitude, latitude and elevation, respectively.
+   * <p>
+   * The latitude and longitude are normalized in the returned coordinate; this
+   * position is not modified.
    *
    * @return this coordinate as a JTS GISPosition
    */
   public org.locationtech.jts.geom.Coordinate asCoordinate() {
-    normalizeLatitudeAndLongitude();
-    return elevation != null
-           ? new org.locationtech.jts.geom.Coordinate(longitude, latitude, elevation)
-           : new org.locationtech.jts.geom.Coordinate(longitude, latitude);
+    double x = normalizeLongitude(longitude);
+    double y = normalizeLatitude(latitude);
+    return isPresent(ELEVATION)
+           ? new org.locationtech.jts.geom.Coordinate(x, y, elevation)
+           : new org.locationtech.jts.geom.Coordinate(x, y);
+  }
+
+  /**
+   * Get the 64-bit cell id of this position at the indicated level. Positions
+   * in the same cell are near each other; the cell id is suitable as a hash
+   * key for proximity grouping. See {@link GeoCell}.
+   *
+   * @param level the cell level, 0 to {@link GeoCell#MAX_LEVEL}
+   * @return the cell id, {@link GeoCell#NONE} if this position is incomplete
+   * @since v4.1.0 added 10/16/20
+   */
+  public long getCellId(int level) {
+    return GeoCell.encode(this, level);
+  }
+
+  /**
+   * Get the haversine great-circle distance from this position to another
+   * position. See {@link GreatCircle}.
+   *
+   * @param position the other position
+   * @return the distance in meters, NaN if either position is incomplete
+   * @since v4.1.0 added 10/16/20
+   */
+  public double distanceTo(Position position) {
+    return position == null
+           ? Double.NaN
+           : GreatCircle.distance(latitude, longitude, position.latitude, position.longitude);
+  }
+
+  /**
+   * Get the initial bearing of the great-circle path from this position to
+   * another position. See {@link GreatCircle}.
+   *
+   * @param position the other position
+   * @return the azimuth in degrees [0, 360) clockwise from TRUE north, NaN if
+   *         either position is incomplete
+   * @since v4.1.0 added 10/16/20
+   */
+  public double bearingTo(Position position) {
+    return position == null
+           ? Double.NaN
+           : GreatCircle.bearing(latitude, longitude, position.latitude, position.longitude);
+  }
+
+  /**
+   * Get the position reached by travelling a distance along the great circle
+   * leaving this position at the indicated initial bearing. The new position
+   * has the same datum as this position. See {@link GreatCircle}.
+   *
+   * @param azimuth  the initial bearing in degrees clockwise from TRUE north
+   * @param distance the distance in meters
+   * @return a new position, empty if this position is incomplete
+   * @since v4.1.0 added 10/16/20
+   */
+  public Position destination(double azimuth, double distance) {
+    Position destination = GreatCircle.destination(latitude, longitude, azimuth, distance);
+    if (destination.isComplete()) {
+      destination.setDatum(datum);
+    }
+    return destination;
   }
 
   /**
@@ -682,46 +1528,167 @@ public class Position implements Serializable {
    * @return true if the latitude and longitude are not null or close to zero
    */
   public boolean isComplete() {
-    return latitude != null && longitude != null;
+    return isPresent(LATITUDE) && isPresent(LONGITUDE);
   }
 
   /**
-   * @return a hash code of the latitude and longitude
+   * Get an equality key for this position based upon the latitude and
+   * longitude rounded to the {@value #EQUALITY_GRID} degree grid. Grid keys
+   * are equal exactly when the positions are equal (see
+   * {@link #equals(Object)}).
+   * <p>
+   * The key captures the coordinates when it is taken; later changes to the
+   * position do not affect it.
+   *
+   * @return the grid key
+   * @since v4.1.0 added 10/16/20
+   */
+  public Key gridKey() {
+    return new Key(false, key(LATITUDE, latitude, false), key(LONGITUDE, longitude, false));
+  }
+
+  /**
+   * Get an equality key for this position based upon the exact latitude and
+   * longitude (positive and negative zero are equal). Use exact keys, rather
+   * than positions, as hash based collection keys where grid equality is too
+   * coarse.
+   * <p>
+   * The key captures the coordinates when it is taken; later changes to the
+   * position do not affect it.
+   *
+   * @return the exact key
+   * @since v4.1.0 added 10/16/20
+   */
+  public Key exactKey() {
+    return new Key(true, key(LATITUDE, latitude, true), key(LONGITUDE, longitude, true));
+  }
+
+  /**
+   * Get a 64-bit hash of every value of this position, for change detection.
+   * Unlike {@link #hashCode()} this includes every value at full precision.
+   *
+   * @return the content hash
+   */
+  long getContentHash() {
+    long hash = Fingerprint.add(0, name);
+    hash = Fingerprint.add(hash, present);
+    hash = Fingerprint.add(hash, latitude);
+    hash = Fingerprint.add(hash, longitude);
+    hash = Fingerprint.add(hash, elevation);
+    hash = Fingerprint.add(hash, heading);
+    hash = Fingerprint.add(hash, speed);
+    hash = Fingerprint.add(hash, datum);
+    hash = Fingerprint.add(hash, domTimeStamp);
+    hash = Fingerprint.add(hash, accuracyHorizontal);
+    hash = Fingerprint.add(hash, accuracyVertical);
+    hash = Fingerprint.add(hash, source);
+    hash = Fingerprint.add(hash, haat);
+    hash = Fingerprint.add(hash, radialAzimuth);
+    return Fingerprint.add(hash, radialHaat);
+  }
+
+  /**
+   * @return a hash code of the grid rounded latitude and longitude, consistent
+   *         with {@link #equals(Object)}
    */
   @Override
   public int hashCode() {
     int hash = 3;
-    hash = 41 * hash + Objects.hashCode(this.latitude);
-    hash = 41 * hash + Objects.hashCode(this.longitude);
-    return Math.abs(hash);
+    hash = 41 * hash + Long.hashCode(key(LATITUDE, this.latitude, false));
+    hash = 41 * hash + Long.hashCode(key(LONGITUDE, this.longitude, false));
+    return hash;
   }
 
   /**
-   * Coordinates are considered to be equal if their latitute AND longitude are
-   * within four (4) decimal places (0.0001) which is approximately 11.1 meter
-   * at the equator.
+   * Coordinates are considered to be equal if their
+   * latitude AND longitude round to the same four (4) decimal place (0.0001)
+   * grid point, which is approximately 11.1 meter at the equator. Equal
+   * positions therefore lie within the same 11.1 meter box (max distance is
+   * approx 15.7 meter, 51.5 feet).
    * <p>
-   * Returns true if the other GISPosition is within an 11.1 meter box centered
-   * on this coordinate (max matching distance is approx 15.7 meter, 51.5 feet)
+   * Unlike a distance tolerance, grid rounding is transitive and consistent
+   * with {@link #hashCode()}. Two positions a few centimeters apart but on
+   * either side of a grid boundary are NOT equal; use a distance comparison
+   * where proximity rather than identity is required.
    * <p>
-   * Equality is calculated as:
+   * For exact comparison use {@link #exactKey()}.
    * <p>
-   * EQUAL if ABS(lat1 - lat2) &lt; 0.00001 and ABS(lon1 - lon2) &lt; 0.00001
+   * An unset latitude or longitude is only equal to an unset value.
    *
    * @param coordinate the other GISPosition
-   * @return TRUE if within 0.0001 degree decimal (~11.1 meter)
+   * @return TRUE if the latitude and longitude round to the same grid point
    * @see <a href="http://en.wikipedia.org/wiki/Decimal_degrees">Decimal
    * degrees: Accuracy</a>
    */
   @Override
   public boolean equals(Object coordinate) {
+    if (this == coordinate) {
+      return true;
+    }
     if (!(coordinate instanceof Position)) {
       return false;
     }
-    double elevenMeter = 0.00010;
     Position other = (Position) coordinate;
-    return (Math.abs(this.latitude - other.getLatitude()) <= elevenMeter)
-      && (Math.abs(this.longitude - other.getLongitude()) <= elevenMeter);
+    return key(LATITUDE, this.latitude, false) == other.key(LATITUDE, other.latitude, false)
+      && key(LONGITUDE, this.longitude, false) == other.key(LONGITUDE, other.longitude, false);
+  }
+
+  /**
+   * Get the equality key of a coordinate value. The key is the grid point
+   * index, or the (zero normalized) bit pattern if exact.
+   *
+   * @param flag  the coordinate presence flag
+   * @param value the coordinate value
+   * @param exact true for the exact key, false for the grid key
+   * @return the equality key
+   */
+  private long key(short flag, double value, boolean exact) {
+    if (!isPresent(flag)) {
+      return UNSET_KEY;
+    }
+    return exact
+           ? Double.doubleToLongBits(value + 0.0)
+           : Math.round(value / EQUALITY_GRID);
+  }
+
+  /**
+   * An opt-in equality key for a position, holding a snapshot of the grid
+   * rounded (see {@link #gridKey()}) or exact (see {@link #exactKey()})
+   * latitude and longitude. Grid keys never equal exact keys.
+   *
+   * @since v4.1.0 added 10/16/20
+   */
+  public static final class Key {
+
+    private final boolean exact;
+    private final long latitude;
+    private final long longitude;
+
+    private Key(boolean exact, long latitude, long longitude) {
+      this.exact = exact;
+      this.latitude = latitude;
+      this.longitude = longitude;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = exact ? 7 : 3;
+      hash = 41 * hash + Long.hashCode(latitude);
+      hash = 41 * hash + Long.hashCode(longitude);
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return exact == other.exact && latitude == other.latitude && longitude == other.longitude;
+    }
   }
 
   /**
@@ -733,7 +1700,7 @@ public class Position implements Serializable {
    */
   @Override
   public String toString() {
-    return isComplete() ? asPoint().toString() : longitude + ", " + latitude;
+    return isComplete() ? asPoint().toString() : getLongitude() + ", " + getLatitude();
   }
 
   /**
@@ -759,9 +1726,9 @@ public class Position implements Serializable {
     /**
      * Fail if the Position is not usable. It is typically an ERROR to have lat
      * & lon =~ 0. It is also typically an error if the latitude and longitude
-     * are equal.
+     * are equal. An incomplete position is not usable.
      */
-    return !(Math.abs(latitude) <= ELEVEN_METER && Math.abs(longitude) <= ELEVEN_METER);
+    return isComplete() && !(Math.abs(latitude) <= ELEVEN_METER && Math.abs(longitude) <= ELEVEN_METER);
   }
 
   /**
@@ -777,16 +1744,7 @@ public class Position implements Serializable {
    * @return A well-formed heading value ranging between [-180, +180]
    */
   public static double normalizeToHeading(double azimuth) {
-    double heading = azimuth;
-    if (Math.abs(heading) == 360) {
-      heading = 0d;
-    }
-    if (heading > 180) {
-      heading = (heading % 360) - 360;
-    } else if (heading < -180) {
-      heading = (heading % 360) + 360;
-    }
-    return heading;
+    return azimuth - 360 * Math.rint(azimuth / 360);
   }
 
   /**
@@ -799,15 +1757,153 @@ public class Position implements Serializable {
    * @return a well-formed azimuth value ranging between [0, +359]
    */
   public static double normalizeToAzimuth(double heading) {
-    double azimuth = heading;
-    if (Math.abs(azimuth) == 360) {
-      azimuth = 0;
+    return heading - 360 * Math.floor(heading / 360);
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Bulk normalization">
+  /**
+   * Normalize an array of latitude values in place. See
+   * {@link #normalizeLatitude(double)}.
+   *
+   * @param latitude latitude values in decimal degrees
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeLatitude(double[] latitude) {
+    normalizeLatitude(latitude, 0, latitude, 0, latitude.length);
+  }
+
+  /**
+   * Normalize a range of latitude values. See
+   * {@link #normalizeLatitude(double)}.
+   * <p>
+   * The bulk normalization methods are counted loops over primitive arrays
+   * without branches or floating point modulo so that the JIT compiler can
+   * unroll and, where the platform supports vector rounding, vectorize them.
+   * Arguments follow {@code System.arraycopy}; the source and target may be
+   * the same array to normalize in place.
+   *
+   * @param source         latitude values in decimal degrees
+   * @param sourcePosition the source start index
+   * @param target         the array receiving the normalized values
+   * @param targetPosition the target start index
+   * @param length         the number of values
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeLatitude(double[] source, int sourcePosition, double[] target, int targetPosition, int length) {
+    checkRange(source, sourcePosition, target, targetPosition, length);
+    for (int i = 0; i < length; i++) {
+      double value = source[sourcePosition + i];
+      target[targetPosition + i] = value - 180 * Math.ceil((value - 90) / 180);
     }
-    if (azimuth > 360) {
-      azimuth = (azimuth % 360);
-    } else if (azimuth < 0) {
-      azimuth = (azimuth % 360) + 360;
+  }
+
+  /**
+   * Normalize an array of longitude values in place. See
+   * {@link #normalizeLongitude(double)}.
+   *
+   * @param longitude longitude values in decimal degrees
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeLongitude(double[] longitude) {
+    normalizeLongitude(longitude, 0, longitude, 0, longitude.length);
+  }
+
+  /**
+   * Normalize a range of longitude values. See
+   * {@link #normalizeLongitude(double)} and
+   * {@link #normalizeLatitude(double[], int, double[], int, int)}.
+   *
+   * @param source         longitude values in decimal degrees
+   * @param sourcePosition the source start index
+   * @param target         the array receiving the normalized values
+   * @param targetPosition the target start index
+   * @param length         the number of values
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeLongitude(double[] source, int sourcePosition, double[] target, int targetPosition, int length) {
+    checkRange(source, sourcePosition, target, targetPosition, length);
+    for (int i = 0; i < length; i++) {
+      double value = source[sourcePosition + i];
+      target[targetPosition + i] = value - 360 * Math.ceil((value - 180) / 360);
     }
-    return azimuth;
   }
+
+  /**
+   * Normalize an array of azimuth values to heading values in place. See
+   * {@link #normalizeToHeading(double)}.
+   *
+   * @param azimuth azimuth values in degrees
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeToHeading(double[] azimuth) {
+    normalizeToHeading(azimuth, 0, azimuth, 0, azimuth.length);
+  }
+
+  /**
+   * Normalize a range of azimuth values to heading values. See
+   * {@link #normalizeToHeading(double)} and
+   * {@link #normalizeLatitude(double[], int, double[], int, int)}.
+   *
+   * @param source         azimuth values in degrees
+   * @param sourcePosition the source start index
+   * @param target         the array receiving the heading values
+   * @param targetPosition the target start index
+   * @param length         the number of values
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeToHeading(double[] source, int sourcePosition, double[] target, int targetPosition, int length) {
+    checkRange(source, sourcePosition, target, targetPosition, length);
+    for (int i = 0; i < length; i++) {
+      double value = source[sourcePosition + i];
+      target[targetPosition + i] = value - 360 * Math.rint(value / 360);
+    }
+  }
+
+  /**
+   * Normalize an array of heading values to azimuth values in place. See
+   * {@link #normalizeToAzimuth(double)}.
+   *
+   * @param heading heading values in degrees
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeToAzimuth(double[] heading) {
+    normalizeToAzimuth(heading, 0, heading, 0, heading.length);
+  }
+
+  /**
+   * Normalize a range of heading values to azimuth values. See
+   * {@link #normalizeToAzimuth(double)} and
+   * {@link #normalizeLatitude(double[], int, double[], int, int)}.
+   *
+   * @param source         heading values in degrees
+   * @param sourcePosition the source start index
+   * @param target         the array receiving the azimuth values
+   * @param targetPosition the target start index
+   * @param length         the number of values
+   * @since v4.1.0 added 10/16/20
+   */
+  public static void normalizeToAzimuth(double[] source, int sourcePosition, double[] target, int targetPosition, int length) {
+    checkRange(source, sourcePosition, target, targetPosition, length);
+    for (int i = 0; i < length; i++) {
+      double value = source[sourcePosition + i];
+      target[targetPosition + i] = value - 360 * Math.floor(value / 360);
+    }
+  }
+
+  /**
+   * Validate the array ranges of a bulk operation before entering the loop.
+   *
+   * @param source         the source array
+   * @param sourcePosition the source start index
+   * @param target         the target array
+   * @param targetPosition the target start index
+   * @param length         the number of values
+   */
+  private static void checkRange(double[] source, int sourcePosition, double[] target, int targetPosition, int length) {
+    if (length < 0 || sourcePosition < 0 || targetPosition < 0
+      || sourcePosition > source.length - length || targetPosition > target.length - length) {
+      throw new ArrayIndexOutOfBoundsException("Range [" + sourcePosition + ", " + targetPosition + ", " + length
+        + "] out of bounds for arrays of length " + source.length + ", " + target.length);
+    }
+  }// </editor-fold>
 }
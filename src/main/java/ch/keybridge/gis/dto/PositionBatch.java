@@ -0,0 +1,742 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.*;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * A columnar (struct-of-arrays) container for a large number of positions.
+ * <p>
+ * Each numeric position value is stored in its own primitive array, indexed
+ * by row. A batch of one million positions therefore occupies a handful of
+ * arrays rather than one million Position objects. Optional columns (e.g.
+ * speed, heading) are allocated only when a value is first set.
+ * <p>
+ * Unset values are stored as NaN; an unset time stamp is stored as
+ * {@link #NO_TIMESTAMP}. Note that a NaN heading (stationary device) cannot be
+ * distinguished from an unset heading in a batch.
+ * <p>
+ * The batch stores the position coordinates, elevation, heading, speed,
+ * accuracies and time stamp. The datum is common to all rows. The position
+ * name, source and HAAT values are not stored.
+ * <p>
+ * Row values are read either as primitives, as a new Position instance, or
+ * into a reusable (flyweight) Position instance with
+ * {@link #get(int, Position)}, which does not allocate.
+ * <p>
+ * The XML form of a batch is a list of Position elements, identical to the
+ * XML of the equivalent list of Position instances. This class is not thread
+ * safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 for bulk position handling
+ */
+@XmlRootElement(name = "PositionBatch")
+@XmlType(name = "PositionBatch")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PositionBatch implements Iterable<Position>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The time stamp value indicating that no time stamp is set.
+   */
+  public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+  /**
+   * The default initial capacity.
+   */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The number of rows.
+   */
+  @XmlTransient
+  private int size;
+  /**
+   * The geodetic datum of all positions. Null indicates WGS84.
+   */
+  @XmlTransient
+  private String datum;
+  /**
+   * Latitude column in decimal degrees. Always allocated.
+   */
+  @XmlTransient
+  private double[] latitude;
+  /**
+   * Longitude column in decimal degrees. Always allocated.
+   */
+  @XmlTransient
+  private double[] longitude;
+  /**
+   * Elevation column in meters. Null if no elevation is set.
+   */
+  @XmlTransient
+  private double[] elevation;
+  /**
+   * Heading column in degrees. Null if no heading is set.
+   */
+  @XmlTransient
+  private double[] heading;
+  /**
+   * Speed column in meters per second. Null if no speed is set.
+   */
+  @XmlTransient
+  private double[] speed;
+  /**
+   * Horizontal accuracy column in meters. Null if no accuracy is set.
+   */
+  @XmlTransient
+  private double[] accuracyHorizontal;
+  /**
+   * Vertical accuracy column in meters. Null if no accuracy is set.
+   */
+  @XmlTransient
+  private double[] accuracyVertical;
+  /**
+   * Time stamp column in milliseconds. Null if no time stamp is set.
+   */
+  @XmlTransient
+  private long[] domTimeStamp;
+
+  /**
+   * The XML positions. This is only set while the batch is being marshalled
+   * or unmarshalled, and is otherwise null.
+   */
+  @XmlElement(name = "Positions")
+  private List<Position> positions;
+
+  /**
+   * Construct an empty batch with a default initial capacity.
+   */
+  public PositionBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct an empty batch with the indicated initial capacity. Set the
+   * capacity to the expected number of rows to avoid growing the columns.
+   *
+   * @param capacity the initial capacity
+   */
+  public PositionBatch(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Negative capacity " + capacity);
+    }
+    this.latitude = new double[capacity];
+    this.longitude = new double[capacity];
+  }
+
+  /**
+   * Construct a new batch from latitude and longitude arrays. The arrays are
+   * copied and the values are normalized.
+   *
+   * @param latitude  the latitude values in decimal degrees
+   * @param longitude the longitude values in decimal degrees
+   * @return a new batch
+   */
+  public static PositionBatch getInstance(double[] latitude, double[] longitude) {
+    PositionBatch batch = new PositionBatch(latitude.length);
+    batch.addAll(latitude, longitude);
+    return batch;
+  }
+
+  /**
+   * Construct a new batch containing the provided positions. The datum of the
+   * batch is copied from the first position.
+   *
+   * @param positions the positions
+   * @return a new batch
+   */
+  public static PositionBatch getInstance(List<Position> positions) {
+    PositionBatch batch = new PositionBatch(positions.size());
+    batch.addAll(positions);
+    return batch;
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return the number of rows
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns true if this batch contains no rows.
+   *
+   * @return true if this batch contains no rows
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all rows. The column capacity is retained.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  public String getDatum() {
+    return datum;
+  }
+
+  public void setDatum(String datum) {
+    this.datum = datum;
+  }
+
+  /**
+   * Add a row. The latitude and longitude are normalized; other values are
+   * unset.
+   *
+   * @param latitude  the latitude in decimal degrees
+   * @param longitude the longitude in decimal degrees
+   * @return the row index
+   */
+  public int add(double latitude, double longitude) {
+    ensureCapacity(size + 1);
+    int index = size++;
+    this.latitude[index] = Position.normalizeLatitude(latitude);
+    this.longitude[index] = Position.normalizeLongitude(longitude);
+    clearOptional(index, index + 1);
+    return index;
+  }
+
+  /**
+   * Add a row with an elevation and time stamp.
+   *
+   * @param latitude     the latitude in decimal degrees
+   * @param longitude    the longitude in decimal degrees
+   * @param elevation    the elevation in meters
+   * @param domTimeStamp the time stamp in milliseconds
+   * @return the row index
+   */
+  public int add(double latitude, double longitude, double elevation, long domTimeStamp) {
+    int index = add(latitude, longitude);
+    setElevation(index, elevation);
+    setDomTimeStamp(index, domTimeStamp);
+    return index;
+  }
+
+  /**
+   * Add a row copied from a position. If this batch has no datum it is set
+   * from the position.
+   *
+   * @param position the position
+   * @return the row index
+   */
+  public int add(Position position) {
+    int index = add(position.getLatitudeValue(), position.getLongitudeValue());
+    setElevation(index, position.getElevationValue());
+    setHeading(index, position.getHeadingValue());
+    setSpeed(index, position.getSpeedValue());
+    setAccuracyHorizontal(index, position.getAccuracyHorizontalValue());
+    setAccuracyVertical(index, position.getAccuracyVerticalValue());
+    Long timestamp = position.getDomTimeStampMillis();
+    setDomTimeStamp(index, timestamp == null ? NO_TIMESTAMP : timestamp);
+    if (datum == null) {
+      datum = position.getDatum();
+    }
+    return index;
+  }
+
+  /**
+   * Add rows from latitude and longitude arrays. The values are normalized
+   * with the bulk normalization methods directly into the columns; other
+   * values are unset. This is the fastest way to ingest raw device fixes.
+   *
+   * @param latitude  the latitude values in decimal degrees
+   * @param longitude the longitude values in decimal degrees
+   */
+  public void addAll(double[] latitude, double[] longitude) {
+    if (latitude.length != longitude.length) {
+      throw new IllegalArgumentException("Latitude and longitude arrays differ in length");
+    }
+    int length = latitude.length;
+    ensureCapacity(size + length);
+    Position.normalizeLatitude(latitude, 0, this.latitude, size, length);
+    Position.normalizeLongitude(longitude, 0, this.longitude, size, length);
+    clearOptional(size, size + length);
+    size += length;
+  }
+
+  /**
+   * Add rows copied from the provided positions.
+   *
+   * @param positions the positions
+   */
+  public void addAll(Iterable<Position> positions) {
+    for (Position position : positions) {
+      add(position);
+    }
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Column Getter and Setter">
+  public double getLatitude(int index) {
+    checkIndex(index);
+    return latitude[index];
+  }
+
+  public void setLatitude(int index, double latitude) {
+    checkIndex(index);
+    this.latitude[index] = latitude;
+  }
+
+  public double getLongitude(int index) {
+    checkIndex(index);
+    return longitude[index];
+  }
+
+  public void setLongitude(int index, double longitude) {
+    checkIndex(index);
+    this.longitude[index] = longitude;
+  }
+
+  public double getElevation(int index) {
+    checkIndex(index);
+    return elevation == null ? Double.NaN : elevation[index];
+  }
+
+  public void setElevation(int index, double elevation) {
+    checkIndex(index);
+    this.elevation = set(this.elevation, index, elevation);
+  }
+
+  public double getHeading(int index) {
+    checkIndex(index);
+    return heading == null ? Double.NaN : heading[index];
+  }
+
+  public void setHeading(int index, double heading) {
+    checkIndex(index);
+    this.heading = set(this.heading, index, heading);
+  }
+
+  public double getSpeed(int index) {
+    checkIndex(index);
+    return speed == null ? Double.NaN : speed[index];
+  }
+
+  public void setSpeed(int index, double speed) {
+    checkIndex(index);
+    this.speed = set(this.speed, index, speed);
+  }
+
+  public double getAccuracyHorizontal(int index) {
+    checkIndex(index);
+    return accuracyHorizontal == null ? Double.NaN : accuracyHorizontal[index];
+  }
+
+  public void setAccuracyHorizontal(int index, double accuracyHorizontal) {
+    checkIndex(index);
+    this.accuracyHorizontal = set(this.accuracyHorizontal, index, accuracyHorizontal);
+  }
+
+  public double getAccuracyVertical(int index) {
+    checkIndex(index);
+    return accuracyVertical == null ? Double.NaN : accuracyVertical[index];
+  }
+
+  public void setAccuracyVertical(int index, double accuracyVertical) {
+    checkIndex(index);
+    this.accuracyVertical = set(this.accuracyVertical, index, accuracyVertical);
+  }
+
+  /**
+   * Get the time stamp of a row.
+   *
+   * @param index the row index
+   * @return the time stamp in milliseconds, {@link #NO_TIMESTAMP} if not set
+   */
+  public long getDomTimeStamp(int index) {
+    checkIndex(index);
+    return domTimeStamp == null ? NO_TIMESTAMP : domTimeStamp[index];
+  }
+
+  /**
+   * Set the time stamp of a row.
+   *
+   * @param index        the row index
+   * @param domTimeStamp the time stamp in milliseconds, {@link #NO_TIMESTAMP}
+   *                     to unset
+   */
+  public void setDomTimeStamp(int index, long domTimeStamp) {
+    checkIndex(index);
+    if (this.domTimeStamp == null) {
+      if (domTimeStamp == NO_TIMESTAMP) {
+        return;
+      }
+      this.domTimeStamp = new long[latitude.length];
+      Arrays.fill(this.domTimeStamp, NO_TIMESTAMP);
+    }
+    this.domTimeStamp[index] = domTimeStamp;
+  }// </editor-fold>
+
+  /**
+   * Get a row as a new Position instance.
+   *
+   * @param index the row index
+   * @return a new Position
+   */
+  public Position get(int index) {
+    return get(index, new Position());
+  }
+
+  /**
+   * Copy a row into the provided Position instance, replacing all of its
+   * values: the numeric values and datum are set from the row, and the values
+   * a batch does not hold (name, source, HAAT and radial HAAT) are cleared so
+   * that nothing leaks from a previously loaded position. Use this method to
+   * iterate over a batch with a single reusable (flyweight) Position. No
+   * objects are allocated.
+   *
+   * @param index    the row index
+   * @param position the Position instance to populate
+   * @return the provided position
+   */
+  public Position get(int index, Position position) {
+    checkIndex(index);
+    position.setName(null);
+    position.setSource(null);
+    position.setHaat((Double) null);
+    position.setRadialHaat((Map<Double, Double>) null);
+    position.setDatum(datum);
+    set(position, latitude, index, Position::setLatitude, Position::setLatitude);
+    set(position, longitude, index, Position::setLongitude, Position::setLongitude);
+    set(position, elevation, index, Position::setElevation, Position::setElevation);
+    set(position, heading, index, Position::setHeading, Position::setHeading);
+    set(position, speed, index, Position::setSpeed, Position::setSpeed);
+    set(position, accuracyHorizontal, index, Position::setAccuracyHorizontal, Position::setAccuracyHorizontal);
+    set(position, accuracyVertical, index, Position::setAccuracyVertical, Position::setAccuracyVertical);
+    long timestamp = getDomTimeStamp(index);
+    if (timestamp == NO_TIMESTAMP) {
+      position.setDomTimeStampMillis((Long) null);
+    } else {
+      position.setDomTimeStampMillis(timestamp);
+    }
+    return position;
+  }
+
+  /**
+   * Returns an iterator over the rows. Each row is returned as a new Position
+   * instance; see {@link #get(int, Position)} to iterate without allocation.
+   *
+   * @return an iterator over the rows
+   */
+  @Override
+  public Iterator<Position> iterator() {
+    return new Iterator<Position>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public Position next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        return get(index++);
+      }
+    };
+  }
+
+  /**
+   * Get the coordinates of all rows as a packed JTS coordinate sequence. The
+   * x, y ordinates are the longitude and latitude. If any elevation is set the
+   * sequence has a z ordinate, which is NaN for rows without an elevation.
+   *
+   * @return a packed coordinate sequence
+   */
+  public CoordinateSequence toCoordinateSequence() {
+    int dimension = elevation == null ? 2 : 3;
+    double[] coordinates = new double[size * dimension];
+    for (int i = 0, j = 0; i < size; i++, j += dimension) {
+      coordinates[j] = longitude[i];
+      coordinates[j + 1] = latitude[i];
+      if (dimension == 3) {
+        coordinates[j + 2] = elevation[i];
+      }
+    }
+    return new PackedCoordinateSequence.Double(coordinates, dimension, 0);
+  }
+
+  /**
+   * Get the coordinates of all rows as a MULTIPOINT geometry created with the
+   * shared {@link Position#GEOMETRY_FACTORY}.
+   *
+   * @return a MULTIPOINT geometry
+   */
+  public MultiPoint toMultiPoint() {
+    return toMultiPoint(Position.GEOMETRY_FACTORY);
+  }
+
+  /**
+   * Get the coordinates of all rows as a MULTIPOINT geometry created with the
+   * indicated geometry factory.
+   *
+   * @param geometryFactory the geometry factory
+   * @return a MULTIPOINT geometry
+   */
+  public MultiPoint toMultiPoint(GeometryFactory geometryFactory) {
+    return geometryFactory.createMultiPoint(toCoordinateSequence());
+  }
+
+  /**
+   * Calculate the haversine great-circle distance from a position to each row.
+   * The distance to row {@code i} is written to {@code target[i]}. See
+   * {@link GreatCircle}.
+   *
+   * @param position the origin position
+   * @param target   the array receiving the distances in meters, of length at
+   *                 least the batch size
+   */
+  public void distance(Position position, double[] target) {
+    GreatCircle.distance(position.getLatitudeValue(), position.getLongitudeValue(), latitude, longitude, 0, target, 0, size);
+  }
+
+  /**
+   * Calculate the equirectangular approximate distance from a position to each
+   * row. See {@link #distance(Position, double[])} and {@link GreatCircle} for
+   * the error bounds.
+   *
+   * @param position the origin position
+   * @param target   the array receiving the distances in meters, of length at
+   *                 least the batch size
+   */
+  public void distanceEquirectangular(Position position, double[] target) {
+    GreatCircle.distanceEquirectangular(position.getLatitudeValue(), position.getLongitudeValue(), latitude, longitude, 0, target, 0, size);
+  }
+
+  /**
+   * Reduce the column capacity to the number of rows.
+   */
+  public void trimToSize() {
+    resize(size);
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="JAXB callbacks">
+  /**
+   * JAXB callback. Present the rows as a list of Position instances. Each
+   * Position is created as it is marshalled and discarded afterwards.
+   *
+   * @param marshaller the marshaller
+   */
+  private void beforeMarshal(Marshaller marshaller) {
+    positions = new AbstractList<Position>() {
+      @Override
+      public Position get(int index) {
+        return PositionBatch.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * JAXB callback. Release the marshalled positions.
+   *
+   * @param marshaller the marshaller
+   */
+  private void afterMarshal(Marshaller marshaller) {
+    positions = null;
+  }
+
+  /**
+   * JAXB callback. Copy the unmarshalled positions into the columns.
+   *
+   * @param unmarshaller the unmarshaller
+   * @param parent       the parent object
+   */
+  private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+    if (positions != null) {
+      ensureCapacity(size + positions.size());
+      addAll(positions);
+      positions = null;
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Column support methods">
+  /**
+   * Ensure the columns can hold the indicated number of rows.
+   *
+   * @param capacity the minimum capacity
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > latitude.length) {
+      resize(Math.max(capacity, latitude.length + (latitude.length >> 1) + 1));
+    }
+  }
+
+  /**
+   * Resize all allocated columns to the indicated capacity. New optional
+   * column cells are unset.
+   *
+   * @param capacity the new capacity
+   */
+  private void resize(int capacity) {
+    latitude = Arrays.copyOf(latitude, capacity);
+    longitude = Arrays.copyOf(longitude, capacity);
+    elevation = resize(elevation, capacity);
+    heading = resize(heading, capacity);
+    speed = resize(speed, capacity);
+    accuracyHorizontal = resize(accuracyHorizontal, capacity);
+    accuracyVertical = resize(accuracyVertical, capacity);
+    if (domTimeStamp != null) {
+      int length = domTimeStamp.length;
+      domTimeStamp = Arrays.copyOf(domTimeStamp, capacity);
+      if (capacity > length) {
+        Arrays.fill(domTimeStamp, length, capacity, NO_TIMESTAMP);
+      }
+    }
+  }
+
+  /**
+   * Resize an optional column. New cells are NaN.
+   *
+   * @param column   the column, may be null
+   * @param capacity the new capacity
+   * @return the resized column, null if the column is null
+   */
+  private static double[] resize(double[] column, int capacity) {
+    if (column == null) {
+      return null;
+    }
+    int length = column.length;
+    double[] resized = Arrays.copyOf(column, capacity);
+    if (capacity > length) {
+      Arrays.fill(resized, length, capacity, Double.NaN);
+    }
+    return resized;
+  }
+
+  /**
+   * Set a value in an optional column, allocating the column if required. An
+   * unset (NaN) value does not allocate the column.
+   *
+   * @param column the column, may be null
+   * @param index  the row index
+   * @param value  the value
+   * @return the column
+   */
+  private double[] set(double[] column, int index, double value) {
+    if (column == null) {
+      if (Double.isNaN(value)) {
+        return null;
+      }
+      column = new double[latitude.length];
+      Arrays.fill(column, Double.NaN);
+    }
+    column[index] = value;
+    return column;
+  }
+
+  /**
+   * Unset the optional values of a range of (re-used) rows.
+   *
+   * @param fromIndex the first row index, inclusive
+   * @param toIndex   the last row index, exclusive
+   */
+  private void clearOptional(int fromIndex, int toIndex) {
+    unset(elevation, fromIndex, toIndex);
+    unset(heading, fromIndex, toIndex);
+    unset(speed, fromIndex, toIndex);
+    unset(accuracyHorizontal, fromIndex, toIndex);
+    unset(accuracyVertical, fromIndex, toIndex);
+    if (domTimeStamp != null) {
+      Arrays.fill(domTimeStamp, fromIndex, toIndex, NO_TIMESTAMP);
+    }
+  }
+
+  /**
+   * Unset a range of values in an optional column.
+   *
+   * @param column    the column, may be null
+   * @param fromIndex the first row index, inclusive
+   * @param toIndex   the last row index, exclusive
+   */
+  private static void unset(double[] column, int fromIndex, int toIndex) {
+    if (column != null) {
+      Arrays.fill(column, fromIndex, toIndex, Double.NaN);
+    }
+  }
+
+  /**
+   * Copy a column value into a position. Unset (NaN) values are set to null.
+   *
+   * @param position  the position
+   * @param column    the column, may be null
+   * @param index     the row index
+   * @param primitive the position primitive setter
+   * @param boxed     the position boxed setter, used to clear the value
+   */
+  private static void set(Position position, double[] column, int index, PrimitiveSetter primitive, BoxedSetter boxed) {
+    if (column == null || Double.isNaN(column[index])) {
+      boxed.set(position, null);
+    } else {
+      primitive.set(position, column[index]);
+    }
+  }
+
+  /**
+   * Check that a row index is within range.
+   *
+   * @param index the row index
+   */
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  /**
+   * A Position primitive value setter.
+   */
+  @FunctionalInterface
+  private interface PrimitiveSetter {
+
+    void set(Position position, double value);
+  }
+
+  /**
+   * A Position boxed value setter.
+   */
+  @FunctionalInterface
+  private interface BoxedSetter {
+
+    void set(Position position, Double value);
+  }// </editor-fold>
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shared symbol table of feature property keys.
+ * <p>
+ * Each distinct property key is assigned a small integer symbol the first
+ * time it is used. Features store their properties by symbol (see
+ * {@link AbstractFeature#getProperties()}), so that a key repeated across
+ * millions of features is held in memory once.
+ * <p>
+ * The table only grows. To bound its size when keys come from untrusted or
+ * highly variable data, at most {@link #MAX_SIZE} keys are interned; further
+ * keys are stored by features as ordinary strings. The simplestyle keys are
+ * interned when the table is created.
+ * <p>
+ * This class is thread safe. Lookups do not lock.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+public final class PropertyKeys {
+
+  /**
+   * The maximum number of interned keys.
+   */
+  public static final int MAX_SIZE = 1 << 16;
+  /**
+   * The symbol of a key that is not interned.
+   */
+  public static final int NONE = -1;
+
+  /**
+   * Symbols by key.
+   */
+  private static final ConcurrentHashMap<String, Integer> SYMBOLS = new ConcurrentHashMap<>();
+  /**
+   * Keys by symbol. The array is replaced when it grows; entries are written
+   * before the symbol is published in the SYMBOLS map.
+   */
+  private static volatile String[] keys = new String[64];
+  /**
+   * The number of interned keys. Guarded by the class lock.
+   */
+  private static int size;
+
+  static {
+    for (String key : new String[]{"title", "icon", "stroke", "strokeOpacity", "strokeWidth", "fill", "fillOpacity", "iso2"}) {
+      intern(key);
+    }
+  }
+
+  private PropertyKeys() {
+  }
+
+  /**
+   * Get the symbol of a key without interning it.
+   *
+   * @param key the key
+   * @return the symbol, {@link #NONE} if the key is not interned
+   */
+  public static int indexOf(String key) {
+    if (key == null) {
+      return NONE;
+    }
+    Integer symbol = SYMBOLS.get(key);
+    return symbol == null ? NONE : symbol;
+  }
+
+  /**
+   * Get the symbol of a key, interning the key if required.
+   *
+   * @param key the key
+   * @return the symbol, {@link #NONE} if the key is null or the table is full
+   */
+  public static int intern(String key) {
+    int symbol = indexOf(key);
+    return symbol != NONE || key == null ? symbol : add(key);
+  }
+
+  /**
+   * Get the key of a symbol.
+   *
+   * @param symbol the symbol
+   * @return the key
+   */
+  public static String getKey(int symbol) {
+    return keys[symbol];
+  }
+
+  /**
+   * Get the number of interned keys.
+   *
+   * @return the number of interned keys
+   */
+  public static synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Add a key to the table.
+   *
+   * @param key the key
+   * @return the symbol, {@link #NONE} if the table is full
+   */
+  private static synchronized int add(String key) {
+    Integer existing = SYMBOLS.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    if (size == MAX_SIZE) {
+      return NONE;
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, Math.min(size * 2, MAX_SIZE));
+    }
+    keys[size] = key;
+    SYMBOLS.put(key, size);
+    return size++;
+  }
+
+}
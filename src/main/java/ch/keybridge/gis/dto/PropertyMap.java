@@ -0,0 +1,360 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A compact map of feature properties keyed by {@link PropertyKeys} symbol.
+ * <p>
+ * The properties are held in two parallel arrays: the key symbols and the
+ * values. Keys are not stored per map; a map of a handful of properties is a
+ * fraction of the size of a HashMap. Lookups intern-check the key and scan
+ * the symbol array, which is as fast as hashing for the small number of
+ * properties a feature carries. Keys that cannot be interned (the symbol
+ * table is full) are held in an ordinary overflow map.
+ * <p>
+ * Iteration order is not defined. Null keys and values are permitted. This
+ * class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+final class PropertyMap extends AbstractMap<String, String> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int[] NO_SYMBOLS = new int[0];
+  private static final String[] NO_VALUES = new String[0];
+
+  /**
+   * The key symbols. Symbols are process specific, so the map is serialized
+   * as key/value pairs.
+   */
+  private transient int[] symbols = NO_SYMBOLS;
+  /**
+   * The values, in the same slots as the symbols.
+   */
+  private transient String[] values = NO_VALUES;
+  /**
+   * The number of symbol keyed entries.
+   */
+  private transient int count;
+  /**
+   * Entries whose key is not interned. Normally null.
+   */
+  private transient Map<String, String> overflow;
+  /**
+   * The number of modifications made to this map.
+   */
+  private transient int modCount;
+
+  /**
+   * Construct an empty map.
+   */
+  PropertyMap() {
+  }
+
+  /**
+   * Construct a map containing the entries of another map.
+   *
+   * @param map the other map
+   */
+  PropertyMap(Map<String, String> map) {
+    symbols = new int[map.size()];
+    values = new String[map.size()];
+    putAll(map);
+  }
+
+  /**
+   * Get the number of modifications made to this map. Any put, remove or
+   * clear increments the count, so an unchanged count indicates unchanged
+   * contents.
+   *
+   * @return the modification count
+   */
+  int getModCount() {
+    return modCount;
+  }
+
+  @Override
+  public int size() {
+    return count + (overflow == null ? 0 : overflow.size());
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int symbol = symbolOf(key);
+    return symbol != PropertyKeys.NONE ? slot(symbol) >= 0 : overflow != null && overflow.containsKey(key);
+  }
+
+  @Override
+  public String get(Object key) {
+    int symbol = symbolOf(key);
+    if (symbol != PropertyKeys.NONE) {
+      int slot = slot(symbol);
+      return slot >= 0 ? values[slot] : null;
+    }
+    return overflow == null ? null : overflow.get(key);
+  }
+
+  @Override
+  public String put(String key, String value) {
+    modCount++;
+    int symbol = PropertyKeys.intern(key);
+    if (symbol == PropertyKeys.NONE) {
+      if (overflow == null) {
+        overflow = new HashMap<>();
+      }
+      return overflow.put(key, value);
+    }
+    int slot = slot(symbol);
+    if (slot >= 0) {
+      String previous = values[slot];
+      values[slot] = value;
+      return previous;
+    }
+    if (count == symbols.length) {
+      int capacity = Math.max(4, count + (count >> 1));
+      symbols = Arrays.copyOf(symbols, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    symbols[count] = symbol;
+    values[count++] = value;
+    return null;
+  }
+
+  @Override
+  public String remove(Object key) {
+    int symbol = symbolOf(key);
+    if (symbol != PropertyKeys.NONE) {
+      int slot = slot(symbol);
+      if (slot < 0) {
+        return null;
+      }
+      String previous = values[slot];
+      removeSlot(slot);
+      return previous;
+    }
+    if (overflow == null) {
+      return null;
+    }
+    modCount++;
+    return overflow.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    Arrays.fill(values, 0, count, null);
+    count = 0;
+    overflow = null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return new AbstractSet<Map.Entry<String, String>>() {
+      @Override
+      public Iterator<Map.Entry<String, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return PropertyMap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        PropertyMap.this.clear();
+      }
+    };
+  }
+
+  /**
+   * Get the symbol of a lookup key without interning it.
+   *
+   * @param key the key
+   * @return the symbol, NONE if the key is not an interned string
+   */
+  private static int symbolOf(Object key) {
+    return key instanceof String ? PropertyKeys.indexOf((String) key) : PropertyKeys.NONE;
+  }
+
+  /**
+   * Find the slot of a symbol.
+   *
+   * @param symbol the symbol
+   * @return the slot, -1 if not present
+   */
+  private int slot(int symbol) {
+    for (int i = 0; i < count; i++) {
+      if (symbols[i] == symbol) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Remove a slot by moving the last entry into it.
+   *
+   * @param slot the slot
+   */
+  private void removeSlot(int slot) {
+    modCount++;
+    count--;
+    symbols[slot] = symbols[count];
+    values[slot] = values[count];
+    values[count] = null;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(size());
+    for (Map.Entry<String, String> entry : entrySet()) {
+      out.writeObject(entry.getKey());
+      out.writeObject(entry.getValue());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    int size = in.readInt();
+    symbols = new int[size];
+    values = new String[size];
+    for (int i = 0; i < size; i++) {
+      put((String) in.readObject(), (String) in.readObject());
+    }
+  }
+
+  /**
+   * Iterates the symbol keyed entries then the overflow entries.
+   */
+  private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+    private int next;
+    private int last = -1;
+    private boolean lastOverflow;
+    private Iterator<Map.Entry<String, String>> overflowIterator;
+
+    @Override
+    public boolean hasNext() {
+      if (next < count) {
+        return true;
+      }
+      if (overflowIterator == null && overflow != null) {
+        overflowIterator = overflow.entrySet().iterator();
+      }
+      return overflowIterator != null && overflowIterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (next < count) {
+        last = next++;
+        lastOverflow = false;
+        return new SlotEntry(last);
+      }
+      last = -1;
+      lastOverflow = true;
+      return overflowIterator.next();
+    }
+
+    @Override
+    public void remove() {
+      if (lastOverflow) {
+        modCount++;
+        overflowIterator.remove();
+        lastOverflow = false;
+        return;
+      }
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      /**
+       * The last entry is moved into the removed slot; visit it next.
+       */
+      removeSlot(last);
+      next = last;
+      last = -1;
+    }
+  }
+
+  /**
+   * A map entry that writes through to a slot.
+   */
+  private class SlotEntry implements Map.Entry<String, String> {
+
+    private final int slot;
+    private final int symbol;
+
+    private SlotEntry(int slot) {
+      this.slot = slot;
+      this.symbol = symbols[slot];
+    }
+
+    @Override
+    public String getKey() {
+      return PropertyKeys.getKey(symbol);
+    }
+
+    @Override
+    public String getValue() {
+      return slot < count && symbols[slot] == symbol ? values[slot] : get(getKey());
+    }
+
+    @Override
+    public String setValue(String value) {
+      return put(getKey(), value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      return Objects.equals(getKey(), other.getKey()) && Objects.equals(getValue(), other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable {@code simplestyle} stroke and fill style.
+ * <p>
+ * Styles are interned: {@link #getInstance} returns the same instance for
+ * identical values, so a layer of many features using a handful of distinct
+ * styles holds a handful of Style objects. Each style also holds the property
+ * text of its values, which features share rather than each holding (and
+ * parsing) its own copy. See {@link AbstractFeature#getStyle()}.
+ * <p>
+ * Each value is optional; a null value indicates the value is not set and the
+ * renderer default applies. Styles are compared by value.
+ *
+ * @author Key Bridge
+ * @see <a href="https://github.com/mapbox/simplestyle-spec">SimplyStyle</a>
+ * @since v4.1.0 added 10/16/20
+ */
+public final class Style implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The style property keys.
+   */
+  static final String STROKE = "stroke";
+  static final String STROKE_OPACITY = "strokeOpacity";
+  static final String STROKE_WIDTH = "strokeWidth";
+  static final String FILL = "fill";
+  static final String FILL_OPACITY = "fillOpacity";
+
+  /**
+   * The maximum number of interned styles. Styles created beyond this limit
+   * are not interned.
+   */
+  private static final int MAX_INTERNED = 4096;
+  /**
+   * The interned styles.
+   */
+  private static final ConcurrentHashMap<Style, Style> INTERNED = new ConcurrentHashMap<>();
+  /**
+   * The shared property text of the interned styles. Styles having an equal
+   * value hold the same string.
+   */
+  private static final ConcurrentHashMap<String, String> TEXT = new ConcurrentHashMap<>();
+
+  /**
+   * The style with no values set.
+   */
+  public static final Style EMPTY = intern(new Style(null, null, null, null, null));
+  /**
+   * The default CSS style: stroke "999999", stroke opacity 1.0, stroke width
+   * 2.0, fill "555555" and fill opacity 0.6.
+   */
+  public static final Style DEFAULT = getInstance("999999", 1.0, 2.0, "555555", 0.6);
+
+  private final String stroke;
+  private final Double strokeOpacity;
+  private final Double strokeWidth;
+  private final String fill;
+  private final Double fillOpacity;
+  /**
+   * The property text of the numeric values.
+   */
+  private final String strokeOpacityText;
+  private final String strokeWidthText;
+  private final String fillOpacityText;
+
+  private Style(String stroke, Double strokeOpacity, Double strokeWidth, String fill, Double fillOpacity) {
+    this.stroke = share(stroke);
+    this.strokeOpacity = strokeOpacity;
+    this.strokeWidth = strokeWidth;
+    this.fill = share(fill);
+    this.fillOpacity = fillOpacity;
+    this.strokeOpacityText = strokeOpacity == null ? null : share(String.valueOf(strokeOpacity));
+    this.strokeWidthText = strokeWidth == null ? null : share(String.valueOf(strokeWidth));
+    this.fillOpacityText = fillOpacity == null ? null : share(String.valueOf(fillOpacity));
+  }
+
+  /**
+   * Get a style instance.
+   *
+   * @param stroke        the stroke color, e.g. "999999"
+   * @param strokeOpacity the stroke opacity [0, 1]
+   * @param strokeWidth   the stroke width
+   * @param fill          the fill color, e.g. "555555"
+   * @param fillOpacity   the fill opacity [0, 1]
+   * @return the interned style
+   */
+  public static Style getInstance(String stroke, Double strokeOpacity, Double strokeWidth, String fill, Double fillOpacity) {
+    if (stroke == null && strokeOpacity == null && strokeWidth == null && fill == null && fillOpacity == null && EMPTY != null) {
+      return EMPTY;
+    }
+    return intern(new Style(stroke, strokeOpacity, strokeWidth, fill, fillOpacity));
+  }
+
+  public String getStroke() {
+    return stroke;
+  }
+
+  public Double getStrokeOpacity() {
+    return strokeOpacity;
+  }
+
+  public Double getStrokeWidth() {
+    return strokeWidth;
+  }
+
+  public String getFill() {
+    return fill;
+  }
+
+  public Double getFillOpacity() {
+    return fillOpacity;
+  }
+
+  /**
+   * Returns true if no value is set.
+   *
+   * @return true if no value is set
+   */
+  public boolean isEmpty() {
+    return this == EMPTY || equals(EMPTY);
+  }
+
+  /**
+   * Get a copy of this style with a different stroke.
+   *
+   * @param stroke the stroke color
+   * @return the interned style
+   */
+  public Style withStroke(String stroke) {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  /**
+   * Get a copy of this style with a different stroke opacity.
+   *
+   * @param strokeOpacity the stroke opacity
+   * @return the interned style
+   */
+  public Style withStrokeOpacity(Double strokeOpacity) {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  /**
+   * Get a copy of this style with a different stroke width.
+   *
+   * @param strokeWidth the stroke width
+   * @return the interned style
+   */
+  public Style withStrokeWidth(Double strokeWidth) {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  /**
+   * Get a copy of this style with a different fill.
+   *
+   * @param fill the fill color
+   * @return the interned style
+   */
+  public Style withFill(String fill) {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  /**
+   * Get a copy of this style with a different fill opacity.
+   *
+   * @param fillOpacity the fill opacity
+   * @return the interned style
+   */
+  public Style withFillOpacity(Double fillOpacity) {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  /**
+   * Get the property text of a style value. The returned string is shared by
+   * all features having this style.
+   *
+   * @param key the style property key
+   * @return the property text, null if the value is not set
+   */
+  String getText(String key) {
+    switch (key) {
+      case STROKE:
+        return stroke;
+      case STROKE_OPACITY:
+        return strokeOpacityText;
+      case STROKE_WIDTH:
+        return strokeWidthText;
+      case FILL:
+        return fill;
+      case FILL_OPACITY:
+        return fillOpacityText;
+      default:
+        throw new IllegalArgumentException("Not a style property: " + key);
+    }
+  }
+
+  /**
+   * Intern a style.
+   *
+   * @param style the style
+   * @return the interned instance, or the style if the cache is full
+   */
+  private static Style intern(Style style) {
+    Style interned = INTERNED.get(style);
+    if (interned != null) {
+      return interned;
+    }
+    if (INTERNED.size() >= MAX_INTERNED) {
+      return style;
+    }
+    interned = INTERNED.putIfAbsent(style, style);
+    return interned != null ? interned : style;
+  }
+
+  /**
+   * Get the shared instance of a property text.
+   *
+   * @param text the text
+   * @return the shared instance, or the text if the cache is full
+   */
+  private static String share(String text) {
+    if (text == null) {
+      return null;
+    }
+    String shared = TEXT.get(text);
+    if (shared != null) {
+      return shared;
+    }
+    if (TEXT.size() >= MAX_INTERNED) {
+      return text;
+    }
+    shared = TEXT.putIfAbsent(text, text);
+    return shared != null ? shared : text;
+  }
+
+  /**
+   * Serialization support. Deserialized styles are interned.
+   *
+   * @return the interned style
+   */
+  private Object readResolve() {
+    return getInstance(stroke, strokeOpacity, strokeWidth, fill, fillOpacity);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 83 * hash + Objects.hashCode(this.stroke);
+    hash = 83 * hash + Objects.hashCode(this.strokeOpacity);
+    hash = 83 * hash + Objects.hashCode(this.strokeWidth);
+    hash = 83 * hash + Objects.hashCode(this.fill);
+    hash = 83 * hash + Objects.hashCode(this.fillOpacity);
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final Style other = (Style) obj;
+    return Objects.equals(this.stroke, other.stroke)
+      && Objects.equals(this.strokeOpacity, other.strokeOpacity)
+      && Objects.equals(this.strokeWidth, other.strokeWidth)
+      && Objects.equals(this.fill, other.fill)
+      && Objects.equals(this.fillOpacity, other.fillOpacity);
+  }
+
+  @Override
+  public String toString() {
+    return "Style{stroke=" + stroke + ", strokeOpacity=" + strokeOpacity + ", strokeWidth=" + strokeWidth
+      + ", fill=" + fill + ", fillOpacity=" + fillOpacity + '}';
+  }
+
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+/**
+ * The primitive encodings of the binary feature collection format.
+ * <p>
+ * Integers are written as unsigned LEB128 variable length integers (varints);
+ * signed integers are zig-zag encoded first so that small negative values are
+ * also short. Doubles are written as 8 byte IEEE 754 values. Strings are
+ * written as a varint of the UTF-8 byte length plus one followed by the bytes,
+ * so that null (zero) and empty (one) are distinguished.
+ * <p>
+ * Geometries are written either as WKB (lossless, two dimensional) or in a
+ * delta encoding similar to TWKB: ordinates are scaled by 10<sup>precision</sup>,
+ * rounded to integers and written as zig-zag varint differences from the
+ * previous coordinate. At the default {@value #DEFAULT_PRECISION} decimal
+ * places a typical coordinate takes 4 to 6 bytes rather than the 16 of WKB.
+ * The delta encoding preserves every JTS geometry type, including LinearRing;
+ * WKB has no ring type, so a LinearRing shape written as WKB is read back as a
+ * LineString.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20
+ */
+final class BinaryCodec {
+
+  /**
+   * The format magic number: "KBGD".
+   */
+  static final int MAGIC = 0x4b424744;
+  /**
+   * The format version.
+   */
+  static final int VERSION = 1;
+  /**
+   * Record tags.
+   */
+  static final int TAG_END = 0;
+  static final int TAG_KEY = 1;
+  static final int TAG_HEADER = 2;
+  static final int TAG_FEATURE = 3;
+  /**
+   * Feature record flags.
+   */
+  static final int FLAG_SHAPE = 1;
+  static final int FLAG_POSITION = 2;
+  static final int FLAG_ADDRESS = 4;
+  /**
+   * The geometry encoding precision indicating WKB encoding.
+   */
+  static final int PRECISION_WKB = -1;
+  /**
+   * The default delta encoding precision: the Position coordinate scale.
+   */
+  static final int DEFAULT_PRECISION = 6;
+  /**
+   * The maximum delta encoding precision.
+   */
+  static final int MAX_PRECISION = 15;
+  /**
+   * Delta encoded geometry types (the TWKB type codes, plus LinearRing).
+   */
+  private static final int POINT = 1;
+  private static final int LINESTRING = 2;
+  private static final int POLYGON = 3;
+  private static final int MULTIPOINT = 4;
+  private static final int MULTILINESTRING = 5;
+  private static final int MULTIPOLYGON = 6;
+  private static final int GEOMETRYCOLLECTION = 7;
+  private static final int LINEARRING = 8;
+
+  private BinaryCodec() {
+  }
+
+  /**
+   * A growable byte buffer with encoding methods. Records are encoded into a
+   * buffer so that their length can be written before them.
+   */
+  static final class Output {
+
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    void reset() {
+      size = 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+      outputStream.write(bytes, 0, size);
+    }
+
+    private void ensure(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+      }
+    }
+
+    void writeByte(int value) {
+      ensure(1);
+      bytes[size++] = (byte) value;
+    }
+
+    void writeBytes(byte[] value) {
+      ensure(value.length);
+      System.arraycopy(value, 0, bytes, size, value.length);
+      size += value.length;
+    }
+
+    void writeVarint(long value) {
+      ensure(10);
+      long v = value;
+      while ((v & ~0x7fL) != 0) {
+        bytes[size++] = (byte) ((v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      bytes[size++] = (byte) v;
+    }
+
+    void writeSigned(long value) {
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeDouble(double value) {
+      ensure(8);
+      long bits = Double.doubleToRawLongBits(value);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (bits >>> shift);
+      }
+    }
+
+    void writeFloat(float value) {
+      ensure(4);
+      int bits = Float.floatToRawIntBits(value);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (bits >>> shift);
+      }
+    }
+
+    void writeString(String value) {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      writeVarint(utf8.length + 1L);
+      writeBytes(utf8);
+    }
+  }
+
+  /**
+   * A byte array reader with decoding methods.
+   */
+  static final class Input {
+
+    private byte[] bytes = new byte[256];
+    private int position;
+    private int limit;
+
+    /**
+     * Read a record from a stream into this buffer.
+     *
+     * @param inputStream the stream
+     * @param length      the record length
+     * @throws IOException on read error or end of stream
+     */
+    void readFrom(InputStream inputStream, int length) throws IOException {
+      if (length > bytes.length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      int read = 0;
+      while (read < length) {
+        int count = inputStream.read(bytes, read, length - read);
+        if (count < 0) {
+          throw new EOFException("Truncated record");
+        }
+        read += count;
+      }
+      position = 0;
+      limit = length;
+    }
+
+    private void require(int length) throws IOException {
+      if (position + length > limit) {
+        throw new IOException("Corrupt record");
+      }
+    }
+
+    int readByte() throws IOException {
+      require(1);
+      return bytes[position++] & 0xff;
+    }
+
+    long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        value |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    int readCount() throws IOException {
+      long value = readVarint();
+      if (value < 0 || value > limit) {
+        throw new IOException("Corrupt record");
+      }
+      return (int) value;
+    }
+
+    long readSigned() throws IOException {
+      long value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    double readDouble() throws IOException {
+      require(8);
+      long bits = 0;
+      for (int i = 0; i < 8; i++) {
+        bits = (bits << 8) | (bytes[position++] & 0xff);
+      }
+      return Double.longBitsToDouble(bits);
+    }
+
+    float readFloat() throws IOException {
+      require(4);
+      int bits = 0;
+      for (int i = 0; i < 4; i++) {
+        bits = (bits << 8) | (bytes[position++] & 0xff);
+      }
+      return Float.intBitsToFloat(bits);
+    }
+
+    byte[] readBytes(int length) throws IOException {
+      require(length);
+      byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+      position += length;
+      return value;
+    }
+
+    String readString() throws IOException {
+      int length = readCount();
+      if (length == 0) {
+        return null;
+      }
+      require(length - 1);
+      String value = new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+      position += length - 1;
+      return value;
+    }
+  }
+
+  /**
+   * Read a varint directly from a stream. Used for record tags and lengths.
+   *
+   * @param inputStream the stream
+   * @return the value, -1 at the end of the stream
+   * @throws IOException on read error or a truncated value
+   */
+  static long readVarint(InputStream inputStream) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = inputStream.read();
+      if (b < 0) {
+        if (shift == 0) {
+          return -1;
+        }
+        throw new EOFException("Truncated varint");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Geometry">
+  /**
+   * Geometry encoder. One instance per writer; not thread safe.
+   */
+  static final class GeometryEncoder {
+
+    private final int precision;
+    private final double scale;
+    private final WKBWriter wkbWriter;
+    private long lastX;
+    private long lastY;
+
+    GeometryEncoder(int precision) {
+      this.precision = precision;
+      this.scale = Math.pow(10, Math.max(precision, 0));
+      this.wkbWriter = precision == PRECISION_WKB ? new WKBWriter(2) : null;
+    }
+
+    void write(Geometry geometry, Output output) {
+      output.writeSigned(geometry.getSRID());
+      if (precision == PRECISION_WKB) {
+        byte[] wkb = wkbWriter.write(geometry);
+        output.writeVarint(wkb.length);
+        output.writeBytes(wkb);
+      } else {
+        lastX = 0;
+        lastY = 0;
+        writeDelta(geometry, output);
+      }
+    }
+
+    private void writeDelta(Geometry geometry, Output output) {
+      if (geometry instanceof Point) {
+        output.writeByte(POINT);
+        writeSequence(((Point) geometry).getCoordinateSequence(), output);
+      } else if (geometry instanceof LinearRing) {
+        output.writeByte(LINEARRING);
+        writeSequence(((LinearRing) geometry).getCoordinateSequence(), output);
+      } else if (geometry instanceof LineString) {
+        output.writeByte(LINESTRING);
+        writeSequence(((LineString) geometry).getCoordinateSequence(), output);
+      } else if (geometry instanceof Polygon) {
+        Polygon polygon = (Polygon) geometry;
+        output.writeByte(POLYGON);
+        if (polygon.isEmpty()) {
+          output.writeVarint(0);
+          return;
+        }
+        output.writeVarint(polygon.getNumInteriorRing() + 1L);
+        writeSequence(polygon.getExteriorRing().getCoordinateSequence(), output);
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+          writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence(), output);
+        }
+      } else {
+        output.writeByte(geometry instanceof MultiPolygon
+                         ? MULTIPOLYGON
+                         : geometry instanceof MultiLineString
+                           ? MULTILINESTRING
+                           : geometry instanceof MultiPoint ? MULTIPOINT : GEOMETRYCOLLECTION);
+        output.writeVarint(geometry.getNumGeometries());
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+          writeDelta(geometry.getGeometryN(i), output);
+        }
+      }
+    }
+
+    private void writeSequence(CoordinateSequence sequence, Output output) {
+      output.writeVarint(sequence.size());
+      for (int i = 0; i < sequence.size(); i++) {
+        long x = Math.round(sequence.getX(i) * scale);
+        long y = Math.round(sequence.getY(i) * scale);
+        output.writeSigned(x - lastX);
+        output.writeSigned(y - lastY);
+        lastX = x;
+        lastY = y;
+      }
+    }
+  }
+
+  /**
+   * Geometry decoder. One instance per reader; not thread safe.
+   */
+  static final class GeometryDecoder {
+
+    private final int precision;
+    private final double scale;
+    private final GeometryFactory geometryFactory;
+    private final WKBReader wkbReader;
+    private long lastX;
+    private long lastY;
+
+    GeometryDecoder(int precision) {
+      this.precision = precision;
+      this.scale = Math.pow(10, Math.max(precision, 0));
+      this.geometryFactory = precision == PRECISION_WKB
+                             ? new GeometryFactory()
+                             : new GeometryFactory(new PrecisionModel(scale));
+      this.wkbReader = precision == PRECISION_WKB ? new WKBReader(geometryFactory) : null;
+    }
+
+    Geometry read(Input input) throws IOException {
+      int srid = (int) input.readSigned();
+      Geometry geometry;
+      if (precision == PRECISION_WKB) {
+        try {
+          geometry = wkbReader.read(input.readBytes(input.readCount()));
+        } catch (ParseException exception) {
+          throw new IOException("Invalid WKB geometry", exception);
+        }
+      } else {
+        lastX = 0;
+        lastY = 0;
+        try {
+          geometry = readDelta(input);
+        } catch (IllegalArgumentException exception) {
+          /**
+           * The geometry factory rejects invalid rings, e.g. unclosed.
+           */
+          throw new IOException("Corrupt record", exception);
+        }
+      }
+      geometry.setSRID(srid);
+      return geometry;
+    }
+
+    private Geometry readDelta(Input input) throws IOException {
+      int type = input.readByte();
+      switch (type) {
+        case POINT:
+          return geometryFactory.createPoint(readSequence(input));
+        case LINESTRING:
+          return geometryFactory.createLineString(readSequence(input));
+        case LINEARRING:
+          return geometryFactory.createLinearRing(readSequence(input));
+        case POLYGON: {
+          int rings = input.readCount();
+          if (rings == 0) {
+            return geometryFactory.createPolygon();
+          }
+          LinearRing shell = geometryFactory.createLinearRing(readSequence(input));
+          LinearRing[] holes = new LinearRing[rings - 1];
+          for (int i = 0; i < holes.length; i++) {
+            holes[i] = geometryFactory.createLinearRing(readSequence(input));
+          }
+          return geometryFactory.createPolygon(shell, holes);
+        }
+        case MULTIPOINT:
+        case MULTILINESTRING:
+        case MULTIPOLYGON:
+        case GEOMETRYCOLLECTION: {
+          Class<?> partType = type == MULTIPOINT
+                              ? Point.class
+                              : type == MULTILINESTRING
+                                ? LineString.class
+                                : type == MULTIPOLYGON ? Polygon.class : Geometry.class;
+          Geometry[] parts = new Geometry[input.readCount()];
+          for (int i = 0; i < parts.length; i++) {
+            parts[i] = readDelta(input);
+            if (!partType.isInstance(parts[i])) {
+              throw new IOException("Corrupt record");
+            }
+          }
+          switch (type) {
+            case MULTIPOINT:
+              return geometryFactory.createMultiPoint(Arrays.copyOf(parts, parts.length, Point[].class));
+            case MULTILINESTRING:
+              return geometryFactory.createMultiLineString(Arrays.copyOf(parts, parts.length, LineString[].class));
+            case MULTIPOLYGON:
+              return geometryFactory.createMultiPolygon(Arrays.copyOf(parts, parts.length, Polygon[].class));
+            default:
+              return geometryFactory.createGeometryCollection(parts);
+          }
+        }
+        default:
+          throw new IOException("Unknown geometry type " + type);
+      }
+    }
+
+    private CoordinateSequence readSequence(Input input) throws IOException {
+      int size = input.readCount();
+      Coordinate[] coordinates = new Coordinate[size];
+      for (int i = 0; i < size; i++) {
+        lastX += input.readSigned();
+        lastY += input.readSigned();
+        coordinates[i] = new Coordinate(lastX / scale, lastY / scale);
+      }
+      return geometryFactory.getCoordinateSequenceFactory().create(coordinates);
+    }
+  }// </editor-fold>
+
+}
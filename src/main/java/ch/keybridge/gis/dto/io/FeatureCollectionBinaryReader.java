@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.AbstractFeature;
+import ch.keybridge.gis.dto.Address;
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.Position;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A streaming reader of the compact binary FeatureCollection format written by
+ * {@link FeatureCollectionBinaryWriter}.
+ * <p>
+ * Features are returned one at a time, so memory use is bounded by the
+ * largest single feature regardless of the collection size. Features are
+ * available as an Iterator, a (sequential) Stream or through a callback.
+ * Reading may be stopped at any time.
+ * <p>
+ * Features may be filtered by feature type and by envelope. Both are written
+ * at the start of each feature record, so rejected features are skipped
+ * without decoding their properties or shape.
+ * <p>
+ * The collection header (id, name, properties, etc.) is read when the reader
+ * is created and is available from {@link #getHeader()}.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(inputStream)) {
+ *   reader.setEnvelope(viewport);
+ *   while (reader.hasNext()) {
+ *     process(reader.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support binary input
+ */
+public class FeatureCollectionBinaryReader implements Iterator<Feature>, Closeable {
+
+  /**
+   * The underlying (buffered) input stream.
+   */
+  private final InputStream inputStream;
+  /**
+   * The geometry decoder.
+   */
+  private final BinaryCodec.GeometryDecoder geometryDecoder;
+  /**
+   * The record buffer.
+   */
+  private final BinaryCodec.Input record = new BinaryCodec.Input();
+  /**
+   * The property keys, by number.
+   */
+  private final List<String> keys = new ArrayList<>();
+  /**
+   * The collection header. This contains the collection attributes but no
+   * features.
+   */
+  private final FeatureCollection header;
+  /**
+   * The (optional) feature type filter.
+   */
+  private Set<String> featureTypes;
+  /**
+   * The (optional) envelope filter.
+   */
+  private Envelope envelope;
+  /**
+   * The next feature. This is read ahead by {@link #hasNext()}.
+   */
+  private Feature nextFeature;
+  /**
+   * Indicator that the end of the collection has been reached.
+   */
+  private boolean finished;
+
+  /**
+   * Construct a new streaming reader and read the collection header. The input
+   * stream is not closed by this reader.
+   *
+   * @param inputStream the binary input stream
+   * @throws IOException if the input is not a binary feature collection
+   */
+  public FeatureCollectionBinaryReader(InputStream inputStream) throws IOException {
+    this.inputStream = inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream);
+    int magic = 0;
+    for (int i = 0; i < 4; i++) {
+      int b = this.inputStream.read();
+      if (b < 0) {
+        throw new EOFException("Not a binary feature collection");
+      }
+      magic = (magic << 8) | b;
+    }
+    if (magic != BinaryCodec.MAGIC) {
+      throw new IOException("Not a binary feature collection");
+    }
+    int version = this.inputStream.read();
+    if (version != BinaryCodec.VERSION) {
+      throw new IOException("Unsupported binary feature collection version " + version);
+    }
+    long encoded = BinaryCodec.readVarint(this.inputStream);
+    int precision = (int) ((encoded >>> 1) ^ -(encoded & 1));
+    if (precision != BinaryCodec.PRECISION_WKB && (precision < 0 || precision > BinaryCodec.MAX_PRECISION)) {
+      throw new IOException("Invalid geometry precision " + precision);
+    }
+    this.geometryDecoder = new BinaryCodec.GeometryDecoder(precision);
+    if (readRecord() != BinaryCodec.TAG_HEADER) {
+      throw new IOException("Missing feature collection header");
+    }
+    this.header = new FeatureCollection();
+    this.header.setFeatureType(record.readString());
+    readAttributes(header);
+  }
+
+  /**
+   * Read all features from a binary feature collection, passing each to the
+   * callback. Reading stops at the end of the collection or when the callback
+   * returns false.
+   *
+   * @param inputStream the binary input stream
+   * @param callback    the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public static long read(InputStream inputStream, Predicate<Feature> callback) throws IOException {
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(inputStream)) {
+      return reader.read(callback);
+    }
+  }
+
+  /**
+   * Get the collection header. This contains the collection id, feature type,
+   * name, description and properties but no features.
+   *
+   * @return the collection header
+   */
+  public FeatureCollection getHeader() {
+    return header;
+  }
+
+  /**
+   * Set the feature type filter. Only features having one of the indicated
+   * feature types are returned.
+   *
+   * @param featureTypes the feature types. Set null or empty to disable.
+   */
+  public void setFeatureTypes(String... featureTypes) {
+    this.featureTypes = featureTypes == null || featureTypes.length == 0
+                        ? null
+                        : new HashSet<>(Arrays.asList(featureTypes));
+  }
+
+  /**
+   * Set the envelope filter. Only features whose envelope intersects the
+   * indicated envelope are returned.
+   *
+   * @param envelope the envelope. Set null to disable.
+   */
+  public void setEnvelope(Envelope envelope) {
+    this.envelope = envelope;
+  }
+
+  /**
+   * Returns true if the collection has more (matching) features.
+   *
+   * @return true if the collection has more features
+   * @throws UncheckedIOException on read error
+   */
+  @Override
+  public boolean hasNext() {
+    if (nextFeature == null && !finished) {
+      try {
+        nextFeature = readFeature();
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+      finished = nextFeature == null;
+    }
+    return nextFeature != null;
+  }
+
+  /**
+   * Returns the next (matching) feature in the collection.
+   *
+   * @return the next feature
+   * @throws NoSuchElementException if the collection has no more features
+   * @throws UncheckedIOException   on read error
+   */
+  @Override
+  public Feature next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Feature feature = nextFeature;
+    nextFeature = null;
+    return feature;
+  }
+
+  /**
+   * Get the remaining (matching) features as a sequential, ordered stream. The
+   * stream is lazy; features are decoded as the stream is consumed and short
+   * circuit operations (e.g. limit, findFirst) stop reading.
+   *
+   * @return a stream of features
+   */
+  public Stream<Feature> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Pass each remaining (matching) feature to the callback. Reading stops at
+   * the end of the collection or when the callback returns false.
+   *
+   * @param callback the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public long read(Predicate<Feature> callback) throws IOException {
+    long count = 0;
+    try {
+      while (hasNext()) {
+        count++;
+        if (!callback.test(next())) {
+          break;
+        }
+      }
+    } catch (UncheckedIOException exception) {
+      throw exception.getCause();
+    }
+    return count;
+  }
+
+  /**
+   * Stop reading. The underlying input stream is not closed.
+   */
+  @Override
+  public void close() {
+    finished = true;
+    nextFeature = null;
+  }
+
+  /**
+   * Read the next record, reading any KEY records before it.
+   *
+   * @return the record tag
+   * @throws IOException on read error or a truncated stream
+   */
+  private int readRecord() throws IOException {
+    while (true) {
+      int tag = inputStream.read();
+      switch (tag) {
+        case BinaryCodec.TAG_KEY: {
+          long length = BinaryCodec.readVarint(inputStream);
+          if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new EOFException("Truncated key");
+          }
+          /**
+           * The key is stored as a string: its length plus one.
+           */
+          if (length == 0) {
+            keys.add(null);
+            break;
+          }
+          record.readFrom(inputStream, (int) length - 1);
+          keys.add(new String(record.readBytes((int) length - 1), StandardCharsets.UTF_8));
+          break;
+        }
+        case BinaryCodec.TAG_HEADER:
+        case BinaryCodec.TAG_FEATURE: {
+          long length = BinaryCodec.readVarint(inputStream);
+          if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new EOFException("Truncated record");
+          }
+          record.readFrom(inputStream, (int) length);
+          return tag;
+        }
+        case BinaryCodec.TAG_END:
+          return tag;
+        case -1:
+          throw new EOFException("Missing feature collection end");
+        default:
+          throw new IOException("Unknown record " + tag);
+      }
+    }
+  }
+
+  /**
+   * Read the next matching feature.
+   *
+   * @return the feature, null at the end of the collection
+   * @throws IOException on read error
+   */
+  private Feature readFeature() throws IOException {
+    while (readRecord() == BinaryCodec.TAG_FEATURE) {
+      String featureType = record.readString();
+      if (featureTypes != null && !featureTypes.contains(featureType)) {
+        continue;
+      }
+      int flags = record.readByte();
+      if ((flags & BinaryCodec.FLAG_SHAPE) != 0) {
+        Envelope shapeEnvelope = readEnvelope();
+        if (envelope != null && (shapeEnvelope == null || !envelope.intersects(shapeEnvelope))) {
+          continue;
+        }
+      } else if (envelope != null) {
+        /**
+         * Features without a shape never match an envelope.
+         */
+        continue;
+      }
+      Feature feature = new Feature();
+      feature.setFeatureType(featureType);
+      readAttributes(feature);
+      if ((flags & BinaryCodec.FLAG_SHAPE) != 0) {
+        feature.setShape(geometryDecoder.read(record));
+      }
+      if ((flags & BinaryCodec.FLAG_POSITION) != 0) {
+        feature.setPosition(readPosition());
+      }
+      if ((flags & BinaryCodec.FLAG_ADDRESS) != 0) {
+        Address address = new Address();
+        address.setStreet(record.readString());
+        address.setCity(record.readString());
+        address.setCounty(record.readString());
+        address.setState(record.readString());
+        address.setPostalCode(record.readString());
+        address.setCountry(record.readString());
+        feature.setAddress(address);
+      }
+      return feature;
+    }
+    return null;
+  }
+
+  /**
+   * Read the attributes common to the collection and its features: id, name,
+   * description and properties.
+   *
+   * @param feature the feature or collection
+   * @throws IOException on read error
+   */
+  private void readAttributes(AbstractFeature feature) throws IOException {
+    feature.setId(record.readString());
+    feature.setName(record.readString());
+    feature.setDescription(record.readString());
+    int size = record.readCount();
+    Map<String, String> properties = feature.getProperties();
+    for (int i = 0; i < size; i++) {
+      int number = record.readCount();
+      if (number >= keys.size()) {
+        throw new IOException("Unknown property key " + number);
+      }
+      properties.put(keys.get(number), record.readString());
+    }
+  }
+
+  /**
+   * Read a feature envelope.
+   *
+   * @return the envelope, null if the shape is empty
+   * @throws IOException on read error
+   */
+  private Envelope readEnvelope() throws IOException {
+    float minX = record.readFloat();
+    if (Float.isNaN(minX)) {
+      return null;
+    }
+    float minY = record.readFloat();
+    float maxX = record.readFloat();
+    float maxY = record.readFloat();
+    return new Envelope(minX, maxX, minY, maxY);
+  }
+
+  /**
+   * Read a position.
+   *
+   * @return the position
+   * @throws IOException on read error
+   */
+  private Position readPosition() throws IOException {
+    long mask = record.readVarint();
+    Position position = new Position();
+    if ((mask & 1) != 0) {
+      position.setLatitude(record.readDouble());
+    }
+    if ((mask & 2) != 0) {
+      position.setLongitude(record.readDouble());
+    }
+    if ((mask & 4) != 0) {
+      position.setElevation(record.readDouble());
+    }
+    if ((mask & 8) != 0) {
+      position.setHeading(record.readDouble());
+    }
+    if ((mask & 16) != 0) {
+      position.setSpeed(record.readDouble());
+    }
+    if ((mask & 32) != 0) {
+      position.setAccuracyHorizontal(record.readDouble());
+    }
+    if ((mask & 64) != 0) {
+      position.setAccuracyVertical(record.readDouble());
+    }
+    if ((mask & 128) != 0) {
+      position.setHaat(record.readDouble());
+    }
+    if ((mask & 256) != 0) {
+      position.setDomTimeStampMillis(record.readSigned());
+    }
+    position.setName(record.readString());
+    position.setDatum(record.readString());
+    position.setSource(record.readString());
+    int radials = record.readCount();
+    if (radials > 0) {
+      double[] azimuths = new double[radials];
+      double[] haats = new double[radials];
+      for (int i = 0; i < radials; i++) {
+        azimuths[i] = record.readDouble();
+        haats[i] = record.readDouble();
+      }
+      position.setRadialHaat(azimuths, haats);
+    }
+    return position;
+  }
+
+}
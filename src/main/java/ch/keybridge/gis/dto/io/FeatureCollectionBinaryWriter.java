@@ -0,0 +1,429 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.AbstractFeature;
+import ch.keybridge.gis.dto.Address;
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.Position;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * A streaming writer of the compact binary FeatureCollection format.
+ * <p>
+ * The binary format carries the same content as the XML document in a
+ * fraction of the size and parse time. It is intended for service to service
+ * transfer; use XML (or GeoJSON) for interchange with other systems. The
+ * stream holds a header, then a sequence of records:
+ * <ul>
+ * <li>a KEY record introduces a property key. Keys are numbered in order and
+ * features refer to their property keys by number, so each distinct key is
+ * written once per stream;</li>
+ * <li>the HEADER record holds the collection id, type, name, description and
+ * properties;</li>
+ * <li>a FEATURE record holds one feature, prefixed by its length. The feature
+ * type and shape envelope are written first, so a reader can skip features
+ * without decoding them;</li>
+ * <li>the END record marks the end of the collection.</li>
+ * </ul>
+ * Shapes are written in a delta encoding of the coordinates rounded to a fixed
+ * number of decimal places (by default {@value Position#SCALE_COORDINATE}, the
+ * Position coordinate precision), or losslessly as WKB. Both are two
+ * dimensional. See {@link FeatureCollectionBinaryReader}.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionBinaryWriter writer = new FeatureCollectionBinaryWriter(outputStream)) {
+ *   writer.writeStart(header);
+ *   while (cursor.hasNext()) {
+ *     writer.write(cursor.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support binary output
+ */
+public class FeatureCollectionBinaryWriter implements Closeable {
+
+  /**
+   * The geometry precision value selecting lossless WKB encoding.
+   */
+  public static final int PRECISION_WKB = BinaryCodec.PRECISION_WKB;
+
+  /**
+   * The underlying output stream.
+   */
+  private final OutputStream outputStream;
+  /**
+   * The geometry encoding precision.
+   */
+  private final int precision;
+  /**
+   * The geometry encoder.
+   */
+  private final BinaryCodec.GeometryEncoder geometryEncoder;
+  /**
+   * The record buffer.
+   */
+  private final BinaryCodec.Output record = new BinaryCodec.Output();
+  /**
+   * The new property key buffer, written before the record that uses them.
+   */
+  private final BinaryCodec.Output keys = new BinaryCodec.Output();
+  /**
+   * The record tag and length buffer.
+   */
+  private final BinaryCodec.Output prefix = new BinaryCodec.Output();
+  /**
+   * The number of each property key written.
+   */
+  private final Map<String, Integer> keyNumbers = new HashMap<>();
+  /**
+   * The collection envelope, expanded as features are written.
+   */
+  private Envelope envelope;
+  /**
+   * The number of features written.
+   */
+  private long count;
+  /**
+   * Indicator that the collection header has been written.
+   */
+  private boolean started;
+  /**
+   * Indicator that the collection end has been written.
+   */
+  private boolean ended;
+
+  /**
+   * Construct a new streaming writer using the delta geometry encoding at the
+   * Position coordinate precision. The output stream is not closed by this
+   * writer.
+   *
+   * @param outputStream the output stream
+   */
+  public FeatureCollectionBinaryWriter(OutputStream outputStream) {
+    this(outputStream, Position.SCALE_COORDINATE);
+  }
+
+  /**
+   * Construct a new streaming writer. The output stream is not closed by this
+   * writer.
+   *
+   * @param outputStream the output stream
+   * @param precision    the number of decimal places of the shape coordinates
+   *                     [0, 15], or {@link #PRECISION_WKB} for lossless WKB
+   */
+  public FeatureCollectionBinaryWriter(OutputStream outputStream, int precision) {
+    if (precision != PRECISION_WKB && (precision < 0 || precision > BinaryCodec.MAX_PRECISION)) {
+      throw new IllegalArgumentException("Precision must be between 0 and " + BinaryCodec.MAX_PRECISION + " or PRECISION_WKB");
+    }
+    this.outputStream = outputStream;
+    this.precision = precision;
+    this.geometryEncoder = new BinaryCodec.GeometryEncoder(precision);
+  }
+
+  /**
+   * Write a complete binary feature collection. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the iterator.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Iterator<Feature> features, OutputStream outputStream) throws IOException {
+    try (FeatureCollectionBinaryWriter writer = new FeatureCollectionBinaryWriter(outputStream)) {
+      writer.writeStart(collection);
+      while (features.hasNext()) {
+        writer.write(features.next());
+      }
+    }
+  }
+
+  /**
+   * Write a complete binary feature collection. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the stream. The stream is consumed sequentially.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Stream<Feature> features, OutputStream outputStream) throws IOException {
+    write(collection, features.iterator(), outputStream);
+  }
+
+  /**
+   * Write the format header and the collection header record. The features
+   * collection of the provided instance is ignored.
+   *
+   * @param collection the collection header. May be null for an anonymous
+   *                   collection.
+   * @throws IOException on write error
+   */
+  public void writeStart(FeatureCollection collection) throws IOException {
+    if (started) {
+      throw new IllegalStateException("Feature collection start already written");
+    }
+    BinaryCodec.Output format = new BinaryCodec.Output();
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      format.writeByte(BinaryCodec.MAGIC >>> shift);
+    }
+    format.writeByte(BinaryCodec.VERSION);
+    format.writeSigned(precision);
+    format.writeTo(outputStream);
+    FeatureCollection header = collection == null ? new FeatureCollection() : collection;
+    record.reset();
+    record.writeString(header.getFeatureType());
+    writeAttributes(header);
+    writeRecord(BinaryCodec.TAG_HEADER);
+    started = true;
+  }
+
+  /**
+   * Write a single feature into the collection. A null feature is ignored.
+   *
+   * @param feature the feature
+   * @throws IOException on write error
+   */
+  public void write(Feature feature) throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      throw new IllegalStateException("Feature collection end already written");
+    }
+    if (feature == null) {
+      return;
+    }
+    Geometry shape = feature.getShape();
+    Position position = feature.getPosition();
+    Address address = feature.getAddress();
+    record.reset();
+    /**
+     * The feature type and envelope come first so that readers can filter
+     * without decoding the feature.
+     */
+    record.writeString(feature.getFeatureType());
+    record.writeByte((shape != null ? BinaryCodec.FLAG_SHAPE : 0)
+      | (position != null ? BinaryCodec.FLAG_POSITION : 0)
+      | (address != null ? BinaryCodec.FLAG_ADDRESS : 0));
+    if (shape != null) {
+      writeEnvelope(shape.getEnvelopeInternal());
+    }
+    writeAttributes(feature);
+    if (shape != null) {
+      geometryEncoder.write(shape, record);
+    }
+    if (position != null) {
+      writePosition(position);
+    }
+    if (address != null) {
+      record.writeString(address.getStreet());
+      record.writeString(address.getCity());
+      record.writeString(address.getCounty());
+      record.writeString(address.getState());
+      record.writeString(address.getPostalCode());
+      record.writeString(address.getCountry());
+    }
+    writeRecord(BinaryCodec.TAG_FEATURE);
+    expandEnvelope(shape);
+    count++;
+  }
+
+  /**
+   * Write the collection end record, then flush the output. The output stream
+   * is not closed.
+   *
+   * @throws IOException on write error
+   */
+  public void writeEnd() throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      return;
+    }
+    outputStream.write(BinaryCodec.TAG_END);
+    outputStream.flush();
+    ended = true;
+  }
+
+  /**
+   * Complete the collection (if not already complete). The underlying output
+   * stream is flushed but not closed.
+   *
+   * @throws IOException on write error
+   */
+  @Override
+  public void close() throws IOException {
+    writeEnd();
+  }
+
+  /**
+   * Get the envelope of all features written so far.
+   *
+   * @return the envelope, null if no feature having a shape has been written
+   */
+  public Envelope getEnvelope() {
+    return envelope;
+  }
+
+  /**
+   * Get the number of features written so far.
+   *
+   * @return the feature count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Write the attributes common to the collection and its features: id, name,
+   * description and properties. The feature type is written by the caller.
+   *
+   * @param feature the feature or collection
+   */
+  private void writeAttributes(AbstractFeature feature) {
+    record.writeString(feature.getId());
+    record.writeString(feature.getName());
+    record.writeString(feature.getDescription());
+    Map<String, String> properties = feature.getProperties();
+    record.writeVarint(properties.size());
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      record.writeVarint(keyNumber(entry.getKey()));
+      record.writeString(entry.getValue());
+    }
+  }
+
+  /**
+   * Get the number of a property key, queueing a KEY record for a new key.
+   *
+   * @param key the key
+   * @return the key number
+   */
+  private int keyNumber(String key) {
+    Integer number = keyNumbers.get(key);
+    if (number == null) {
+      number = keyNumbers.size();
+      keyNumbers.put(key, number);
+      keys.writeByte(BinaryCodec.TAG_KEY);
+      keys.writeString(key);
+    }
+    return number;
+  }
+
+  /**
+   * Write an envelope as four floats, rounded outwards so that the float
+   * envelope contains the double envelope.
+   *
+   * @param envelope the envelope
+   */
+  private void writeEnvelope(Envelope envelope) {
+    if (envelope.isNull()) {
+      record.writeFloat(Float.NaN);
+      return;
+    }
+    record.writeFloat(Math.nextDown((float) envelope.getMinX()));
+    record.writeFloat(Math.nextDown((float) envelope.getMinY()));
+    record.writeFloat(Math.nextUp((float) envelope.getMaxX()));
+    record.writeFloat(Math.nextUp((float) envelope.getMaxY()));
+  }
+
+  /**
+   * Write a position: a bit mask of the numeric values present, the present
+   * values, the text values and the radial HAAT values.
+   *
+   * @param position the position
+   */
+  private void writePosition(Position position) {
+    Double[] values = {position.getLatitude(), position.getLongitude(), position.getElevation(),
+                       position.getHeading(), position.getSpeed(), position.getAccuracyHorizontal(),
+                       position.getAccuracyVertical(), position.getHaat()};
+    Long domTimeStamp = position.getDomTimeStampMillis();
+    int mask = domTimeStamp != null ? 1 << values.length : 0;
+    for (int i = 0; i < values.length; i++) {
+      mask |= values[i] != null ? 1 << i : 0;
+    }
+    record.writeVarint(mask);
+    for (Double value : values) {
+      if (value != null) {
+        record.writeDouble(value);
+      }
+    }
+    if (domTimeStamp != null) {
+      record.writeSigned(domTimeStamp);
+    }
+    record.writeString(position.getName());
+    record.writeString(position.getDatum());
+    record.writeString(position.getSource());
+    Map<Double, Double> radialHaat = position.getRadialHaat();
+    record.writeVarint(radialHaat.size());
+    for (Map.Entry<Double, Double> entry : radialHaat.entrySet()) {
+      record.writeDouble(entry.getKey());
+      record.writeDouble(entry.getValue());
+    }
+  }
+
+  /**
+   * Write the queued KEY records, then the record buffer with its tag and
+   * length.
+   *
+   * @param tag the record tag
+   * @throws IOException on write error
+   */
+  private void writeRecord(int tag) throws IOException {
+    if (keys.size() > 0) {
+      keys.writeTo(outputStream);
+      keys.reset();
+    }
+    prefix.reset();
+    prefix.writeByte(tag);
+    prefix.writeVarint(record.size());
+    prefix.writeTo(outputStream);
+    record.writeTo(outputStream);
+  }
+
+  /**
+   * Expand the collection envelope to include a feature shape.
+   *
+   * @param shape the shape
+   */
+  private void expandEnvelope(Geometry shape) {
+    if (shape == null || shape.isEmpty()) {
+      return;
+    }
+    if (envelope == null) {
+      envelope = new Envelope(shape.getEnvelopeInternal());
+    } else {
+      envelope.expandToInclude(shape.getEnvelopeInternal());
+    }
+  }
+
+}
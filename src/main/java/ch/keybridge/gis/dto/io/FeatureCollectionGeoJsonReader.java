@@ -0,0 +1,1113 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.AbstractFeature;
+import ch.keybridge.gis.dto.Address;
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.Position;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.locationtech.jts.geom.*;
+
+/**
+ * A streaming GeoJSON (RFC 7946) reader for FeatureCollection.
+ * <p>
+ * The JSON is parsed incrementally by a pull parser and features are returned
+ * one at a time, so memory use is bounded by the largest single feature
+ * regardless of the document size. Features are available as an Iterator, a
+ * (sequential) Stream or through a callback. Reading may be stopped at any
+ * time.
+ * <p>
+ * Features may be filtered by feature type and by envelope. Filters are
+ * applied before the feature shape is constructed: a feature whose
+ * "featureType" or "bbox" member is rejected before its geometry is reached
+ * is skipped without parsing the coordinates, and otherwise the coordinates
+ * are parsed but no JTS geometry is built for a rejected feature. Features
+ * without a shape never match an envelope filter.
+ * <p>
+ * Feature members are read as written by {@link FeatureCollectionGeoJsonWriter}:
+ * "id", "geometry" and "properties", plus the foreign members "featureType",
+ * "name", "description", "position" and "address". Property values that are
+ * not strings are kept as their JSON text. Other members are ignored.
+ * <p>
+ * The collection header (id, name, properties, etc.) is read when the reader
+ * is created and is available from {@link #getHeader()}. Only the header
+ * members preceding the "features" member are read.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(inputStream)) {
+ *   reader.setEnvelope(viewport);
+ *   while (reader.hasNext()) {
+ *     process(reader.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support streaming GeoJSON input
+ */
+public class FeatureCollectionGeoJsonReader implements Iterator<Feature>, Closeable {
+
+  /**
+   * The factory for feature shapes. GeoJSON coordinates are decimal text, so
+   * a floating precision factory reproduces them exactly.
+   */
+  private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+  /**
+   * Exact powers of ten, for the fast number parser.
+   */
+  private static final double[] POWERS = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * The underlying character reader.
+   */
+  private final Reader reader;
+  /**
+   * The input buffer.
+   */
+  private final char[] buffer = new char[8192];
+  /**
+   * The read position in the buffer.
+   */
+  private int position;
+  /**
+   * The number of characters in the buffer.
+   */
+  private int limit;
+  /**
+   * The input offset of the start of the buffer, for error messages.
+   */
+  private long offset;
+  /**
+   * A buffer holding the text of the number being parsed.
+   */
+  private char[] number = new char[32];
+  /**
+   * A buffer holding strings that contain escapes or span input buffers.
+   */
+  private final StringBuilder text = new StringBuilder();
+  /**
+   * The collection header. This contains the collection attributes but no
+   * features.
+   */
+  private final FeatureCollection header;
+  /**
+   * The (optional) feature type filter.
+   */
+  private Set<String> featureTypes;
+  /**
+   * The (optional) envelope filter.
+   */
+  private Envelope envelope;
+  /**
+   * The next feature. This is read ahead by {@link #hasNext()}.
+   */
+  private Feature nextFeature;
+  /**
+   * Indicator that the end of the features array has been reached.
+   */
+  private boolean finished;
+
+  /**
+   * Construct a new streaming reader and read the collection header. The input
+   * stream is not closed by this reader.
+   *
+   * @param inputStream the UTF-8 encoded GeoJSON input stream
+   * @throws IOException if the input is not a GeoJSON FeatureCollection
+   */
+  public FeatureCollectionGeoJsonReader(InputStream inputStream) throws IOException {
+    this(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Construct a new streaming reader and read the collection header. The
+   * reader is not closed by this reader.
+   *
+   * @param reader the GeoJSON character reader
+   * @throws IOException if the input is not a GeoJSON FeatureCollection
+   */
+  public FeatureCollectionGeoJsonReader(Reader reader) throws IOException {
+    this.reader = reader;
+    this.header = new FeatureCollection();
+    readHeader();
+  }
+
+  /**
+   * Read all features from a GeoJSON FeatureCollection, passing each to the
+   * callback. Reading stops at the end of the collection or when the callback
+   * returns false.
+   *
+   * @param inputStream the GeoJSON input stream
+   * @param callback    the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public static long read(InputStream inputStream, Predicate<Feature> callback) throws IOException {
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(inputStream)) {
+      return reader.read(callback);
+    }
+  }
+
+  /**
+   * Get the collection header. This contains the collection id, feature type,
+   * name, description and properties but no features.
+   *
+   * @return the collection header
+   */
+  public FeatureCollection getHeader() {
+    return header;
+  }
+
+  /**
+   * Set the feature type filter. Only features having one of the indicated
+   * feature types are returned.
+   *
+   * @param featureTypes the feature types. Set null or empty to disable.
+   */
+  public void setFeatureTypes(String... featureTypes) {
+    this.featureTypes = featureTypes == null || featureTypes.length == 0
+                        ? null
+                        : new HashSet<>(Arrays.asList(featureTypes));
+  }
+
+  /**
+   * Set the envelope filter. Only features whose envelope intersects the
+   * indicated envelope are returned.
+   *
+   * @param envelope the envelope. Set null to disable.
+   */
+  public void setEnvelope(Envelope envelope) {
+    this.envelope = envelope;
+  }
+
+  /**
+   * Returns true if the collection has more (matching) features.
+   *
+   * @return true if the collection has more features
+   * @throws UncheckedIOException on read error
+   */
+  @Override
+  public boolean hasNext() {
+    if (nextFeature == null && !finished) {
+      try {
+        nextFeature = readFeature();
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+      finished = nextFeature == null;
+    }
+    return nextFeature != null;
+  }
+
+  /**
+   * Returns the next (matching) feature in the collection.
+   *
+   * @return the next feature
+   * @throws NoSuchElementException if the collection has no more features
+   * @throws UncheckedIOException   on read error
+   */
+  @Override
+  public Feature next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Feature feature = nextFeature;
+    nextFeature = null;
+    return feature;
+  }
+
+  /**
+   * Get the remaining (matching) features as a sequential, ordered stream. The
+   * stream is lazy; features are parsed as the stream is consumed and short
+   * circuit operations (e.g. limit, findFirst) stop reading.
+   *
+   * @return a stream of features
+   */
+  public Stream<Feature> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Pass each remaining (matching) feature to the callback. Reading stops at
+   * the end of the collection or when the callback returns false.
+   *
+   * @param callback the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public long read(Predicate<Feature> callback) throws IOException {
+    long count = 0;
+    try {
+      while (hasNext()) {
+        count++;
+        if (!callback.test(next())) {
+          break;
+        }
+      }
+    } catch (UncheckedIOException exception) {
+      throw exception.getCause();
+    }
+    return count;
+  }
+
+  /**
+   * Stop reading. The underlying input stream is not closed.
+   */
+  @Override
+  public void close() {
+    finished = true;
+    nextFeature = null;
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Feature parsing">
+  /**
+   * Read the collection members up to the start of the features array.
+   *
+   * @throws IOException if the input is not a GeoJSON FeatureCollection
+   */
+  private void readHeader() throws IOException {
+    expect('{');
+    String name;
+    while ((name = nextName()) != null) {
+      switch (name) {
+        case "type":
+          if (!"FeatureCollection".equals(readString())) {
+            throw new IOException("Not a GeoJSON FeatureCollection");
+          }
+          break;
+        case "features":
+          expect('[');
+          return;
+        default:
+          if (!readAttribute(header, name)) {
+            skipValue(null);
+          }
+      }
+    }
+    /**
+     * A collection without features.
+     */
+    finished = true;
+  }
+
+  /**
+   * Read the next matching feature.
+   *
+   * @return the feature, null at the end of the features array
+   * @throws IOException on read error
+   */
+  private Feature readFeature() throws IOException {
+    while (hasNextElement()) {
+      Feature feature = readFeatureObject();
+      if (feature != null) {
+        return feature;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Read a feature object, applying the filters.
+   *
+   * @return the feature, null if rejected by a filter
+   * @throws IOException on read error
+   */
+  private Feature readFeatureObject() throws IOException {
+    expect('{');
+    Feature feature = new Feature();
+    GeometryNode geometry = null;
+    boolean rejected = false;
+    String name;
+    while ((name = nextName()) != null) {
+      if (rejected) {
+        skipValue(null);
+        continue;
+      }
+      switch (name) {
+        case "geometry":
+          geometry = readGeometry();
+          rejected = envelope != null && (geometry == null || !envelope.intersects(geometry.envelope));
+          break;
+        case "bbox":
+          Envelope bbox = readBbox();
+          rejected = envelope != null && bbox != null && !envelope.intersects(bbox);
+          break;
+        case "position":
+          feature.setPosition(readPosition());
+          break;
+        case "address":
+          feature.setAddress(readAddress());
+          break;
+        default:
+          if (!readAttribute(feature, name)) {
+            skipValue(null);
+          }
+          rejected = featureTypes != null && "featureType".equals(name) && !featureTypes.contains(feature.getFeatureType());
+      }
+    }
+    if (rejected
+      || (featureTypes != null && !featureTypes.contains(feature.getFeatureType()))
+      || (envelope != null && geometry == null)) {
+      return null;
+    }
+    if (geometry != null) {
+      feature.setShape(geometry.build());
+    }
+    return feature;
+  }
+
+  /**
+   * Read a member common to the collection and its features: id,
+   * featureType, name, description or properties.
+   *
+   * @param feature the feature or collection
+   * @param name    the member name
+   * @return true if the member was read, false if it is not a common member
+   * @throws IOException on read error
+   */
+  private boolean readAttribute(AbstractFeature feature, String name) throws IOException {
+    switch (name) {
+      case "id":
+        feature.setId(readScalar());
+        return true;
+      case "featureType":
+        feature.setFeatureType(readString());
+        return true;
+      case "name":
+        feature.setName(readString());
+        return true;
+      case "description":
+        feature.setDescription(readString());
+        return true;
+      case "properties":
+        if (readNull()) {
+          return true;
+        }
+        expect('{');
+        String key;
+        while ((key = nextName()) != null) {
+          feature.setProperty(key, readScalar());
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Read a position object.
+   *
+   * @return the position, null if the value is null
+   * @throws IOException on read error
+   */
+  private Position readPosition() throws IOException {
+    if (readNull()) {
+      return null;
+    }
+    expect('{');
+    Position position = new Position();
+    String name;
+    while ((name = nextName()) != null) {
+      switch (name) {
+        case "name":
+          position.setName(readString());
+          break;
+        case "latitude":
+          position.setLatitude(readNumber());
+          break;
+        case "longitude":
+          position.setLongitude(readNumber());
+          break;
+        case "elevation":
+          position.setElevation(readNumber());
+          break;
+        case "heading":
+          position.setHeading(readNumber());
+          break;
+        case "speed":
+          position.setSpeed(readNumber());
+          break;
+        case "datum":
+          position.setDatum(readString());
+          break;
+        case "domTimeStamp":
+          String domTimeStamp = readScalar();
+          if (domTimeStamp != null) {
+            try {
+              position.setDomTimeStampMillis(Long.parseLong(domTimeStamp));
+            } catch (NumberFormatException exception) {
+              throw error("Invalid domTimeStamp " + domTimeStamp, exception);
+            }
+          }
+          break;
+        case "accuracyHorizontal":
+          position.setAccuracyHorizontal(readNumber());
+          break;
+        case "accuracyVertical":
+          position.setAccuracyVertical(readNumber());
+          break;
+        case "source":
+          position.setSource(readString());
+          break;
+        case "haat":
+          position.setHaat(readNumber());
+          break;
+        case "radialHaat":
+          if (readNull()) {
+            break;
+          }
+          expect('{');
+          double[] azimuths = new double[16];
+          double[] haats = new double[16];
+          int count = 0;
+          String azimuth;
+          while ((azimuth = nextName()) != null) {
+            if (count == azimuths.length) {
+              azimuths = Arrays.copyOf(azimuths, count * 2);
+              haats = Arrays.copyOf(haats, count * 2);
+            }
+            try {
+              azimuths[count] = Double.parseDouble(azimuth);
+            } catch (NumberFormatException exception) {
+              throw error("Invalid radial azimuth " + azimuth, exception);
+            }
+            haats[count++] = readDouble();
+          }
+          position.setRadialHaat(Arrays.copyOf(azimuths, count), Arrays.copyOf(haats, count));
+          break;
+        default:
+          skipValue(null);
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Read an address object.
+   *
+   * @return the address, null if the value is null
+   * @throws IOException on read error
+   */
+  private Address readAddress() throws IOException {
+    if (readNull()) {
+      return null;
+    }
+    expect('{');
+    Address address = new Address();
+    String name;
+    while ((name = nextName()) != null) {
+      switch (name) {
+        case "street":
+          address.setStreet(readString());
+          break;
+        case "city":
+          address.setCity(readString());
+          break;
+        case "county":
+          address.setCounty(readString());
+          break;
+        case "state":
+          address.setState(readString());
+          break;
+        case "postalCode":
+          address.setPostalCode(readString());
+          break;
+        case "country":
+          address.setCountry(readString());
+          break;
+        default:
+          skipValue(null);
+      }
+    }
+    return address;
+  }
+
+  /**
+   * Read a bounding box array: [minX, minY, maxX, maxY] or, with Z,
+   * [minX, minY, minZ, maxX, maxY, maxZ].
+   *
+   * @return the envelope, null if the value is null or not a bounding box
+   * @throws IOException on read error
+   */
+  private Envelope readBbox() throws IOException {
+    if (readNull()) {
+      return null;
+    }
+    expect('[');
+    double[] values = new double[6];
+    int count = 0;
+    while (hasNextElement()) {
+      double value = readDouble();
+      if (count < values.length) {
+        values[count] = value;
+      }
+      count++;
+    }
+    if (count == 4) {
+      return new Envelope(values[0], values[2], values[1], values[3]);
+    }
+    return count == 6 ? new Envelope(values[0], values[3], values[1], values[4]) : null;
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Geometry parsing">
+  /**
+   * Read a geometry object into an intermediate node. The JTS geometry is
+   * built from the node only if the feature is accepted.
+   *
+   * @return the geometry node, null if the value is null
+   * @throws IOException on read error
+   */
+  private GeometryNode readGeometry() throws IOException {
+    if (readNull()) {
+      return null;
+    }
+    expect('{');
+    GeometryNode node = new GeometryNode();
+    String name;
+    while ((name = nextName()) != null) {
+      switch (name) {
+        case "type":
+          node.type = readString();
+          break;
+        case "coordinates":
+          expect('[');
+          node.coordinates = readCoordinates(node.envelope);
+          break;
+        case "geometries":
+          expect('[');
+          node.geometries = new ArrayList<>();
+          while (hasNextElement()) {
+            GeometryNode child = readGeometry();
+            if (child != null) {
+              node.geometries.add(child);
+              node.envelope.expandToInclude(child.envelope);
+            }
+          }
+          break;
+        default:
+          skipValue(null);
+      }
+    }
+    if (node.type == null) {
+      throw new IOException("Geometry type is required");
+    }
+    return node;
+  }
+
+  /**
+   * Read a (nested) coordinates array, following the opening bracket. A
+   * position is returned as a Coordinate and an array of arrays as a List.
+   *
+   * @param bounds the envelope to expand with each position
+   * @return a Coordinate or a List
+   * @throws IOException on read error
+   */
+  private Object readCoordinates(Envelope bounds) throws IOException {
+    int c = peek();
+    if (c == '-' || (c >= '0' && c <= '9')) {
+      double x = readDouble();
+      if (!hasNextElement()) {
+        throw error("A position requires at least two numbers", null);
+      }
+      double y = readDouble();
+      double z = Double.NaN;
+      if (hasNextElement()) {
+        z = readDouble();
+        while (hasNextElement()) {
+          skipValue(null);
+        }
+      }
+      bounds.expandToInclude(x, y);
+      return new Coordinate(x, y, z);
+    }
+    List<Object> list = new ArrayList<>();
+    while (hasNextElement()) {
+      expect('[');
+      list.add(readCoordinates(bounds));
+    }
+    return list;
+  }
+
+  /**
+   * An intermediate geometry: the type, the nested coordinates or the member
+   * geometries, and the envelope.
+   */
+  private static final class GeometryNode {
+
+    private String type;
+    private Object coordinates;
+    private List<GeometryNode> geometries;
+    private final Envelope envelope = new Envelope();
+
+    /**
+     * Build the JTS geometry.
+     *
+     * @return the geometry
+     * @throws IOException if the coordinates do not match the type
+     */
+    Geometry build() throws IOException {
+      try {
+        switch (type) {
+          case "Point":
+            return coordinates instanceof Coordinate
+                   ? GEOMETRY_FACTORY.createPoint((Coordinate) coordinates)
+                   : GEOMETRY_FACTORY.createPoint();
+          case "LineString":
+            return GEOMETRY_FACTORY.createLineString(toArray(coordinates));
+          case "Polygon":
+            return toPolygon(coordinates);
+          case "MultiPoint":
+            return GEOMETRY_FACTORY.createMultiPointFromCoords(toArray(coordinates));
+          case "MultiLineString": {
+            List<?> parts = toList(coordinates);
+            LineString[] lineStrings = new LineString[parts.size()];
+            for (int i = 0; i < lineStrings.length; i++) {
+              lineStrings[i] = GEOMETRY_FACTORY.createLineString(toArray(parts.get(i)));
+            }
+            return GEOMETRY_FACTORY.createMultiLineString(lineStrings);
+          }
+          case "MultiPolygon": {
+            List<?> parts = toList(coordinates);
+            Polygon[] polygons = new Polygon[parts.size()];
+            for (int i = 0; i < polygons.length; i++) {
+              polygons[i] = toPolygon(parts.get(i));
+            }
+            return GEOMETRY_FACTORY.createMultiPolygon(polygons);
+          }
+          case "GeometryCollection": {
+            List<GeometryNode> parts = geometries == null ? Collections.emptyList() : geometries;
+            Geometry[] members = new Geometry[parts.size()];
+            for (int i = 0; i < members.length; i++) {
+              members[i] = parts.get(i).build();
+            }
+            return GEOMETRY_FACTORY.createGeometryCollection(members);
+          }
+          default:
+            throw new IOException("Unknown geometry type " + type);
+        }
+      } catch (ClassCastException | IllegalArgumentException exception) {
+        throw new IOException("Invalid " + type + " coordinates", exception);
+      }
+    }
+
+    private static Polygon toPolygon(Object coordinates) {
+      List<?> rings = toList(coordinates);
+      if (rings.isEmpty()) {
+        return GEOMETRY_FACTORY.createPolygon();
+      }
+      LinearRing shell = GEOMETRY_FACTORY.createLinearRing(toArray(rings.get(0)));
+      LinearRing[] holes = new LinearRing[rings.size() - 1];
+      for (int i = 0; i < holes.length; i++) {
+        holes[i] = GEOMETRY_FACTORY.createLinearRing(toArray(rings.get(i + 1)));
+      }
+      return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    private static List<?> toList(Object coordinates) {
+      return coordinates == null ? Collections.emptyList() : (List<?>) coordinates;
+    }
+
+    private static Coordinate[] toArray(Object coordinates) {
+      return toList(coordinates).toArray(new Coordinate[0]);
+    }
+  }// </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="JSON tokenizer">
+  /**
+   * Get the next non-whitespace character without consuming it.
+   *
+   * @return the character, -1 at the end of the input
+   * @throws IOException on read error
+   */
+  private int peek() throws IOException {
+    while (true) {
+      if (position == limit && !fill()) {
+        return -1;
+      }
+      char c = buffer[position];
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return c;
+      }
+      position++;
+    }
+  }
+
+  /**
+   * Read the next character, including whitespace.
+   *
+   * @return the character
+   * @throws IOException on read error or at the end of the input
+   */
+  private char read() throws IOException {
+    if (position == limit && !fill()) {
+      throw new EOFException("Unexpected end of GeoJSON");
+    }
+    return buffer[position++];
+  }
+
+  /**
+   * Refill the input buffer.
+   *
+   * @return false at the end of the input
+   * @throws IOException on read error
+   */
+  private boolean fill() throws IOException {
+    int count = reader.read(buffer, 0, buffer.length);
+    offset += limit;
+    position = 0;
+    limit = Math.max(count, 0);
+    return count > 0;
+  }
+
+  /**
+   * Create a parse exception indicating the current input offset.
+   *
+   * @param message the error message
+   * @param cause   the cause, may be null
+   * @return the exception
+   */
+  private IOException error(String message, Throwable cause) {
+    return new IOException(message + " at offset " + (offset + position), cause);
+  }
+
+  /**
+   * Consume the next non-whitespace character, which must be as indicated.
+   *
+   * @param expected the expected character
+   * @throws IOException if the next character is different
+   */
+  private void expect(char expected) throws IOException {
+    int c = peek();
+    if (c != expected) {
+      throw error("Expected '" + expected + "' but found " + (c < 0 ? "end of input" : "'" + (char) c + "'"), null);
+    }
+    position++;
+  }
+
+  /**
+   * Read the next object member name, following the opening brace or the
+   * previous member value.
+   *
+   * @return the member name, null at the end of the object
+   * @throws IOException on read error
+   */
+  private String nextName() throws IOException {
+    int c = peek();
+    if (c == ',') {
+      position++;
+      c = peek();
+    }
+    if (c == '}') {
+      position++;
+      return null;
+    }
+    String name = readString();
+    expect(':');
+    return name;
+  }
+
+  /**
+   * Returns true if the current array has another element, following the
+   * opening bracket or the previous element. Consumes the closing bracket.
+   *
+   * @return true if there is another element
+   * @throws IOException on read error
+   */
+  private boolean hasNextElement() throws IOException {
+    int c = peek();
+    if (c == ',') {
+      position++;
+      c = peek();
+    }
+    if (c == ']') {
+      position++;
+      return false;
+    }
+    if (c < 0) {
+      throw new EOFException("Unexpected end of GeoJSON");
+    }
+    return true;
+  }
+
+  /**
+   * Consume a null literal if it is next.
+   *
+   * @return true if a null was consumed
+   * @throws IOException on read error
+   */
+  private boolean readNull() throws IOException {
+    if (peek() != 'n') {
+      return false;
+    }
+    for (char c : "null".toCharArray()) {
+      if (read() != c) {
+        throw error("Invalid literal", null);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read a string value.
+   *
+   * @return the string, null if the value is null
+   * @throws IOException if the value is not a string or null
+   */
+  private String readString() throws IOException {
+    if (readNull()) {
+      return null;
+    }
+    expect('"');
+    /**
+     * Fast path: no escapes and the string is in the buffer.
+     */
+    for (int i = position; i < limit; i++) {
+      char c = buffer[i];
+      if (c == '"') {
+        String value = new String(buffer, position, i - position);
+        position = i + 1;
+        return value;
+      }
+      if (c == '\\') {
+        break;
+      }
+    }
+    text.setLength(0);
+    while (true) {
+      char c = read();
+      if (c == '"') {
+        return text.toString();
+      }
+      if (c != '\\') {
+        text.append(c);
+        continue;
+      }
+      c = read();
+      switch (c) {
+        case 'b':
+          text.append('\b');
+          break;
+        case 'f':
+          text.append('\f');
+          break;
+        case 'n':
+          text.append('\n');
+          break;
+        case 'r':
+          text.append('\r');
+          break;
+        case 't':
+          text.append('\t');
+          break;
+        case 'u':
+          int code = 0;
+          for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+              throw new IOException("Invalid unicode escape");
+            }
+            code = code * 16 + digit;
+          }
+          text.append((char) code);
+          break;
+        default:
+          text.append(c);
+      }
+    }
+  }
+
+  /**
+   * Read a scalar value as text: a string is returned unquoted, a number,
+   * true or false as its JSON text, and an object or array as its JSON text.
+   *
+   * @return the text, null if the value is null
+   * @throws IOException on read error
+   */
+  private String readScalar() throws IOException {
+    int c = peek();
+    if (c == '"' || c == 'n') {
+      return readString();
+    }
+    StringBuilder raw = new StringBuilder();
+    skipValue(raw);
+    return raw.toString();
+  }
+
+  /**
+   * Read a number value.
+   *
+   * @return the number, null if the value is null
+   * @throws IOException if the value is not a number or null
+   */
+  private Double readNumber() throws IOException {
+    return readNull() ? null : readDouble();
+  }
+
+  /**
+   * Read a number value. Numbers with up to 15 significant digits and a
+   * decimal exponent within 22 are converted exactly with a single
+   * multiplication or division; others are converted by Double.parseDouble.
+   *
+   * @return the number, NaN if the value is null
+   * @throws IOException if the value is not a number or null
+   */
+  private double readDouble() throws IOException {
+    if (readNull()) {
+      return Double.NaN;
+    }
+    int length = readNumberText();
+    int index = 0;
+    boolean negative = number[0] == '-';
+    if (negative) {
+      index++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    boolean digit = false;
+    for (; index < length; index++) {
+      char c = number[index];
+      if (c >= '0' && c <= '9') {
+        digit = true;
+        if (mantissa != 0 || c != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (fraction) {
+          scale--;
+        }
+        if (digits > 15) {
+          break;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (index < length && (number[index] == 'e' || number[index] == 'E') && digits <= 15) {
+      try {
+        scale += Integer.parseInt(new String(number, index + 1, length - index - 1).replace("+", ""));
+      } catch (NumberFormatException exception) {
+        throw error("Invalid number " + new String(number, 0, length), exception);
+      }
+      index = length;
+    }
+    /**
+     * Text without a digit (e.g. "." or "e5") falls through to parseDouble,
+     * which rejects it.
+     */
+    if (index == length && digit && digits <= 15 && scale >= -22 && scale <= 22) {
+      double value = scale < 0 ? mantissa / POWERS[-scale] : mantissa * POWERS[scale];
+      return negative ? -value : value;
+    }
+    try {
+      return Double.parseDouble(new String(number, 0, length));
+    } catch (NumberFormatException exception) {
+      throw error("Invalid number " + new String(number, 0, length), exception);
+    }
+  }
+
+  /**
+   * Read the characters of a number into the number buffer.
+   *
+   * @return the number of characters
+   * @throws IOException on read error
+   */
+  private int readNumberText() throws IOException {
+    peek();
+    int length = 0;
+    while (position < limit || fill()) {
+      char c = buffer[position];
+      if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+        break;
+      }
+      if (length == number.length) {
+        number = Arrays.copyOf(number, length * 2);
+      }
+      number[length++] = c;
+      position++;
+    }
+    if (length == 0) {
+      throw error("Expected a number", null);
+    }
+    return length;
+  }
+
+  /**
+   * Skip the next value of any type, optionally copying its JSON text.
+   *
+   * @param raw the buffer to copy the value text to, null to discard it
+   * @throws IOException on read error
+   */
+  private void skipValue(StringBuilder raw) throws IOException {
+    int c = peek();
+    if (c < 0) {
+      throw new EOFException("Unexpected end of GeoJSON");
+    }
+    if (c != '{' && c != '[' && c != '"') {
+      /**
+       * A number or literal: read up to the next delimiter.
+       */
+      while (position < limit || fill()) {
+        char next = buffer[position];
+        if (next == ',' || next == '}' || next == ']' || next == ' ' || next == '\n' || next == '\r' || next == '\t') {
+          break;
+        }
+        if (raw != null) {
+          raw.append(next);
+        }
+        position++;
+      }
+      return;
+    }
+    int depth = 0;
+    boolean inString = false;
+    boolean escape = false;
+    do {
+      char next = read();
+      if (raw != null) {
+        raw.append(next);
+      }
+      if (inString) {
+        if (escape) {
+          escape = false;
+        } else if (next == '\\') {
+          escape = true;
+        } else if (next == '"') {
+          inString = false;
+        }
+      } else if (next == '"') {
+        inString = true;
+      } else if (next == '{' || next == '[') {
+        depth++;
+      } else if (next == '}' || next == ']') {
+        depth--;
+      }
+    } while (depth > 0 || inString);
+  }// </editor-fold>
+
+}
@@ -0,0 +1,756 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.AbstractFeature;
+import ch.keybridge.gis.dto.Address;
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.Position;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.locationtech.jts.geom.*;
+
+/**
+ * A streaming GeoJSON (RFC 7946) writer for Feature and FeatureCollection.
+ * <p>
+ * The JSON is written directly from the DTO fields, without reflection or an
+ * intermediate object tree, and the features of a collection are written one
+ * at a time so that memory use is bounded by the largest single feature
+ * regardless of the collection size. Features may be produced lazily, e.g.
+ * from a database cursor, an Iterator or a Stream.
+ * <p>
+ * Each feature is written as a GeoJSON Feature object: the ID as "id", the
+ * shape as "geometry" and the property map as "properties" (string values).
+ * The feature type, name and description, and the position and address, are
+ * written as the foreign members "featureType", "name", "description",
+ * "position" and "address". A collection is written as a FeatureCollection
+ * object with the same header members, and its bounding box as "bbox" after
+ * the features.
+ * <p>
+ * Coordinates are written with a configurable number of decimal places
+ * (default {@link Position#SCALE_COORDINATE}) and trailing zeros removed. Z
+ * values are written when present.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionGeoJsonWriter writer = new FeatureCollectionGeoJsonWriter(outputStream)) {
+ *   writer.writeStart(header);
+ *   while (cursor.hasNext()) {
+ *     writer.write(cursor.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support streaming GeoJSON output
+ */
+public class FeatureCollectionGeoJsonWriter implements Closeable {
+
+  /**
+   * The maximum coordinate precision (decimal places).
+   */
+  public static final int MAX_PRECISION = 15;
+  /**
+   * Powers of ten, by precision.
+   */
+  private static final long[] POWERS = new long[MAX_PRECISION + 1];
+  /**
+   * Scaled coordinates are formatted as integers below this magnitude.
+   */
+  private static final double MAX_SCALED = 1e17;
+
+  static {
+    POWERS[0] = 1;
+    for (int i = 1; i < POWERS.length; i++) {
+      POWERS[i] = POWERS[i - 1] * 10;
+    }
+  }
+
+  /**
+   * The underlying character writer.
+   */
+  private final Writer writer;
+  /**
+   * The output buffer. Characters are collected here and written to the
+   * underlying writer in blocks.
+   */
+  private final char[] buffer = new char[8192];
+  /**
+   * The number of characters in the buffer.
+   */
+  private int size;
+  /**
+   * The coordinate precision (decimal places).
+   */
+  private final int precision;
+  /**
+   * Indicator that the next member is the first of its object, and so is not
+   * preceded by a comma.
+   */
+  private boolean firstMember;
+  /**
+   * The collection envelope, expanded as features are written.
+   */
+  private Envelope envelope;
+  /**
+   * The number of features written.
+   */
+  private long count;
+  /**
+   * Indicator that the collection start has been written.
+   */
+  private boolean started;
+  /**
+   * Indicator that the collection end has been written.
+   */
+  private boolean ended;
+
+  /**
+   * Construct a new streaming writer with the default coordinate precision.
+   * The output stream is not closed by this writer.
+   *
+   * @param outputStream the output stream to write UTF-8 encoded JSON to
+   */
+  public FeatureCollectionGeoJsonWriter(OutputStream outputStream) {
+    this(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), Position.SCALE_COORDINATE);
+  }
+
+  /**
+   * Construct a new streaming writer. The writer is not closed by this
+   * writer.
+   *
+   * @param writer    the character writer
+   * @param precision the number of coordinate decimal places, 0 to 15
+   */
+  public FeatureCollectionGeoJsonWriter(Writer writer, int precision) {
+    if (precision < 0 || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Precision must be between 0 and " + MAX_PRECISION);
+    }
+    this.writer = writer;
+    this.precision = precision;
+  }
+
+  /**
+   * Write a complete GeoJSON FeatureCollection. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the iterator.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Iterator<Feature> features, OutputStream outputStream) throws IOException {
+    try (FeatureCollectionGeoJsonWriter writer = new FeatureCollectionGeoJsonWriter(outputStream)) {
+      writer.writeStart(collection);
+      while (features.hasNext()) {
+        writer.write(features.next());
+      }
+    }
+  }
+
+  /**
+   * Write a complete GeoJSON FeatureCollection. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the stream. The stream is consumed sequentially.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Stream<Feature> features, OutputStream outputStream) throws IOException {
+    write(collection, features.iterator(), outputStream);
+  }
+
+  /**
+   * Encode a single feature as a GeoJSON Feature object with the default
+   * coordinate precision.
+   *
+   * @param feature the feature
+   * @return the GeoJSON
+   */
+  public static String toGeoJson(Feature feature) {
+    StringWriter stringWriter = new StringWriter();
+    FeatureCollectionGeoJsonWriter writer = new FeatureCollectionGeoJsonWriter(stringWriter, Position.SCALE_COORDINATE);
+    try {
+      writer.writeFeature(feature);
+      writer.flushBuffer();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return stringWriter.toString();
+  }
+
+  /**
+   * Encode a complete feature collection as a GeoJSON FeatureCollection
+   * object with the default coordinate precision.
+   *
+   * @param collection the collection
+   * @return the GeoJSON
+   */
+  public static String toGeoJson(FeatureCollection collection) {
+    StringWriter stringWriter = new StringWriter();
+    try (FeatureCollectionGeoJsonWriter writer = new FeatureCollectionGeoJsonWriter(stringWriter, Position.SCALE_COORDINATE)) {
+      writer.writeStart(collection);
+      for (Feature feature : collection.getFeatures()) {
+        writer.write(feature);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return stringWriter.toString();
+  }
+
+  /**
+   * Write the collection start plus its header members. The features
+   * collection of the provided instance is ignored.
+   *
+   * @param collection the collection header. May be null for an anonymous
+   *                   collection.
+   * @throws IOException on write error
+   */
+  public void writeStart(FeatureCollection collection) throws IOException {
+    if (started) {
+      throw new IllegalStateException("Feature collection start already written");
+    }
+    append("{\"type\":\"FeatureCollection\"");
+    if (collection != null) {
+      writeHeader(collection);
+    }
+    append(",\"features\":[");
+    started = true;
+  }
+
+  /**
+   * Write a single feature into the collection. A null feature is ignored.
+   *
+   * @param feature the feature
+   * @throws IOException on write error
+   */
+  public void write(Feature feature) throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      throw new IllegalStateException("Feature collection end already written");
+    }
+    if (feature == null) {
+      return;
+    }
+    if (count > 0) {
+      append(',');
+    }
+    writeFeature(feature);
+    expandEnvelope(feature.getShape());
+    count++;
+  }
+
+  /**
+   * Write the collection bounding box and end, then flush the output. The
+   * output stream is not closed.
+   *
+   * @throws IOException on write error
+   */
+  public void writeEnd() throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      return;
+    }
+    append(']');
+    if (envelope != null) {
+      append(",\"bbox\":[");
+      writeCoordinate(envelope.getMinX());
+      append(',');
+      writeCoordinate(envelope.getMinY());
+      append(',');
+      writeCoordinate(envelope.getMaxX());
+      append(',');
+      writeCoordinate(envelope.getMaxY());
+      append(']');
+    }
+    append('}');
+    flushBuffer();
+    ended = true;
+  }
+
+  /**
+   * Complete the collection (if not already complete). The underlying output
+   * stream is flushed but not closed.
+   *
+   * @throws IOException on write error
+   */
+  @Override
+  public void close() throws IOException {
+    writeEnd();
+  }
+
+  /**
+   * Get the envelope of all features written so far.
+   *
+   * @return the envelope, null if no feature having a shape has been written
+   */
+  public Envelope getEnvelope() {
+    return envelope;
+  }
+
+  /**
+   * Get the number of features written so far.
+   *
+   * @return the feature count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Write a feature object.
+   *
+   * @param feature the feature
+   * @throws IOException on write error
+   */
+  private void writeFeature(Feature feature) throws IOException {
+    append("{\"type\":\"Feature\"");
+    writeHeader(feature);
+    append(",\"geometry\":");
+    if (feature.getShape() == null) {
+      append("null");
+    } else {
+      writeGeometry(feature.getShape());
+    }
+    if (feature.getPosition() != null) {
+      append(",\"position\":");
+      writePosition(feature.getPosition());
+    }
+    if (feature.getAddress() != null) {
+      append(",\"address\":");
+      writeAddress(feature.getAddress());
+    }
+    append('}');
+  }
+
+  /**
+   * Write the members common to features and collections: id, featureType,
+   * name, description and properties. The properties member is always
+   * written, as GeoJSON requires it on features.
+   *
+   * @param feature the feature or collection
+   * @throws IOException on write error
+   */
+  private void writeHeader(AbstractFeature feature) throws IOException {
+    writeMember("id", feature.getId());
+    writeMember("featureType", feature.getFeatureType());
+    writeMember("name", feature.getName());
+    writeMember("description", feature.getDescription());
+    append(",\"properties\":{");
+    boolean first = true;
+    for (Map.Entry<String, String> entry : feature.getProperties().entrySet()) {
+      if (!first) {
+        append(',');
+      }
+      first = false;
+      writeString(entry.getKey());
+      append(':');
+      writeString(entry.getValue());
+    }
+    append('}');
+  }
+
+  /**
+   * Write a geometry object.
+   *
+   * @param geometry the geometry
+   * @throws IOException on write error
+   */
+  private void writeGeometry(Geometry geometry) throws IOException {
+    append("{\"type\":\"");
+    append(geometry.getGeometryType());
+    if (geometry instanceof GeometryCollection && !(geometry instanceof MultiPoint
+                                                    || geometry instanceof MultiLineString
+                                                    || geometry instanceof MultiPolygon)) {
+      append("\",\"geometries\":[");
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        if (i > 0) {
+          append(',');
+        }
+        writeGeometry(geometry.getGeometryN(i));
+      }
+      append("]}");
+      return;
+    }
+    append("\",\"coordinates\":");
+    writeCoordinates(geometry);
+    append('}');
+  }
+
+  /**
+   * Write the coordinates array of a (non collection) geometry.
+   *
+   * @param geometry the geometry
+   * @throws IOException on write error
+   */
+  private void writeCoordinates(Geometry geometry) throws IOException {
+    if (geometry instanceof Point) {
+      if (geometry.isEmpty()) {
+        append("[]");
+      } else {
+        writePosition(((Point) geometry).getCoordinateSequence(), 0);
+      }
+    } else if (geometry instanceof LineString) {
+      writeSequence(((LineString) geometry).getCoordinateSequence());
+    } else if (geometry instanceof Polygon) {
+      Polygon polygon = (Polygon) geometry;
+      append('[');
+      if (!polygon.isEmpty()) {
+        writeSequence(polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+          append(',');
+          writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+      }
+      append(']');
+    } else {
+      /**
+       * MultiPoint, MultiLineString and MultiPolygon: an array of the part
+       * coordinates.
+       */
+      append('[');
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        if (i > 0) {
+          append(',');
+        }
+        writeCoordinates(geometry.getGeometryN(i));
+      }
+      append(']');
+    }
+  }
+
+  /**
+   * Write a coordinate sequence as an array of positions.
+   *
+   * @param sequence the coordinate sequence
+   * @throws IOException on write error
+   */
+  private void writeSequence(CoordinateSequence sequence) throws IOException {
+    append('[');
+    for (int i = 0; i < sequence.size(); i++) {
+      if (i > 0) {
+        append(',');
+      }
+      writePosition(sequence, i);
+    }
+    append(']');
+  }
+
+  /**
+   * Write a single GeoJSON position: [x, y] or [x, y, z].
+   *
+   * @param sequence the coordinate sequence
+   * @param index    the coordinate index
+   * @throws IOException on write error
+   */
+  private void writePosition(CoordinateSequence sequence, int index) throws IOException {
+    append('[');
+    writeCoordinate(sequence.getX(index));
+    append(',');
+    writeCoordinate(sequence.getY(index));
+    if (sequence.getDimension() > 2) {
+      double z = sequence.getOrdinate(index, CoordinateSequence.Z);
+      if (!Double.isNaN(z)) {
+        append(',');
+        writeCoordinate(z);
+      }
+    }
+    append(']');
+  }
+
+  /**
+   * Write a position object. Unset values are omitted.
+   *
+   * @param position the position
+   * @throws IOException on write error
+   */
+  private void writePosition(Position position) throws IOException {
+    append('{');
+    firstMember = true;
+    writeMember("name", position.getName());
+    writeMember("latitude", position.getLatitudeValue());
+    writeMember("longitude", position.getLongitudeValue());
+    writeMember("elevation", position.getElevationValue());
+    writeMember("heading", position.getHeadingValue());
+    writeMember("speed", position.getSpeedValue());
+    writeMember("datum", position.getDatum());
+    Long domTimeStamp = position.getDomTimeStampMillis();
+    if (domTimeStamp != null) {
+      writeName("domTimeStamp");
+      append(Long.toString(domTimeStamp));
+    }
+    writeMember("accuracyHorizontal", position.getAccuracyHorizontalValue());
+    writeMember("accuracyVertical", position.getAccuracyVerticalValue());
+    writeMember("source", position.getSource());
+    writeMember("haat", position.getHaatValue());
+    if (position.getRadialCount() > 0) {
+      writeName("radialHaat");
+      append('{');
+      boolean first = true;
+      for (Map.Entry<Double, Double> entry : position.getRadialHaat().entrySet()) {
+        if (!first) {
+          append(',');
+        }
+        first = false;
+        append('"');
+        append(Double.toString(entry.getKey()));
+        append("\":");
+        writeNumber(entry.getValue());
+      }
+      append('}');
+    }
+    append('}');
+    firstMember = false;
+  }
+
+  /**
+   * Write an address object. Unset values are omitted.
+   *
+   * @param address the address
+   * @throws IOException on write error
+   */
+  private void writeAddress(Address address) throws IOException {
+    append('{');
+    firstMember = true;
+    writeMember("street", address.getStreet());
+    writeMember("city", address.getCity());
+    writeMember("county", address.getCounty());
+    writeMember("state", address.getState());
+    writeMember("postalCode", address.getPostalCode());
+    writeMember("country", address.getCountry());
+    append('}');
+    firstMember = false;
+  }
+
+  /**
+   * Write a member name, preceded by a comma unless it is the first member of
+   * its object.
+   *
+   * @param name the member name
+   * @throws IOException on write error
+   */
+  private void writeName(String name) throws IOException {
+    if (!firstMember) {
+      append(',');
+    }
+    firstMember = false;
+    append('"');
+    append(name);
+    append("\":");
+  }
+
+  /**
+   * Write a string member. A null value is omitted.
+   *
+   * @param name  the member name
+   * @param value the value
+   * @throws IOException on write error
+   */
+  private void writeMember(String name, String value) throws IOException {
+    if (value != null) {
+      writeName(name);
+      writeString(value);
+    }
+  }
+
+  /**
+   * Write a numeric member. A NaN value is omitted.
+   *
+   * @param name  the member name
+   * @param value the value
+   * @throws IOException on write error
+   */
+  private void writeMember(String name, double value) throws IOException {
+    if (!Double.isNaN(value)) {
+      writeName(name);
+      writeNumber(value);
+    }
+  }
+
+  /**
+   * Write a JSON string, escaping quotes, backslashes and control characters.
+   *
+   * @param value the value, may be null
+   * @throws IOException on write error
+   */
+  private void writeString(String value) throws IOException {
+    if (value == null) {
+      append("null");
+      return;
+    }
+    append('"');
+    int length = value.length();
+    int from = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      append(value, from, i);
+      from = i + 1;
+      switch (c) {
+        case '"':
+          append("\\\"");
+          break;
+        case '\\':
+          append("\\\\");
+          break;
+        case '\n':
+          append("\\n");
+          break;
+        case '\r':
+          append("\\r");
+          break;
+        case '\t':
+          append("\\t");
+          break;
+        default:
+          append("\\u00");
+          append(Character.forDigit(c >> 4, 16));
+          append(Character.forDigit(c & 0xf, 16));
+      }
+    }
+    append(value, from, length);
+    append('"');
+  }
+
+  /**
+   * Write a number at full precision. Non-finite numbers, which JSON does not
+   * support, are written as null.
+   *
+   * @param value the value
+   * @throws IOException on write error
+   */
+  private void writeNumber(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      append("null");
+    } else {
+      append(Double.toString(value));
+    }
+  }
+
+  /**
+   * Write a coordinate value rounded to the configured precision, without
+   * trailing zeros. The value is formatted from its scaled integer value,
+   * which avoids the cost of general purpose double formatting.
+   *
+   * @param value the value
+   * @throws IOException on write error
+   */
+  private void writeCoordinate(double value) throws IOException {
+    double scaled = Math.abs(value) * POWERS[precision];
+    if (!(scaled < MAX_SCALED)) {
+      writeNumber(value);
+      return;
+    }
+    long rounded = Math.round(scaled);
+    if (rounded == 0) {
+      append('0');
+      return;
+    }
+    if (value < 0) {
+      append('-');
+    }
+    long power = POWERS[precision];
+    append(Long.toString(rounded / power));
+    long fraction = rounded % power;
+    if (fraction == 0) {
+      return;
+    }
+    int digits = precision;
+    while (fraction % 10 == 0) {
+      fraction /= 10;
+      digits--;
+    }
+    append('.');
+    for (int i = digits - 1; i >= 0; i--) {
+      append((char) ('0' + fraction / POWERS[i] % 10));
+    }
+  }
+
+  /**
+   * Expand the collection envelope to include a feature shape.
+   *
+   * @param shape the feature shape, may be null
+   */
+  private void expandEnvelope(Geometry shape) {
+    if (shape == null || shape.isEmpty()) {
+      return;
+    }
+    if (envelope == null) {
+      envelope = new Envelope(shape.getEnvelopeInternal());
+    } else {
+      envelope.expandToInclude(shape.getEnvelopeInternal());
+    }
+  }
+
+  private void append(char c) throws IOException {
+    if (size == buffer.length) {
+      writeBuffer();
+    }
+    buffer[size++] = c;
+  }
+
+  private void append(String text) throws IOException {
+    append(text, 0, text.length());
+  }
+
+  private void append(String text, int from, int to) throws IOException {
+    int index = from;
+    while (index < to) {
+      if (size == buffer.length) {
+        writeBuffer();
+      }
+      int length = Math.min(to - index, buffer.length - size);
+      text.getChars(index, index + length, buffer, size);
+      size += length;
+      index += length;
+    }
+  }
+
+  /**
+   * Write the buffer to the underlying writer.
+   *
+   * @throws IOException on write error
+   */
+  private void writeBuffer() throws IOException {
+    writer.write(buffer, 0, size);
+    size = 0;
+  }
+
+  /**
+   * Write the buffer and flush the underlying writer.
+   *
+   * @throws IOException on write error
+   */
+  private void flushBuffer() throws IOException {
+    writeBuffer();
+    writer.flush();
+  }
+
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.xml.adapter.XmlEnvelopeAdapter;
+import ch.keybridge.xml.adapter.XmlGeometryAdapter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A streaming (pull-parser) XML reader for FeatureCollection.
+ * <p>
+ * JAXB unmarshals a FeatureCollection in one shot, which requires the complete
+ * collection of features in memory. This reader parses a FeatureCollection
+ * document incrementally and returns the features one at a time, so that
+ * memory use is bounded by the largest single feature regardless of the
+ * document size. Features are available as an Iterator, a (sequential) Stream
+ * or through a callback. Reading may be stopped at any time.
+ * <p>
+ * Features may be filtered by feature type and by envelope. Filters are
+ * applied before a feature is unmarshalled: a feature type mismatch skips the
+ * feature XML without building any object, and the envelope filter inspects
+ * only the feature Envelope element (or the Shape of a Point, which has no
+ * envelope) so that the shapes of rejected features are never parsed.
+ * <p>
+ * The collection header (id, name, properties, etc.) is read when the reader
+ * is created and is available from {@link #getHeader()}.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(inputStream)) {
+ *   reader.setEnvelope(viewport);
+ *   while (reader.hasNext()) {
+ *     process(reader.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support streaming XML input
+ */
+public class FeatureCollectionXmlReader implements Iterator<Feature>, Closeable {
+
+  /**
+   * The XML name of the collection root element.
+   */
+  private static final String FEATURE_COLLECTION = "FeatureCollection";
+  /**
+   * The XML name of the collection features element.
+   */
+  private static final String FEATURES = "Features";
+  /**
+   * The XML name of the feature type attribute.
+   */
+  private static final String FEATURE_TYPE = "featureType";
+
+  /**
+   * The underlying XML stream reader.
+   */
+  private final XMLStreamReader xmlReader;
+  /**
+   * The feature unmarshaller.
+   */
+  private final Unmarshaller unmarshaller;
+  /**
+   * The collection header. This contains the collection attributes but no
+   * features.
+   */
+  private final FeatureCollection header;
+  /**
+   * The (optional) feature type filter.
+   */
+  private Set<String> featureTypes;
+  /**
+   * The (optional) envelope filter.
+   */
+  private Envelope envelope;
+  /**
+   * A DOM document used to buffer individual features when filtering by
+   * envelope. Lazy initialized.
+   */
+  private Document document;
+  /**
+   * The next feature. This is read ahead by {@link #hasNext()}.
+   */
+  private Feature nextFeature;
+  /**
+   * Indicator that the end of the collection has been reached.
+   */
+  private boolean finished;
+
+  /**
+   * Construct a new streaming reader and read the collection header. The input
+   * stream is not closed by this reader.
+   *
+   * @param inputStream the XML input stream
+   * @throws IOException if the input is not a FeatureCollection document
+   */
+  public FeatureCollectionXmlReader(InputStream inputStream) throws IOException {
+    try {
+      this.xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+      this.unmarshaller = XmlCodec.getJaxbContext().createUnmarshaller();
+      this.header = readHeader();
+    } catch (XMLStreamException | JAXBException exception) {
+      throw new IOException("Failed to read feature collection", exception);
+    }
+  }
+
+  /**
+   * Read all features from a FeatureCollection XML document, passing each to
+   * the callback. Reading stops at the end of the document or when the
+   * callback returns false.
+   *
+   * @param inputStream the XML input stream
+   * @param callback    the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public static long read(InputStream inputStream, Predicate<Feature> callback) throws IOException {
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(inputStream)) {
+      return reader.read(callback);
+    }
+  }
+
+  /**
+   * Get the collection header. This contains the collection id, feature type,
+   * name, description and properties but no features.
+   *
+   * @return the collection header
+   */
+  public FeatureCollection getHeader() {
+    return header;
+  }
+
+  /**
+   * Set the feature type filter. Only features having one of the indicated
+   * feature types are returned.
+   *
+   * @param featureTypes the feature types. Set null or empty to disable.
+   */
+  public void setFeatureTypes(String... featureTypes) {
+    this.featureTypes = featureTypes == null || featureTypes.length == 0
+                        ? null
+                        : new HashSet<>(Arrays.asList(featureTypes));
+  }
+
+  /**
+   * Set the envelope filter. Only features whose envelope intersects the
+   * indicated envelope are returned.
+   *
+   * @param envelope the envelope. Set null to disable.
+   */
+  public void setEnvelope(Envelope envelope) {
+    this.envelope = envelope;
+  }
+
+  /**
+   * Returns true if the collection has more (matching) features.
+   *
+   * @return true if the collection has more features
+   * @throws UncheckedIOException on read error
+   */
+  @Override
+  public boolean hasNext() {
+    if (nextFeature == null && !finished) {
+      try {
+        nextFeature = readFeature();
+      } catch (XMLStreamException | JAXBException exception) {
+        throw new UncheckedIOException(new IOException("Failed to read feature", exception));
+      }
+      finished = nextFeature == null;
+    }
+    return nextFeature != null;
+  }
+
+  /**
+   * Returns the next (matching) feature in the collection.
+   *
+   * @return the next feature
+   * @throws NoSuchElementException if the collection has no more features
+   * @throws UncheckedIOException   on read error
+   */
+  @Override
+  public Feature next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Feature feature = nextFeature;
+    nextFeature = null;
+    return feature;
+  }
+
+  /**
+   * Get the remaining (matching) features as a sequential, ordered stream. The
+   * stream is lazy; features are parsed as the stream is consumed and short
+   * circuit operations (e.g. limit, findFirst) stop reading.
+   *
+   * @return a stream of features
+   */
+  public Stream<Feature> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Pass each remaining (matching) feature to the callback. Reading stops at
+   * the end of the document or when the callback returns false.
+   *
+   * @param callback the feature callback. Return FALSE to stop reading.
+   * @return the number of features passed to the callback
+   * @throws IOException on read error
+   */
+  public long read(Predicate<Feature> callback) throws IOException {
+    long count = 0;
+    try {
+      while (hasNext()) {
+        count++;
+        if (!callback.test(next())) {
+          break;
+        }
+      }
+    } catch (UncheckedIOException exception) {
+      throw exception.getCause();
+    }
+    return count;
+  }
+
+  /**
+   * Release the XML reader. The underlying input stream is not closed.
+   *
+   * @throws IOException on error
+   */
+  @Override
+  public void close() throws IOException {
+    finished = true;
+    nextFeature = null;
+    try {
+      xmlReader.close();
+    } catch (XMLStreamException exception) {
+      throw new IOException("Failed to close XML reader", exception);
+    }
+  }
+
+  /**
+   * Read the collection root element and header elements. This leaves the
+   * reader positioned on the first Features start element or on the end of
+   * the collection.
+   *
+   * @return the collection header
+   * @throws XMLStreamException on read error
+   */
+  private FeatureCollection readHeader() throws XMLStreamException {
+    xmlReader.nextTag();
+    if (!FEATURE_COLLECTION.equals(xmlReader.getLocalName())) {
+      throw new XMLStreamException("Expected " + FEATURE_COLLECTION + " but found " + xmlReader.getLocalName(), xmlReader.getLocation());
+    }
+    FeatureCollection collection = new FeatureCollection();
+    collection.setFeatureType(xmlReader.getAttributeValue(null, FEATURE_TYPE));
+    while (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (xmlReader.getLocalName()) {
+        case "Id":
+          collection.setId(xmlReader.getElementText());
+          break;
+        case "Name":
+          collection.setName(xmlReader.getElementText());
+          break;
+        case "Description":
+          collection.setDescription(xmlReader.getElementText());
+          break;
+        case "Title":
+          collection.setTitle(xmlReader.getElementText());
+          break;
+        case "Properties":
+          /**
+           * Properties are encoded as an EntrySet: a list of Entry elements
+           * with a key attribute and the value as text.
+           */
+          while (xmlReader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String key = xmlReader.getAttributeValue(null, "key");
+            collection.setProperty(key, xmlReader.getElementText());
+          }
+          break;
+        case FEATURES:
+          return collection;
+        default:
+          skipElement();
+      }
+    }
+    return collection;
+  }
+
+  /**
+   * Read the next (matching) feature.
+   *
+   * @return the next feature, null if the collection has no more features
+   * @throws XMLStreamException on read error
+   * @throws JAXBException      on unmarshal error
+   */
+  private Feature readFeature() throws XMLStreamException, JAXBException {
+    while (true) {
+      if (xmlReader.isStartElement() && FEATURES.equals(xmlReader.getLocalName())) {
+        if (featureTypes != null && !featureTypes.contains(xmlReader.getAttributeValue(null, FEATURE_TYPE))) {
+          skipElement();
+        } else if (envelope == null) {
+          /**
+           * Unmarshalling leaves the reader on the event following the
+           * Features end element, which may be the next feature.
+           */
+          return unmarshaller.unmarshal(xmlReader, Feature.class).getValue();
+        } else {
+          Feature feature = readFeatureInEnvelope();
+          if (feature != null) {
+            return feature;
+          }
+        }
+      }
+      if (!xmlReader.hasNext()) {
+        return null;
+      }
+      xmlReader.next();
+    }
+  }
+
+  /**
+   * Read the current feature if its envelope intersects the envelope filter.
+   * The feature XML is buffered into a DOM element and its Envelope (or Point
+   * shape) is inspected before the feature is unmarshalled.
+   *
+   * @return the feature, null if the feature does not match the filter
+   * @throws XMLStreamException on read error
+   * @throws JAXBException      on unmarshal error
+   */
+  private Feature readFeatureInEnvelope() throws XMLStreamException, JAXBException {
+    Element element = readElement();
+    Envelope featureEnvelope = null;
+    try {
+      String envelopeText = getChildText(element, "Envelope");
+      if (envelopeText != null) {
+        featureEnvelope = new XmlEnvelopeAdapter().unmarshal(envelopeText);
+      } else {
+        /**
+         * Point features have no envelope.
+         */
+        String shapeText = getChildText(element, "Shape");
+        Geometry shape = shapeText == null ? null : new XmlGeometryAdapter().unmarshal(shapeText);
+        featureEnvelope = shape == null ? null : shape.getEnvelopeInternal();
+      }
+    } catch (Exception exception) {
+      throw new XMLStreamException("Failed to read feature envelope", xmlReader.getLocation(), exception);
+    }
+    if (featureEnvelope == null || !featureEnvelope.intersects(envelope)) {
+      return null;
+    }
+    return unmarshaller.unmarshal(element, Feature.class).getValue();
+  }
+
+  /**
+   * Copy the current element and its descendants into a new DOM element. This
+   * leaves the reader positioned on the element end tag.
+   *
+   * @return a DOM element
+   * @throws XMLStreamException on read error
+   */
+  private Element readElement() throws XMLStreamException {
+    if (document == null) {
+      try {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        document = factory.newDocumentBuilder().newDocument();
+      } catch (ParserConfigurationException exception) {
+        throw new XMLStreamException("Failed to create DOM document", exception);
+      }
+    }
+    Element root = createElement();
+    Node parent = root;
+    int depth = 1;
+    while (depth > 0) {
+      switch (xmlReader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          Element child = createElement();
+          parent.appendChild(child);
+          parent = child;
+          depth++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          parent = parent.getParentNode();
+          depth--;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+          if (parent != null) {
+            parent.appendChild(document.createTextNode(xmlReader.getText()));
+          }
+          break;
+        default:
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Create a DOM element from the current start element, including its
+   * attributes.
+   *
+   * @return a new (unattached) DOM element
+   */
+  private Element createElement() {
+    Element element = document.createElementNS(emptyToNull(xmlReader.getNamespaceURI()), xmlReader.getLocalName());
+    for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+      element.setAttributeNS(emptyToNull(xmlReader.getAttributeNamespace(i)),
+                             xmlReader.getAttributeLocalName(i),
+                             xmlReader.getAttributeValue(i));
+    }
+    return element;
+  }
+
+  /**
+   * Get the text content of the first child element with the indicated name.
+   *
+   * @param element   the parent element
+   * @param localName the child element local name
+   * @return the child element text, null if not present
+   */
+  private static String getChildText(Element element, String localName) {
+    for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node.getNodeType() == Node.ELEMENT_NODE && localName.equals(node.getLocalName())) {
+        return node.getTextContent();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Skip the current element and its descendants. This leaves the reader
+   * positioned on the element end tag.
+   *
+   * @throws XMLStreamException on read error
+   */
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = xmlReader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * StAX reports an empty string for no namespace; DOM expects null.
+   *
+   * @param string a namespace URI
+   * @return the namespace URI, null if empty
+   */
+  private static String emptyToNull(String string) {
+    return string == null || string.isEmpty() ? null : string;
+  }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.xml.adapter.XmlEnvelopeAdapter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A streaming XML writer for FeatureCollection.
+ * <p>
+ * JAXB marshals a FeatureCollection in one shot, which requires the complete
+ * collection of features in memory. This writer produces the same XML document
+ * (see docs/xsd gis-dto.2020-06-15) but emits the features one at a time, so
+ * that memory use is bounded by the largest single feature regardless of the
+ * collection size. Features may be produced lazily, e.g. from a database
+ * cursor, an Iterator or a Stream.
+ * <p>
+ * The collection envelope is calculated incrementally as features are written
+ * and is emitted after the last feature, which is where the schema places it.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (FeatureCollectionXmlWriter writer = new FeatureCollectionXmlWriter(outputStream)) {
+ *   writer.writeStart(header);
+ *   while (cursor.hasNext()) {
+ *     writer.write(cursor.next());
+ *   }
+ * }
+ * </pre> This class is not thread safe.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support streaming XML output
+ */
+public class FeatureCollectionXmlWriter implements Closeable {
+
+  /**
+   * The XML name of the collection features element. Child elements are not
+   * namespace qualified.
+   */
+  private static final QName FEATURES = new QName("Features");
+  /**
+   * The XML name of the collection envelope element.
+   */
+  private static final String ENVELOPE = "Envelope";
+
+  /**
+   * The underlying XML stream writer.
+   */
+  private final XMLStreamWriter xmlWriter;
+  /**
+   * The fragment marshaller. Used to write individual features.
+   */
+  private final Marshaller marshaller;
+  /**
+   * The collection envelope, expanded as features are written.
+   */
+  private Envelope envelope;
+  /**
+   * The number of features written.
+   */
+  private long count;
+  /**
+   * Indicator that the collection start element has been written.
+   */
+  private boolean started;
+  /**
+   * Indicator that the collection end element has been written.
+   */
+  private boolean ended;
+
+  /**
+   * Construct a new streaming writer. The output stream is not closed by this
+   * writer.
+   *
+   * @param outputStream the output stream to write UTF-8 encoded XML to
+   * @throws IOException if the XML writer cannot be created
+   */
+  public FeatureCollectionXmlWriter(OutputStream outputStream) throws IOException {
+    try {
+      this.xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8");
+      this.marshaller = XmlCodec.getJaxbContext().createMarshaller();
+      this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+    } catch (XMLStreamException | JAXBException exception) {
+      throw new IOException("Failed to create XML writer", exception);
+    }
+  }
+
+  /**
+   * Write a complete feature collection document. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the iterator.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Iterator<Feature> features, OutputStream outputStream) throws IOException {
+    try (FeatureCollectionXmlWriter writer = new FeatureCollectionXmlWriter(outputStream)) {
+      writer.writeStart(collection);
+      while (features.hasNext()) {
+        writer.write(features.next());
+      }
+    }
+  }
+
+  /**
+   * Write a complete feature collection document. The header (id, name,
+   * properties, etc.) is copied from the collection; its features are ignored
+   * and are instead read from the stream. The stream is consumed sequentially.
+   *
+   * @param collection   the collection header
+   * @param features     the collection features
+   * @param outputStream the output stream
+   * @throws IOException on write error
+   */
+  public static void write(FeatureCollection collection, Stream<Feature> features, OutputStream outputStream) throws IOException {
+    write(collection, features.iterator(), outputStream);
+  }
+
+  /**
+   * Write the XML declaration and the collection start element plus its
+   * header fields. The features collection of the provided instance is
+   * ignored.
+   *
+   * @param collection the collection header. May be null for an anonymous
+   *                   collection.
+   * @throws IOException on write error
+   */
+  public void writeStart(FeatureCollection collection) throws IOException {
+    if (started) {
+      throw new IllegalStateException("Feature collection start already written");
+    }
+    /**
+     * Marshal a copy of the header without features. JAXB writes the
+     * FeatureCollection start element, attributes and header elements; the
+     * fragment writer leaves the element open to receive the features.
+     */
+    FeatureCollection header = new FeatureCollection();
+    if (collection != null) {
+      header.setId(collection.getId());
+      header.setFeatureType(collection.getFeatureType());
+      header.setName(collection.getName());
+      header.setDescription(collection.getDescription());
+      header.setProperties(collection.getProperties());
+    }
+    try {
+      xmlWriter.writeStartDocument("UTF-8", "1.0");
+      marshaller.marshal(header, new FragmentStreamWriter(xmlWriter));
+    } catch (XMLStreamException | JAXBException exception) {
+      throw new IOException("Failed to write feature collection start", exception);
+    }
+    started = true;
+  }
+
+  /**
+   * Write a single feature into the collection. A null feature is ignored.
+   *
+   * @param feature the feature
+   * @throws IOException on write error
+   */
+  public void write(Feature feature) throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      throw new IllegalStateException("Feature collection end already written");
+    }
+    if (feature == null) {
+      return;
+    }
+    try {
+      marshaller.marshal(new JAXBElement<>(FEATURES, Feature.class, feature), xmlWriter);
+    } catch (JAXBException exception) {
+      throw new IOException("Failed to write feature " + feature.getId(), exception);
+    }
+    expandEnvelope(feature);
+    count++;
+  }
+
+  /**
+   * Write the collection envelope and end element, then flush the output. The
+   * output stream is not closed.
+   *
+   * @throws IOException on write error
+   */
+  public void writeEnd() throws IOException {
+    if (!started) {
+      writeStart(null);
+    }
+    if (ended) {
+      return;
+    }
+    try {
+      if (envelope != null) {
+        xmlWriter.writeStartElement(ENVELOPE);
+        xmlWriter.writeCharacters(new XmlEnvelopeAdapter().marshal(envelope));
+        xmlWriter.writeEndElement();
+      }
+      xmlWriter.writeEndElement();
+      xmlWriter.writeEndDocument();
+      xmlWriter.flush();
+    } catch (Exception exception) {
+      throw new IOException("Failed to write feature collection end", exception);
+    }
+    ended = true;
+  }
+
+  /**
+   * Complete the document (if not already complete) and release the XML
+   * writer. The underlying output stream is flushed but not closed.
+   *
+   * @throws IOException on write error
+   */
+  @Override
+  public void close() throws IOException {
+    writeEnd();
+    try {
+      xmlWriter.close();
+    } catch (XMLStreamException exception) {
+      throw new IOException("Failed to close XML writer", exception);
+    }
+  }
+
+  /**
+   * Get the envelope of all features written so far.
+   *
+   * @return the envelope, null if no feature having a shape has been written
+   */
+  public Envelope getEnvelope() {
+    return envelope;
+  }
+
+  /**
+   * Get the number of features written so far.
+   *
+   * @return the feature count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Expand the collection envelope to include the feature shape. This works
+   * with any geometry type, including points.
+   *
+   * @param feature the feature
+   */
+  private void expandEnvelope(Feature feature) {
+    if (feature.getShape() == null || feature.getShape().isEmpty()) {
+      return;
+    }
+    if (envelope == null) {
+      envelope = new Envelope(feature.getShape().getEnvelopeInternal());
+    } else {
+      envelope.expandToInclude(feature.getShape().getEnvelopeInternal());
+    }
+  }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A delegating XMLStreamWriter that leaves the document root element open.
+ * <p>
+ * JAXB always writes a complete element. This writer lets a JAXB marshaller
+ * write the header of a container element (its attributes and leading child
+ * elements) while suppressing the container end tag and the end of document,
+ * so that additional child elements may then be streamed into the container
+ * one at a time.
+ *
+ * @author Key Bridge
+ * @since v4.1.0 added 10/16/20 to support streaming XML output
+ */
+class FragmentStreamWriter implements XMLStreamWriter {
+
+  /**
+   * The underlying writer.
+   */
+  private final XMLStreamWriter delegate;
+  /**
+   * The current element nesting depth relative to the first start element.
+   */
+  private int depth;
+
+  /**
+   * Construct a new fragment writer.
+   *
+   * @param delegate the underlying writer
+   */
+  FragmentStreamWriter(XMLStreamWriter delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void writeStartElement(String localName) throws XMLStreamException {
+    depth++;
+    delegate.writeStartElement(localName);
+  }
+
+  @Override
+  public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+    depth++;
+    delegate.writeStartElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+    depth++;
+    delegate.writeStartElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+    delegate.writeEmptyElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+    delegate.writeEmptyElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEmptyElement(String localName) throws XMLStreamException {
+    delegate.writeEmptyElement(localName);
+  }
+
+  /**
+   * Close the current element unless it is the (outermost) container.
+   *
+   * @throws XMLStreamException on write error
+   */
+  @Override
+  public void writeEndElement() throws XMLStreamException {
+    if (--depth > 0) {
+      delegate.writeEndElement();
+    }
+  }
+
+  /**
+   * Ignored. The container is left open.
+   */
+  @Override
+  public void writeEndDocument() {
+  }
+
+  /**
+   * Ignored. The underlying writer remains open.
+   */
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public void flush() throws XMLStreamException {
+    delegate.flush();
+  }
+
+  @Override
+  public void writeAttribute(String localName, String value) throws XMLStreamException {
+    delegate.writeAttribute(localName, value);
+  }
+
+  @Override
+  public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+    delegate.writeAttribute(prefix, namespaceURI, localName, value);
+  }
+
+  @Override
+  public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+    delegate.writeAttribute(namespaceURI, localName, value);
+  }
+
+  @Override
+  public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+    delegate.writeNamespace(prefix, namespaceURI);
+  }
+
+  @Override
+  public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+    delegate.writeDefaultNamespace(namespaceURI);
+  }
+
+  @Override
+  public void writeComment(String data) throws XMLStreamException {
+    delegate.writeComment(data);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target) throws XMLStreamException {
+    delegate.writeProcessingInstruction(target);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+    delegate.writeProcessingInstruction(target, data);
+  }
+
+  @Override
+  public void writeCData(String data) throws XMLStreamException {
+    delegate.writeCData(data);
+  }
+
+  @Override
+  public void writeDTD(String dtd) throws XMLStreamException {
+    delegate.writeDTD(dtd);
+  }
+
+  @Override
+  public void writeEntityRef(String name) throws XMLStreamException {
+    delegate.writeEntityRef(name);
+  }
+
+  @Override
+  public void writeStartDocument() throws XMLStreamException {
+    delegate.writeStartDocument();
+  }
+
+  @Override
+  public void writeStartDocument(String version) throws XMLStreamException {
+    delegate.writeStartDocument(version);
+  }
+
+  @Override
+  public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+    delegate.writeStartDocument(encoding, version);
+  }
+
+  @Override
+  public void writeCharacters(String text) throws XMLStreamException {
+    delegate.writeCharacters(text);
+  }
+
+  @Override
+  public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+    delegate.writeCharacters(text, start, len);
+  }
+
+  @Override
+  public String getPrefix(String uri) throws XMLStreamException {
+    return delegate.getPrefix(uri);
+  }
+
+  @Override
+  public void setPrefix(String prefix, String uri) throws XMLStreamException {
+    delegate.setPrefix(prefix, uri);
+  }
+
+  @Override
+  public void setDefaultNamespace(String uri) throws XMLStreamException {
+    delegate.setDefaultNamespace(uri);
+  }
+
+  @Override
+  public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+    delegate.setNamespaceContext(context);
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext() {
+    return delegate.getNamespaceContext();
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return delegate.getProperty(name);
+  }
+
+}
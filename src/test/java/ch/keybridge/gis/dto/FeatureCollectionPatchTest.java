@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import ch.keybridge.xml.JaxbUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionPatchTest {
+
+  private static Feature feature(int id, double lat, double lon) {
+    Feature feature = Feature.getInstance("feature " + id, Position.getInstance(lat, lon).asPoint().buffer(0.1));
+    feature.setId(id);
+    feature.setProperty("value", id);
+    return feature;
+  }
+
+  private static FeatureCollection snapshot() {
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      features.add(feature(i, 30 + i, -80 - i));
+    }
+    return FeatureCollection.getInstance("collection", "test", "snapshot", features);
+  }
+
+  @Test
+  public void testDiffAndApply() throws Exception {
+    FeatureCollection base = snapshot();
+    FeatureCollection target = snapshot();
+    FeatureCollectionPatch empty = FeatureCollectionPatch.diff(base, target);
+    assertTrue(empty.isEmpty());
+    assertTrue(empty.getAdded().isEmpty() && empty.getModified().isEmpty() && empty.getRemoved().isEmpty());
+    /**
+     * Modify, remove and add.
+     */
+    Feature modified = (Feature) ((List<Feature>) target.getFeatures()).get(3);
+    modified.setProperty("value", "changed");
+    target.getFeatures().remove(((List<Feature>) target.getFeatures()).get(5));
+    target.getFeatures().add(feature(20, 10, 10));
+    target.setName("updated");
+    FeatureCollectionPatch patch = FeatureCollectionPatch.diff(base, target);
+    System.out.println("patch " + patch);
+    assertFalse(patch.isEmpty());
+    assertEquals(1, patch.getAdded().size());
+    assertEquals("20", patch.getAdded().get(0).getId());
+    assertEquals(1, patch.getModified().size());
+    assertSame(modified, patch.getModified().get(0));
+    assertEquals(Collections.singletonList("5"), patch.getRemoved());
+    FeatureCollection patched = patch.apply(base);
+    assertEquals(target.getContentHash(), patched.getContentHash());
+    assertEquals("updated", patched.getName());
+    assertEquals(10, base.getFeatures().size());
+    /**
+     * XML and Java serialization.
+     */
+    FeatureCollectionPatch xml = JaxbUtility.unmarshal(JaxbUtility.marshal(patch), FeatureCollectionPatch.class);
+    assertEquals(target.getContentHash(), xml.apply(base).getContentHash());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(patch);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(target.getContentHash(), ((FeatureCollectionPatch) in.readObject()).apply(base).getContentHash());
+    }
+    /**
+     * A patch only applies to its base.
+     */
+    try {
+      patch.apply(target);
+      fail("Applied to the wrong base");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testReorder() {
+    FeatureCollection base = snapshot();
+    List<Feature> reversed = new ArrayList<>(base.getFeatures());
+    Collections.reverse(reversed);
+    FeatureCollection target = FeatureCollection.getInstance("collection", "test", "snapshot", reversed);
+    FeatureCollectionPatch patch = FeatureCollectionPatch.diff(base, target);
+    assertTrue(patch.getAdded().isEmpty() && patch.getModified().isEmpty() && patch.getRemoved().isEmpty());
+    FeatureCollection patched = patch.apply(base);
+    assertEquals(target.getContentHash(), patched.getContentHash());
+    assertEquals("9", patched.getFeatures().iterator().next().getId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateId() {
+    FeatureCollection base = snapshot();
+    base.getFeatures().add(feature(1, 0, 0));
+    FeatureCollectionPatch.diff(base, snapshot());
+  }
+
+}
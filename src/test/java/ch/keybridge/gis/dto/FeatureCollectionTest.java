@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto;
+
+import ch.keybridge.xml.JaxbUtility;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.xml.bind.JAXBException;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionTest {
+
+  private static final GeometryFactory FACTORY = new GeometryFactory();
+
+  private static Feature point(String id, double x, double y) {
+    Feature feature = Feature.getInstance(id, FACTORY.createPoint(new Coordinate(x, y)));
+    feature.setId(id);
+    return feature;
+  }
+
+  @Test
+  public void testEnvelope() {
+    FeatureCollection collection = new FeatureCollection();
+    assertNull(collection.getEnvelope());
+
+    collection.addFeatures(point("a", 0, 0), point("b", 10, 10));
+    assertEquals(new Envelope(0, 10, 0, 10), collection.getEnvelope());
+
+    Feature square = Feature.getInstance("c", FACTORY.createPoint(new Coordinate(5, 5)).buffer(1).getEnvelope());
+    collection.getFeatures().add(square);
+    assertEquals(new Envelope(0, 10, 0, 10), collection.getEnvelope());
+
+    collection.getFeatures().add(point("d", -5, 20));
+    assertEquals(new Envelope(-5, 10, 0, 20), collection.getEnvelope());
+
+    /**
+     * Removing an interior feature does not change the envelope; removing a
+     * boundary feature shrinks it.
+     */
+    collection.getFeatures().remove(square);
+    assertEquals(new Envelope(-5, 10, 0, 20), collection.getEnvelope());
+    Iterator<Feature> iterator = collection.getFeatures().iterator();
+    while (iterator.hasNext()) {
+      if ("d".equals(iterator.next().getId())) {
+        iterator.remove();
+      }
+    }
+    assertEquals(new Envelope(0, 10, 0, 10), collection.getEnvelope());
+
+    /**
+     * The returned envelope is a copy.
+     */
+    collection.getEnvelope().expandToInclude(100, 100);
+    assertEquals(new Envelope(0, 10, 0, 10), collection.getEnvelope());
+
+    collection.getFeatures().clear();
+    assertNull(collection.getEnvelope());
+  }
+
+  @Test
+  public void testEnvelopeNullShape() {
+    FeatureCollection collection = new FeatureCollection();
+    collection.addFeatures(new Feature(), point("a", 1, 2), null);
+    assertEquals(new Envelope(1, 1, 2, 2), collection.getEnvelope());
+
+    List<Feature> features = new ArrayList<>();
+    features.add(point("b", 3, 4));
+    collection.setFeatures(features);
+    assertEquals(new Envelope(3, 3, 4, 4), collection.getEnvelope());
+    collection.setFeatures(null);
+    assertNull(collection.getEnvelope());
+  }
+
+  @Test
+  public void testInvalidateEnvelope() {
+    FeatureCollection collection = new FeatureCollection();
+    Feature feature = point("a", 1, 1);
+    collection.addFeatures(feature, point("b", 2, 2));
+    feature.setShape(FACTORY.createPoint(new Coordinate(-1, -1)));
+    collection.invalidateEnvelope();
+    assertEquals(new Envelope(-1, 2, -1, 2), collection.getEnvelope());
+  }
+
+  @Test
+  public void testUnmarshalEnvelope() throws JAXBException {
+    FeatureCollection collection = FeatureCollection.getInstance("id", "type", "name", null);
+    collection.addFeatures(point("a", 0, 0), point("b", 10, 10));
+    collection.addFeatures(Feature.getInstance("c", FACTORY.createPoint(new Coordinate(20, -20)).buffer(1)));
+    String xml = JaxbUtility.marshal(collection);
+    System.out.println(xml);
+    FeatureCollection copy = JaxbUtility.unmarshal(xml, FeatureCollection.class);
+    assertEquals(3, copy.getFeatures().size());
+    assertEquals(collection.getEnvelope(), copy.getEnvelope());
+    copy.getFeatures().add(point("d", 30, 30));
+    assertEquals(new Envelope(0, 30, -21, 30), copy.getEnvelope());
+  }
+
+  /**
+   * Build a 10 x 10 grid of one-degree squares centered on integer
+   * coordinates. Feature ids are "x,y".
+   */
+  private static FeatureCollection buildGrid() {
+    FeatureCollection collection = new FeatureCollection();
+    for (int x = 0; x < 10; x++) {
+      for (int y = 0; y < 10; y++) {
+        Feature feature = Feature.getInstance(x + "," + y, new GeometryFactory().toGeometry(new Envelope(x - 0.4, x + 0.4, y - 0.4, y + 0.4)));
+        feature.setId(x + "," + y);
+        collection.addFeatures(feature);
+      }
+    }
+    return collection;
+  }
+
+  private static Set<String> ids(List<Feature> features) {
+    return features.stream().map(Feature::getId).collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  @Test
+  public void testQueryEnvelope() {
+    FeatureCollection collection = buildGrid();
+    assertEquals(4, collection.query(new Envelope(1, 2, 1, 2)).size());
+    assertEquals(1, collection.query(new Envelope(4.9, 5.1, 4.9, 5.1)).size());
+    assertTrue(collection.query(new Envelope(4.45, 4.55, 4.45, 4.55)).isEmpty());
+    assertTrue(collection.query((Envelope) null).isEmpty());
+
+    /**
+     * The index is rebuilt after modification.
+     */
+    collection.getFeatures().removeIf(feature -> feature.getId().startsWith("1,"));
+    assertEquals(2, collection.query(new Envelope(1, 2, 1, 2)).size());
+    collection.addFeatures(point("p", 1.5, 1.5));
+    assertEquals(3, collection.query(new Envelope(1, 2, 1, 2)).size());
+  }
+
+  @Test
+  public void testQueryRadius() {
+    FeatureCollection collection = buildGrid();
+    /**
+     * At the equator one degree is approximately 111 km. The adjacent square
+     * edges are 0.6 degree (approximately 67 km) from the center and the
+     * diagonal square corners are approximately 94 km.
+     */
+    Position center = Position.getInstance(5, 5);
+    assertEquals(ids(collection.query(new Envelope(5, 5, 5, 5))), ids(collection.query(center, 1000)));
+    Set<String> near = ids(collection.query(center, 70000));
+    System.out.println("within 70 km " + near);
+    assertEquals(5, near.size());
+    assertTrue(near.containsAll(java.util.Arrays.asList("5,5", "4,5", "6,5", "5,4", "5,6")));
+    assertEquals(9, collection.query(center, 100000).size());
+  }
+
+  /**
+   * Build a ring of 360 points at a fraction of a radius around a center,
+   * one per degree of bearing.
+   */
+  private static FeatureCollection buildRing(double latitude, double longitude, double radius) {
+    FeatureCollection collection = new FeatureCollection();
+    double delta = radius / GreatCircle.EARTH_RADIUS;
+    double phi = Math.toRadians(latitude);
+    for (int bearing = 0; bearing < 360; bearing++) {
+      double theta = Math.toRadians(bearing);
+      double phi2 = Math.asin(Math.sin(phi) * Math.cos(delta) + Math.cos(phi) * Math.sin(delta) * Math.cos(theta));
+      double lambda2 = Math.toRadians(longitude) + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi),
+                                                              Math.cos(delta) - Math.sin(phi) * Math.sin(phi2));
+      double x = Math.toDegrees(lambda2);
+      x = x > 180 ? x - 360 : x < -180 ? x + 360 : x;
+      collection.addFeatures(point(String.valueOf(bearing), x, Math.toDegrees(phi2)));
+    }
+    return collection;
+  }
+
+  @Test
+  public void testQueryRadiusSphere() {
+    /**
+     * High latitude (the longitude extent is wider than the latitude extent
+     * divided by the cosine), a circle containing the pole and a circle
+     * crossing the anti-meridian.
+     */
+    double[][] cases = {{60, 10, 1000000}, {85, 10, 1000000}, {-85, -170, 1000000}, {0, 179.9, 100000}, {10, -179.9, 100000}};
+    for (double[] c : cases) {
+      Position center = Position.getInstance(c[0], c[1]);
+      assertEquals(java.util.Arrays.toString(c), 360, buildRing(c[0], c[1], 0.999 * c[2]).query(center, c[2]).size());
+      assertEquals(java.util.Arrays.toString(c), 0, buildRing(c[0], c[1], 1.001 * c[2]).query(center, c[2]).size());
+    }
+    /**
+     * A polygon spanning the anti-meridian on the far side is found by its
+     * nearest edge.
+     */
+    FeatureCollection collection = new FeatureCollection();
+    Feature west = Feature.getInstance("west", FACTORY.toGeometry(new Envelope(-179.5, -179, -1, 1)));
+    collection.addFeatures(west);
+    assertEquals(1, collection.query(Position.getInstance(0, 179.9), 100000).size());
+    assertTrue(collection.query(Position.getInstance(0, 179.9), 40000).isEmpty());
+  }
+
+  @Test
+  public void testNearestSphere() {
+    /**
+     * At 60 degrees north one degree of longitude is half a degree of
+     * latitude: (60, 1.5) is 83 km away, the square edge at (60, -1.8) is 100
+     * km away and (61, 0) is 111 km away. Planar ranking is the reverse.
+     */
+    Feature square = Feature.getInstance("square", FACTORY.toGeometry(new Envelope(-3.5, -1.8, 59.5, 60.5)));
+    square.setId("square");
+    FeatureCollection collection = new FeatureCollection();
+    collection.addFeatures(point("north", 0, 61), point("east", 1.5, 60), square);
+    List<Feature> nearest = collection.nearest(Position.getInstance(60, 0), 3);
+    System.out.println("nearest at 60N " + nearest.stream().map(Feature::getId).collect(Collectors.toList()));
+    assertEquals("east", nearest.get(0).getId());
+    assertEquals("square", nearest.get(1).getId());
+    assertEquals("north", nearest.get(2).getId());
+    assertEquals("east", collection.nearest(Position.getInstance(60, 0), 1).get(0).getId());
+    /**
+     * Across the anti-meridian.
+     */
+    collection.addFeatures(point("dateline", -179.9, 60));
+    assertEquals("dateline", collection.nearest(Position.getInstance(60, 179.9), 1).get(0).getId());
+  }
+
+  @Test
+  public void testNearest() {
+    FeatureCollection collection = buildGrid();
+    List<Feature> nearest = collection.nearest(Position.getInstance(-3, -3), 3);
+    System.out.println("nearest " + ids(nearest));
+    assertEquals(3, nearest.size());
+    assertEquals("0,0", nearest.get(0).getId());
+    assertEquals(new TreeSet<>(java.util.Arrays.asList("0,0", "0,1", "1,0")), ids(nearest));
+    assertEquals(100, collection.nearest(Position.getInstance(0, 0), 1000).size());
+    assertTrue(new FeatureCollection().nearest(Position.getInstance(0, 0), 3).isEmpty());
+  }
+
+}
@@ -13,8 +13,28 @@ package ch.keybridge.gis.dto;
 import ch.keybridge.json.JsonUtility;
 import ch.keybridge.xml.JaxbUtility;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import javax.xml.bind.JAXBException;
+import junit.framework.TestCase;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
 
 /**
  *
@@ -47,4 +67,404 @@ public class FeatureTest {
 
   }
 
+  @Test
+  public void testTypedProperties() {
+    Feature feature = new Feature();
+    feature.setStrokeWidth(2.5);
+    feature.setProperty("count", 42);
+    feature.setProperty("total", 1602806400000L);
+    feature.setProperty("invalid", "not a number");
+    /**
+     * Parsed values are cached and reused.
+     */
+    Double strokeWidth = feature.getStrokeWidth();
+    TestCase.assertEquals(2.5, strokeWidth);
+    TestCase.assertSame(strokeWidth, feature.getStrokeWidth());
+    TestCase.assertEquals(Integer.valueOf(42), feature.getPropertyInteger("count"));
+    TestCase.assertEquals(Long.valueOf(42), feature.getPropertyLong("count"));
+    TestCase.assertEquals(Long.valueOf(1602806400000L), feature.getPropertyLong("total"));
+    TestCase.assertNull(feature.getPropertyInteger("total"));
+    TestCase.assertNull(feature.getPropertyDouble("invalid"));
+    TestCase.assertNull(feature.getPropertyDouble("invalid"));
+    TestCase.assertEquals(1.0, feature.getPropertyDouble("invalid", 1.0));
+    TestCase.assertEquals(1.0, feature.getPropertyDouble("missing", 1.0));
+    TestCase.assertNull(feature.getPropertyDouble("missing"));
+    /**
+     * Changes through setProperty and directly to the map are detected.
+     */
+    feature.setStrokeWidth(3.0);
+    TestCase.assertEquals(3.0, feature.getStrokeWidth());
+    feature.getProperties().put("strokeWidth", "4.0");
+    TestCase.assertEquals(4.0, feature.getStrokeWidth());
+    feature.getProperties().remove("strokeWidth");
+    TestCase.assertNull(feature.getStrokeWidth());
+    feature.clearProperties();
+    TestCase.assertNull(feature.getPropertyInteger("count"));
+    /**
+     * Dates are copied so the cached value cannot be modified.
+     */
+    Date date = new Date(1602806400000L);
+    feature.setProperty("date", date);
+    Date parsed = feature.getPropertyDate("date");
+    TestCase.assertEquals(feature.getPropertyDate("date"), parsed);
+    parsed.setTime(0);
+    TestCase.assertFalse(parsed.equals(feature.getPropertyDate("date")));
+    System.out.println("typed properties OK");
+  }
+
+  @Test
+  public void testDateTimeProperties() {
+    Feature feature = new Feature();
+    /**
+     * Dates and instants are written as ISO-8601 UTC instants without loss of
+     * precision.
+     */
+    feature.setProperty("date", new Date(1602806400123L));
+    TestCase.assertEquals("2020-10-16T00:00:00.123Z", feature.getProperty("date"));
+    TestCase.assertEquals(1602806400123L, feature.getPropertyDate("date").getTime());
+    Instant instant = Instant.ofEpochSecond(1602806400L, 123456789);
+    feature.setProperty("instant", instant);
+    TestCase.assertEquals(instant, feature.getPropertyInstant("instant"));
+    /**
+     * Zoned date times keep their offset.
+     */
+    ZonedDateTime zoned = ZonedDateTime.of(2020, 10, 16, 2, 0, 0, 0, ZoneOffset.ofHours(2));
+    feature.setProperty("zoned", zoned);
+    TestCase.assertEquals("2020-10-16T02:00:00+02:00", feature.getProperty("zoned"));
+    TestCase.assertEquals(zoned, feature.getPropertyZonedDateTime("zoned"));
+    TestCase.assertEquals(zoned.toInstant(), feature.getPropertyInstant("zoned"));
+    /**
+     * Epoch milliseconds, local values (UTC) and the legacy format are read.
+     */
+    feature.setProperty("epoch", 1602806400000L);
+    TestCase.assertEquals(Instant.ofEpochMilli(1602806400000L), feature.getPropertyInstant("epoch"));
+    feature.setProperty("local", "2020-10-16T00:00:00");
+    TestCase.assertEquals(Instant.ofEpochMilli(1602806400000L), feature.getPropertyInstant("local"));
+    feature.setProperty("day", "2020-10-16");
+    TestCase.assertEquals(Instant.ofEpochMilli(1602806400000L), feature.getPropertyInstant("day"));
+    Date legacy = new Date(1602806400000L);
+    feature.setProperty("legacy", new SimpleDateFormat().format(legacy));
+    TestCase.assertEquals(legacy, feature.getPropertyDate("legacy"));
+    feature.setProperty("invalid", "yesterday");
+    TestCase.assertNull(feature.getPropertyInstant("invalid"));
+    TestCase.assertNull(feature.getPropertyZonedDateTime("missing"));
+    System.out.println("date time properties " + feature.getProperties());
+  }
+
+  @Test
+  public void testPropertyMap() throws Exception {
+    Feature feature = new Feature();
+    Map<String, String> expected = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      feature.setProperty("key" + i, "value" + i);
+      expected.put("key" + i, "value" + i);
+    }
+    feature.setProperty("key5", null);
+    expected.remove("key5");
+    feature.getProperties().put("key6", "six");
+    expected.put("key6", "six");
+    /**
+     * The compact map behaves as a HashMap.
+     */
+    Map<String, String> properties = feature.getProperties();
+    TestCase.assertEquals(expected, properties);
+    TestCase.assertEquals(properties, expected);
+    TestCase.assertEquals(expected.hashCode(), properties.hashCode());
+    TestCase.assertFalse(properties.containsKey("key5"));
+    TestCase.assertFalse(properties.containsKey(null));
+    TestCase.assertNull(properties.get(5));
+    /**
+     * Removal and update while iterating.
+     */
+    Iterator<Map.Entry<String, String>> iterator = properties.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, String> entry = iterator.next();
+      if (entry.getKey().endsWith("1")) {
+        iterator.remove();
+        expected.remove(entry.getKey());
+      } else if (entry.getKey().equals("key2")) {
+        entry.setValue("two");
+        expected.put("key2", "two");
+      }
+    }
+    TestCase.assertEquals(expected, properties);
+    TestCase.assertEquals("two", feature.getProperty("key2"));
+    /**
+     * Keys are held once in the shared symbol table.
+     */
+    Feature other = new Feature();
+    other.setProperty(new String("key3"), "other");
+    String key = other.getProperties().keySet().iterator().next();
+    for (String each : properties.keySet()) {
+      if (each.equals("key3")) {
+        TestCase.assertSame(each, key);
+      }
+    }
+    TestCase.assertTrue(PropertyKeys.indexOf("strokeWidth") >= 0);
+    /**
+     * XML and Java serialization.
+     */
+    Feature copy = JaxbUtility.unmarshal(JaxbUtility.marshal(feature), Feature.class);
+    TestCase.assertEquals(expected, copy.getProperties());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(feature);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      TestCase.assertEquals(expected, ((Feature) in.readObject()).getProperties());
+    }
+    properties.clear();
+    TestCase.assertTrue(properties.isEmpty());
+    System.out.println("property map OK, " + PropertyKeys.size() + " keys");
+  }
+
+  @Test
+  public void testStyle() throws Exception {
+    /**
+     * The CSS style writes the same properties as before.
+     */
+    Feature css = Feature.getInstanceWithCss();
+    TestCase.assertEquals("999999", css.getProperty("stroke"));
+    TestCase.assertEquals("1.0", css.getProperty("strokeOpacity"));
+    TestCase.assertEquals("2.0", css.getProperty("strokeWidth"));
+    TestCase.assertEquals("555555", css.getProperty("fill"));
+    TestCase.assertEquals("0.6", css.getProperty("fillOpacity"));
+    TestCase.assertSame(Style.DEFAULT, css.getStyle());
+    /**
+     * Equal styles are shared, as are their property strings.
+     */
+    Feature feature = new Feature();
+    TestCase.assertSame(Style.EMPTY, feature.getStyle());
+    feature.setStroke("999999");
+    feature.setStrokeOpacity(1.0);
+    feature.setStrokeWidth(2.0);
+    feature.setFill("555555");
+    feature.setFillOpacity(0.6);
+    TestCase.assertSame(Style.DEFAULT, feature.getStyle());
+    TestCase.assertSame(css.getProperty("strokeWidth"), feature.getProperty("strokeWidth"));
+    TestCase.assertSame(Style.DEFAULT.withFill("ff0000"), Style.getInstance("999999", 1.0, 2.0, "ff0000", 0.6));
+    /**
+     * Changes made directly to the property map are seen.
+     */
+    feature.setProperty("strokeWidth", "3");
+    TestCase.assertEquals(3.0, feature.getStrokeWidth());
+    TestCase.assertEquals(Style.DEFAULT.withStrokeWidth(3.0), feature.getStyle());
+    /**
+     * A non-canonical value stays cached and is not rewritten.
+     */
+    TestCase.assertSame(feature.getStyle(), feature.getStyle());
+    TestCase.assertEquals(3.0, feature.getStrokeWidth());
+    TestCase.assertEquals("3", feature.getProperty("strokeWidth"));
+    feature.setProperty("fillOpacity", "bad");
+    TestCase.assertNull(feature.getFillOpacity());
+    TestCase.assertEquals("bad", feature.getProperty("fillOpacity"));
+    feature.setStroke(null);
+    TestCase.assertFalse(feature.isSetProperty("stroke"));
+    TestCase.assertEquals("555555", feature.getFill());
+    feature.setStyle(null);
+    TestCase.assertTrue(feature.getProperties().isEmpty());
+    /**
+     * Unmarshalled features share the interned style strings.
+     */
+    Feature copy = JaxbUtility.unmarshal(JaxbUtility.marshal(css), Feature.class);
+    TestCase.assertEquals(css.getProperties(), copy.getProperties());
+    TestCase.assertSame(css.getProperty("fill"), copy.getProperty("fill"));
+    TestCase.assertSame(Style.DEFAULT, copy.getStyle());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(Style.DEFAULT);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      TestCase.assertSame(Style.DEFAULT, in.readObject());
+    }
+    System.out.println("style OK " + Style.DEFAULT);
+  }
+
+  @Test
+  public void testEqualityKeys() {
+    Geometry shape = Position.getInstance(38.0, -77.0).asPoint().buffer(0.5);
+    Feature a = Feature.getInstance("a", shape);
+    a.setId(1);
+    Feature b = Feature.getInstance("b", (Geometry) shape.copy());
+    b.setId(2);
+    Feature c = Feature.getInstance("c", shape.buffer(0.1));
+    c.setId(1);
+    TestCase.assertEquals(a, b);
+    TestCase.assertFalse(a.equals(c));
+    /**
+     * Fingerprints follow exact shape equality and are reset with the shape.
+     */
+    TestCase.assertEquals(a.getShapeFingerprint(), b.getShapeFingerprint());
+    TestCase.assertEquals(a.fingerprintKey(), b.fingerprintKey());
+    TestCase.assertEquals(a.fingerprintKey().hashCode(), b.fingerprintKey().hashCode());
+    TestCase.assertFalse(a.fingerprintKey().equals(c.fingerprintKey()));
+    Set<Feature.Key> keys = new HashSet<>(Arrays.asList(a.fingerprintKey(), b.fingerprintKey(), c.fingerprintKey()));
+    TestCase.assertEquals(2, keys.size());
+    Feature.Key key = b.fingerprintKey();
+    b.setShape(c.getShape());
+    TestCase.assertEquals(b.fingerprintKey(), c.fingerprintKey());
+    TestCase.assertEquals(a.fingerprintKey(), key);
+    TestCase.assertSame(b, key.getFeature());
+    TestCase.assertFalse(Feature.getInstance("line", new GeometryFactory().createLineString(((Polygon) shape).getExteriorRing().getCoordinates()))
+      .fingerprintKey().equals(a.fingerprintKey()));
+    /**
+     * ID keys ignore the shape; the default equality is unchanged.
+     */
+    TestCase.assertEquals(a.idKey(), c.idKey());
+    TestCase.assertEquals(a.idKey().hashCode(), c.idKey().hashCode());
+    TestCase.assertFalse(a.idKey().equals(b.idKey()));
+    TestCase.assertFalse(a.equals(c));
+    TestCase.assertFalse(a.idKey().equals(a.fingerprintKey()));
+    /**
+     * Collections are compared by ID.
+     */
+    FeatureCollection one = new FeatureCollection();
+    one.setId(1);
+    FeatureCollection two = new FeatureCollection();
+    two.setId(1);
+    TestCase.assertEquals(one, two);
+    System.out.println("feature equality OK");
+  }
+
+  @Test
+  public void testContentHash() throws Exception {
+    Geometry shape = Position.getInstance(38.0, -77.0).asPoint().buffer(0.5);
+    Feature feature = Feature.getInstance("feature", shape);
+    feature.setId(1);
+    feature.setPosition(Position.getInstance(38.0, -77.0));
+    feature.setProperty("population", 1000);
+    long hash = feature.getContentHash();
+    TestCase.assertEquals(hash, feature.getContentHash());
+    TestCase.assertEquals(18, feature.getETag().length());
+    /**
+     * Equal content has an equal hash, including after XML round trip.
+     */
+    Feature copy = JaxbUtility.unmarshal(JaxbUtility.marshal(feature), Feature.class);
+    TestCase.assertEquals(hash, copy.getContentHash());
+    TestCase.assertEquals(feature.getETag(), copy.getETag());
+    /**
+     * Each change is detected.
+     */
+    copy.setProperty("population", 1001);
+    TestCase.assertFalse(hash == copy.getContentHash());
+    copy.getProperties().put("population", "1000");
+    TestCase.assertEquals(hash, copy.getContentHash());
+    copy.setName("renamed");
+    TestCase.assertFalse(hash == copy.getContentHash());
+    copy.setName("feature");
+    copy.setShape(shape.buffer(0.1));
+    TestCase.assertFalse(hash == copy.getContentHash());
+    copy.setShape(shape);
+    TestCase.assertEquals(hash, copy.getContentHash());
+    copy.getPosition().setElevation(100.0);
+    copy.invalidateContentHash();
+    TestCase.assertFalse(hash == copy.getContentHash());
+    /**
+     * Setting an attribute keeps the cached shape fingerprint; only setting
+     * the shape or an explicit invalidation recalculates it.
+     */
+    Feature point = Feature.getInstance("point", new GeometryFactory().createPoint(new Coordinate(1, 2)));
+    long fingerprint = point.getShapeFingerprint();
+    point.getShape().getCoordinate().setX(3);
+    point.setName("renamed");
+    point.setId(2);
+    point.setPosition(null);
+    TestCase.assertEquals(fingerprint, point.getShapeFingerprint());
+    point.invalidateContentHash();
+    TestCase.assertFalse(fingerprint == point.getShapeFingerprint());
+    /**
+     * Property order does not matter.
+     */
+    Feature a = new Feature();
+    a.setProperty("x", "1");
+    a.setProperty("y", "2");
+    Feature b = new Feature();
+    b.setProperty("y", "2");
+    b.setProperty("x", "1");
+    TestCase.assertEquals(a.getContentHash(), b.getContentHash());
+    /**
+     * Collections cover their features.
+     */
+    FeatureCollection collection = FeatureCollection.getInstance("c", "test", "collection", Arrays.asList(feature, a));
+    long collectionHash = collection.getContentHash();
+    a.setProperty("x", "3");
+    TestCase.assertFalse(collectionHash == collection.getContentHash());
+    a.setProperty("x", "1");
+    TestCase.assertEquals(collectionHash, collection.getContentHash());
+    collection.getFeatures().remove(a);
+    TestCase.assertFalse(collectionHash == collection.getContentHash());
+    System.out.println("content hash OK " + feature.getETag());
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    /**
+     * The shape WKB is larger than an object stream data block.
+     */
+    Geometry shape = Position.getInstance(38.0, -77.0).asPoint().buffer(0.5, 64);
+    Feature feature = Feature.getInstance("feature", shape);
+    feature.setId(1);
+    feature.setDescription("a feature");
+    feature.setProperty("population", 1000);
+    Position position = Position.getInstance(38.0, -77.0);
+    position.setElevation(100.0);
+    position.setDomTimeStampMillis(1602806400000L);
+    position.setRadialHaat(new double[]{0, 90, 180}, new double[]{10, 20, 30});
+    feature.setPosition(position);
+    feature.setAddress(Address.getInstance("1750 Tysons Blvd.", "McLean", "VA", "22102", "US"));
+    FeatureCollection collection = FeatureCollection.getInstance("c", "test", "collection", Arrays.asList(feature, Feature.getInstance("empty", null)));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(collection);
+    }
+    FeatureCollection copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (FeatureCollection) in.readObject();
+    }
+    System.out.println("serialized collection " + bytes.size() + " bytes");
+    /**
+     * The content is identical, including unset position values.
+     */
+    TestCase.assertEquals(collection.getContentHash(), copy.getContentHash());
+    Feature first = copy.getFeatures().iterator().next();
+    TestCase.assertTrue(shape.equalsExact(first.getShape()));
+    TestCase.assertEquals(position.getRadialHaat(), first.getPosition().getRadialHaat());
+    TestCase.assertNull(first.getPosition().getSpeed());
+    TestCase.assertTrue(Double.isNaN(first.getPosition().getSpeedValue()));
+    TestCase.assertEquals(feature.getAddress(), first.getAddress());
+    TestCase.assertEquals(1000, first.getPropertyInteger("population").intValue());
+    TestCase.assertEquals(collection.getEnvelope(), copy.getEnvelope());
+    /**
+     * Z values are kept.
+     */
+    Feature point = Feature.getInstance("point", new GeometryFactory().createPoint(new Coordinate(1, 2, 3)));
+    bytes.reset();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(point);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      TestCase.assertEquals(3.0, ((Feature) in.readObject()).getShape().getCoordinate().getZ());
+    }
+    /**
+     * Empty shapes, which WKB cannot represent for points, keep their type and
+     * SRID.
+     */
+    GeometryFactory factory = new GeometryFactory();
+    for (Geometry empty : new Geometry[]{factory.createPoint(), factory.createPolygon(), factory.createLinearRing(), factory.createGeometryCollection()}) {
+      empty.setSRID(4326);
+      bytes.reset();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(Feature.getInstance("empty", empty));
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+        Geometry copyShape = ((Feature) in.readObject()).getShape();
+        TestCase.assertTrue(copyShape.isEmpty());
+        TestCase.assertEquals(empty.getGeometryType(), copyShape.getGeometryType());
+        TestCase.assertEquals(4326, copyShape.getSRID());
+      }
+    }
+    System.out.println("serialization OK");
+  }
+
 }
@@ -49,6 +49,8 @@ public class GenerateXSDSchema {
     classes.add(Position.class);
     classes.add(Image.class);
     classes.add(ImageCollection.class);
+    classes.add(PositionBatch.class);
+    classes.add(FeatureCollectionPatch.class);
 
     JAXBContext jaxb = JAXBContext.newInstance(classes.toArray(new Class[classes.size()]));
     SchemaOutputResolver resolver = new MySchemaOutputResolver();
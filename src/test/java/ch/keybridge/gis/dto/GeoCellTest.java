@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Key Bridge. All rights reserved.
+ * Use is subject to license terms.
+ *
+ * Software Code is protected by Copyrights. Author hereby reserves all rights
+ * in and to Copyrights and no license is granted under Copyrights in this
+ * Software License Agreement.
+ *
+ * Key Bridge generally licenses Copyrights for commercialization pursuant to
+ * the terms of either a Standard Software Source Code License Agreement or a
+ * Standard Product License Agreement. A copy of either Agreement can be
+ * obtained upon request from: info@keybridgewireless.com
+ */
+package ch.keybridge.gis.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class GeoCellTest {
+
+  @Test
+  public void testGeoCellEncodeDecode() {
+    Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      double latitude = random.nextDouble() * 180 - 90;
+      double longitude = random.nextDouble() * 360 - 180;
+      for (int level : new int[]{0, 1, 10, 20, GeoCell.MAX_LEVEL}) {
+        long cell = GeoCell.encode(latitude, longitude, level);
+        TestCase.assertTrue(cell > 0);
+        TestCase.assertEquals(level, GeoCell.getLevel(cell));
+        /**
+         * The cell contains the position, and the center is in the cell.
+         */
+        Envelope envelope = GeoCell.getEnvelope(cell);
+        TestCase.assertTrue(envelope.contains(longitude, latitude));
+        Position center = GeoCell.getCenter(cell);
+        TestCase.assertEquals(cell, center.getCellId(level));
+        /**
+         * The parent contains the cell.
+         */
+        long parent = GeoCell.getParent(cell, level / 2);
+        TestCase.assertEquals(GeoCell.encode(latitude, longitude, level / 2), parent);
+        TestCase.assertTrue(GeoCell.contains(parent, cell));
+      }
+    }
+    System.out.println("cell at level 20 " + Long.toHexString(Position.getInstance(38.924077, -77.211837).getCellId(20))
+      + " " + GeoCell.getEnvelope(Position.getInstance(38.924077, -77.211837).getCellId(20)));
+    TestCase.assertEquals(GeoCell.NONE, new Position().getCellId(20));
+    /**
+     * Cells at different levels never collide.
+     */
+    TestCase.assertFalse(GeoCell.encode(0, 0, 10) == GeoCell.encode(0, 0, 11));
+  }
+
+  @Test
+  public void testGeoCellNeighbours() {
+    long cell = GeoCell.encode(10.0, 20.0, 12);
+    long[] neighbours = GeoCell.getNeighbours(cell);
+    TestCase.assertEquals(8, neighbours.length);
+    Envelope envelope = GeoCell.getEnvelope(cell);
+    for (long neighbour : neighbours) {
+      TestCase.assertTrue(envelope.intersects(GeoCell.getEnvelope(neighbour)));
+    }
+    /**
+     * Neighbours wrap across the anti-meridian but not the poles.
+     */
+    long dateline = GeoCell.encode(0.0, 179.999, 8);
+    boolean wrapped = false;
+    for (long neighbour : GeoCell.getNeighbours(dateline)) {
+      wrapped |= GeoCell.getEnvelope(neighbour).getMinX() == -180;
+    }
+    TestCase.assertTrue(wrapped);
+    TestCase.assertEquals(5, GeoCell.getNeighbours(GeoCell.encode(90.0, 0.0, 8)).length);
+    TestCase.assertEquals(0, GeoCell.getNeighbours(GeoCell.encode(0.0, 0.0, 0)).length);
+    System.out.println("level for 100 m " + GeoCell.getLevelForDistance(100));
+  }
+
+  @Test
+  public void testCellIndex() {
+    /**
+     * Cluster 100 positions around each of three centers.
+     */
+    Random random = new Random(1);
+    List<Position> positions = new ArrayList<>();
+    double[][] centers = {{38.9, -77.2}, {48.85, 2.35}, {-33.9, 151.2}};
+    for (double[] center : centers) {
+      for (int i = 0; i < 100; i++) {
+        positions.add(Position.getInstance(center[0] + random.nextGaussian() * 0.0002, center[1] + random.nextGaussian() * 0.0002));
+      }
+    }
+    positions.add(new Position());
+    int level = GeoCell.getLevelForDistance(200);
+    CellIndex<Position> index = CellIndex.ofPositions(positions, level);
+    System.out.println("cell index level " + level + " cells " + index.getCellCount() + " items " + index.size());
+    TestCase.assertEquals(300, index.size());
+    for (double[] center : centers) {
+      Position position = Position.getInstance(center[0], center[1]);
+      TestCase.assertEquals(100, index.getNear(position).size());
+      TestCase.assertTrue(index.contains(position.getCellId(level)));
+    }
+    TestCase.assertTrue(index.getNear(Position.getInstance(0.0, 0.0)).isEmpty());
+    TestCase.assertEquals(index.getCellCount(), index.getCells().length);
+    /**
+     * Features are indexed by position or shape centroid.
+     */
+    List<Feature> features = new ArrayList<>();
+    features.add(Feature.getInstance("point", Position.getInstance(10.0, 20.0).asPoint()));
+    features.add(new Feature());
+    CellIndex<Feature> featureIndex = CellIndex.ofFeatures(features, 20);
+    TestCase.assertEquals(1, featureIndex.size());
+    TestCase.assertEquals("point", featureIndex.get(Position.getInstance(10.0, 20.0)).get(0).getName());
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Key Bridge. All rights reserved.
+ * Use is subject to license terms.
+ *
+ * Software Code is protected by Copyrights. Author hereby reserves all rights
+ * in and to Copyrights and no license is granted under Copyrights in this
+ * Software License Agreement.
+ *
+ * Key Bridge generally licenses Copyrights for commercialization pursuant to
+ * the terms of either a Standard Software Source Code License Agreement or a
+ * Standard Product License Agreement. A copy of either Agreement can be
+ * obtained upon request from: info@keybridgewireless.com
+ */
+package ch.keybridge.gis.dto;
+
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class GreatCircleTest {
+
+  @Test
+  public void testDistanceAndBearing() {
+    /**
+     * Washington DC to Paris, approximately 6,160 km.
+     */
+    Position washington = Position.getInstance(38.8977, -77.0365);
+    Position paris = Position.getInstance(48.8584, 2.2945);
+    double distance = washington.distanceTo(paris);
+    double bearing = washington.bearingTo(paris);
+    System.out.println("washington to paris " + distance + " m bearing " + bearing);
+    TestCase.assertEquals(6_160_000, distance, 20_000);
+    TestCase.assertEquals(distance, paris.distanceTo(washington), 1e-6);
+    TestCase.assertEquals(51.75, bearing, 0.1);
+    /**
+     * The destination at the distance and bearing is the other position.
+     */
+    Position destination = washington.destination(bearing, distance);
+    TestCase.assertEquals(paris.getLatitude(), destination.getLatitude(), 1e-6);
+    TestCase.assertEquals(paris.getLongitude(), destination.getLongitude(), 1e-6);
+    /**
+     * Cardinal bearings, the anti-meridian and incomplete positions.
+     */
+    Position origin = Position.getInstance(0.0, 0.0);
+    TestCase.assertEquals(0.0, origin.bearingTo(Position.getInstance(1.0, 0.0)), 1e-9);
+    TestCase.assertEquals(90.0, origin.bearingTo(Position.getInstance(0.0, 1.0)), 1e-9);
+    TestCase.assertEquals(270.0, origin.bearingTo(Position.getInstance(0.0, -1.0)), 1e-9);
+    TestCase.assertEquals(GreatCircle.distance(0, 179.5, 0, -179.5), GreatCircle.distance(0, 0, 0, 1), 1e-6);
+    TestCase.assertEquals(GreatCircle.distance(0, 0, 0, 1), GreatCircle.distanceEquirectangular(0, 179.5, 0, -179.5), 1e-6);
+    TestCase.assertEquals(-179.5, Position.getInstance(0.0, 179.5).destination(90, GreatCircle.distance(0, 0, 0, 1)).getLongitude(), 1e-6);
+    TestCase.assertTrue(Double.isNaN(origin.distanceTo(new Position())));
+    TestCase.assertTrue(Double.isNaN(origin.distanceTo(null)));
+    TestCase.assertFalse(new Position().destination(0, 100).isComplete());
+  }
+
+  @Test
+  public void testBulkDistance() {
+    Random random = new Random(1);
+    int count = 1000;
+    double[] latitudes = new double[count];
+    double[] longitudes = new double[count];
+    for (int i = 0; i < count; i++) {
+      latitudes[i] = random.nextDouble() * 140 - 70;
+      longitudes[i] = random.nextDouble() * 360 - 180;
+    }
+    /**
+     * One to many matches the scalar kernel.
+     */
+    double[] distances = new double[count + 5];
+    GreatCircle.distance(latitudes[0], longitudes[0], latitudes, longitudes, 0, distances, 5, count);
+    for (int i = 0; i < count; i++) {
+      TestCase.assertEquals(GreatCircle.distance(latitudes[0], longitudes[0], latitudes[i], longitudes[i]), distances[i + 5], 1e-6);
+    }
+    /**
+     * The matrix matches the scalar kernel.
+     */
+    double[] matrix = new double[10 * 20];
+    GreatCircle.distanceMatrix(Arrays.copyOf(latitudes, 10), Arrays.copyOf(longitudes, 10),
+                               Arrays.copyOfRange(latitudes, 10, 30), Arrays.copyOfRange(longitudes, 10, 30), matrix);
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 20; j++) {
+        TestCase.assertEquals(GreatCircle.distance(latitudes[i], longitudes[i], latitudes[10 + j], longitudes[10 + j]), matrix[i * 20 + j], 1e-6);
+      }
+    }
+    GreatCircle.distanceMatrixEquirectangular(Arrays.copyOf(latitudes, 10), Arrays.copyOf(longitudes, 10),
+                                              Arrays.copyOfRange(latitudes, 10, 30), Arrays.copyOfRange(longitudes, 10, 30), matrix);
+    TestCase.assertEquals(GreatCircle.distanceEquirectangular(latitudes[9], longitudes[9], latitudes[29], longitudes[29]), matrix[9 * 20 + 19], 1e-6);
+    /**
+     * The equirectangular error is bounded at short range.
+     */
+    double maximum = 0;
+    double[] near = new double[count];
+    double[] exact = new double[count];
+    for (int i = 0; i < count; i++) {
+      double latitude = latitudes[i];
+      double longitude = longitudes[i];
+      double[] nearLatitudes = new double[]{latitude + random.nextDouble() * 0.6 - 0.3};
+      double[] nearLongitudes = new double[]{longitude + random.nextDouble() * 0.6 - 0.3};
+      GreatCircle.distanceEquirectangular(latitude, longitude, nearLatitudes, nearLongitudes, near);
+      GreatCircle.distance(latitude, longitude, nearLatitudes, nearLongitudes, exact);
+      maximum = Math.max(maximum, Math.abs(near[0] - exact[0]) / exact[0]);
+    }
+    System.out.println("equirectangular maximum relative error " + maximum);
+    TestCase.assertTrue(maximum < 1e-4);
+    /**
+     * Batch distances.
+     */
+    PositionBatch batch = PositionBatch.getInstance(latitudes, longitudes);
+    double[] batchDistances = new double[count];
+    batch.distance(Position.getInstance(latitudes[0], longitudes[0]), batchDistances);
+    TestCase.assertEquals(distances[5 + count - 1], batchDistances[count - 1], 1e-6);
+    try {
+      GreatCircle.distance(0, 0, latitudes, longitudes, new double[10]);
+      TestCase.fail("Expected ArrayIndexOutOfBoundsException");
+    } catch (ArrayIndexOutOfBoundsException exception) {
+      System.out.println("range check OK");
+    }
+  }
+
+}
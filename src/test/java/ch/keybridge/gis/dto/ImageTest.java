@@ -9,13 +9,19 @@
  */
 package ch.keybridge.gis.dto;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.ZonedDateTime;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -44,4 +50,38 @@ public class ImageTest {
     System.out.println("GIS Image boundary test OK. ");
   }
 
+  @Test
+  public void testSerialization() throws Exception {
+    Image image = new Image();
+    image.setId("image");
+    image.setMimeType("image/png");
+    image.setWidth(10);
+    image.setDateCreated(ZonedDateTime.now());
+    image.setEnvelope(new Envelope(-77, -76, 38, 39));
+    image.setImage(new byte[]{1, 2, 3});
+    ImageCollection collection = new ImageCollection();
+    collection.setCategory("test");
+    collection.addImages(image, new Image());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(collection);
+    }
+    ImageCollection copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (ImageCollection) in.readObject();
+    }
+    assertEquals("test", copy.getCategory());
+    assertEquals(2, copy.getImages().size());
+    Image first = copy.getImages().get(0);
+    assertEquals(image.getId(), first.getId());
+    assertEquals(image.getDateCreated(), first.getDateCreated());
+    assertEquals(image.getEnvelope(), first.getEnvelope());
+    assertEquals(Integer.valueOf(10), first.getWidth());
+    assertNull(first.getHeight());
+    assertArrayEquals(image.getImage(), first.getImage());
+    assertNull(copy.getImages().get(1).getImage());
+    System.out.println("GIS Image serialization test OK. ");
+  }
+
 }
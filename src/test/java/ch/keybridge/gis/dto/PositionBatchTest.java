@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Key Bridge. All rights reserved.
+ * Use is subject to license terms.
+ *
+ * Software Code is protected by Copyrights. Author hereby reserves all rights
+ * in and to Copyrights and no license is granted under Copyrights in this
+ * Software License Agreement.
+ *
+ * Key Bridge generally licenses Copyrights for commercialization pursuant to
+ * the terms of either a Standard Software Source Code License Agreement or a
+ * Standard Product License Agreement. A copy of either Agreement can be
+ * obtained upon request from: info@keybridgewireless.com
+ */
+package ch.keybridge.gis.dto;
+
+import ch.keybridge.xml.JaxbUtility;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.*;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.MultiPoint;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class PositionBatchTest {
+
+  @Test
+  public void testPositionBatchColumns() {
+    PositionBatch batch = new PositionBatch(2);
+    for (int i = 0; i < 100; i++) {
+      batch.add(i * 0.5, 200.0 + i);
+    }
+    batch.setSpeed(10, 12.5);
+    batch.setDomTimeStamp(20, 1602806400000L);
+    System.out.println("batch size " + batch.size());
+
+    TestCase.assertEquals(100, batch.size());
+    TestCase.assertEquals(5.0, batch.getLatitude(10));
+    TestCase.assertEquals(-150.0, batch.getLongitude(10));
+    TestCase.assertEquals(12.5, batch.getSpeed(10));
+    TestCase.assertTrue(Double.isNaN(batch.getSpeed(11)));
+    TestCase.assertTrue(Double.isNaN(batch.getElevation(10)));
+    TestCase.assertEquals(1602806400000L, batch.getDomTimeStamp(20));
+    TestCase.assertEquals(PositionBatch.NO_TIMESTAMP, batch.getDomTimeStamp(21));
+    /**
+     * Flyweight read. Values not set in a row are cleared from the reused
+     * position.
+     */
+    Position flyweight = new Position();
+    batch.get(10, flyweight);
+    TestCase.assertEquals(12.5, flyweight.getSpeed());
+    TestCase.assertNull(flyweight.getDomTimeStampMillis());
+    batch.get(20, flyweight);
+    TestCase.assertNull(flyweight.getSpeed());
+    TestCase.assertEquals(Long.valueOf(1602806400000L), flyweight.getDomTimeStampMillis());
+    TestCase.assertEquals(Position.getInstance(10.0, 220.0), flyweight);
+    /**
+     * Values the batch does not hold are cleared.
+     */
+    flyweight.setName("previous");
+    flyweight.setSource("gps");
+    flyweight.setHaat(150.0);
+    flyweight.setRadialHaat(new double[]{0, 180}, new double[]{100, 200});
+    batch.get(20, flyweight);
+    TestCase.assertNull(flyweight.getName());
+    TestCase.assertNull(flyweight.getSource());
+    TestCase.assertNull(flyweight.getHaat());
+    TestCase.assertEquals(0, flyweight.getRadialCount());
+
+    try {
+      batch.getLatitude(100);
+      TestCase.fail("Expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException exception) {
+      System.out.println("index out of bounds OK");
+    }
+  }
+
+  @Test
+  public void testPositionBatchGeometry() {
+    PositionBatch batch = PositionBatch.getInstance(new double[]{10, 20, 30}, new double[]{-10, -20, -30});
+    CoordinateSequence sequence = batch.toCoordinateSequence();
+    TestCase.assertEquals(3, sequence.size());
+    TestCase.assertEquals(2, sequence.getDimension());
+    TestCase.assertEquals(-20.0, sequence.getX(1));
+    TestCase.assertEquals(20.0, sequence.getY(1));
+
+    batch.setElevation(2, 100.0);
+    MultiPoint multiPoint = batch.toMultiPoint();
+    System.out.println("multipoint " + multiPoint);
+    TestCase.assertEquals(3, multiPoint.getNumGeometries());
+    TestCase.assertEquals(100.0, multiPoint.getGeometryN(2).getCoordinate().z);
+    TestCase.assertTrue(Double.isNaN(multiPoint.getGeometryN(0).getCoordinate().z));
+    TestCase.assertEquals(batch.get(1).asPoint(), multiPoint.getGeometryN(1));
+  }
+
+  @Test
+  public void testPositionBatchXml() throws JAXBException {
+    List<Position> list = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Position position = Position.getInstance(38.9 + i, -77.2 - i, 100.0 + i, "WGS84", 3.0, 5.0);
+      position.setDomTimeStampMillis(1602806400000L + i);
+      list.add(position);
+    }
+    PositionBatch batch = PositionBatch.getInstance(list);
+    String xml = JaxbUtility.marshal(batch);
+    System.out.println(xml);
+    /**
+     * The batch XML is identical to the XML of the equivalent list.
+     */
+    PositionList positionList = new PositionList();
+    positionList.positions = list;
+    String listXml = JaxbUtility.marshal(positionList);
+    TestCase.assertEquals(listXml.substring(listXml.indexOf("<Positions")), xml.substring(xml.indexOf("<Positions")));
+
+    PositionBatch copy = JaxbUtility.unmarshal(xml, PositionBatch.class);
+    TestCase.assertEquals(5, copy.size());
+    TestCase.assertEquals("WGS84", copy.getDatum());
+    for (int i = 0; i < 5; i++) {
+      TestCase.assertEquals(batch.getLatitude(i), copy.getLatitude(i), 1e-6);
+      TestCase.assertEquals(batch.getElevation(i), copy.getElevation(i), 1e-2);
+      TestCase.assertEquals(batch.getDomTimeStamp(i), copy.getDomTimeStamp(i));
+    }
+  }
+
+  /**
+   * A list of positions with the same element name as a batch.
+   */
+  @XmlRootElement(name = "PositionBatch")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class PositionList {
+
+    @XmlElement(name = "Positions")
+    private List<Position> positions;
+  }
+
+}
@@ -14,10 +14,21 @@
 package ch.keybridge.gis.dto;
 
 import ch.keybridge.xml.JaxbUtility;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
 import javax.xml.bind.JAXBException;
 import junit.framework.TestCase;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
  *
@@ -58,4 +69,240 @@ public class PositionTest {
     TestCase.assertEquals(Double.NaN, coordinate.z);
   }
 
+  @Test
+  public void testPositionUnsetValues() throws JAXBException {
+    Position position = Position.getInstance(10.0, 20.0);
+    /**
+     * Unset values read as null from the boxed getters and NaN from the
+     * primitive getters, and are omitted from the XML.
+     */
+    TestCase.assertNull(position.getElevation());
+    TestCase.assertNull(position.getHeading());
+    TestCase.assertNull(position.getDomTimeStampMillis());
+    TestCase.assertNull(position.getDomTimeStampZonedDateTime());
+    TestCase.assertTrue(Double.isNaN(position.getElevationValue()));
+    String xml = JaxbUtility.marshal(position);
+    System.out.println(xml);
+    TestCase.assertFalse(xml.contains("Elevation"));
+    TestCase.assertFalse(xml.contains("domTimeStamp"));
+    /**
+     * A stationary heading (NaN) is distinct from an unset heading.
+     */
+    position.setHeading(Double.NaN);
+    TestCase.assertNotNull(position.getHeading());
+    position.setHeading((Double) null);
+    TestCase.assertNull(position.getHeading());
+    position.setElevation(30.0);
+    position.setElevation((Double) null);
+    TestCase.assertNull(position.getElevation());
+    TestCase.assertTrue(Double.isNaN(position.getElevationValue()));
+  }
+
+  @Test
+  public void testPositionXmlRoundTrip() throws JAXBException {
+    Position position = Position.getInstance(10.0, 20.0, 30.0, "WGS84", 0.5, 0.5);
+    position.setName("name");
+    position.setHeading(90.0);
+    position.setSpeed(12.5);
+    position.setSource("source");
+    position.setHaat(150.0);
+    position.setDomTimeStampMillis(1602806400000L);
+    position.getRadialHaat().put(0.0, 100.0);
+    String xml = JaxbUtility.marshal(position);
+    System.out.println(xml);
+    /**
+     * Elements are written in the schema order.
+     */
+    String[] elements = {"<Name>", "<Latitude>", "<Longitude>", "<Elevation>", "<Heading>", "<Speed>", "<Source>", "<Haat>", "<RadialHat"};
+    for (int i = 1; i < elements.length; i++) {
+      TestCase.assertTrue(elements[i], xml.indexOf(elements[i - 1]) < xml.indexOf(elements[i]));
+    }
+    TestCase.assertTrue(xml.contains("domTimeStamp=\"1602806400000\""));
+
+    Position copy = JaxbUtility.unmarshal(xml, Position.class);
+    TestCase.assertEquals(position.getLatitude(), copy.getLatitude());
+    TestCase.assertEquals(position.getLongitude(), copy.getLongitude());
+    TestCase.assertEquals(position.getElevation(), copy.getElevation());
+    TestCase.assertEquals(position.getHeading(), copy.getHeading());
+    TestCase.assertEquals(position.getSpeed(), copy.getSpeed());
+    TestCase.assertEquals(position.getHaat(), copy.getHaat());
+    TestCase.assertEquals(position.getAccuracyHorizontal(), copy.getAccuracyHorizontal());
+    TestCase.assertEquals(position.getAccuracyVertical(), copy.getAccuracyVertical());
+    TestCase.assertEquals(position.getDomTimeStampMillis(), copy.getDomTimeStampMillis());
+    TestCase.assertEquals(position.getRadialHaat(), copy.getRadialHaat());
+    TestCase.assertNull(JaxbUtility.unmarshal(JaxbUtility.marshal(new Position()), Position.class).getLatitude());
+  }
+
+  @Test
+  public void testPositionAsPoint() {
+    Position position = new Position();
+    position.setLatitude(100.0);
+    position.setLongitude(200.0);
+    /**
+     * The point is normalized; the position is not modified.
+     */
+    Point point = position.asPoint();
+    System.out.println("as point " + point);
+    TestCase.assertEquals(-80.0, point.getY(), 1e-9);
+    TestCase.assertEquals(-160.0, point.getX(), 1e-9);
+    TestCase.assertEquals(100.0, position.getLatitude());
+    TestCase.assertEquals(200.0, position.getLongitude());
+    TestCase.assertSame(Position.GEOMETRY_FACTORY, point.getFactory());
+    /**
+     * Injected factory.
+     */
+    GeometryFactory packed = new GeometryFactory(new PrecisionModel(), 4326, PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+    Point packedPoint = Position.getInstance(10.0, 20.0, 30.0, "WGS84", 0.5, 0.5).asPoint(packed);
+    TestCase.assertEquals(4326, packedPoint.getSRID());
+    TestCase.assertEquals(30.0, packedPoint.getCoordinate().z);
+    TestCase.assertEquals(Position.getInstance(10.0, 20.0).asPoint(), Position.getInstance(10.0, 20.0).asPoint(packed));
+    /**
+     * Boundary values match the legacy normalization.
+     */
+    TestCase.assertEquals(90.0, Position.normalizeLatitude(-90.0));
+    TestCase.assertEquals(90.0, Position.normalizeLatitude(90.0));
+    TestCase.assertEquals(180.0, Position.normalizeLongitude(-180.0));
+    TestCase.assertEquals(-170.0, Position.normalizeLongitude(190.0));
+  }
+
+  @Test
+  public void testNormalizeBulk() {
+    java.util.Random random = new java.util.Random(1);
+    double[] values = new double[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (random.nextDouble() - 0.5) * 2000;
+    }
+    values[0] = -90;
+    values[1] = -180;
+    values[2] = 360;
+    values[3] = -720;
+    /**
+     * Bulk results are identical to the scalar results.
+     */
+    double[] latitude = values.clone();
+    double[] longitude = values.clone();
+    double[] heading = new double[values.length + 10];
+    double[] azimuth = values.clone();
+    Position.normalizeLatitude(latitude);
+    Position.normalizeLongitude(longitude);
+    Position.normalizeToHeading(values, 0, heading, 10, values.length);
+    Position.normalizeToAzimuth(azimuth);
+    for (int i = 0; i < values.length; i++) {
+      TestCase.assertEquals(Position.normalizeLatitude(values[i]), latitude[i]);
+      TestCase.assertEquals(Position.normalizeLongitude(values[i]), longitude[i]);
+      TestCase.assertEquals(Position.normalizeToHeading(values[i]), heading[i + 10]);
+      TestCase.assertEquals(Position.normalizeToAzimuth(values[i]), azimuth[i]);
+      TestCase.assertTrue(latitude[i] > -90 && latitude[i] <= 90);
+      TestCase.assertTrue(longitude[i] > -180 && longitude[i] <= 180);
+      TestCase.assertTrue(heading[i + 10] >= -180 && heading[i + 10] <= 180);
+      TestCase.assertTrue(azimuth[i] >= 0 && azimuth[i] < 360);
+    }
+    TestCase.assertEquals(10.0, Position.normalizeToHeading(370.0));
+    TestCase.assertEquals(-170.0, Position.normalizeToHeading(190.0));
+    TestCase.assertEquals(0.0, Position.normalizeToAzimuth(-720.0));
+    TestCase.assertEquals(270.0, Position.normalizeToAzimuth(-90.0));
+    System.out.println("bulk normalization OK");
+    try {
+      Position.normalizeLatitude(values, 0, new double[10], 0, values.length);
+      TestCase.fail("Expected ArrayIndexOutOfBoundsException");
+    } catch (ArrayIndexOutOfBoundsException exception) {
+      System.out.println("range check OK");
+    }
+  }
+
+  @Test
+  public void testRadialHaat() throws JAXBException {
+    /**
+     * Eight radials, unsorted, with a repeated azimuth.
+     */
+    Position position = Position.getInstance(38.924077, -77.211837);
+    position.setRadialHaat(new double[]{90, 0, 45, 135, 180, 225, 270, 315, 90},
+                           new double[]{0, 100, 50, 30, 40, 60, 80, 90, 20});
+    TestCase.assertEquals(8, position.getRadialCount());
+    TestCase.assertEquals(20.0, position.getHaatAt(90));
+    TestCase.assertEquals(75.0, position.getHaatAt(22.5));
+    TestCase.assertEquals(35.0, position.getHaatAt(157.5));
+    /**
+     * Interpolation wraps around north.
+     */
+    TestCase.assertEquals(95.0, position.getHaatAt(337.5));
+    TestCase.assertEquals(95.0, position.getHaatAt(-22.5));
+    TestCase.assertEquals(100.0, position.getHaatAt(360));
+    TestCase.assertTrue(Double.isNaN(new Position().getHaatAt(0)));
+    /**
+     * The map view is sorted and writes through.
+     */
+    Map<Double, Double> radialHaat = position.getRadialHaat();
+    TestCase.assertEquals(Arrays.asList(0.0, 45.0, 90.0, 135.0, 180.0, 225.0, 270.0, 315.0), new ArrayList<>(radialHaat.keySet()));
+    TestCase.assertEquals(20.0, radialHaat.put(90.0, 10.0));
+    TestCase.assertNull(radialHaat.put(100.0, 10.0));
+    TestCase.assertEquals(10.0, position.getHaatAt(95));
+    TestCase.assertEquals(10.0, radialHaat.remove(100.0));
+    TestCase.assertEquals(8, position.getRadialCount());
+    Map<Double, Double> treeMap = new TreeMap<>(radialHaat);
+    TestCase.assertEquals(treeMap, radialHaat);
+    TestCase.assertEquals(treeMap.hashCode(), radialHaat.hashCode());
+    /**
+     * XML and map copies.
+     */
+    Position copy = JaxbUtility.unmarshal(JaxbUtility.marshal(position), Position.class);
+    TestCase.assertEquals(treeMap, copy.getRadialHaat());
+    copy.setRadialHaat(treeMap);
+    TestCase.assertEquals(10.0, copy.getHaatAt(90));
+    radialHaat.clear();
+    TestCase.assertEquals(0, position.getRadialCount());
+    TestCase.assertFalse(JaxbUtility.marshal(position).contains("RadialHat"));
+  }
+
+  @Test
+  public void testPositionEquality() {
+    /**
+     * GRID mode is transitive: a ~ b and b ~ c implies a ~ c, and equal
+     * positions have equal hash codes.
+     */
+    Position a = Position.getInstance(38.92400, -77.21100);
+    Position b = Position.getInstance(38.924004, -77.211004);
+    Position c = Position.getInstance(38.924049, -77.211049);
+    Position d = Position.getInstance(38.924051, -77.211000);
+    TestCase.assertEquals(a, b);
+    TestCase.assertEquals(b, c);
+    TestCase.assertEquals(a, c);
+    TestCase.assertEquals(a.hashCode(), c.hashCode());
+    TestCase.assertFalse(a.equals(d));
+    /**
+     * Unset coordinates are only equal to unset coordinates.
+     */
+    TestCase.assertEquals(new Position(), new Position());
+    TestCase.assertEquals(new Position().hashCode(), new Position().hashCode());
+    TestCase.assertFalse(new Position().equals(Position.getInstance(0.0, 0.0)));
+    TestCase.assertFalse(new Position().isValid());
+    TestCase.assertFalse(Position.getInstance(0.0, 0.0).isValid());
+    TestCase.assertTrue(a.isValid());
+    /**
+     * Hash set de-duplication.
+     */
+    Random random = new Random(1);
+    Set<Position> set = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      set.add(Position.getInstance(38.924 + random.nextInt(10) * 0.001 + random.nextDouble() * 0.00001,
+                                   -77.211 + random.nextInt(10) * 0.001 + random.nextDouble() * 0.00001));
+    }
+    System.out.println("grid positions " + set.size());
+    TestCase.assertEquals(100, set.size());
+    /**
+     * Exact and grid keys.
+     */
+    TestCase.assertEquals(a.gridKey(), b.gridKey());
+    TestCase.assertEquals(a.gridKey().hashCode(), b.gridKey().hashCode());
+    TestCase.assertFalse(a.exactKey().equals(b.exactKey()));
+    TestCase.assertEquals(a.exactKey(), Position.getInstance(38.92400, -77.21100).exactKey());
+    TestCase.assertEquals(a.exactKey().hashCode(), Position.getInstance(38.92400, -77.21100).exactKey().hashCode());
+    TestCase.assertEquals(Position.getInstance(0.0, -0.0).exactKey(), Position.getInstance(-0.0, 0.0).exactKey());
+    TestCase.assertEquals(Position.getInstance(0.0, -0.0).exactKey().hashCode(), Position.getInstance(-0.0, 0.0).exactKey().hashCode());
+    TestCase.assertFalse(Position.getInstance(0.0, 0.0).exactKey().equals(Position.getInstance(0.0, 0.0).gridKey()));
+    Position.Key key = a.exactKey();
+    a.setLatitude(10.0);
+    TestCase.assertEquals(key, Position.getInstance(38.92400, -77.21100).exactKey());
+  }
+
 }
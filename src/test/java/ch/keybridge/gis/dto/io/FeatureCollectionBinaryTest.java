@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionBinaryTest {
+
+  private static List<Feature> buildFeatures(int count) {
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Feature feature = FeatureCollectionXmlWriterTest.buildFeature(i);
+      if (i == 1) {
+        feature.getPosition().setDomTimeStampMillis(1602806400000L);
+        feature.getPosition().setHaat(120.5);
+        feature.getPosition().setRadialHaat(new double[]{0, 90, 180, 270}, new double[]{100, 110, 120, 130});
+      }
+      features.add(feature);
+    }
+    return features;
+  }
+
+  private static byte[] write(List<Feature> features, int precision) throws IOException {
+    FeatureCollection header = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    header.setTitle("title");
+    header.setProperty("source", "unit test");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (FeatureCollectionBinaryWriter writer = new FeatureCollectionBinaryWriter(outputStream, precision)) {
+      writer.writeStart(header);
+      for (Feature feature : features) {
+        writer.write(feature);
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  @Test
+  public void testRoundTripWkb() throws IOException {
+    List<Feature> features = buildFeatures(20);
+    byte[] binary = write(features, FeatureCollectionBinaryWriter.PRECISION_WKB);
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(new ByteArrayInputStream(binary))) {
+      FeatureCollection header = reader.getHeader();
+      assertEquals("collection", header.getId());
+      assertEquals("test", header.getFeatureType());
+      assertEquals("Test collection", header.getName());
+      assertEquals("title", header.getTitle());
+      assertEquals("unit test", header.getProperty("source"));
+
+      List<Feature> read = new ArrayList<>();
+      reader.forEachRemaining(read::add);
+      assertEquals(features.size(), read.size());
+      for (int i = 0; i < features.size(); i++) {
+        /**
+         * WKB is lossless: the content is identical.
+         */
+        assertEquals(features.get(i).getContentHash(), read.get(i).getContentHash());
+        assertEquals(features.get(i).getProperties(), read.get(i).getProperties());
+        assertEquals(features.get(i).getPosition(), read.get(i).getPosition());
+        assertEquals(features.get(i).getAddress(), read.get(i).getAddress());
+      }
+      assertEquals(features.get(1).getPosition().getRadialHaat(), read.get(1).getPosition().getRadialHaat());
+      assertEquals(features.get(1).getPosition().getDomTimeStampMillis(), read.get(1).getPosition().getDomTimeStampMillis());
+    }
+  }
+
+  @Test
+  public void testRoundTripDelta() throws IOException {
+    List<Feature> features = buildFeatures(20);
+    byte[] binary = write(features, 6);
+    List<Feature> read = new ArrayList<>();
+    assertEquals(20, FeatureCollectionBinaryReader.read(new ByteArrayInputStream(binary), read::add));
+    for (int i = 0; i < features.size(); i++) {
+      assertEquals(features.get(i).getId(), read.get(i).getId());
+      assertEquals(features.get(i).getProperties(), read.get(i).getProperties());
+      assertTrue(features.get(i).getShape().equalsExact(read.get(i).getShape(), 1e-6));
+    }
+    /**
+     * The delta encoding is much smaller than both WKB and XML.
+     */
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    FeatureCollectionXmlWriter.write(new FeatureCollection(), features.iterator(), xml);
+    byte[] wkb = write(features, FeatureCollectionBinaryWriter.PRECISION_WKB);
+    System.out.println("delta " + binary.length + " wkb " + wkb.length + " xml " + xml.size() + " bytes");
+    assertTrue(binary.length < wkb.length);
+    assertTrue(wkb.length < xml.size());
+  }
+
+  private static Geometry decode(BinaryCodec.Output output, int precision) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    output.writeTo(outputStream);
+    BinaryCodec.Input input = new BinaryCodec.Input();
+    input.readFrom(new ByteArrayInputStream(outputStream.toByteArray()), output.size());
+    return new BinaryCodec.GeometryDecoder(precision).read(input);
+  }
+
+  @Test
+  public void testLinearRing() throws IOException {
+    GeometryFactory factory = new GeometryFactory();
+    LinearRing ring = factory.createLinearRing(new Coordinate[]{
+      new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)});
+    ring.setSRID(4326);
+    /**
+     * The delta encoding preserves the ring type.
+     */
+    BinaryCodec.Output output = new BinaryCodec.Output();
+    new BinaryCodec.GeometryEncoder(6).write(ring, output);
+    Geometry read = decode(output, 6);
+    assertTrue(read instanceof LinearRing);
+    assertTrue(ring.equalsExact(read));
+    assertEquals(4326, read.getSRID());
+    /**
+     * WKB has no ring type: the ring is read back as a LineString.
+     */
+    output = new BinaryCodec.Output();
+    new BinaryCodec.GeometryEncoder(FeatureCollectionBinaryWriter.PRECISION_WKB).write(ring, output);
+    read = decode(output, FeatureCollectionBinaryWriter.PRECISION_WKB);
+    assertEquals("LineString", read.getGeometryType());
+    assertEquals(ring.getNumPoints(), read.getNumPoints());
+  }
+
+  @Test
+  public void testCorruptGeometry() throws IOException {
+    /**
+     * A MultiPoint holding a LineString part.
+     */
+    BinaryCodec.Output output = new BinaryCodec.Output();
+    output.writeSigned(0);
+    output.writeByte(4);
+    output.writeVarint(1);
+    output.writeByte(2);
+    output.writeVarint(2);
+    output.writeSigned(0);
+    output.writeSigned(0);
+    output.writeSigned(10);
+    output.writeSigned(10);
+    try {
+      decode(output, 6);
+      fail("Expected an IOException");
+    } catch (IOException expected) {
+      assertEquals("Corrupt record", expected.getMessage());
+    }
+    /**
+     * A LinearRing that is not closed.
+     */
+    output = new BinaryCodec.Output();
+    output.writeSigned(0);
+    output.writeByte(8);
+    output.writeVarint(4);
+    for (int i = 0; i < 4; i++) {
+      output.writeSigned(i);
+      output.writeSigned(i * i);
+    }
+    try {
+      decode(output, 6);
+      fail("Expected an IOException");
+    } catch (IOException expected) {
+      assertEquals("Corrupt record", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testFilter() throws IOException {
+    byte[] binary = write(buildFeatures(20), 6);
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(new ByteArrayInputStream(binary))) {
+      reader.setFeatureTypes("site");
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      assertEquals(10, ids.size());
+      assertTrue(ids.stream().allMatch(id -> Integer.parseInt(id) % 2 == 1));
+    }
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(new ByteArrayInputStream(binary))) {
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -0.1, 10.1));
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      assertEquals(6, ids.size());
+      assertEquals("0", ids.get(0));
+      assertEquals("10", ids.get(5));
+    }
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(new ByteArrayInputStream(binary))) {
+      reader.setFeatureTypes("site");
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -10.1, 0.1));
+      assertEquals(5, reader.stream().count());
+    }
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionBinaryWriter.write(new FeatureCollection(), IntStream.range(0, 5000).mapToObj(FeatureCollectionXmlWriterTest::buildFeature), outputStream);
+    long count = FeatureCollectionBinaryReader.read(new ByteArrayInputStream(outputStream.toByteArray()), feature -> true);
+    assertEquals(5000, count);
+    try (FeatureCollectionBinaryReader reader = new FeatureCollectionBinaryReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+      assertEquals("7", reader.stream().skip(7).findFirst().get().getId());
+    }
+    try {
+      new FeatureCollectionBinaryReader(new ByteArrayInputStream("<FeatureCollection/>".getBytes()));
+      fail("Expected an IOException");
+    } catch (IOException expected) {
+    }
+    System.out.println("FeatureCollectionBinaryTest OK");
+  }
+
+}
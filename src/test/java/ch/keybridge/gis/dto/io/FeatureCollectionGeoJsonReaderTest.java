@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionGeoJsonReaderTest {
+
+  /**
+   * Build a GeoJSON collection of features. Even features are "zone" polygons
+   * at (i, i); odd features are "site" points at (i, -i).
+   */
+  private static byte[] buildGeoJson(int count) throws IOException {
+    FeatureCollection header = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    header.setProperty("source", "unit test");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionGeoJsonWriter.write(header, IntStream.range(0, count).mapToObj(FeatureCollectionXmlWriterTest::buildFeature), outputStream);
+    return outputStream.toByteArray();
+  }
+
+  @Test
+  public void testReadAll() throws IOException {
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(buildGeoJson(10)))) {
+      FeatureCollection header = reader.getHeader();
+      assertEquals("collection", header.getId());
+      assertEquals("test", header.getFeatureType());
+      assertEquals("Test collection", header.getName());
+      assertEquals("unit test", header.getProperty("source"));
+      assertTrue(header.getFeatures().isEmpty());
+
+      List<Feature> features = new ArrayList<>();
+      reader.forEachRemaining(features::add);
+      assertEquals(10, features.size());
+      for (int i = 0; i < features.size(); i++) {
+        Feature expected = FeatureCollectionXmlWriterTest.buildFeature(i);
+        Feature feature = features.get(i);
+        assertEquals(expected.getId(), feature.getId());
+        assertEquals(expected.getFeatureType(), feature.getFeatureType());
+        assertEquals(expected.getName(), feature.getName());
+        assertEquals(expected.getProperties(), feature.getProperties());
+        assertEquals(expected.getShape().getGeometryType(), feature.getShape().getGeometryType());
+        assertEquals(expected.getShape().getNumPoints(), feature.getShape().getNumPoints());
+        assertEquals(expected.getPosition(), feature.getPosition());
+        assertEquals(expected.getAddress(), feature.getAddress());
+      }
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testMemberOrder() throws IOException {
+    /**
+     * Members in any order, unknown members, escapes, non-string property
+     * values and every geometry type.
+     */
+    String json = "{ \"bbox\": [0, 0, 1, 1], \"features\": [\n"
+      + "  {\"geometry\": {\"coordinates\": [[[0, 0], [4, 0], [4, 4], [0, 0]], [[1, 1], [2, 1], [2, 2], [1, 1]]], \"type\": \"Polygon\"},\n"
+      + "   \"properties\": {\"count\": 1e3, \"valid\": true, \"none\": null, \"tags\": [\"a\", {\"b\": \"]\"}], \"label\": \"\\\"q\\\" \\u00e9\"},\n"
+      + "   \"foreign\": {\"nested\": [1, [2, 3]]}, \"type\": \"Feature\", \"id\": 42, \"featureType\": \"zone\"},\n"
+      + "  {\"type\": \"Feature\", \"id\": \"b\", \"geometry\": {\"type\": \"GeometryCollection\", \"geometries\": ["
+      + "{\"type\": \"Point\", \"coordinates\": [10.5, -20.25, 3]}, {\"type\": \"MultiLineString\", \"coordinates\": [[[0, 0], [1, 1]], [[2, 2], [3, 3]]]},"
+      + "{\"type\": \"MultiPolygon\", \"coordinates\": [[[[5, 5], [6, 5], [6, 6], [5, 5]]]]}, {\"type\": \"MultiPoint\", \"coordinates\": [[7, 7]]}]}},\n"
+      + "  {\"type\": \"Feature\", \"id\": \"c\", \"geometry\": null, \"properties\": null}\n"
+      + "], \"type\": \"FeatureCollection\"}";
+    List<Feature> features = new ArrayList<>();
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new StringReader(json))) {
+      reader.forEachRemaining(features::add);
+    }
+    assertEquals(3, features.size());
+    Feature feature = features.get(0);
+    assertEquals("42", feature.getId());
+    assertEquals("zone", feature.getFeatureType());
+    assertEquals("1e3", feature.getProperty("count"));
+    assertEquals("true", feature.getProperty("valid"));
+    assertFalse(feature.isSetProperty("none"));
+    assertEquals("[\"a\", {\"b\": \"]\"}]", feature.getProperty("tags"));
+    assertEquals("\"q\" \u00e9", feature.getProperty("label"));
+    assertEquals(7.5, feature.getShape().getArea(), 0);
+
+    Geometry collection = features.get(1).getShape();
+    assertEquals(4, collection.getNumGeometries());
+    assertEquals(3.0, collection.getGeometryN(0).getCoordinate().getZ(), 0);
+    assertEquals(-20.25, collection.getGeometryN(0).getCoordinate().getY(), 0);
+    assertEquals("MultiLineString", collection.getGeometryN(1).getGeometryType());
+    assertEquals(new Envelope(0, 10.5, -20.25, 7), collection.getEnvelopeInternal());
+    assertNull(features.get(2).getShape());
+    /**
+     * A "bbox" member preceding the geometry rejects the feature before the
+     * coordinates are parsed; a "featureType" member following the geometry
+     * rejects it before the shape is built.
+     */
+    String filtered = "{\"type\": \"FeatureCollection\", \"features\": ["
+      + "{\"bbox\": [50, 50, 60, 60], \"geometry\": {\"type\": \"Point\", \"coordinates\": [55, 55]}, \"featureType\": \"site\"},"
+      + "{\"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 1]}, \"featureType\": \"zone\"},"
+      + "{\"geometry\": {\"type\": \"Point\", \"coordinates\": [2, 2]}, \"featureType\": \"site\", \"id\": \"match\"}]}";
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new StringReader(filtered))) {
+      reader.setFeatureTypes("site");
+      reader.setEnvelope(new Envelope(0, 10, 0, 10));
+      assertEquals("match", reader.next().getId());
+      assertFalse(reader.hasNext());
+    }
+    try {
+      new FeatureCollectionGeoJsonReader(new StringReader("{\"type\": \"Feature\"}"));
+      fail("Not a FeatureCollection");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    /**
+     * Malformed values are reported as IOException with the input offset.
+     */
+    String[] invalid = {
+      "{\"type\": \"Point\", \"coordinates\": [1]}, \"id\": \"a\"",
+      "{\"type\": \"Point\", \"coordinates\": [1, 2]}, \"position\": {\"domTimeStamp\": 1.5}",
+      "{\"type\": \"Point\", \"coordinates\": [1, 2]}, \"position\": {\"radialHaat\": {\"north\": 100}}",
+      "{\"type\": \"Point\", \"coordinates\": [1, 2]}, \"position\": {\"haat\": .}",
+      "{\"type\": \"Point\", \"coordinates\": [-., 2]}",
+      "{\"type\": \"Point\", \"coordinates\": [1, e5]}"};
+    for (String geometry : invalid) {
+      String json = "{\"type\": \"FeatureCollection\", \"features\": [{\"type\": \"Feature\", \"geometry\": " + geometry + "}]}";
+      try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new StringReader(json))) {
+        reader.read(feature -> true);
+        fail("Invalid GeoJSON read: " + geometry);
+      } catch (IOException expected) {
+        System.out.println("invalid GeoJSON " + expected.getMessage());
+        assertTrue(expected.getMessage().contains(" at offset "));
+      }
+    }
+  }
+
+  @Test
+  public void testFilter() throws IOException {
+    byte[] json = buildGeoJson(20);
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(json))) {
+      reader.setFeatureTypes("site");
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      System.out.println("site features " + ids);
+      assertEquals(10, ids.size());
+      assertTrue(ids.stream().allMatch(id -> Integer.parseInt(id) % 2 == 1));
+    }
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(json))) {
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -0.1, 10.1));
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      System.out.println("envelope features " + ids);
+      assertEquals(6, ids.size());
+      assertEquals("0", ids.get(0));
+      assertEquals("10", ids.get(5));
+    }
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(json))) {
+      reader.setFeatureTypes("site");
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -10.1, 0.1));
+      assertEquals(5, reader.stream().count());
+    }
+  }
+
+  @Test
+  public void testEarlyTermination() throws IOException {
+    byte[] json = buildGeoJson(100);
+    List<Feature> features = new ArrayList<>();
+    long count = FeatureCollectionGeoJsonReader.read(new ByteArrayInputStream(json), feature -> features.add(feature) && features.size() < 3);
+    assertEquals(3, count);
+    assertEquals(3, features.size());
+    try (FeatureCollectionGeoJsonReader reader = new FeatureCollectionGeoJsonReader(new ByteArrayInputStream(json))) {
+      assertEquals("7", reader.stream().skip(7).findFirst().get().getId());
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    long count = FeatureCollectionGeoJsonReader.read(new ByteArrayInputStream(buildGeoJson(5000)), feature -> true);
+    assertEquals(5000, count);
+    System.out.println("FeatureCollectionGeoJsonReaderTest OK");
+  }
+
+}
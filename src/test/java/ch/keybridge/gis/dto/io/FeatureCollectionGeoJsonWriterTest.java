@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Address;
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.gis.dto.Position;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKTReader;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionGeoJsonWriterTest {
+
+  private static final GeometryFactory FACTORY = new GeometryFactory();
+
+  private static String geometry(String wkt) throws Exception {
+    Feature feature = Feature.getInstance(null, new WKTReader(FACTORY).read(wkt));
+    String json = FeatureCollectionGeoJsonWriter.toGeoJson(feature);
+    return json.substring(json.indexOf("\"geometry\":") + 11, json.length() - 1);
+  }
+
+  @Test
+  public void testFeature() {
+    Feature feature = Feature.getInstance("Tysons \"HQ\"\n", FACTORY.createPoint(new Coordinate(-77.2311, 38.9245)));
+    feature.setId(7);
+    feature.setFeatureType("site");
+    feature.setProperty("population", 1000);
+    Position position = Position.getInstance(38.9245, -77.2311);
+    position.setDomTimeStampMillis(1602806400000L);
+    feature.setPosition(position);
+    feature.setAddress(Address.getInstance("1750 Tysons Blvd.", "McLean", "VA", "22102", "US"));
+    String json = FeatureCollectionGeoJsonWriter.toGeoJson(feature);
+    System.out.println(json);
+    assertEquals("{\"type\":\"Feature\",\"id\":\"7\",\"featureType\":\"site\",\"name\":\"Tysons \\\"HQ\\\"\\n\""
+      + ",\"properties\":{\"population\":\"1000\"}"
+      + ",\"geometry\":{\"type\":\"Point\",\"coordinates\":[-77.2311,38.9245]}"
+      + ",\"position\":{\"latitude\":38.9245,\"longitude\":-77.2311,\"domTimeStamp\":1602806400000}"
+      + ",\"address\":{\"street\":\"1750 Tysons Blvd.\",\"city\":\"McLean\",\"state\":\"VA\",\"postalCode\":\"22102\",\"country\":\"US\"}}",
+                 json);
+    assertEquals("{\"type\":\"Feature\",\"properties\":{},\"geometry\":null}", FeatureCollectionGeoJsonWriter.toGeoJson(new Feature()));
+  }
+
+  @Test
+  public void testGeometry() throws Exception {
+    assertEquals("{\"type\":\"Point\",\"coordinates\":[1,2.5,3]}", geometry("POINT Z (1 2.5 3)"));
+    assertEquals("{\"type\":\"Point\",\"coordinates\":[]}", geometry("POINT EMPTY"));
+    assertEquals("{\"type\":\"LineString\",\"coordinates\":[[0,0],[-0.000001,0.123457]]}",
+                 geometry("LINESTRING (0 0, -0.000001 0.12345678)"));
+    assertEquals("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,0]],[[1,1],[2,1],[2,2],[1,1]]]}",
+                 geometry("POLYGON ((0 0, 10 0, 10 10, 0 0), (1 1, 2 1, 2 2, 1 1))"));
+    assertEquals("{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]],[[[5,5],[6,5],[6,6],[5,5]]]]}",
+                 geometry("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))"));
+    assertEquals("{\"type\":\"MultiPoint\",\"coordinates\":[[0,0],[1,1]]}", geometry("MULTIPOINT ((0 0), (1 1))"));
+    assertEquals("{\"type\":\"GeometryCollection\",\"geometries\":[{\"type\":\"Point\",\"coordinates\":[0,0]},"
+      + "{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}]}",
+                 geometry("GEOMETRYCOLLECTION (POINT (0 0), LINESTRING (0 0, 1 1))"));
+    /**
+     * Precision is configurable; values round half up away from zero.
+     */
+    StringWriter writer = new StringWriter();
+    try (FeatureCollectionGeoJsonWriter geoJsonWriter = new FeatureCollectionGeoJsonWriter(writer, 2)) {
+      geoJsonWriter.write(Feature.getInstance(null, FACTORY.createPoint(new Coordinate(-77.235, 38.0001))));
+    }
+    assertTrue(writer.toString(), writer.toString().contains("\"coordinates\":[-77.24,38]"));
+    assertTrue(writer.toString().endsWith("],\"bbox\":[-77.24,38,-77.24,38]}"));
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    FeatureCollection header = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    header.setProperty("source", "unit test");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionGeoJsonWriter.write(header, IntStream.range(0, 5000).mapToObj(FeatureCollectionXmlWriterTest::buildFeature), outputStream);
+    String json = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(json.startsWith("{\"type\":\"FeatureCollection\",\"id\":\"collection\",\"featureType\":\"test\",\"name\":\"Test collection\""));
+    assertEquals(5000, json.split("\"type\":\"Feature\"", -1).length - 1);
+    assertTrue(json.endsWith("],\"bbox\":[-0.5,-4999,4999,4998.5]}"));
+
+    FeatureCollection collection = new FeatureCollection();
+    for (int i = 0; i < 10; i++) {
+      collection.addFeatures(FeatureCollectionXmlWriterTest.buildFeature(i));
+    }
+    String geoJson = FeatureCollectionGeoJsonWriter.toGeoJson(collection);
+    assertEquals(10, geoJson.split("\"type\":\"Feature\"", -1).length - 1);
+    assertTrue(geoJson.endsWith("],\"bbox\":[-0.5,-9,9,8.5]}"));
+    System.out.println("FeatureCollectionGeoJsonWriterTest OK");
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.Feature;
+import ch.keybridge.gis.dto.FeatureCollection;
+import ch.keybridge.xml.JaxbUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.xml.bind.JAXBException;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionXmlReaderTest {
+
+  /**
+   * Build a JAXB-marshalled collection of features. Even features are "zone"
+   * polygons at (i, i); odd features are "site" points at (i, -i).
+   */
+  private static byte[] buildXml(int count) throws JAXBException {
+    FeatureCollection collection = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    collection.setTitle("title");
+    collection.setProperty("source", "unit test");
+    for (int i = 0; i < count; i++) {
+      collection.addFeatures(FeatureCollectionXmlWriterTest.buildFeature(i));
+    }
+    return JaxbUtility.marshal(collection).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testReadAll() throws IOException, JAXBException {
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(new ByteArrayInputStream(buildXml(10)))) {
+      FeatureCollection header = reader.getHeader();
+      assertEquals("collection", header.getId());
+      assertEquals("test", header.getFeatureType());
+      assertEquals("Test collection", header.getName());
+      assertEquals("title", header.getTitle());
+      assertEquals("unit test", header.getProperty("source"));
+      assertTrue(header.getFeatures().isEmpty());
+
+      List<Feature> features = new ArrayList<>();
+      reader.forEachRemaining(features::add);
+      assertEquals(10, features.size());
+      for (int i = 0; i < features.size(); i++) {
+        Feature expected = FeatureCollectionXmlWriterTest.buildFeature(i);
+        assertEquals(expected.getId(), features.get(i).getId());
+        assertEquals(expected.getProperties(), features.get(i).getProperties());
+        assertEquals(expected.getShape().getNumPoints(), features.get(i).getShape().getNumPoints());
+      }
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testFilter() throws IOException, JAXBException {
+    byte[] xml = buildXml(20);
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(new ByteArrayInputStream(xml))) {
+      reader.setFeatureTypes("site");
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      System.out.println("site features " + ids);
+      assertEquals(10, ids.size());
+      assertTrue(ids.stream().allMatch(id -> Integer.parseInt(id) % 2 == 1));
+    }
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(new ByteArrayInputStream(xml))) {
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -0.1, 10.1));
+      List<String> ids = reader.stream().map(Feature::getId).collect(Collectors.toList());
+      System.out.println("envelope features " + ids);
+      assertEquals(6, ids.size());
+      assertEquals("0", ids.get(0));
+      assertEquals("10", ids.get(5));
+    }
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(new ByteArrayInputStream(xml))) {
+      reader.setFeatureTypes("site");
+      reader.setEnvelope(new Envelope(-0.1, 10.1, -10.1, 0.1));
+      assertEquals(5, reader.stream().count());
+    }
+  }
+
+  @Test
+  public void testEarlyTermination() throws IOException, JAXBException {
+    byte[] xml = buildXml(100);
+    List<Feature> features = new ArrayList<>();
+    long count = FeatureCollectionXmlReader.read(new ByteArrayInputStream(xml), feature -> features.add(feature) && features.size() < 3);
+    assertEquals(3, count);
+    assertEquals(3, features.size());
+    try (FeatureCollectionXmlReader reader = new FeatureCollectionXmlReader(new ByteArrayInputStream(xml))) {
+      assertEquals("7", reader.stream().skip(7).findFirst().get().getId());
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionXmlWriter.write(new FeatureCollection(), IntStream.range(0, 5000).mapToObj(FeatureCollectionXmlWriterTest::buildFeature), outputStream);
+    long count = FeatureCollectionXmlReader.read(new ByteArrayInputStream(outputStream.toByteArray()), feature -> true);
+    assertEquals(5000, count);
+  }
+
+}
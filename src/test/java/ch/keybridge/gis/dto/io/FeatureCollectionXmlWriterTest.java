@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.*;
+import ch.keybridge.xml.JaxbUtility;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.xml.bind.JAXBException;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class FeatureCollectionXmlWriterTest {
+
+  private static final GeometryFactory FACTORY = new GeometryFactory();
+
+  /**
+   * Build a test feature. Odd features are points; even features are polygons.
+   */
+  static Feature buildFeature(int i) {
+    Feature feature = Feature.getInstanceWithCss();
+    feature.setId(i);
+    feature.setName("feature-" + i);
+    feature.setFeatureType(i % 2 == 0 ? "zone" : "site");
+    feature.setProperty("index", i);
+    if (i % 2 == 0) {
+      feature.setShape(FACTORY.createPoint(new Coordinate(i, i)).buffer(0.5));
+    } else {
+      feature.setShape(FACTORY.createPoint(new Coordinate(i, -i)));
+      feature.setPosition(Position.getInstance(-i, i));
+      feature.setAddress(Address.getInstance("1750 Tysons Blvd.", "McLean", "VA", "22102", "US"));
+    }
+    return feature;
+  }
+
+  @Test
+  public void testWriteIterator() throws IOException, JAXBException {
+    FeatureCollection header = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    header.setTitle("title");
+    header.setProperty("source", "unit test");
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      features.add(buildFeature(i));
+    }
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionXmlWriter.write(header, features.iterator(), outputStream);
+    String xml = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    System.out.println(xml);
+
+    FeatureCollection streamed = JaxbUtility.unmarshal(xml, FeatureCollection.class);
+    assertEquals("collection", streamed.getId());
+    assertEquals("test", streamed.getFeatureType());
+    assertEquals("Test collection", streamed.getName());
+    assertEquals("title", streamed.getTitle());
+    assertEquals("unit test", streamed.getProperty("source"));
+    assertEquals(features.size(), streamed.getFeatures().size());
+
+    header.setFeatures(features);
+    assertEquals(header.getEnvelope(), streamed.getEnvelope());
+    Iterator<Feature> expected = features.iterator();
+    for (Feature feature : streamed.getFeatures()) {
+      Feature original = expected.next();
+      assertEquals(original.getId(), feature.getId());
+      assertEquals(original.getFeatureType(), feature.getFeatureType());
+      assertEquals(original.getProperties(), feature.getProperties());
+      assertEquals(original.getShape().getNumPoints(), feature.getShape().getNumPoints());
+      assertEquals(original.isSetPosition(), feature.isSetPosition());
+      assertEquals(original.getAddress(), feature.getAddress());
+    }
+  }
+
+  @Test
+  public void testWriteStream() throws IOException, JAXBException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FeatureCollectionXmlWriter.write(new FeatureCollection(), IntStream.range(0, 1000).mapToObj(FeatureCollectionXmlWriterTest::buildFeature), outputStream);
+    FeatureCollection streamed = JaxbUtility.unmarshal(new String(outputStream.toByteArray(), StandardCharsets.UTF_8), FeatureCollection.class);
+    assertEquals(1000, streamed.getFeatures().size());
+    assertNotNull(streamed.getEnvelope());
+  }
+
+  @Test
+  public void testWriteEmpty() throws IOException, JAXBException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (FeatureCollectionXmlWriter writer = new FeatureCollectionXmlWriter(outputStream)) {
+      writer.writeStart(FeatureCollection.getInstance("empty", null, null, null));
+      assertEquals(0, writer.getCount());
+      assertNull(writer.getEnvelope());
+    }
+    FeatureCollection streamed = JaxbUtility.unmarshal(new String(outputStream.toByteArray(), StandardCharsets.UTF_8), FeatureCollection.class);
+    assertEquals("empty", streamed.getId());
+    assertTrue(streamed.getFeatures().isEmpty());
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Key Bridge.
+ *
+ * All rights reserved. Use is subject to license terms.
+ * This software is protected by copyright.
+ *
+ * See the License for specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.dto.io;
+
+import ch.keybridge.gis.dto.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Key Bridge
+ */
+public class XmlCodecTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    assertSame(XmlCodec.getJaxbContext(), XmlCodec.getJaxbContext());
+
+    Feature feature = FeatureCollectionXmlWriterTest.buildFeature(1);
+    String xml = XmlCodec.marshal(feature);
+    Feature copy = XmlCodec.unmarshal(xml, Feature.class);
+    assertEquals(feature.getContentHash(), copy.getContentHash());
+
+    FeatureCollection collection = FeatureCollection.getInstance("collection", "test", "Test collection", null);
+    for (int i = 0; i < 10; i++) {
+      collection.addFeatures(FeatureCollectionXmlWriterTest.buildFeature(i));
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    XmlCodec.marshal(collection, outputStream);
+    FeatureCollection collectionCopy = XmlCodec.unmarshal(new ByteArrayInputStream(outputStream.toByteArray()), FeatureCollection.class);
+    assertEquals("collection", collectionCopy.getId());
+    assertEquals(collection.getFeatures().size(), collectionCopy.getFeatures().size());
+    /**
+     * Every DTO class is recognized by the one context.
+     */
+    Position position = Position.getInstance(38.0, -77.0);
+    assertEquals(position, XmlCodec.unmarshal(XmlCodec.marshal(position), Position.class));
+    Address address = Address.getInstance("1750 Tysons Blvd.", "McLean", "VA", "22102", "US");
+    assertEquals(address, XmlCodec.unmarshal(XmlCodec.marshal(address), Address.class));
+    Image image = new Image();
+    image.setId("image");
+    assertEquals("image", XmlCodec.unmarshal(XmlCodec.marshal(image), Image.class).getId());
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        Feature feature = FeatureCollectionXmlWriterTest.buildFeature(i);
+        results.add(executor.submit((Callable<Boolean>) () -> {
+          Feature copy = XmlCodec.unmarshal(XmlCodec.marshal(feature), Feature.class);
+          return feature.getId().equals(copy.getId()) && feature.getProperties().equals(copy.getProperties());
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    System.out.println("XmlCodecTest OK");
+  }
+
+}